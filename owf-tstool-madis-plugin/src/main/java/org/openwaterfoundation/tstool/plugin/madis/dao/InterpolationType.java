@@ -0,0 +1,108 @@
+// InterpolationType - time series value interpolation type
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.dao;
+
+/**
+ * Interpolation type for time series values, which indicates how a value relates to its timestamp.
+ * The web service returns an interpolation type number (e.g., 102, 402, 603),
+ * where the last digit indicates the category used here.
+ * TSTool uses interval-ending timestamps, so values with timestamp at the beginning of the interval
+ * must be shifted to the end of the interval for regular interval time series.
+ */
+public enum InterpolationType {
+	/**
+	 * Instantaneous value at the timestamp.
+	 */
+	INSTANTANEOUS("Instantaneous", 0),
+	/**
+	 * Value is constant until the next timestamp (timestamp at the beginning of the interval).
+	 */
+	CONSTANT_UNTIL_NEXT("ConstantUntilNext", -1),
+	/**
+	 * Value is constant since the previous timestamp (timestamp at the end of the interval).
+	 */
+	CONSTANT_SINCE_PREVIOUS("ConstantSincePrevious", 1),
+	/**
+	 * Value is the total until the next timestamp (timestamp at the beginning of the interval).
+	 */
+	TOTAL_UNTIL_NEXT("TotalUntilNext", -1),
+	/**
+	 * Value is the total since the previous timestamp (timestamp at the end of the interval).
+	 */
+	TOTAL_SINCE_PREVIOUS("TotalSincePrevious", 1),
+	/**
+	 * Unknown interpolation type, including missing and non-integer values.
+	 */
+	UNKNOWN("Unknown", 0);
+
+	/**
+	 * Name that is displayed.
+	 */
+	private final String displayName;
+
+	/**
+	 * Position of the timestamp in the interval:
+	 * -1 for the beginning, 0 for instantaneous, 1 for the end.
+	 */
+	private final int timestampPos;
+
+	private InterpolationType ( String displayName, int timestampPos ) {
+		this.displayName = displayName;
+		this.timestampPos = timestampPos;
+	}
+
+	/**
+	 * Return the position of the timestamp in the interval.
+	 * @return -1 if the timestamp is at the beginning of the interval, 0 for instantaneous, 1 for the end of the interval
+	 */
+	public int getTimestampPos () {
+		return this.timestampPos;
+	}
+
+	/**
+	 * Return the display name.
+	 */
+	@Override
+	public String toString () {
+		return this.displayName;
+	}
+
+	/**
+	 * Return the interpolation type for an interpolation type number.
+	 * @param interpolationTypeNum interpolation type number from the web service (e.g., 102)
+	 * @return the interpolation type, UNKNOWN if not recognized
+	 */
+	public static InterpolationType valueOfNumber ( int interpolationTypeNum ) {
+		if ( interpolationTypeNum <= 0 ) {
+			return UNKNOWN;
+		}
+		switch ( interpolationTypeNum % 10 ) {
+			case 1: return INSTANTANEOUS;
+			case 2: return CONSTANT_UNTIL_NEXT;
+			case 3: return CONSTANT_SINCE_PREVIOUS;
+			case 4: return TOTAL_UNTIL_NEXT;
+			case 5: return TOTAL_SINCE_PREVIOUS;
+			default: return UNKNOWN;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+// StringDictionary - pool of distinct strings shared by time series catalog objects
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of distinct strings (dictionary) used by a time series catalog.
+ * Most catalog strings (station names, units, parameter and type names, etc.) repeat for many time series,
+ * so setting the catalog strings through the dictionary retains only one copy of each distinct string.
+ * The dictionary also tracks approximate heap use to help evaluate memory requirements.
+ * One dictionary is typically used for each version of the catalog, including catalog objects that are merged
+ * into the catalog, and a new dictionary is used when the full catalog is read so that old strings can be garbage collected.
+ */
+public class StringDictionary {
+
+	/**
+	 * Map of strings, where the key and value are the same distinct string.
+	 */
+	private final Map<String,String> stringMap = new HashMap<>();
+
+	/**
+	 * Number of times that intern() was called with a non-null string.
+	 */
+	private long lookupCount = 0;
+
+	/**
+	 * Approximate heap bytes for the distinct strings retained by the dictionary.
+	 */
+	private long retainedBytes = 0;
+
+	/**
+	 * Approximate heap bytes for duplicate strings that are not retained because the dictionary copy is used.
+	 */
+	private long savedBytes = 0;
+
+	/**
+	 * Constructor.
+	 */
+	public StringDictionary () {
+	}
+
+	/**
+	 * Heap bytes for each map entry (HashMap.Node), assuming compressed object pointers:
+	 * object header (12), hash (4), key, value, and next references (4 each), and 8-byte alignment.
+	 */
+	private static final long MAP_ENTRY_BYTES = 32;
+
+	/**
+	 * Estimate the heap bytes used by a string, assuming compact strings (one byte per character)
+	 * and 8-byte object alignment.
+	 * @param s string to evaluate
+	 * @return the approximate number of bytes used by the string
+	 */
+	public static long estimateHeapBytes ( String s ) {
+		// String object header and fields (24) plus the byte array header (16) and characters.
+		long bytes = 24 + 16 + s.length();
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * Format the dictionary use as a string for logging and troubleshooting.
+	 * @return a string describing the dictionary use
+	 */
+	public synchronized String formatUsage () {
+		return this.stringMap.size() + " distinct strings for " + this.lookupCount + " string values, about "
+			+ (getHeapBytes()/1024) + " KB retained and " + (this.savedBytes/1024) + " KB saved";
+	}
+
+	/**
+	 * Return the approximate heap bytes used by the dictionary,
+	 * which is the distinct strings plus the map entries and table.
+	 * @return the approximate heap bytes used by the dictionary
+	 */
+	public synchronized long getHeapBytes () {
+		int size = this.stringMap.size();
+		// The HashMap table is a power of 2, resized when the size exceeds 0.75 of the table length.
+		long tableLength = 0;
+		if ( size > 0 ) {
+			tableLength = 16;
+			while ( size > tableLength*3/4 ) {
+				tableLength *= 2;
+			}
+		}
+		// HashMap object (48) and the table array header (16) and references.
+		long mapBytes = 48 + ((16 + 4*tableLength + 7) & ~7L);
+		return this.retainedBytes + size*MAP_ENTRY_BYTES + mapBytes;
+	}
+
+	/**
+	 * Return the number of times that intern() was called with a non-null string.
+	 * @return the number of times that intern() was called with a non-null string
+	 */
+	public synchronized long getLookupCount () {
+		return this.lookupCount;
+	}
+
+	/**
+	 * Return the approximate heap bytes for the distinct strings retained by the dictionary,
+	 * not including the map (see getHeapBytes()).
+	 * @return the approximate heap bytes for the distinct strings retained by the dictionary
+	 */
+	public synchronized long getRetainedBytes () {
+		return this.retainedBytes;
+	}
+
+	/**
+	 * Return the approximate heap bytes saved by sharing strings.
+	 * @return the approximate heap bytes saved by sharing strings
+	 */
+	public synchronized long getSavedBytes () {
+		return this.savedBytes;
+	}
+
+	/**
+	 * Return the dictionary copy of a string, adding the string to the dictionary if not previously added.
+	 * @param s string to look up
+	 * @return the dictionary copy of the string, or null if the string is null
+	 */
+	public synchronized String intern ( String s ) {
+		if ( s == null ) {
+			return null;
+		}
+		++this.lookupCount;
+		String s2 = this.stringMap.putIfAbsent(s, s);
+		if ( s2 == null ) {
+			// First time the string was added.
+			this.retainedBytes += estimateHeapBytes(s);
+			return s;
+		}
+		else {
+			if ( s2 != s ) {
+				// The passed string can be garbage collected because the dictionary copy is used.
+				this.savedBytes += estimateHeapBytes(s);
+			}
+			return s2;
+		}
+	}
+
+	/**
+	 * Return the number of distinct strings in the dictionary.
+	 * @return the number of distinct strings in the dictionary
+	 */
+	public synchronized int size () {
+		return this.stringMap.size();
+	}
+}
@@ -23,7 +23,10 @@ NoticeEnd */
 package org.openwaterfoundation.tstool.plugin.madis.dao;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Class to store time series catalog (metadata) for MADIS time series list.
@@ -95,12 +98,26 @@ public class TimeSeriesCatalog {
 	 */
 	private boolean haveCheckDataProblemsBeenSet = false;
 
+	/**
+	 * Dictionary used to share strings between catalog objects, or null if strings are not shared.
+	 */
+	private StringDictionary dictionary = null;
+
 	/**
 	 * Constructor.
 	 */
 	public TimeSeriesCatalog () {
 	}
 
+	/**
+	 * Constructor that uses a string dictionary.
+	 * @param dictionary dictionary used to share strings with other catalog objects,
+	 * typically one dictionary for all objects in a catalog
+	 */
+	public TimeSeriesCatalog ( StringDictionary dictionary ) {
+		this.dictionary = dictionary;
+	}
+
 	/**
 	 * Copy constructor.
 	 * @param timeSeriesCatalog instance to copy
@@ -119,6 +136,7 @@ public class TimeSeriesCatalog {
 	 */
 	public TimeSeriesCatalog ( TimeSeriesCatalog timeSeriesCatalog, boolean deepCopy ) {
 		// List in the same order as internal data member list.
+		this.dictionary = timeSeriesCatalog.dictionary;
 		this.locId = timeSeriesCatalog.locId;
 		this.dataInterval = timeSeriesCatalog.dataInterval;
 		this.dataType = timeSeriesCatalog.dataType;
@@ -269,28 +287,18 @@ public class TimeSeriesCatalog {
 	 * @return a list of distinct data interval strings.
 	 */
 	public static List<String> getDistinctDataIntervals ( List<TimeSeriesCatalog> tscatalogList ) {
-	    List<String> dataIntervalsDistinct = new ArrayList<>();
+	    // Use a set to check for distinct values, which maintains the original order.
+	    Set<String> dataIntervalsDistinct = new LinkedHashSet<>();
 	    String dataInterval;
-	    boolean found;
 	    for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
 	    	// Data interval from the catalog, something like "IrregSecond", "15Minute", "1Hour", "24Hour".
 	    	dataInterval = tscatalog.getDataInterval();
 	    	if ( dataInterval == null ) {
 	    		continue;
 	    	}
-	    	found = false;
-	    	for ( String dataInterval2 : dataIntervalsDistinct ) {
-	    		if ( dataInterval2.equals(dataInterval) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		// Add to the list of unique data types.
-	    		dataIntervalsDistinct.add(dataInterval);
-	    	}
+	    	dataIntervalsDistinct.add(dataInterval);
 	    }
-	    return dataIntervalsDistinct;
+	    return new ArrayList<>(dataIntervalsDistinct);
 	}
 
 	/**
@@ -299,28 +307,18 @@ public class TimeSeriesCatalog {
 	 * @return a list of distinct data type strings.
 	 */
 	public static List<String> getDistinctDataTypes ( List<TimeSeriesCatalog> tscatalogList ) {
-	    List<String> dataTypesDistinct = new ArrayList<>();
+	    // Use a set to check for distinct values, which maintains the original order.
+	    Set<String> dataTypesDistinct = new LinkedHashSet<>();
 	    String dataType;
-	    boolean found;
 	    for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
 	    	// Data type from the catalog, something like "WaterLevelRiver".
 	    	dataType = tscatalog.getDataType();
 	    	if ( dataType == null ) {
 	    		continue;
 	    	}
-	    	found = false;
-	    	for ( String dataType2 : dataTypesDistinct ) {
-	    		if ( dataType2.equals(dataType) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		// Add to the list of unique data types.
-	    		dataTypesDistinct.add(dataType);
-	    	}
+	    	dataTypesDistinct.add(dataType);
 	    }
-	    return dataTypesDistinct;
+	    return new ArrayList<>(dataTypesDistinct);
 	}
 
 	/**
@@ -331,6 +329,62 @@ public class TimeSeriesCatalog {
 		return this.haveCheckDataProblemsBeenSet;
 	}
 
+	/**
+	 * Return the string dictionary used by the catalog.
+	 * @return the string dictionary used by the catalog, or null if not used
+	 */
+	public StringDictionary getStringDictionary () {
+		return this.dictionary;
+	}
+
+	/**
+	 * Return whether the catalog has the same values as another catalog,
+	 * used when merging a refreshed catalog to reuse unchanged objects.
+	 * Problems and the string dictionary are not compared.
+	 * @param other catalog to compare
+	 * @return whether the catalog has the same values as the other catalog
+	 */
+	public boolean hasSameValues ( TimeSeriesCatalog other ) {
+		if ( other == this ) {
+			return true;
+		}
+		if ( other == null ) {
+			return false;
+		}
+		return Objects.equals(this.locId, other.locId)
+			&& Objects.equals(this.dataInterval, other.dataInterval)
+			&& Objects.equals(this.dataType, other.dataType)
+			&& Objects.equals(this.dataUnits, other.dataUnits)
+			&& Objects.equals(this.siteId, other.siteId)
+			&& Objects.equals(this.siteName, other.siteName)
+			&& Objects.equals(this.siteNo, other.siteNo)
+			&& Objects.equals(this.stationLatitude, other.stationLatitude)
+			&& Objects.equals(this.stationLongitude, other.stationLongitude)
+			&& Objects.equals(this.stationId, other.stationId)
+			&& Objects.equals(this.stationName, other.stationName)
+			&& Objects.equals(this.stationLongName, other.stationLongName)
+			&& Objects.equals(this.stationNo, other.stationNo)
+			&& Objects.equals(this.stationParameterName, other.stationParameterName)
+			&& Objects.equals(this.stationParameterLongName, other.stationParameterLongName)
+			&& Objects.equals(this.stationParameterNo, other.stationParameterNo)
+			&& Objects.equals(this.tsId, other.tsId)
+			&& Objects.equals(this.tsName, other.tsName)
+			&& Objects.equals(this.tsPath, other.tsPath)
+			&& Objects.equals(this.tsShortName, other.tsShortName)
+			&& Objects.equals(this.tsSpacing, other.tsSpacing)
+			&& Objects.equals(this.tsTypeId, other.tsTypeId)
+			&& Objects.equals(this.tsTypeName, other.tsTypeName)
+			&& Objects.equals(this.tsUnitName, other.tsUnitName)
+			&& Objects.equals(this.tsUnitNameAbs, other.tsUnitNameAbs)
+			&& Objects.equals(this.tsUnitSymbol, other.tsUnitSymbol)
+			&& Objects.equals(this.tsUnitSymbolAbs, other.tsUnitSymbolAbs)
+			&& Objects.equals(this.parameterTypeId, other.parameterTypeId)
+			&& Objects.equals(this.parameterTypeName, other.parameterTypeName)
+			&& Objects.equals(this.catchmentId, other.catchmentId)
+			&& Objects.equals(this.catchmentName, other.catchmentName)
+			&& Objects.equals(this.catchmentNo, other.catchmentNo);
+	}
+
 	public String getLocId ( ) {
 		return this.locId;
 	}
@@ -460,23 +514,23 @@ public class TimeSeriesCatalog {
 	}
 	
 	public void setCatchmentName ( String catchmentName ) {
-		this.catchmentName = catchmentName;
+		this.catchmentName = intern(catchmentName);
 	}
 	
 	public void setCatchmentNo ( String catchmentNo ) {
-		this.catchmentNo = catchmentNo;
+		this.catchmentNo = intern(catchmentNo);
 	}
 
 	public void setDataInterval ( String dataInterval ) {
-		this.dataInterval = dataInterval;
+		this.dataInterval = intern(dataInterval);
 	}
 	
 	public void setDataType ( String dataType ) {
-		this.dataType = dataType;
+		this.dataType = intern(dataType);
 	}
 	
 	public void setDataUnits ( String dataUnits ) {
-		this.dataUnits = dataUnits;
+		this.dataUnits = intern(dataUnits);
 	}
 
 	/**
@@ -488,8 +542,18 @@ public class TimeSeriesCatalog {
 		this.haveCheckDataProblemsBeenSet = haveCheckDataProblemsBeenSet;
 	}
 
+	/**
+	 * Return the dictionary copy of a string if a dictionary is used, otherwise the string.
+	 */
+	private String intern ( String s ) {
+		if ( this.dictionary == null ) {
+			return s;
+		}
+		return this.dictionary.intern(s);
+	}
+
 	public void setLocId ( String locId ) {
-		this.locId = locId;
+		this.locId = intern(locId);
 	}
 
 	public void setParameterTypeId ( Integer parameterTypeId ) {
@@ -497,7 +561,7 @@ public class TimeSeriesCatalog {
 	}
 
 	public void setParameterTypeName ( String parameterTypeName ) {
-		this.parameterTypeName = parameterTypeName;
+		this.parameterTypeName = intern(parameterTypeName);
 	}
 
 	public void setSiteId ( Integer siteId ) {
@@ -505,11 +569,11 @@ public class TimeSeriesCatalog {
 	}
 	
 	public void setSiteName ( String siteName ) {
-		this.siteName = siteName;
+		this.siteName = intern(siteName);
 	}
 	
 	public void setSiteNo ( String siteNo ) {
-		this.siteNo = siteNo;
+		this.siteNo = intern(siteNo);
 	}
 	
 	public void setStationId ( Integer stationId ) {
@@ -525,29 +589,29 @@ public class TimeSeriesCatalog {
 	}
 
 	public void setStationLongName ( String stationLongName ) {
-		this.stationLongName = stationLongName;
+		this.stationLongName = intern(stationLongName);
 	}
 	
 	public void setStationName ( String stationName ) {
-		this.stationName = stationName;
+		this.stationName = intern(stationName);
 	}
 	
 	public void setStationNo ( String stationNo ) {
-		this.stationNo = stationNo;
+		this.stationNo = intern(stationNo);
 		// Also set the location ID to the same.
 		this.setLocId(stationNo);
 	}
 	
 	public void setStationParameterLongName ( String stationParameterLongName ) {
-		this.stationParameterLongName = stationParameterLongName;
+		this.stationParameterLongName = intern(stationParameterLongName);
 	}
 	
 	public void setStationParameterName ( String stationParameterName ) {
-		this.stationParameterName = stationParameterName;
+		this.stationParameterName = intern(stationParameterName);
 	}
 	
 	public void setStationParameterNo ( String stationParameterNo ) {
-		this.stationParameterNo = stationParameterNo;
+		this.stationParameterNo = intern(stationParameterNo);
 	}
 	
 	public void setTsId ( Integer tsId ) {
@@ -555,19 +619,19 @@ public class TimeSeriesCatalog {
 	}
 
 	public void setTsName ( String tsName ) {
-		this.tsName = tsName;
+		this.tsName = intern(tsName);
 	}
 
 	public void setTsPath ( String tsPath ) {
-		this.tsPath = tsPath;
+		this.tsPath = intern(tsPath);
 	}
 
 	public void setTsShortName ( String tsShortName ) {
-		this.tsShortName = tsShortName;
+		this.tsShortName = intern(tsShortName);
 	}
 
 	public void setTsSpacing ( String tsSpacing ) {
-		this.tsSpacing = tsSpacing;
+		this.tsSpacing = intern(tsSpacing);
 	}
 
 	public void setTsTypeId ( Integer tsTypeId ) {
@@ -575,23 +639,23 @@ public class TimeSeriesCatalog {
 	}
 
 	public void setTsTypeName ( String tsTypeName ) {
-		this.tsTypeName = tsTypeName;
+		this.tsTypeName = intern(tsTypeName);
 	}
 
 	public void setTsUnitName ( String tsUnitName ) {
-		this.tsUnitName = tsUnitName;
+		this.tsUnitName = intern(tsUnitName);
 	}
 
 	public void setTsUnitNameAbs ( String tsUnitNameAbs ) {
-		this.tsUnitNameAbs = tsUnitNameAbs;
+		this.tsUnitNameAbs = intern(tsUnitNameAbs);
 	}
 
 	public void setTsUnitSymbol ( String tsUnitSymbol ) {
-		this.tsUnitSymbol = tsUnitSymbol;
+		this.tsUnitSymbol = intern(tsUnitSymbol);
 	}
 
 	public void setTsUnitSymbolAbs ( String tsUnitSymbolAbs ) {
-		this.tsUnitSymbolAbs = tsUnitSymbolAbs;
+		this.tsUnitSymbolAbs = intern(tsUnitSymbolAbs);
 	}
 	
 	/**
@@ -22,25 +22,48 @@ NoticeEnd */
 
 package org.openwaterfoundation.tstool.plugin.madis.datastore;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.openwaterfoundation.tstool.plugin.madis.PluginMeta;
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
 import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
 import org.openwaterfoundation.tstool.plugin.madis.ui.MADIS_TimeSeries_CellRenderer;
 import org.openwaterfoundation.tstool.plugin.madis.ui.MADIS_TimeSeries_InputFilter_JPanel;
 import org.openwaterfoundation.tstool.plugin.madis.ui.MADIS_TimeSeries_TableModel;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import RTi.TS.TS;
 import RTi.TS.TSIdent;
 import RTi.TS.TSUtil;
@@ -48,7 +71,6 @@ import RTi.Util.GUI.InputFilter;
 import RTi.Util.GUI.InputFilter_JPanel;
 import RTi.Util.GUI.JWorksheet_AbstractExcelCellRenderer;
 import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
-import RTi.Util.IO.IOUtil;
 import RTi.Util.IO.PropList;
 import RTi.Util.IO.RequirementCheck;
 import RTi.Util.Message.Message;
@@ -77,15 +99,211 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	Map<String,Object> pluginProperties = new LinkedHashMap<>();
 
 	/**
-	 * Global time series catalog, used to streamline creating lists for UI choices.
+	 * Global time series catalog and its index, used to streamline creating lists for UI choices
+	 * and to resolve time series identifiers without web service requests.
+	 * The index is replaced rather than modified when refreshed so that readers always see a complete catalog.
+	 */
+	volatile TimeSeriesCatalogIndex tscatalogIndex = new TimeSeriesCatalogIndex(new ArrayList<>());
+
+	/**
+	 * Approximate heap usage for the cached time series catalog, for troubleshooting.
 	 */
-	List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+	private volatile String tscatalogHeapUsage = "";
 	
 	/**
 	 * Global debug option for datastore, used for development and troubleshooting.
 	 */
 	private boolean debug = false;
 
+	/**
+	 * Whether the time series catalog snapshot file is used, from the 'CatalogSnapshot' configuration property.
+	 */
+	private boolean catalogSnapshotEnabled = true;
+
+	/**
+	 * Time series catalog snapshot file, from the 'CatalogSnapshotFile' configuration property.
+	 */
+	private File catalogSnapshotFile = null;
+
+	/**
+	 * Maximum age of the time series catalog snapshot in milliseconds before it is refreshed,
+	 * from the 'CatalogSnapshotMaxAge' configuration property (hours).
+	 */
+	private long catalogSnapshotMaxAge = 24*3600*1000L;
+
+	/**
+	 * Interval for incremental time series catalog refresh in milliseconds,
+	 * from the 'CatalogRefreshInterval' configuration property (minutes), 0 to disable.
+	 */
+	private long catalogRefreshInterval = 0;
+
+	/**
+	 * Number of catalog partitions (stationparameter_no) to refresh for each incremental refresh,
+	 * from the 'CatalogRefreshPartitions' configuration property, 0 to refresh all partitions.
+	 * The default is bounded so that each refresh makes a limited number of requests,
+	 * with all partitions refreshed over several refresh intervals.
+	 */
+	private int catalogRefreshPartitions = 10;
+
+	/**
+	 * Position in the sorted partition list for the next incremental refresh,
+	 * used to cycle through the partitions when only some partitions are refreshed each time.
+	 */
+	private int catalogRefreshPosition = 0;
+
+	/**
+	 * Lock used so that only one catalog refresh (full or incremental) can replace the catalog at a time.
+	 */
+	private final Object catalogRefreshLock = new Object();
+
+	/**
+	 * Concurrent catalog reads that share one request and result, by catalog query.
+	 * All callers get the same unmodifiable list, so that one list is shared.
+	 */
+	private final SingleFlight<String,List<TimeSeriesCatalog>> catalogFlight = new SingleFlight<>(null);
+
+	/**
+	 * Concurrent time series reads that share one request and result, by time series identifier, period, and properties.
+	 * Each caller gets its own copy of the time series because the calling code may modify the time series.
+	 */
+	private final SingleFlight<String,TS> readFlight = new SingleFlight<>(ts -> (TS)ts.clone());
+
+	/**
+	 * Executor used for the periodic incremental catalog refresh, or null if not used.
+	 */
+	private ScheduledExecutorService catalogRefreshExecutor = null;
+
+	/**
+	 * Status of reading global data, which occurs in a background thread so that datastore construction does not block.
+	 */
+	public enum GlobalDataStatus {
+		/**
+		 * Global data are being read.
+		 */
+		LOADING("Loading"),
+		/**
+		 * Global data were read and are ready to use.
+		 */
+		READY("Ready"),
+		/**
+		 * Reading global data failed or no time series catalog was read.
+		 */
+		FAILED("Failed");
+
+		/**
+		 * Name that is displayed.
+		 */
+		private final String displayName;
+
+		private GlobalDataStatus ( String displayName ) {
+			this.displayName = displayName;
+		}
+
+		/**
+		 * Return the display name.
+		 */
+		@Override
+		public String toString () {
+			return this.displayName;
+		}
+	}
+
+	/**
+	 * Future that is completed when global data have been read.
+	 */
+	private final CompletableFuture<Void> globalDataFuture = new CompletableFuture<>();
+
+	/**
+	 * Status of reading global data.
+	 */
+	private volatile GlobalDataStatus globalDataStatus = GlobalDataStatus.LOADING;
+
+	/**
+	 * Time that reading global data started, milliseconds since 1970-01-01 UTC.
+	 */
+	private long globalDataStartTime = 0;
+
+	/**
+	 * Time that reading global data ended, milliseconds since 1970-01-01 UTC, or zero if still reading.
+	 */
+	private volatile long globalDataEndTime = 0;
+
+	/**
+	 * Maximum time to wait for global data in milliseconds, from the 'GlobalDataTimeout' configuration property (seconds).
+	 */
+	private long globalDataTimeout = 300000;
+
+	/**
+	 * Maximum time to wait for global data in milliseconds when called from user interface code,
+	 * such as to get input filter and choice list values, so that the Swing event thread is not blocked.
+	 */
+	private static final long UI_GLOBAL_DATA_TIMEOUT = 2000;
+
+	/**
+	 * Table to look up time series data flags from quality codes, from the 'QualityCodeFlags',
+	 * 'DataDescriptorFlags', and 'QcBitFlags' configuration properties.
+	 */
+	private QualityFlagTable qualityFlagTable = null;
+
+	/**
+	 * Maximum number of time series read at the same time by readTimeSeriesList(),
+	 * from the 'ReadConcurrency' configuration property.
+	 */
+	private int readConcurrency = 8;
+
+	/**
+	 * Executor shared by all time series reads for the datastore, including the chunks of long reads,
+	 * using up to 'readConcurrency' threads.
+	 * The threads are daemon threads that stop when idle, so they do not keep the application running,
+	 * and the executor is shut down by close().
+	 */
+	private ThreadPoolExecutor readExecutor = null;
+
+	/**
+	 * Whether the datastore has been closed by close().
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Maximum number of time series values read with one request by readTimeSeriesList(),
+	 * from the 'ReadBatchSize' configuration property.  If 1, each time series is requested separately.
+	 */
+	private int readBatchSize = 20;
+
+	/**
+	 * Maximum length of a URL used to read time series values for multiple time series,
+	 * from the 'MaxUrlLength' configuration property.
+	 */
+	private int maxUrlLength = 2000;
+
+	/**
+	 * Maximum number of values expected in one request for a time series, used to split long read periods into chunks,
+	 * from the 'ReadChunkMaxValues' configuration property.  If 0, the period is not split.
+	 */
+	private int readChunkMaxValues = 100000;
+
+	/**
+	 * Timeout to receive the response headers for web service requests, milliseconds,
+	 * from the 'ReadTimeout' configuration property (seconds).
+	 */
+	private int readTimeout = 300000;
+
+	/**
+	 * Timeout to connect to the web service, milliseconds,
+	 * from the 'ConnectTimeout' configuration property (seconds).
+	 */
+	private int connectTimeout = 30000;
+
+	/**
+	 * On-disk cache of time series values, or null if not used, enabled with the 'ValueCache' configuration property.
+	 */
+	private TimeSeriesValueCache valueCache = null;
+
+	/**
+	 * HTTP client shared by all web service requests, so that connections are kept alive and reused.
+	 */
+	private WebServiceHttpClient httpClient = null;
+
 	/**
 	Constructor for web service.
 	@param name identifier for the data store
@@ -100,6 +318,164 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 			Message.printStatus(2, routine, "Datastore \"" + name + "\" - detected Debug=true");
 			this.debug = true;
 		}
+		prop = props.getValue("CatalogSnapshot");
+		if ( (prop != null) && prop.equalsIgnoreCase("false") ) {
+			this.catalogSnapshotEnabled = false;
+		}
+		prop = props.getValue("CatalogSnapshotFile");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			this.catalogSnapshotFile = new File(prop);
+		}
+		else {
+			// Default is in the user's TSTool files, with one file per datastore.
+			this.catalogSnapshotFile = new File(System.getProperty("user.home") + File.separator + ".tstool"
+				+ File.separator + "cache" + File.separator + "owf-tstool-madis-plugin" + File.separator + name + "-tscatalog.bin");
+		}
+		prop = props.getValue("CatalogSnapshotMaxAge");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.catalogSnapshotMaxAge = (long)(Double.parseDouble(prop)*3600*1000);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CatalogSnapshotMaxAge="
+					+ prop + " (hours), using default.");
+			}
+		}
+		prop = props.getValue("CatalogRefreshInterval");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.catalogRefreshInterval = (long)(Double.parseDouble(prop)*60*1000);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CatalogRefreshInterval="
+					+ prop + " (minutes), using default.");
+			}
+		}
+		prop = props.getValue("CatalogRefreshPartitions");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				int catalogRefreshPartitions = Integer.parseInt(prop);
+				if ( catalogRefreshPartitions < 0 ) {
+					Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CatalogRefreshPartitions="
+						+ prop + ", using default.");
+				}
+				else {
+					this.catalogRefreshPartitions = catalogRefreshPartitions;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CatalogRefreshPartitions="
+					+ prop + ", using default.");
+			}
+		}
+		prop = props.getValue("GlobalDataTimeout");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.globalDataTimeout = (long)(Double.parseDouble(prop)*1000);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid GlobalDataTimeout="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		prop = props.getValue("ReadConcurrency");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.readConcurrency = Math.max(1, Integer.parseInt(prop));
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ReadConcurrency="
+					+ prop + ", using default.");
+			}
+		}
+		prop = props.getValue("ReadBatchSize");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.readBatchSize = Math.max(1, Integer.parseInt(prop));
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ReadBatchSize="
+					+ prop + ", using default.");
+			}
+		}
+		prop = props.getValue("MaxUrlLength");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.maxUrlLength = Integer.parseInt(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid MaxUrlLength="
+					+ prop + ", using default.");
+			}
+		}
+		prop = props.getValue("ReadChunkMaxValues");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.readChunkMaxValues = Math.max(0, Integer.parseInt(prop));
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ReadChunkMaxValues="
+					+ prop + ", using default.");
+			}
+		}
+		prop = props.getValue("ReadTimeout");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.readTimeout = (int)(Double.parseDouble(prop)*1000);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ReadTimeout="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		prop = props.getValue("ConnectTimeout");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.connectTimeout = (int)(Double.parseDouble(prop)*1000);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ConnectTimeout="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		int httpMaxConnections = 16;
+		prop = props.getValue("HttpMaxConnections");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				httpMaxConnections = Integer.parseInt(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpMaxConnections="
+					+ prop + ", using default.");
+			}
+		}
+		// Use HTTP/2 if the server supports it, unless HttpVersion=1.1.
+		prop = props.getValue("HttpVersion");
+		boolean useHttp2 = (prop == null) || !prop.trim().equals("1.1");
+		// Request compressed responses unless HttpCompression=false.
+		prop = props.getValue("HttpCompression");
+		boolean useCompression = (prop == null) || !prop.equalsIgnoreCase("false");
+		this.httpClient = new WebServiceHttpClient(httpMaxConnections, this.connectTimeout, this.readTimeout,
+			useHttp2, useCompression, createRequestPolicy(name, props), createRateLimiter(name, props));
+		this.readExecutor = new ThreadPoolExecutor ( this.readConcurrency, this.readConcurrency,
+			60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "MADISDataStore-" + name + "-read");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.readExecutor.allowCoreThreadTimeOut(true);
+		prop = props.getValue("ValueCache");
+		if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
+			this.valueCache = createValueCache(name, props);
+		}
+		try {
+			this.qualityFlagTable = new QualityFlagTable ( props.getValue("QualityCodeFlags"),
+				props.getValue("DataDescriptorFlags"), props.getValue("QcBitFlags") );
+		}
+		catch ( IllegalArgumentException e ) {
+			Message.printWarning(2, routine, "Datastore \"" + name + "\" - " + e.getMessage() + "  Using default data flags.");
+			this.qualityFlagTable = new QualityFlagTable();
+		}
 	    setName ( name );
 	    setDescription ( description );
 	    setServiceRootURI ( serviceRootURI );
@@ -115,8 +491,45 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 
 	    // Read global data used throughout the session:
 	    // - in particular a cache of the TimeSeriesCatalog used for further queries
+	    // - read in a background thread so that a slow web service does not delay TSTool startup
+	    // - code that needs the global data calls waitForGlobalData()
+
+	    readGlobalDataInBackground();
+
+	    // Periodically refresh the time series catalog, if configured:
+	    // - only the catalog partitions are reread and merged rather than the full catalog
+
+	    if ( this.catalogRefreshInterval > 0 ) {
+	    	startCatalogRefresh();
+	    }
+	}
 
-	    readGlobalData();
+	/**
+	 * Wait for a task that was submitted with submitReadTasks() and return its result.
+	 * If the task has not started, it is run in the calling thread,
+	 * so that a read task that waits for other read tasks, such as a time series read that reads chunks,
+	 * does not wait for an executor thread that may never be available.
+	 * @param task the task to wait for
+	 * @return the task result
+	 * @exception ExecutionException if the task failed
+	 * @exception InterruptedException if interrupted while waiting
+	 */
+	private <T> T awaitReadTask ( FutureTask<T> task ) throws ExecutionException, InterruptedException {
+		// Does nothing if the task was already started by an executor thread.
+		task.run();
+		return task.get();
+	}
+
+	/**
+	 * Cancel read tasks that have not completed, for example if a chunk failed or the read was interrupted.
+	 * @param tasks tasks that were submitted with submitReadTasks(), may contain null for tasks that were processed
+	 */
+	private void cancelReadTasks ( List<? extends FutureTask<?>> tasks ) {
+		for ( FutureTask<?> task : tasks ) {
+			if ( (task != null) && !task.isDone() ) {
+				task.cancel(true);
+			}
+		}
 	}
 
 	/**
@@ -248,6 +661,247 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 		
 	}
 	
+	/**
+	 * Close the datastore, which stops the catalog refresh and read threads and closes the web service client.
+	 * The code that created the datastore should call this when the datastore is no longer used,
+	 * for example after replacing it with a new datastore.
+	 * Reads that are in progress complete, and later reads fail.
+	 * Calling this more than once has no effect.
+	 */
+	public void close () {
+		String routine = getClass().getSimpleName() + ".close";
+		synchronized ( this ) {
+			if ( this.closed ) {
+				return;
+			}
+			this.closed = true;
+		}
+		if ( this.catalogRefreshExecutor != null ) {
+			this.catalogRefreshExecutor.shutdownNow();
+		}
+		// Queued read tasks are run by the waiting caller (see awaitReadTask()) so the queue does not need to be run.
+		this.readExecutor.shutdown();
+		this.httpClient.close();
+		Message.printStatus(2, routine, "Closed datastore \"" + getName() + "\".");
+	}
+
+	/**
+	 * Return whether the datastore has been closed.
+	 * @return true if close() has been called
+	 */
+	public boolean isClosed () {
+		return this.closed;
+	}
+
+	/**
+	 * Create the web service rate limiter from configuration properties:
+	 * <ul>
+	 * <li> 'HttpRequestRate' - maximum sustained request rate, requests per second, or 0 to not limit (default 0)</li>
+	 * <li> 'HttpRequestBurst' - maximum number of requests that can be made at once after being idle
+	 *      (default is the request rate, at least 1)</li>
+	 * </ul>
+	 * The maximum number of concurrent requests is set with 'HttpMaxConnections'.
+	 * Requests are paused and the rate is reduced after throttled responses even if the rate is not limited.
+	 * @param name datastore name
+	 * @param props datastore configuration properties
+	 * @return the web service rate limiter
+	 */
+	private WebServiceRateLimiter createRateLimiter ( String name, PropList props ) {
+		String routine = getClass().getSimpleName() + ".createRateLimiter";
+		double requestRate = 0;
+		String prop = props.getValue("HttpRequestRate");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				requestRate = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpRequestRate="
+					+ prop + " (requests/second), using default.");
+			}
+		}
+		int burst = (int)Math.max(1, Math.ceil(requestRate));
+		prop = props.getValue("HttpRequestBurst");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				burst = Integer.parseInt(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpRequestBurst="
+					+ prop + ", using default.");
+			}
+		}
+		if ( requestRate > 0 ) {
+			Message.printStatus(2, routine, "Datastore \"" + name + "\" - limiting web service requests to "
+				+ requestRate + " requests/second with burst " + burst + ".");
+		}
+		return new WebServiceRateLimiter ( requestRate, burst );
+	}
+
+	/**
+	 * Create the web service request policy from configuration properties:
+	 * <ul>
+	 * <li> 'HttpRetries' - maximum number of retries for a failed request (default 2)</li>
+	 * <li> 'HttpRetryDelay' - delay before the first retry, seconds, doubled for each retry with random jitter (default 0.5)</li>
+	 * <li> 'HttpRetryMaxDelay' - maximum delay before a retry, seconds (default 30)</li>
+	 * <li> 'HttpHedgePercentile' - latency percentile after which a duplicate request is sent
+	 *      if the response has not been received, or 0 to not send duplicate requests (default 0)</li>
+	 * <li> 'CircuitBreakerThreshold' - number of consecutive failed requests after which requests fail fast,
+	 *      or 0 to not fail fast (default 5)</li>
+	 * <li> 'CircuitBreakerOpenTime' - time that requests fail fast before trying the web service again, seconds (default 60)</li>
+	 * </ul>
+	 * @param name datastore name
+	 * @param props datastore configuration properties
+	 * @return the web service request policy
+	 */
+	private WebServiceRequestPolicy createRequestPolicy ( String name, PropList props ) {
+		String routine = getClass().getSimpleName() + ".createRequestPolicy";
+		String prop;
+		int maxRetries = 2;
+		prop = props.getValue("HttpRetries");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				maxRetries = Integer.parseInt(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpRetries="
+					+ prop + ", using default.");
+			}
+		}
+		double retryDelay = 0.5;
+		prop = props.getValue("HttpRetryDelay");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				retryDelay = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpRetryDelay="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		double retryMaxDelay = 30;
+		prop = props.getValue("HttpRetryMaxDelay");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				retryMaxDelay = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpRetryMaxDelay="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		double hedgePercentile = 0;
+		prop = props.getValue("HttpHedgePercentile");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				hedgePercentile = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid HttpHedgePercentile="
+					+ prop + ", using default.");
+			}
+		}
+		int failureThreshold = 5;
+		prop = props.getValue("CircuitBreakerThreshold");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				failureThreshold = Integer.parseInt(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CircuitBreakerThreshold="
+					+ prop + ", using default.");
+			}
+		}
+		double openTime = 60;
+		prop = props.getValue("CircuitBreakerOpenTime");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				openTime = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid CircuitBreakerOpenTime="
+					+ prop + " (seconds), using default.");
+			}
+		}
+		return new WebServiceRequestPolicy ( maxRetries, (long)(retryDelay*1000), (long)(retryMaxDelay*1000),
+			hedgePercentile, failureThreshold, (long)(openTime*1000) );
+	}
+
+	/**
+	 * Create the time series value cache from configuration properties:
+	 * <ul>
+	 * <li> 'ValueCacheFolder' - cache folder, by default in the user's TSTool files, with one folder per datastore</li>
+	 * <li> 'ValueCacheBlockDays' - length of cached time blocks, days (default 7)</li>
+	 * <li> 'ValueCacheMinAge' - minimum age of the end of a block for the block to be cached, hours (default 24)</li>
+	 * <li> 'ValueCacheRetention' - time after which files that have not been used are deleted, days (default 90)</li>
+	 * <li> 'ValueCacheMaxSize' - maximum size of the cache, MB (default 1024)</li>
+	 * </ul>
+	 * @param name datastore name
+	 * @param props datastore configuration properties
+	 * @return the time series value cache
+	 */
+	private TimeSeriesValueCache createValueCache ( String name, PropList props ) {
+		String routine = getClass().getSimpleName() + ".createValueCache";
+		File folder = null;
+		String prop = props.getValue("ValueCacheFolder");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			folder = new File(prop);
+		}
+		else {
+			// Default is in the user's TSTool files, with one folder per datastore.
+			folder = new File(System.getProperty("user.home") + File.separator + ".tstool"
+				+ File.separator + "cache" + File.separator + "owf-tstool-madis-plugin" + File.separator + name + "-values");
+		}
+		double blockDays = 7;
+		prop = props.getValue("ValueCacheBlockDays");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				blockDays = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ValueCacheBlockDays="
+					+ prop + ", using default.");
+			}
+		}
+		double minAgeHours = 24;
+		prop = props.getValue("ValueCacheMinAge");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				minAgeHours = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ValueCacheMinAge="
+					+ prop + " (hours), using default.");
+			}
+		}
+		double retentionDays = 90;
+		prop = props.getValue("ValueCacheRetention");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				retentionDays = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ValueCacheRetention="
+					+ prop + " (days), using default.");
+			}
+		}
+		double maxSizeMB = 1024;
+		prop = props.getValue("ValueCacheMaxSize");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				maxSizeMB = Double.parseDouble(prop);
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - invalid ValueCacheMaxSize="
+					+ prop + " (MB), using default.");
+			}
+		}
+		// Blocks must be whole minutes because read periods are specified to the minute.
+		long blockLength = Math.max(1, Math.round(blockDays*1440))*60000L;
+		Message.printStatus(2, routine, "Datastore \"" + name + "\" - using time series value cache \"" + folder + "\".");
+		return new TimeSeriesValueCache ( folder, blockLength, (long)(minAgeHours*3600*1000),
+			(long)(retentionDays*86400*1000), (long)(maxSizeMB*1024*1024) );
+	}
+
 	/**
 	 * Create a time series input filter, used to initialize user interfaces.
 	 */
@@ -272,22 +926,152 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	}
 	
 	/**
-	 * Get the list of location identifier (station_no) strings used in the UI.
-	 * The list is determined from the cached list of time series catalog.
-	 * @param dataType to match, or * or null to return all, should be a value of stationparameter_no
-	 * @return a unique sorted list of the location identifiers (station_no)
+	 * Find the time series catalog for a requested time series identifier.
+	 * The cached catalog is searched first and the web service is only queried if the time series is not found,
+	 * for example if the catalog is out of date.
+	 * @param tsidentReq requested time series identifier, using ts_id location type or ts_path parts
+	 * @return the time series catalog for the single matching time series
+	 * @exception RuntimeException if a single matching time series is not found or the web service request fails
 	 */
-	/*
-	public List<String> getLocIdStrings ( String dataType ) {
-		if ( (dataType == null) || dataType.isEmpty() || dataType.equals("*") ) {
-			// Return the cached list of all locations.
-			return this.locIdList;
-		}
-		else {
-			// Get the list of locations from the cached list of time series catalog
-			List<String> locIdList = new ArrayList<>();
-			String stationNo = null;
-			String stationParameterNo = null;
+	private TimeSeriesCatalog findTimeSeriesCatalog ( TSIdent tsidentReq ) {
+		String routine = getClass().getSimpleName() + ".findTimeSeriesCatalog";
+		String locType = tsidentReq.getLocationType();
+		Integer kiwisTsid = null; // KiWIS ts_id, used if location type is used.
+		String kiwisTsPath = null; // KiWIS ts_path, used if location type is NOT used.
+		// Time series catalog for the single matching time series.
+		TimeSeriesCatalog tscatalog = null;
+		if ( locType.equalsIgnoreCase("ts_id") ) {
+			// KiWIS ts_id uniquely identifies the time series:
+			// - the location is like ts_id:ts_id  (where first 5 characters are 'ts_id:'
+			kiwisTsid = new Integer(tsidentReq.getMainLocation());
+			// First look up the time series in the cached catalog:
+			// - only read from the web service if not found, for example if the catalog is out of date
+			waitForGlobalData();
+			tscatalog = this.tscatalogIndex.findByTsId(kiwisTsid);
+			if ( tscatalog == null ) {
+				// Read the time series list for the single time series.
+				String dataTypeReq = null;
+				String dataIntervalReq = null;
+				InputFilter_JPanel ifp = null;
+				// Read the catalog matching the KiWIS 'ts_id'.
+				List<TimeSeriesCatalog> tslist;
+				try {
+					tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+				}
+				catch ( IOException e ) {
+					throw new RuntimeException ( "Error reading time series catalog for ts_id = " + kiwisTsid + " (" + e + ").", e );
+				}
+				if ( tslist.size() == 0 ) {
+					// Did not match any time series.
+					throw new RuntimeException ( "No time series found matching ts_id = " + kiwisTsid );
+				}
+				else if ( tslist.size() > 1 ) {
+					// Matched more than one time series so identifier information is not unique.
+					throw new RuntimeException ( "Matched " + tslist.size() + " time series for ts_id = " + kiwisTsid + ", expecting 1.");
+				}
+				else {
+					// Matched a single time series so can continue:
+					// - ts_id is used below to read data
+					tscatalog = tslist.get(0);
+				}
+			}
+		}
+		else {
+			// KiWIS ts_path parts are used in the TSID:
+			// - station_no.stationparamer_no-ts_shortname
+			// - if necessary: station_no.'stationparamer_no'-'ts_shortname'
+			String stationNo = tsidentReq.getLocation();
+			List<String> parts = StringUtil.breakStringList(tsidentReq.getType(), "-", StringUtil.DELIM_ALLOW_STRINGS);
+			if ( Message.isDebugOn ) {
+				Message.printStatus(2,routine,"Splitting TSIdent data type: \"" + tsidentReq.getType() + "\"");
+				for ( String part : parts ) {
+					Message.printStatus(2,routine,"  Part: \"" + part + "\"");
+				}
+			}
+			String stationParameterNo = parts.get(0);
+			String tsShortName = parts.get(1);
+			kiwisTsPath = "*/" + stationNo + "/" + stationParameterNo + "/" + tsShortName;
+			// First look up the time series in the cached catalog:
+			// - only read from the web service if not found, for example if the catalog is out of date
+			waitForGlobalData();
+			List<TimeSeriesCatalog> tslist = this.tscatalogIndex.find(stationNo, stationParameterNo, tsShortName, tsidentReq.getInterval());
+			if ( tslist.size() == 0 ) {
+				// Read the catalog matching the KiWIS 'ts_path'.
+				String dataTypeReq = null;
+				String dataIntervalReq = null;
+				InputFilter_JPanel ifp = null;
+				try {
+					tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+				}
+				catch ( IOException e ) {
+					throw new RuntimeException ( "Error reading time series catalog for TSID = " + tsidentReq + " (" + e + ").", e );
+				}
+			}
+			if ( tslist.size() == 0 ) {
+				// Did not match any time series.
+				throw new RuntimeException ( "No time series found matching TSID = " + tsidentReq );
+			}
+			else if ( tslist.size() > 1 ) {
+				// Matched more than one time series so identifier information is not unique.
+				throw new RuntimeException ( "Matched " + tslist.size() + " time series for TSID = " + tsidentReq + ", expecting 1.");
+			}
+			else {
+				// Matched a single time series so can continue:
+				// - ts_id is used below to read data
+				tscatalog = tslist.get(0);
+				kiwisTsid = tscatalog.getTsId();
+			}
+		}
+		return tscatalog;
+	}
+
+	/**
+	 * Find the time series catalog with station located in a box, using the cached catalog.
+	 * @param minLatitude minimum latitude, decimal degrees
+	 * @param minLongitude minimum longitude, decimal degrees
+	 * @param maxLatitude maximum latitude, decimal degrees
+	 * @param maxLongitude maximum longitude, decimal degrees
+	 * @return the matching time series catalog, guaranteed to be non-null but may be empty
+	 * @exception IllegalArgumentException if a latitude or longitude is invalid
+	 */
+	public List<TimeSeriesCatalog> findTimeSeriesCatalogWithinBox (
+		double minLatitude, double minLongitude, double maxLatitude, double maxLongitude ) {
+		// Make sure that the global data have been read.
+		waitForGlobalData();
+		return this.tscatalogIndex.getSpatialIndex().findWithinBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+	}
+
+	/**
+	 * Find the time series catalog with station located within a distance of a point, using the cached catalog.
+	 * @param latitude latitude of the point, decimal degrees
+	 * @param longitude longitude of the point, decimal degrees
+	 * @param radiusKm radius, km
+	 * @return the matching time series catalog, guaranteed to be non-null but may be empty
+	 * @exception IllegalArgumentException if the latitude, longitude, or radius is invalid
+	 */
+	public List<TimeSeriesCatalog> findTimeSeriesCatalogWithinRadius ( double latitude, double longitude, double radiusKm ) {
+		// Make sure that the global data have been read.
+		waitForGlobalData();
+		return this.tscatalogIndex.getSpatialIndex().findWithinRadius(latitude, longitude, radiusKm);
+	}
+
+	/**
+	 * Get the list of location identifier (station_no) strings used in the UI.
+	 * The list is determined from the cached list of time series catalog.
+	 * @param dataType to match, or * or null to return all, should be a value of stationparameter_no
+	 * @return a unique sorted list of the location identifiers (station_no)
+	 */
+	/*
+	public List<String> getLocIdStrings ( String dataType ) {
+		if ( (dataType == null) || dataType.isEmpty() || dataType.equals("*") ) {
+			// Return the cached list of all locations.
+			return this.locIdList;
+		}
+		else {
+			// Get the list of locations from the cached list of time series catalog
+			List<String> locIdList = new ArrayList<>();
+			String stationNo = null;
+			String stationParameterNo = null;
 			boolean found = false;
 			for ( TimeSeriesCatalog tscatalog : this.tscatalogList ) {
 				stationNo = tscatalog.getStationNo();
@@ -326,24 +1110,84 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
     	for (Map.Entry<String, Object> entry : this.pluginProperties.entrySet()) {
         	pluginProperties.put(entry.getKey(),
                     	entry.getValue());
+    	}
+    	// Add the global data status, which changes as data are read.
+    	pluginProperties.put("GlobalDataStatus", this.globalDataStatus.toString());
+    	long endTime = this.globalDataEndTime;
+    	if ( endTime == 0 ) {
+    		endTime = System.currentTimeMillis();
+    	}
+    	pluginProperties.put("GlobalDataElapsedTime", "" + (endTime - this.globalDataStartTime) + " ms");
+    	pluginProperties.put("TimeSeriesCatalogHeapUsage", this.tscatalogHeapUsage);
+    	if ( this.httpClient != null ) {
+    		pluginProperties.put("WebServiceRequestStats", this.httpClient.getStats().toString());
+    		pluginProperties.put("SharedRequestCount", "" + (this.catalogFlight.getSharedCount() + this.readFlight.getSharedCount()));
+    		double requestRate = this.httpClient.getRequestRate();
+    		pluginProperties.put("WebServiceRequestRate", (requestRate > 0) ? (String.format("%.2f", requestRate) + " requests/second") : "Not limited");
     	}
 		return pluginProperties;
 	}
 
+	/**
+	 * Return the status of reading global data.
+	 * @return the status of reading global data
+	 */
+	public GlobalDataStatus getGlobalDataStatus () {
+		return this.globalDataStatus;
+	}
+
 	/**
 	 * Return the list of time series catalog.
-	 * @param readData if false, return the global cached data, if true read the data and reset in he cache
+	 * @param readData if false, return the global cached data (waiting for global data to be read if necessary),
+	 * if true read the data and reset in the cache and catalog snapshot file
+	 * (an empty result is not used because it is likely due to a web service error, and the cached catalog is returned)
+	 * @exception IOException if reading the catalog from the web service fails, in which case the cached catalog is not changed
 	 */
-	public List<TimeSeriesCatalog> getTimeSeriesCatalog(boolean readData) {
+	public List<TimeSeriesCatalog> getTimeSeriesCatalog(boolean readData) throws IOException {
+		String routine = getClass().getSimpleName() + ".getTimeSeriesCatalog";
 		if ( readData ) {
 			String dataTypeReq = null;
 			String dataIntervalReq = null;
     		InputFilter_JPanel ifp = null;
     		Integer kiwisTsid = null;
     		String kiwisTsPath = null;
-			this.tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath);
+			// Concurrent callers, for example a UI refresh and a command, share one read.
+			return this.catalogFlight.execute ( "getTimeSeriesCatalog", () -> {
+				synchronized ( this.catalogRefreshLock ) {
+					// A new string dictionary is used for the new catalog version so that old strings can be garbage collected.
+					StringDictionary dictionary = new StringDictionary();
+					List<TimeSeriesCatalog> tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, dictionary);
+					if ( tscatalogList.size() > 0 ) {
+						setTimeSeriesCatalog(tscatalogList, dictionary);
+						writeTimeSeriesCatalogSnapshot(tscatalogList);
+					}
+					else {
+						Message.printWarning(2, routine, "Time series catalog that was read is empty - keeping the previous catalog ("
+							+ this.tscatalogIndex.getTimeSeriesCatalogList().size() + " time series).");
+					}
+				}
+				return this.tscatalogIndex.getTimeSeriesCatalogList();
+			});
 		}
-		return this.tscatalogList;
+		else {
+			// Make sure that the global data have been read.
+			waitForGlobalData();
+		}
+		return this.tscatalogIndex.getTimeSeriesCatalogList();
+	}
+
+	/**
+	 * Return the facets (distinct values) for the cached time series catalog, used for input filter choices.
+	 * The facets are created once for each version of the cached catalog.
+	 * This is called by user interface code on the Swing event thread and therefore only waits briefly for global data.
+	 * If global data are still loading, the facets for the available catalog are returned,
+	 * which will be empty (only wildcard choices) if the catalog has not been read.
+	 * @return the facets for the cached time series catalog
+	 */
+	public TimeSeriesCatalogFacets getTimeSeriesCatalogFacets () {
+		// Wait briefly for the global data, but don't block the user interface.
+		waitForGlobalData(UI_GLOBAL_DATA_TIMEOUT);
+		return this.tscatalogIndex.getFacets();
 	}
 
 	/**
@@ -367,55 +1211,14 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	 * @param dataType data type string to filter the list of data intervals.
 	 * If null, blank, or "*" the data type is not considered when determining the list of data intervals.
 	 * @param includeWildcards if true, include "*" wildcard.
+	 * @return a new list of data intervals, sorted by interval duration
 	 */
 	public List<String> getTimeSeriesDataIntervalStrings(String dataType, boolean includeWildcards ) {
-		String routine = getClass().getSimpleName() + ".getTimeSeriesDataIntervalStrings";
-		List<String> dataIntervals = new ArrayList<>();
-		/*
-		Message.printStatus(2, routine, "Getting interval strings for data type \"" + dataType + "\"");
-		
-		// Only check datatype if not a wildcard.
-		boolean doCheckDataType = false;
-		if ( (dataType != null) && !dataType.isEmpty() && !dataType.equals("*") ) {
-			doCheckDataType = true;
-		}
-		
-		// Use the cached time series catalog read at startup.
-		List<TimeSeriesCatalog> tscatalogList = getTimeSeriesCatalog(false);
-		Message.printStatus(2, routine, "  Have " + tscatalogList.size() + " cached time series from the catalog.");
-		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
-			if ( doCheckDataType ) {
-				// Only check the first part of the data type, which is the 'stationparameter_no'.
-				if ( !dataType.equals(tscatalog.getStationParameterNo())) {
-					// Data type does not match 'stationparameter_no'.
-					continue;
-				}
-			}
-			// Only add the interval if not already in the list.
-			if ( !StringUtil.isInList(dataIntervals, tscatalog.getDataInterval())) {
-				dataIntervals.add(tscatalog.getDataInterval());
-			}
-		}
-		*/
-		
-		// Sort the intervals:
-		// - TODO smalers need to sort by time
-		Collections.sort(dataIntervals,String.CASE_INSENSITIVE_ORDER);
-
-		if ( includeWildcards ) {
-			// Always allow querying list of time series for all intervals:
-			// - always add so that people can get a full list
-			// - adding at top makes it easy to explore data without having to scroll to the end
-	
-			dataIntervals.add("*");
-			if ( dataIntervals.size() > 1 ) {
-				// Also add at the beginning to simplify selections:
-				// - could check for a small number like 5 but there should always be a few
-				dataIntervals.add(0,"*");
-			}
-		}
-
-		return dataIntervals;
+		// Use the cross-facet choices for the cached time series catalog:
+		// - data type matches 'stationparameter_no'
+		// - the choices are determined once for each catalog version and are sorted by interval duration
+		// - copy because the calling code may modify the list
+		return new ArrayList<>(getTimeSeriesCatalogFacets().getDataIntervalChoices(dataType, includeWildcards));
 	}
 
 	/**
@@ -432,66 +1235,17 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 
 	/**
 	 * Return the list of time series data type strings.
-	 * These strings are the same as the parameter type list 'parametertype_name'.
+	 * These strings are the 'stationparameter_no' values from the cached time series catalog.
 	 * @param dataInterval the data interval to filter data types
 	 * @param includeWildcards whether "*" should be included at the start and end of the list
+	 * @return a new sorted list of data types
 	 */
 	public List<String> getTimeSeriesDataTypeStrings(String dataInterval, boolean includeWildcards ) {
-		String routine = getClass().getSimpleName() + ".getTimeSeriesDataTypeStrings";
-
-		List<String> dataTypes = new ArrayList<>();
-		/*
-		// Read the station parameter list and use the stationparameter_no,
-		// which is consistent with the 'ts_path' and TSTool TSID.
-		List<Parameter> parameterList = null;
-		try {
-			parameterList = readParameterList();
-		}
-		catch ( Exception e ) {
-			Message.printWarning(3, routine, "Error reading parameter list (" + e + ")." );
-			Message.printWarning(3, routine, e );
-		}
-
-		// Create the data type list.
-		boolean found = false;
-		String stationParameterNo = null;
-		if ( parameterList != null ) {
-			for ( Parameter p : parameterList ) {
-				stationParameterNo = p.getStationParameterNo();
-				found = false;
-				for ( String dataType : dataTypes ) {
-					//if ( stationParameterName.equals(dataType) ) {
-					if ( stationParameterNo.equals(dataType) ) {
-						found = true;
-						break;
-					}
-				}
-				if ( !found ) {
-					//Message.printStatus(2, routine, "Adding parameter name \"" + p.getStationParameterName() + "\"");
-					//dataTypes.add(p.getStationParameterName());
-					dataTypes.add(p.getStationParameterNo());
-				}
-			}
-		}
-		*/
-
-		// Sort the names.
-		Collections.sort(dataTypes, String.CASE_INSENSITIVE_ORDER);
-
-		if ( includeWildcards ) {
-			// Add wildcard at the front and end - allows querying all data types for the location:
-			// - always add so that people can get a full list
-			// - adding at the top makes it easy to explore data without having to scroll to the end
-
-			dataTypes.add("*");
-			if ( dataTypes.size() > 1 ) {
-				// Also add at the beginning to simplify selections:
-				// - could check for a small number like 5 but there should always be a few
-				dataTypes.add(0,"*");
-			}
-		}
-
-		return dataTypes;
+		// Use the cross-facet choices for the cached time series catalog:
+		// - the data types are 'stationparameter_no', which is consistent with the 'ts_path' and TSTool TSID
+		// - the choices are determined once for each catalog version
+		// - copy because the calling code may modify the list
+		return new ArrayList<>(getTimeSeriesCatalogFacets().getDataTypeChoices(dataInterval, includeWildcards));
 	}
 
 	/**
@@ -551,15 +1305,16 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	/**
 	 * This version is required by UI components.
  	 * Return the list of time series statistic strings from the cached TimeSeriesCatalog list.
- 	 * This is not currently used by KiWIS.
+ 	 * The statistic is the 'ts_shortname', which is the second part of the TSTool data type.
  	 * @param dataType data type string to filter the list of TimeSeriesCatalog.
  	 * If null, blank, or "*" the data type is not considered when determining the list of statistics.
  	 * @param dataInterval data interval to filter the list of TimeSeriesCatalog.
  	 * @param includeWildcards if true, include "*" at front and back of the list
+ 	 * @return a new sorted list of statistics
  	 */
 	public List<String> getTimeSeriesStatisticStrings(String dataType, String dataInterval, boolean includeWildcards) {
 		String routine = getClass().getSimpleName() + ".getTimeSeriesStatisticStrings";
-		int pos = dataType.indexOf(" - ");
+		int pos = (dataType == null) ? -1 : dataType.indexOf(" - ");
 		if ( pos > 0 ) {
 			// Data type includes SHEF code, for example:  WaterLevelRiver - HG
 			dataType = dataType.substring(0, pos).trim();
@@ -567,29 +1322,91 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 		// Else use the dataType as is.
 		Message.printStatus(2, routine, "Getting statistic strings for data type \"" + dataType + "\" and interval \"" + dataInterval + "\"");
 
-		// Get the distinct statistic strings.
+		// Get the distinct statistic strings ('ts_shortname') from the cross-facet choices for the cached time series catalog.
 
-		List<String> statisticsDistinct = new ArrayList<>();
+		// Copy because the calling code may modify the list.
+		List<String> statisticsDistinct = new ArrayList<>(getTimeSeriesCatalogFacets().getStatisticChoices(dataType, dataInterval, includeWildcards));
 	
 		if ( Message.isDebugOn ) {
 	   		Message.printStatus(2, routine, "Time series catalog has " + statisticsDistinct.size() + " distinct statistics.");
 		}
+		return statisticsDistinct;
+	}
 
-		// Sort the statistic strings.
+	/**
+	 * Return the key used to share concurrent reads of the same time series.
+	 * The read properties are sorted by name so that the key does not depend on the map iteration order.
+	 * @param tsidReq requested time series identifier
+	 * @param readStart start of read
+	 * @param readEnd end of read
+	 * @param readData whether data values are read
+	 * @param readProperties additional properties to control the query, can be null
+	 * @return the key, or null if a property name is null or a property value is not a string, number, or boolean,
+	 * which can't be compared using its string value (e.g., an object that uses the default toString())
+	 */
+	private String getReadFlightKey ( String tsidReq, DateTime readStart, DateTime readEnd,
+		boolean readData, HashMap<String,Object> readProperties ) {
+		StringBuilder key = new StringBuilder();
+		key.append(tsidReq + "|" + readStart + "|" + readEnd + "|" + readData);
+		if ( readProperties != null ) {
+			if ( readProperties.containsKey(null) ) {
+				return null;
+			}
+			for ( Map.Entry<String,Object> entry : new TreeMap<>(readProperties).entrySet() ) {
+				Object value = entry.getValue();
+				if ( (value != null) && !(value instanceof String) && !(value instanceof Number) && !(value instanceof Boolean) ) {
+					return null;
+				}
+				// Include the type so that, for example, the string "1" and the integer 1 are not the same.
+				key.append("|" + entry.getKey() + "="
+					+ ((value == null) ? "null" : (value.getClass().getSimpleName() + ":" + value)));
+			}
+		}
+		return key.toString();
+	}
 
-		Collections.sort(statisticsDistinct);
+	/**
+	 * Return the URL used to read time series values.
+	 * @param tsIdList comma-separated KiWIS 'ts_id' list
+	 * @param readStart start of read, will be set to 'from' service parameter, or null to read all data.
+	 * @param readEnd end of read, will be set to 'to' service parameter, or null to read all data.
+	 * @return the URL used to read time series values
+	 */
+	private String getTimeSeriesValuesUrl ( String tsIdList, DateTime readStart, DateTime readEnd )
+		throws UnsupportedEncodingException {
+		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
+		// not just additional fields above the default.
+		// The 'csv' format is used because it can be parsed as a stream, similar to the following:
+		// - semi-colons are used since not encountered in data?
+		// - if multiple ts_id are requested, the response includes a block for each time series
+		//   #ts_id;957010
+		//   #rows;1
+		//   #Timestamp;Value;Quality Code;Interpolation Type
+		//   2022-12-30T18:00:00.000-07:00;84.88;200;102
 
-		if ( includeWildcards ) {
-			// Always allow querying list of time series for all intervals:
-			// - always add so that people can get a full list
-			// - adding at top makes it easy to explore data without having to scroll to the end
-	
-			statisticsDistinct.add("*");
-			if ( statisticsDistinct.size() > 1 ) {
-				statisticsDistinct.add(0,"*");
-			}
+		String format="csv";
+
+		StringBuilder requestUrl = new StringBuilder(
+			getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getTimeseriesValues&format=" + format
+				+ "&ts_id=" + tsIdList
+				+ "&returnfields="
+				+ URLEncoder.encode("Timestamp,Value,Quality Code,Interpolation Type",StandardCharsets.UTF_8.toString()));
+		
+		// Add where for period to query using ISO format "YYYY-MM-DD hh:mm:ss":
+		// - no T between date and time?
+		// - must URLencode the string
+		
+		if ( readStart != null ) {
+			requestUrl.append("&from=" + URLEncoder.encode(readStart.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
 		}
-		return statisticsDistinct;
+		if ( readEnd != null ) {
+			requestUrl.append("&to=" + URLEncoder.encode(readEnd.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
+		}
+		if ( (readStart == null) && (readEnd == null) ) {
+			// Request all data.
+			requestUrl.append("&period=complete");
+		}
+		return requestUrl.toString();
 	}
 
 	/**
@@ -602,10 +1419,11 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 
 	/**
 	 * Read global data that should be kept in memory to increase performance.
-	 * This is called from the constructor.
+	 * This is called in a background thread that is started by the constructor.
 	 * The following data are read and are available with get() methods:
 	 * <ul>
-	 * <li>TimeSeriesCatalog - cache used to find time series without re-requesting from the web service</li>
+	 * <li>TimeSeriesCatalog - cache used to find time series without re-requesting from the web service,
+	 *     which is read from the catalog snapshot file if available (see TimeSeriesCatalogSnapshot)</li>
 	 * </ul>
 	 * If an error is detected, set on the datastore so that TSTool View / Datastores will show the error.
 	 * This is usually an issue with a misconfigured datastore.
@@ -613,6 +1431,196 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	public void readGlobalData () {
 		String routine = getClass().getSimpleName() + ".readGlobalData";
 		Message.printWarning ( 2, routine, "Reading global data for datastore \"" + getName() + "\"." );
+
+		// First try to use the catalog snapshot:
+		// - if the snapshot is older than the maximum age, use it for now and refresh in the background
+		if ( this.catalogSnapshotEnabled ) {
+			TimeSeriesCatalogSnapshot snapshot = new TimeSeriesCatalogSnapshot(this.catalogSnapshotFile);
+			if ( snapshot.exists() ) {
+				try {
+					StringDictionary dictionary = new StringDictionary();
+					setTimeSeriesCatalog(snapshot.read(dictionary), dictionary);
+					if ( snapshot.getAge() > this.catalogSnapshotMaxAge ) {
+						Message.printStatus(2, routine, "Time series catalog snapshot is older than "
+							+ (this.catalogSnapshotMaxAge/3600000.0) + " hours - refreshing in the background.");
+						refreshTimeSeriesCatalogInBackground();
+					}
+					return;
+				}
+				catch ( Exception e ) {
+					Message.printWarning(2, routine, "Error reading time series catalog snapshot \""
+						+ this.catalogSnapshotFile + "\" (" + e + ") - reading the catalog from the web service.");
+					Message.printWarning(3, routine, e);
+				}
+			}
+		}
+
+		// No usable snapshot so read the full catalog, which also writes the snapshot.
+		try {
+			getTimeSeriesCatalog(true);
+		}
+		catch ( IOException e ) {
+			// Handled by the caller, which sets the global data status.
+			throw new RuntimeException ( "Error reading the time series catalog (" + e + ").", e );
+		}
+	}
+
+	/**
+	 * Read global data in a background thread, called from the constructor.
+	 * The status is available from getGlobalDataStatus() and the plugin properties.
+	 */
+	private void readGlobalDataInBackground () {
+		String routine = getClass().getSimpleName() + ".readGlobalDataInBackground";
+		this.globalDataStartTime = System.currentTimeMillis();
+		Thread thread = new Thread ( () -> {
+			try {
+				readGlobalData();
+				if ( this.tscatalogIndex.size() == 0 ) {
+					// Neither the snapshot nor the web service provided a catalog, which is likely due to a web service error,
+					// so don't indicate that the cached catalog can be used.
+					throw new RuntimeException ( "No time series catalog was read from the snapshot or the web service." );
+				}
+				this.globalDataStatus = GlobalDataStatus.READY;
+				this.globalDataEndTime = System.currentTimeMillis();
+				Message.printStatus(2, routine, "Read global data for datastore \"" + getName() + "\" in "
+					+ (this.globalDataEndTime - this.globalDataStartTime) + " ms.");
+				this.globalDataFuture.complete(null);
+			}
+			catch ( Throwable e ) {
+				// Catch a Throwable so that the status is set for unexpected errors.
+				this.globalDataStatus = GlobalDataStatus.FAILED;
+				this.globalDataEndTime = System.currentTimeMillis();
+				Message.printWarning(2, routine, "Error reading global data for datastore \"" + getName() + "\" (" + e + ").");
+				Message.printWarning(3, routine, e);
+				setStatus(1);
+				setStatusMessage("Error reading global data (" + e + ").");
+				this.globalDataFuture.completeExceptionally(e);
+			}
+		}, "MADISDataStore-" + getName() + "-global-data" );
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Refresh the time series catalog in a background thread.
+	 * The cached catalog is replaced only if the read is successful,
+	 * so that the previous catalog continues to be used if the web service is unavailable.
+	 */
+	private void refreshTimeSeriesCatalogInBackground () {
+		String routine = getClass().getSimpleName() + ".refreshTimeSeriesCatalogInBackground";
+		Thread thread = new Thread ( () -> {
+			try {
+				String dataTypeReq = null;
+				String dataIntervalReq = null;
+				InputFilter_JPanel ifp = null;
+				Integer kiwisTsid = null;
+				String kiwisTsPath = null;
+				synchronized ( this.catalogRefreshLock ) {
+					StringDictionary dictionary = new StringDictionary();
+					List<TimeSeriesCatalog> tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, dictionary);
+					if ( tscatalogList.size() > 0 ) {
+						setTimeSeriesCatalog(tscatalogList, dictionary);
+						writeTimeSeriesCatalogSnapshot(tscatalogList);
+					}
+					else {
+						Message.printWarning(2, routine, "Refreshed time series catalog is empty - keeping the previous catalog.");
+					}
+				}
+			}
+			catch ( Exception e ) {
+				Message.printWarning(2, routine, "Error refreshing the time series catalog (" + e + ").");
+				Message.printWarning(3, routine, e);
+			}
+		}, "MADISDataStore-" + getName() + "-catalog-refresh" );
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Incrementally refresh the cached time series catalog by rereading catalog partitions.
+	 * A partition is the time series for a stationparameter_no, which is requested using the web service filter.
+	 * The refreshed partitions are merged with the cached catalog by ts_id (see TimeSeriesCatalogMerge),
+	 * reusing unchanged objects, and the merged catalog is swapped in as a new version
+	 * so that readers never see a partially updated catalog.
+	 * A partition that cannot be read or is empty is kept as is because the result is likely due to a web service error.
+	 * New partitions (new stationparameter_no) are only found by a full refresh.
+	 * @param partitions the stationparameter_no partitions to refresh
+	 * @return the merge result, or null if no partitions were refreshed
+	 */
+	public TimeSeriesCatalogMerge refreshTimeSeriesCatalog ( List<String> partitions ) {
+		String routine = getClass().getSimpleName() + ".refreshTimeSeriesCatalog";
+		synchronized ( this.catalogRefreshLock ) {
+			long startTime = System.currentTimeMillis();
+			List<String> refreshedPartitions = new ArrayList<>();
+			List<TimeSeriesCatalog> partitionCatalogList = new ArrayList<>();
+			String dataIntervalReq = null;
+			InputFilter_JPanel ifp = null;
+			Integer kiwisTsid = null;
+			String kiwisTsPath = null;
+			// The refreshed partitions use the string dictionary of the cached catalog
+			// so that all objects in the merged catalog share one dictionary.
+			StringDictionary dictionary = this.tscatalogIndex.getStringDictionary();
+			if ( dictionary == null ) {
+				dictionary = new StringDictionary();
+			}
+			for ( String partition : partitions ) {
+				try {
+					List<TimeSeriesCatalog> tscatalogList = readTimeSeriesCatalog(partition, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, dictionary);
+					if ( tscatalogList.isEmpty() ) {
+						Message.printWarning(3, routine, "Refreshed time series catalog for stationparameter_no \""
+							+ partition + "\" is empty - keeping the previous catalog for the partition.");
+					}
+					else {
+						partitionCatalogList.addAll(tscatalogList);
+						refreshedPartitions.add(partition);
+					}
+				}
+				catch ( Exception e ) {
+					Message.printWarning(3, routine, "Error refreshing time series catalog for stationparameter_no \""
+						+ partition + "\" (" + e + ") - keeping the previous catalog for the partition.");
+				}
+			}
+			if ( refreshedPartitions.isEmpty() ) {
+				return null;
+			}
+			TimeSeriesCatalogMerge merge = new TimeSeriesCatalogMerge(this.tscatalogIndex.getTimeSeriesCatalogList(),
+				refreshedPartitions, partitionCatalogList);
+			if ( merge.hasChanges() ) {
+				setTimeSeriesCatalog(merge.getMergedList(), dictionary);
+				writeTimeSeriesCatalogSnapshot(merge.getMergedList());
+			}
+			Message.printStatus(2, routine, "Refreshed " + refreshedPartitions.size() + " of " + partitions.size()
+				+ " time series catalog partitions in " + (System.currentTimeMillis() - startTime) + " ms: " + merge.formatCounts() + ".");
+			return merge;
+		}
+	}
+
+	/**
+	 * Incrementally refresh the next time series catalog partitions, called periodically.
+	 * Only 'CatalogRefreshPartitions' partitions are refreshed each time (unless 0),
+	 * cycling through the partitions so that all are eventually refreshed.
+	 */
+	private void refreshTimeSeriesCatalogPartitions () {
+		// Partitions are the distinct stationparameter_no, sorted so that the cycle is consistent.
+		Set<String> partitionSet = new TreeSet<>();
+		for ( TimeSeriesCatalog tscatalog : this.tscatalogIndex.getTimeSeriesCatalogList() ) {
+			if ( tscatalog.getStationParameterNo() != null ) {
+				partitionSet.add(tscatalog.getStationParameterNo());
+			}
+		}
+		List<String> allPartitions = new ArrayList<>(partitionSet);
+		if ( allPartitions.isEmpty() ) {
+			return;
+		}
+		List<String> partitions = allPartitions;
+		if ( (this.catalogRefreshPartitions > 0) && (this.catalogRefreshPartitions < allPartitions.size()) ) {
+			partitions = new ArrayList<>(this.catalogRefreshPartitions);
+			for ( int i = 0; i < this.catalogRefreshPartitions; i++ ) {
+				partitions.add(allPartitions.get((this.catalogRefreshPosition + i) % allPartitions.size()));
+			}
+			this.catalogRefreshPosition = (this.catalogRefreshPosition + this.catalogRefreshPartitions) % allPartitions.size();
+		}
+		refreshTimeSeriesCatalog(partitions);
 	}
 
     /**
@@ -654,6 +1662,32 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
      */
     public TS readTimeSeries ( String tsidReq, DateTime readStart, DateTime readEnd,
     	boolean readData, HashMap<String,Object> readProperties ) throws Exception {
+    	// Concurrent reads of the same time series and period share one request and result,
+    	// for example the same time series read by commands that are run at the same time.
+    	String key = getReadFlightKey ( tsidReq, readStart, readEnd, readData, readProperties );
+    	if ( key == null ) {
+    		// The read properties can't be compared so don't share the read.
+    		return readTimeSeries ( tsidReq, readStart, readEnd, readData, readProperties, null, null, null );
+    	}
+    	return this.readFlight.execute ( key,
+    		() -> readTimeSeries ( tsidReq, readStart, readEnd, readData, readProperties, null, null, null ) );
+    }
+
+    /**
+     * Read a single time series given its time series identifier,
+     * optionally using the catalog and values that were read by the calling code.
+     * @param tsidReq requested time series identifier.
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readProperties additional properties to control the query, see the public readTimeSeries()
+     * @param tscatalog time series catalog for the time series, or null to find
+     * @param valueBufferRead time series values that were already read, or null to read the values
+     * @param valuesUrlRead URL used to read valueBufferRead, or null
+     * @return the time series or null if not read
+     */
+    private TS readTimeSeries ( String tsidReq, DateTime readStart, DateTime readEnd,
+    	boolean readData, HashMap<String,Object> readProperties,
+    	TimeSeriesCatalog tscatalog, TimeSeriesValueBuffer valueBufferRead, String valuesUrlRead ) throws Exception {
     	String routine = getClass().getSimpleName() + ".readTimeSeries";
 
     	// Get the properties of interest:
@@ -727,70 +1761,13 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
    				") reading Year interval is not supported.  Use ReadKiWIS(IrregularInterval=IrregYear)" );
    		}
     	
-    	String locType = tsidentReq.getLocationType();
-    	Integer kiwisTsid = null; // KiWIS ts_id, used if location type is used.
-    	String kiwisTsPath = null; // KiWIS ts_path, used if location type is NOT used.
-    	// Time series catalog for the single matching time series.
- 		TimeSeriesCatalog tscatalog = null;
-    	if ( locType.equalsIgnoreCase("ts_id") ) {
-    		// KiWIS ts_id uniquely identifies the time series:
-    		// - the location is like ts_id:ts_id  (where first 5 characters are 'ts_id:'
-    		kiwisTsid = new Integer(tsidentReq.getMainLocation());
-    		// Read the time series list for the single time series.
-    		String dataTypeReq = null;
-    		String dataIntervalReq = null;
-    		InputFilter_JPanel ifp = null;
-    		// Read the catalog matching the KiWIS 'ts_id'.
-    		List<TimeSeriesCatalog> tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
-    		if ( tslist.size() == 0 ) {
-    			// Did not match any time series.
-    			throw new RuntimeException ( "No time series found matching ts_id = " + kiwisTsid );
-    		}
-    		else if ( tslist.size() > 1 ) {
-    			// Matched more than one time series so identifier information is not unique.
-    			throw new RuntimeException ( "Matched " + tslist.size() + " time series for ts_id = " + kiwisTsid + ", expecting 1.");
-    		}
-    		else {
-    			// Matched a single time series so can continue:
-    			// - ts_id is used below to read data
-    			tscatalog = tslist.get(0);
-    		}
-    	}
-    	else {
-    		// KiWIS ts_path parts are used in the TSID:
-    		// - station_no.stationparamer_no-ts_shortname
-    		// - if necessary: station_no.'stationparamer_no'-'ts_shortname'
-    		String stationNo = tsidentReq.getLocation();
-    		List<String> parts = StringUtil.breakStringList(tsidentReq.getType(), "-", StringUtil.DELIM_ALLOW_STRINGS);
-    		if ( Message.isDebugOn ) {
-    			Message.printStatus(2,routine,"Splitting TSIdent data type: \"" + tsidentReq.getType() + "\"");
-    			for ( String part : parts ) {
-    				Message.printStatus(2,routine,"  Part: \"" + part + "\"");
-    			}
-    		}
-    		String stationParameterNo = parts.get(0);
-    		String tsShortName = parts.get(1);
-    		// Read the catalog matching the KiWIS 'ts_path'.
-    		String dataTypeReq = null;
-    		String dataIntervalReq = null;
-    		InputFilter_JPanel ifp = null;
-    		kiwisTsPath = "*/" + stationNo + "/" + stationParameterNo + "/" + tsShortName;
-    		List<TimeSeriesCatalog> tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
-    		if ( tslist.size() == 0 ) {
-    			// Did not match any time series.
-    			throw new RuntimeException ( "No time series found matching TSID = " + tsidentReq );
-    		}
-    		else if ( tslist.size() > 1 ) {
-    			// Matched more than one time series so identifier information is not unique.
-    			throw new RuntimeException ( "Matched " + tslist.size() + " time series for TSID = " + tsidentReq + ", expecting 1.");
-    		}
-    		else {
-    			// Matched a single time series so can continue:
-    			// - ts_id is used below to read data
-    			tscatalog = tslist.get(0);
-    			kiwisTsid = tscatalog.getTsId();
-    		}
+    	// Find the time series catalog for the requested time series, which provides the ts_id used to read data:
+    	// - the catalog may have been found by the calling code, for example when reading values in batches
+    	if ( tscatalog == null ) {
+    		tscatalog = findTimeSeriesCatalog(tsidentReq);
     	}
+    	Integer kiwisTsid = tscatalog.getTsId(); // KiWIS ts_id, used to read data.
+    	String kiwisTsPath = null; // KiWIS ts_path, not used because ts_id is used to read data.
 
     	// Create the time series and set properties:
     	// - above code used "req" (requested) variables based on the requested TSID
@@ -883,365 +1860,268 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 		setTimeSeriesProperties ( ts, tscatalog );
     	
     	if ( readData ) {
-    		// Also read the time series values.
+    		// Also read the time series values:
+    		// - values are parsed as the response is streamed into a compact buffer
+    		// - the buffer is needed because the period must be known before values can be set
     		StringBuilder valuesUrl = new StringBuilder();
-    		/*
-    		List<TimeSeriesValue> timeSeriesValueList = readTimeSeriesValues (
-    			kiwisTsid, kiwisTsPath, readStart, readEnd, readProperties,
-    			valuesUrl );
-    		
-    		String dataFlag = null;
-    		DateTime dateTime = null;
-    		double value;
-    		int interpolationTypeNum = -1;
-    		InterpolationType interpolationType = null;
-    		String valueString;
-    		int duration = -1;
-    		List<QualityCode> qualityCodeList = this.getQualityCodes(false);
-    		int badDateTimeCount = 0;
-    		int badValueCount = 0;
-    		int badInterpolationTypeCount = 0;
-    		int notInsertedCount = 0;
-    		// Count of how many values are adjusted from beginning to end of interval.
-    		int timeAdjustCount = 0;
-    		// Count of how many daily values have non-zero hour.
-    		int dayNonZeroHourCount = 0;
-   			int valueErrorCount = 0;
-    		if ( timeSeriesValueList.size() > 0 ) {
-    			// Set the period based on data from the first and last values:
-    			// - this values may be adjusted below
-    			ts.setDate1(DateTime.parse(timeSeriesValueList.get(0).getTimestamp()));
-    			ts.setDate2(DateTime.parse(timeSeriesValueList.get(timeSeriesValueList.size() - 1).getTimestamp()));
-
-    			// Check the time series values up front to see if any date/times will be adjusted from
-    			// beginning to end of the interval.  TSTool uses interval-ending values.
-    			// Must do this up front in order to adjust the time series period for regular interval time series
-    			// so that all queried values will be saved in the time series.
-    			interpolationType = InterpolationType.UNKNOWN;
-    			for ( TimeSeriesValue tsValue : timeSeriesValueList ) {
-    				if ( tsValue.getInterpolationType().getTimestampPos() == -1 ) {
-    					// Save the interpolation type that triggered the adjustment.
-    					interpolationType = tsValue.getInterpolationType();
-    					++timeAdjustCount;
-    					// Can break since only need to know if one time is adjusted.
-    					break;
-    				}
-    			}
-
-    			// If any times will be adjusted from beginning to end of the interval, also adjust the periods:
-    			// - only need to adjust if regular interval time series (KiWIS has non-blank ts_spacing)
-    			// - the data value timestamps are shifted similarly before adding data to the time series
-    			if ( timeAdjustCount > 0 ) {
-    				if ( isRegularIntervalReq ) {
-    					// Regular interval time series.
-    					DateTime date1 = ts.getDate1();
-    					adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date1, interpolationType);
-    					ts.setDate1(date1);
-    					DateTime date2 = ts.getDate2();
-    					adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date2, interpolationType);
-    					ts.setDate2(date2);
-    					DateTime date1Original = ts.getDate1Original();
-    					if ( date1Original != null ) {
-    						adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date1Original, interpolationType);
-    						ts.setDate1Original(date1Original);
-    					}
-    					DateTime date2Original = ts.getDate2Original();
-    					if ( date2Original != null ) {
-    						adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date2Original, interpolationType);
-    						ts.setDate2Original(date2Original);
-    					}
-    				}
+    		// Use the thread's pooled buffer so that back-to-back reads reuse the arrays,
+    		// unless the values were already read, for example in a batch of time series.
+    		boolean isValueBufferPooled = (valueBufferRead == null);
+    		// Number of chunks that the period was read in, 1 if not split.
+    		int readChunkCount = 1;
+    		// Number of value cache blocks that were read from the web service, -1 if the cache was not used.
+    		int valueCacheReadBlockCount = -1;
+    		TimeSeriesValueBuffer valueBuffer = valueBufferRead;
+    		if ( isValueBufferPooled ) {
+    			valueBuffer = TimeSeriesValueBuffer.acquire();
+    			valueBuffer.setQualityFlagTable(this.qualityFlagTable);
+    		}
+    		try {
+    			if ( isValueBufferPooled && (this.valueCache != null) && (readStart != null) && (readEnd != null) ) {
+    				// Use cached values and only read the blocks that are not cached:
+    				// - blocks are read in chunks if necessary
+    				valuesUrl.append(getTimeSeriesValuesUrl(String.valueOf(kiwisTsid), readStart, readEnd));
+    				String interval = tsidentReq.getInterval();
+    				HashMap<String,Object> blockReadProperties = readProperties;
+    				valueCacheReadBlockCount = this.valueCache.read ( kiwisTsid, readStart, readEnd, valueBuffer,
+    					(blockStart, blockEnd, blockBuffer) -> {
+    						List<DateTime[]> chunks = new TimeSeriesPeriodChunker(this.readChunkMaxValues)
+    							.getChunks(blockStart, blockEnd, interval);
+    						if ( chunks.size() > 1 ) {
+    							readTimeSeriesValuesInChunks ( kiwisTsid, chunks, blockReadProperties, blockBuffer );
+    						}
+    						else {
+    							TimeSeriesValueBuffer chunkBuffer = readTimeSeriesValuesChunk ( kiwisTsid, blockStart, blockEnd, blockReadProperties );
+    							try {
+    								blockBuffer.append(chunkBuffer);
+    							}
+    							finally {
+    								chunkBuffer.release();
+    							}
+    						}
+    					});
     			}
-
-    			// The following if blocks match the logic inside the loop where values are transfered.
-
-    			if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
-    				if ( readDayAs24Hour ) {
-    					// Since KiWIS timestamp already includes hour, don't need to do anything,
-    					// other than the output time series needs to have its interval changed above (above).
-    					// Parsed date/time will already include the correct hour so just need to set the precision.
-   						DateTime date1 = ts.getDate1();
-   						date1.setPrecision(DateTime.PRECISION_HOUR);
-    					ts.setDate1(date1);
-   						DateTime date2 = ts.getDate2();
-   						date2.setPrecision(DateTime.PRECISION_HOUR);
-    					ts.setDate2(date2);
-    					Message.printStatus(2,routine,"After adjusting period precision for ReadDayAs24Hour, date1="
-    						+ ts.getDate1() + " date2=" + ts.getDate2());
-    					// Original period is probably null but try to set.
-   						DateTime date1Original = ts.getDate1Original();
-   						if ( date1Original != null ) {
-   							date1Original.setPrecision(DateTime.PRECISION_HOUR);
-    						ts.setDate1Original(date1Original);
-   						}
-   						DateTime date2Original = ts.getDate2Original();
-   						if ( date2Original != null ) {
-   							date2Original.setPrecision(DateTime.PRECISION_HOUR);
-    						ts.setDate2Original(date2Original);
-   						}
+    			else if ( isValueBufferPooled ) {
+    				// Split a long period into chunks that are read concurrently.
+    				List<DateTime[]> chunks = new TimeSeriesPeriodChunker(this.readChunkMaxValues)
+    					.getChunks(readStart, readEnd, tsidentReq.getInterval());
+    				if ( chunks.size() > 1 ) {
+    					readChunkCount = chunks.size();
+    					valuesUrl.append(getTimeSeriesValuesUrl(String.valueOf(kiwisTsid), readStart, readEnd));
+    					readTimeSeriesValuesInChunks ( kiwisTsid, chunks, readProperties, valueBuffer );
     				}
     				else {
-    					// By default, 1Day time series are shifted.
-    					// - KiWIS timestamp is at midnight (hour zero of next day)
-    					// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    					// - do not do the adjustment if irregular interval other than if IrregDay is requested
-    					// - TODO smalers 2023-01-18 will need to handle month and year when enabled
-    					if ( (irregularInterval == null) ||
-    						((irregularInterval != null) && (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY)) ) {
-    						DateTime date1 = ts.getDate1();
-   							date1.setPrecision(DateTime.PRECISION_DAY);
-    						date1.addDay(-1);
-    						date1.setHour(0); // Should not be used.
-    						ts.setDate1(date1);
-   							DateTime date2 = ts.getDate2();
-   							date2.setPrecision(DateTime.PRECISION_DAY);
-    						date2.addDay(-1);
-    						date2.setHour(0); // Should not be used.
-    						ts.setDate2(date2);
-    						Message.printStatus(2,routine,"After adjusting period precision for default day handling, date1="
-    							+ ts.getDate1() + " date2=" + ts.getDate2());
-    						// Original period is probably null but try to set.
-   							DateTime date1Original = ts.getDate1Original();
-   							if ( date1Original != null ) {
-   								date1Original.setPrecision(DateTime.PRECISION_DAY);
-   								date1Original.addDay(-1);
-    							date1Original.setHour(0); // Should not be used.
-    							ts.setDate1Original(date1Original);
-   							}
-   							DateTime date2Original = ts.getDate2Original();
-   							if ( date2Original != null ) {
-   								date2Original.setPrecision(DateTime.PRECISION_DAY);
-   								date2Original.addDay(-1);
-    							date2Original.setHour(0); // Should not be used.
-    							ts.setDate2Original(date2Original);
-   							}
-    					}
+    					readTimeSeriesValues ( kiwisTsid, kiwisTsPath, readStart, readEnd, readProperties,
+    						valueBuffer, valuesUrl );
     				}
     			}
-    			else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
-    				// 24Hour in KiWIS but want 1Day output:
-    				// - adjust the KiWIS timestamp to previous day (time will be discarded).
-   					DateTime date1 = ts.getDate1();
-   					date1.setPrecision(DateTime.PRECISION_DAY);
-    				date1.addDay(-1);
-    				date1.setHour(0); // Should not be used.
-    				ts.setDate1(date1);
-   					DateTime date2 = ts.getDate2();
-   					date2.setPrecision(DateTime.PRECISION_DAY);
-    				date2.addDay(-1);
-    				date2.setHour(0); // Should not be used.
-    				ts.setDate2(date2);
-    				Message.printStatus(2,routine,"After adjusting period precision for Read24HourAsDay, date1="
-    					+ ts.getDate1() + " date2=" + ts.getDate2());
-    				// Original period is probably null but try to set.
-   					DateTime date1Original = ts.getDate1Original();
-   					date1Original.setPrecision(DateTime.PRECISION_DAY);
-   					if ( date1Original != null ) {
-   						date1Original.addDay(-1);
-    					date1Original.setHour(0); // Should not be used.
-    					ts.setDate1Original(date1Original);
-   					}
-   					DateTime date2Original = ts.getDate2Original();
-   					date2Original.setPrecision(DateTime.PRECISION_DAY);
-   					if ( date2Original != null ) {
-   						date2Original.addDay(-1);
-    					date2Original.setHour(0); // Should not be used.
-    					ts.setDate2Original(date2Original);
-   					}
+    			else if ( valuesUrlRead != null ) {
+    				valuesUrl.append(valuesUrlRead);
     			}
+    			int valueCount = valueBuffer.size();
 
-    			if ( irregularInterval != null ) {
-    				// Adjust the precision on the period date/times:
-    				// - copies of the dates are returned so have to reset
-   					DateTime date1 = ts.getDate1();
-    				date1.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    				ts.setDate1(date1);
-   					DateTime date2 = ts.getDate2();
-    				date2.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    				ts.setDate2(date2);
-    				Message.printStatus(2,routine,"After adjusting period precision for irregular interval ("
-    					+ irregularInterval + "), date1=" + ts.getDate1() + " date2=" + ts.getDate2());
-    				// Original period is probably null but try to set.
-   					DateTime date1Original = ts.getDate1Original();
-   					if ( date1Original != null ) {
-   						date1Original.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-   						ts.setDate1Original(date1Original);
-   					}
-   					DateTime date2Original = ts.getDate2Original();
-   					if ( date2Original != null ) {
-   						date2Original.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    					ts.setDate2Original(date2Original);
-   					}
+    			// Rows with errors were not saved in the buffer so check the counts before transferring values.
+    			if ( valueBuffer.getBadDateTimeCount() > 0 ) {
+    				String message = "  Time series had " + valueBuffer.getBadDateTimeCount() + " bad timestamps.  See the log file.";
+    				Message.printWarning(3,routine,message);
+    				throw new Exception (message);
     			}
+    			if ( valueBuffer.getBadValueCount() > 0 ) {
+    				String message = "  Time series had " + valueBuffer.getBadValueCount() + " bad data values.  See the log file.";
+    				Message.printWarning(3,routine,message);
+    				throw new Exception(message);
+    			}
+    			if ( valueBuffer.getBadInterpolationTypeCount() > 0 ) {
+    				String message = "  Time series had " + valueBuffer.getBadInterpolationTypeCount() + " bad interpolation types.  See the log file.";
+    				Message.printWarning(3,routine,message);
+    				throw new Exception (message);
+    			}
+
+    			String dataFlag = null;
+    			DateTime dateTime = null;
+    			double value;
+    			InterpolationType interpolationType = null;
+    			int duration = -1;
+    			int notInsertedCount = 0;
+    			// Count of how many values are adjusted from beginning to end of interval.
+    			int timeAdjustCount = 0;
+    			// Count of how many daily values have non-zero hour.
+    			int dayNonZeroHourCount = 0;
+	   			int valueErrorCount = 0;
+    			if ( valueCount > 0 ) {
+    				// Set the period once using the earliest and latest timestamps and the interpolation types,
+    				// which were determined while the values were buffered:
+    				// - the period is adjusted the same as the values so that all values will be saved in the time series
+    				TimeSeriesValueTimeAdjuster timeAdjuster = new TimeSeriesValueTimeAdjuster(
+    					intervalBaseReq, intervalMultReq, irregularInterval, readDayAs24Hour, read24HourAsDay );
+    				timeAdjuster.setPeriod(ts, valueBuffer);
+
+    				// Allocate the time series data array:
+    				// - do this after adjusting the period for timestamps
+    				// - irregular interval does not allocate an array up front
+    				ts.allocateDataSpace();
     			
-    			// If reading day interval, convert midnight hour 0 of the next day to day precision of the previous day,
-    			// for example:
-    			//   2023-01-01 00:00:00 -> 2022-12-31
-    			// Time series that use timestamps with time intervals can remain as is.
-
-    			// Allocate the time series data array:
-    			// - do this after adjusting the period for timestamps
-    			// - irregular interval does not allocate an array up front
-    			ts.allocateDataSpace();
-    			
-    			// Transfer the TimeSeriesValue list to the TS data.
-    			
-    			Message.printStatus(2,routine, "Transferring " + timeSeriesValueList.size() + " time series values.");
-    			timeAdjustCount = 0;
-    			for ( TimeSeriesValue tsValue : timeSeriesValueList ) {
-    				if ( Message.isDebugOn ) {
-    					Message.printStatus(2,routine, "  Processing timestamp=" + tsValue.getTimestamp()
-    						+ " value=" + tsValue.getValue() + " quality code=" + tsValue.getQualityCode()
-    						+ " interpolation type number=" + tsValue.getInterpolationTypeNum()
-    						+ " interpolation type=" + tsValue.getInterpolationType() );
+    				// Transfer the buffered values to the TS data:
+    				// - the buffer only contains values that were parsed without errors
+
+    				Message.printStatus(2,routine, "Transferring " + valueCount + " time series values.");
+    				if ( timeAdjuster.isLocalMillisSupported() ) {
+    					// Regular interval output with fixed interval length:
+    					// - compute positions from the local time of each value and set values in order
+    					// - avoids creating and adjusting a DateTime for each value
+    					RegularIntervalValueTransfer transfer = new RegularIntervalValueTransfer(timeAdjuster);
+    					transfer.transfer(ts, valueBuffer, duration);
+    					timeAdjustCount = transfer.getTimeAdjustCount();
+    					dayNonZeroHourCount = transfer.getDayNonZeroHourCount();
+    					notInsertedCount = transfer.getNotInsertedCount();
+    					valueErrorCount = transfer.getValueErrorCount();
     				}
-    				try {
-    					try {
-    						dateTime = DateTime.parse(tsValue.getTimestamp());
-    					}
-    					catch ( Exception e ) {
-    						Message.printWarning(3, routine, "  Error parsing date/time: " + tsValue.getTimestamp());
-    						++badDateTimeCount;
-    						continue;
-    					}
-    					valueString = tsValue.getValue();
-    					if ( (valueString != null) && !valueString.isEmpty() ) {
+    				else {
+    					// Irregular interval output, or interval without fixed length.
+    					for ( int i = 0; i < valueCount; i++ ) {
+    						// Only create the DateTime when the value is set in the time series.
+    						dateTime = valueBuffer.getDateTime(i);
+    						value = valueBuffer.getValue(i);
+    						interpolationType = valueBuffer.getInterpolationType(i);
+    						// Data flag was looked up from the quality code when buffered.
+    						dataFlag = valueBuffer.getDataFlag(i);
     						try {
-    							value = Double.parseDouble(tsValue.getValue());
-    						}
-    						catch ( NumberFormatException e ) {
-    							Message.printWarning(3, routine, "  Error parsing " + tsValue.getTimestamp() + " data value: " + tsValue.getValue());
-    							++badValueCount;
-    							continue;
-    						}
-    						// Get the interpolation type enumeration.
-    						interpolationType = tsValue.getInterpolationType();
-    						if ( interpolationType == InterpolationType.UNKNOWN ) {
-    							Message.printWarning(3, routine, "  Unknown interpolation type " + interpolationTypeNum
-    								+ " at " + tsValue.getTimestamp() + " - skipping value." );
-    							++badInterpolationTypeCount;
-    							continue;
-    						}
-    						// Adjust the date/time based on the interpolation type:
-    						// - only need to do this for regular interval time series
-    						// - only values that have timestamp at the beginning of an interval are adjusted
-    						// - keep a count that is added as a time series property
-    						if ( isRegularIntervalReq ) {
-    							timeAdjustCount += adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, dateTime, interpolationType);
-    						}
-	
-    						// Look up the data flag from the quality code integer.
-    						dataFlag = lookupQualityCode(qualityCodeList, tsValue.getQualityCode());
-	
-    						// Also check daily interval time series:
-    						// - if the hour is not zero, count and add as a property later
-    						// - time zone is ignored so -0700, -0600, etc. does not come into play
-    						// - if the count is non-zero, generate an exception because need to handle as 24Hour or irregular
-    						if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
-    							if ( dateTime.getHour() != 0 ) {
+    							// Adjust the date/time based on the interpolation type and output interval,
+    							// the same as the period was adjusted:
+    							// - keep counts that are added as time series properties
+    							timeAdjustCount += timeAdjuster.adjustForInterpolationType(dateTime, interpolationType);
+    							if ( timeAdjuster.isDayNonZeroHour(dateTime) ) {
     								// Any day interval values with non-zero hour will result in an exception because TSTool does
     								// not have a clean way to handle, for example, 7AM to 7AM time series.
     								// The IrregularInterval=IrregDay parameter should be specified and uses have to deal with the data.
     								++dayNonZeroHourCount;
     							}
-    							if ( readDayAs24Hour ) {
-    								// Since KiWIS timestamp already includes hour, don't need to do anything,
-    								// other than the output time series needs to have its interval changed above (above).
-    								dateTime.setPrecision(DateTime.PRECISION_HOUR);
+    							timeAdjuster.adjustForOutputInterval(dateTime);
+    					
+    							// Set the data value in the time series:
+    							// - the date/time will be copied if necessary and the precision set to be consistent with the time series
+    							if ( Message.isDebugOn ) {
+    								Message.printStatus(2, routine, "  Setting " + dateTime + " value=" + value
+    									+ " flag=\"" + dataFlag + "\" for interpolationType=" + interpolationType );
     							}
-    							else {
-    								// By default, 1Day time series are shifted.
-    								// - KiWIS timestamp is at midnight (hour zero of next day)
-    								// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    								// - do not do the adjustment if irregular interval other than if IrregDay is requested
-    								// - TODO smalers 2023-01-18 will need to handle month and year when enabled
-    								if ( (irregularInterval == null) ||
-    									((irregularInterval != null) && (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY)) ) {
-    									dateTime.addDay(-1);
-    									dateTime.setHour(0); // Should not be used.
-    									dateTime.setPrecision(DateTime.PRECISION_DAY);
-    								}
+    							if ( ts.setDataValue(dateTime, value, dataFlag, duration) == 0 ) {
+    								// Track points that are not inserted because may be an issue with the period due to
+    								// adjusted date/times not aligning with the allocated period.
+    								++notInsertedCount;
     							}
     						}
-    						else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
-    							// 24Hour in KiWIS but want 1Day output:
-    							// - adjustment will not occur if IrregularInterval was specified
-    							// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    							dateTime.addDay(-1);
-    							dateTime.setHour(0); // Should not be used.
-    							dateTime.setPrecision(DateTime.PRECISION_DAY);
-    						}
-
-    						if ( irregularInterval != null ) {
-    							// Irregular interval output was requested:
-    							// - don't need to do adjustments below for day and 24Hour
-    							// - set the precision based on what was requested
-    							dateTime.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    						}
-    					
-    						// Set the data value in the time series:
-    						// - the date/time will be copied if necessary and the precision set to be consistent with the time series
-    						if ( Message.isDebugOn ) {
-    							Message.printStatus(2, routine, "  Setting " + dateTime + " value=" + value
-    								+ " flag=\"" + dataFlag + "\" for interpolationType=" + interpolationType );
-    						}
-    						if ( ts.setDataValue(dateTime, value, dataFlag, duration) == 0 ) {
-    							// Track points that are not inserted because may be an issue with the period due to
-    							// adjusted date/times not aligning with the allocated period.
-    							++notInsertedCount;
+    						catch ( Throwable e ) {
+    							// Catch a Throwable:
+    							// - Exception may not be general enough
+    							// - if the plugin code and TSTool code are incompatible, may get unexpected errors
+								++valueErrorCount;
+								Message.printWarning(3, routine, "  Error processing value (" + e + ")." );
+								if ( valueErrorCount <= 50 ) {
+									Message.printWarning(3, routine, e );
+								}
     						}
     					}
     				}
-    				catch ( Throwable e ) {
-    					// Catch a Throwable:
-    					// - Exception may not be general enough
-    					// - if the plugin code and TSTool code are incompatible, may get unexpected errors
-						++valueErrorCount;
-						Message.printWarning(3, routine, "  Error processing value (" + e + ")." );
-						if ( valueErrorCount <= 50 ) {
-							Message.printWarning(3, routine, e );
-						}
+    				if ( valueErrorCount > 0 ) {
+    					String message = "  Time series had " + valueErrorCount + " errors setting values.  See the log file.";
+    					//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
+    					Message.printWarning(3,routine,message);
     				}
     			}
-    			if ( badDateTimeCount > 0 ) {
-    				//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
-    				String message = "  Time series had " + badDateTimeCount + " bad timestamps.  See the log file.";
-    				Message.printWarning(3,routine,message);
-    				throw new Exception (message);
+
+    			// Set additional time series properties to help understand the data.
+    			ts.setProperty("ts.TimestampsAdjustedToIntervalEndCount", Integer.valueOf(timeAdjustCount));
+    			ts.setProperty("ts.DayNonZeroHourCount", Integer.valueOf(dayNonZeroHourCount));
+    			ts.setProperty("ts.NotInsertedCount", Integer.valueOf(notInsertedCount));
+    			ts.setProperty("ts.GetTimeSeriesValuesUrl", valuesUrl.toString());
+    			ts.setProperty("ts.SetDataValueErrorCount", Integer.valueOf(valueErrorCount));
+    			ts.setProperty("ts.ReadChunkCount", Integer.valueOf(readChunkCount));
+    			if ( valueCacheReadBlockCount >= 0 ) {
+    				ts.setProperty("ts.ValueCacheReadBlockCount", Integer.valueOf(valueCacheReadBlockCount));
     			}
-    			if ( badValueCount > 0 ) {
-    				//problems.add("Time series had " + badValueCount + " bad data values.  See the log file.");
-    				String message = "  Time series had " + badValueCount + " bad data values.  See the log file.";
-    				Message.printWarning(3,routine,message);
-    				throw new Exception(message);
-    			}
-    			if ( badInterpolationTypeCount > 0 ) {
-    				String message = "  Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.";
-    				//problems.add("Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.");
-    				Message.printWarning(3,routine,message);
-    				throw new Exception (message);
-    			}
-    			if ( valueErrorCount > 0 ) {
-    				String message = "  Time series had " + valueErrorCount + " errors setting values.  See the log file.";
-    				//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
-    				Message.printWarning(3,routine,message);
+    		}
+    		finally {
+    			if ( isValueBufferPooled ) {
+    				valueBuffer.release();
     			}
     		}
-    		*/
-    		
-    		// Set additional time series properties to help understand the data.
-    		/*
-    		ts.setProperty("ts.TimestampsAdjustedToIntervalEndCount", new Integer(timeAdjustCount));
-    		ts.setProperty("ts.DayNonZeroHourCount", new Integer(dayNonZeroHourCount));
-    		ts.setProperty("ts.NotInsertedCount", new Integer(notInsertedCount));
-    		ts.setProperty("ts.GetTimeSeriesValuesUrl", valuesUrl.toString());
-    		ts.setProperty("ts.SetDataValueErrorCount", new Integer(valueErrorCount));
-    		*/
     	}
 
     	return ts;
     }
 
+    /**
+     * Read a batch of time series, where values for all time series in the batch are read with one request.
+     * The response is routed to a value buffer for each time series as it is streamed,
+     * and then each time series is created from its buffer.
+     * @param batch the batch of ts_id to read
+     * @param tsidList requested time series identifiers
+     * @param tscatalogArray the time series catalog for each requested time series
+     * @param tsIdPositionMap the positions in tsidList for each ts_id
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readProperties additional properties to control the query, see readTimeSeries()
+     * @param resultArray array to receive the result for each requested time series
+     */
+    private void readTimeSeriesBatch ( TimeSeriesRequestPlanner.Batch batch, List<String> tsidList,
+    	TimeSeriesCatalog [] tscatalogArray, Map<Integer,List<Integer>> tsIdPositionMap,
+    	DateTime readStart, DateTime readEnd, HashMap<String,Object> readProperties, TimeSeriesReadResult [] resultArray ) {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesBatch";
+    	long startTime = System.currentTimeMillis();
+    	// Buffers are not pooled because a buffer is needed for each time series in the batch.
+    	Map<Integer,TimeSeriesValueBuffer> valueBufferMap = new HashMap<>();
+    	TimeSeriesValueRouter router = new TimeSeriesValueRouter();
+    	for ( Integer tsId : batch.getTsIdList() ) {
+    		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+    		valueBuffer.setQualityFlagTable(this.qualityFlagTable);
+    		valueBufferMap.put(tsId, valueBuffer);
+    		router.addSink(tsId, valueBuffer);
+    	}
+    	StringBuilder valuesUrl = new StringBuilder();
+    	Throwable batchError = null;
+    	try {
+    		readTimeSeriesValues ( batch.getTsIdList(), batch.getReadStart(), batch.getReadEnd(), readProperties,
+    			router, valuesUrl );
+    		if ( router.getUnroutedCount() > 0 ) {
+    			Message.printWarning(3, routine, "  Ignored " + router.getUnroutedCount()
+    				+ " values for time series that were not requested.");
+    		}
+    	}
+    	catch ( Throwable e ) {
+    		// Catch a Throwable so that the error is returned for each time series in the batch.
+    		Message.printWarning(3, routine, "Error reading values for ts_id=" + batch.getTsIdListString() + " (" + e + ").");
+    		batchError = e;
+    	}
+    	long requestTime = System.currentTimeMillis() - startTime;
+    	for ( Integer tsId : batch.getTsIdList() ) {
+    		for ( Integer pos : tsIdPositionMap.get(tsId) ) {
+    			String tsid = tsidList.get(pos);
+    			if ( batchError != null ) {
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, null, batchError, requestTime);
+    				continue;
+    			}
+    			long tsStartTime = System.currentTimeMillis();
+    			try {
+    				// Each time series gets its own copies because the period and properties may be modified.
+    				TS ts = readTimeSeries ( tsid,
+    					(readStart == null) ? null : new DateTime(readStart),
+    					(readEnd == null) ? null : new DateTime(readEnd),
+    					true,
+    					(readProperties == null) ? null : new HashMap<>(readProperties),
+    					tscatalogArray[pos], valueBufferMap.get(tsId), valuesUrl.toString() );
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, ts, null,
+    					requestTime + System.currentTimeMillis() - tsStartTime);
+    			}
+    			catch ( Throwable e ) {
+    				// Catch a Throwable so that the error is returned for the time series.
+    				Message.printWarning(3, routine, "Error reading time series \"" + tsid + "\" (" + e + ").");
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, null, e,
+    					requestTime + System.currentTimeMillis() - tsStartTime);
+    			}
+    		}
+    	}
+    }
+
 	/**
 	 * Read time series catalog, which uses the "/getTimeseriesList" web service query.
 	 * @param dataTypeReq Requested data type (e.g., "DischargeRiver") or "*" to read all data types,
@@ -1251,10 +2131,71 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	 * @param ifp input filter panel with "where" conditions
 	 * @param kiwisTsid the KiWIS 'ts_id' to match, or null to ignore
 	 * @param kiwisTsPath the KiWIS 'ts_path' to match, or null to ignore, can have * for the site_no part
+	 * @return the matching time series catalog
+	 * @exception IOException if the catalog is read from the web service and the request fails
 	 */
 	public List<TimeSeriesCatalog> readTimeSeriesCatalog ( String dataTypeReq, String dataIntervalReq, InputFilter_JPanel ifp,
-		Integer kiwisTsid, String kiwisTsPath ) {
-		String routine = getClass().getSimpleName() + ".readTimeSeriesCatalog";
+		Integer kiwisTsid, String kiwisTsPath ) throws IOException {
+		return readTimeSeriesCatalog ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, new StringDictionary() );
+	}
+
+	/**
+	 * Read time series catalog, which uses the "/getTimeseriesList" web service query.
+	 * @param dataTypeReq Requested data type (e.g., "DischargeRiver") or "*" to read all data types,
+	 *        or null to use default of "*".
+	 * @param dataIntervalReq Requested data interval (e.g., "IrregSecond") or "*" to read all intervals,
+	 *        or null to use default of "*".
+	 * @param ifp input filter panel with "where" conditions
+	 * @param kiwisTsid the KiWIS 'ts_id' to match, or null to ignore
+	 * @param kiwisTsPath the KiWIS 'ts_path' to match, or null to ignore, can have * for the site_no part
+	 * @param dictionary dictionary used to share strings between catalog objects that are read from the web service,
+	 * which should be the dictionary for the catalog version if the catalog objects will be cached
+	 * @return the matching time series catalog
+	 * @exception IOException if the catalog is read from the web service and the request fails
+	 */
+	private List<TimeSeriesCatalog> readTimeSeriesCatalog ( String dataTypeReq, String dataIntervalReq, InputFilter_JPanel ifp,
+		Integer kiwisTsid, String kiwisTsPath, StringDictionary dictionary ) throws IOException {
+		// If the query is from an input filter panel and the cached catalog is available,
+		// evaluate the query using the cached catalog rather than the web service:
+		// - queries without an input filter panel are used to read the catalog from the web service for the cache
+		// - an empty cached catalog is not used because it is likely due to a web service error
+		if ( (ifp != null) && (this.globalDataStatus == GlobalDataStatus.READY) && (this.tscatalogIndex.size() > 0) ) {
+			List<TimeSeriesCatalog> tscatalogList = readTimeSeriesCatalogFromCache(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath);
+			if ( tscatalogList != null ) {
+				return tscatalogList;
+			}
+			// Else, the query could not be evaluated locally so use the web service.
+		}
+
+		// Concurrent reads of the same catalog from the web service share one request and result,
+		// for example a catalog refresh and the lookup for a time series that is not in the cached catalog:
+		// - queries with an input filter panel are not shared because the filter values are not in the key
+		// - the dictionary of the first caller is used for the shared result,
+		//   which is the catalog version dictionary because cached catalog reads are serialized by 'catalogRefreshLock'
+		if ( ifp == null ) {
+			String key = "catalog:" + dataTypeReq + "|" + dataIntervalReq + "|" + kiwisTsid + "|" + kiwisTsPath;
+			return this.catalogFlight.execute ( key, () -> Collections.unmodifiableList (
+				readTimeSeriesCatalogFromWebService ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, dictionary ) ) );
+		}
+		return readTimeSeriesCatalogFromWebService ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, dictionary );
+	}
+
+	/**
+	 * Read time series catalog from the web service, called by readTimeSeriesCatalog().
+	 * @param dataTypeReq Requested data type (e.g., "DischargeRiver") or "*" to read all data types,
+	 *        or null to use default of "*".
+	 * @param dataIntervalReq Requested data interval (e.g., "IrregSecond") or "*" to read all intervals,
+	 *        or null to use default of "*".
+	 * @param ifp input filter panel with "where" conditions
+	 * @param kiwisTsid the KiWIS 'ts_id' to match, or null to ignore
+	 * @param kiwisTsPath the KiWIS 'ts_path' to match, or null to ignore, can have * for the site_no part
+	 * @param dictionary dictionary used to share strings between the catalog objects
+	 * @return the matching time series catalog
+	 * @exception IOException if the web service request fails after retries or the response cannot be read
+	 */
+	private List<TimeSeriesCatalog> readTimeSeriesCatalogFromWebService ( String dataTypeReq, String dataIntervalReq,
+		InputFilter_JPanel ifp, Integer kiwisTsid, String kiwisTsPath, StringDictionary dictionary ) throws IOException {
+		String routine = getClass().getSimpleName() + ".readTimeSeriesCatalogFromWebService";
 
 		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
 		// not just additional fields above the default.
@@ -1286,14 +2227,43 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 		// Add query parameters based on the input filter:
 		// - this includes list type parameters and specific parameters to match database values
 		int numFilterWheres = 0; // Number of filter where clauses that are added.
+		// The 'ts_id' for time series matching the spatial filters, or null if spatial filters are not used:
+		// - the web service does not support spatial queries so the spatial index for the cached catalog is used
+		Set<Integer> spatialTsIdSet = null;
 		if ( ifp != null ) {
 	        int nfg = ifp.getNumFilterGroups ();
 	        InputFilter filter;
 	        for ( int ifg = 0; ifg < nfg; ifg++ ) {
 	            filter = ifp.getInputFilter ( ifg );
 	            //Message.printStatus(2, routine, "IFP whereLabel =\"" + whereLabel + "\"");
-	            boolean special = false; // TODO smalers 2022-12-26 might add special filters.
+	            String whereInternal = filter.getWhereInternal();
+	            boolean special = false;
+	            if ( whereInternal.equals("station_within_box") || whereInternal.equals("station_within_radius") ) {
+	            	special = true;
+	            }
 	            if ( special ) {
+	            	String input = filter.getInput(false);
+	            	if ( (input != null) && !input.trim().isEmpty() ) {
+	            		// Use the spatial index for the cached catalog.
+	            		waitForGlobalData();
+	            		TimeSeriesCatalogFilter spatialFilter = new TimeSeriesCatalogFilter(this.tscatalogIndex);
+	            		spatialFilter.addInputFilter(filter, ifp.getOperator(ifg));
+	            		Set<Integer> tsIdSet = new HashSet<>();
+	            		for ( TimeSeriesCatalog tscatalog : spatialFilter.filter() ) {
+	            			tsIdSet.add(tscatalog.getTsId());
+	            		}
+	            		if ( spatialTsIdSet == null ) {
+	            			spatialTsIdSet = tsIdSet;
+	            		}
+	            		else {
+	            			// Multiple spatial filters are ANDed.
+	            			spatialTsIdSet.retainAll(tsIdSet);
+	            		}
+	            		if ( Message.isDebugOn ) {
+	            			Message.printStatus(2,routine,"Filter group " + ifg + " spatial filter \"" + input
+	            				+ "\" matched " + tsIdSet.size() + " time series.");
+	            		}
+	            	}
 	            }
 	            else {
 	            	// Add the query parameter to the URL.
@@ -1333,109 +2303,236 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 		}
 		
 		Message.printStatus(2, routine, "Reading time series list from: " + requestUrl);
-		/*
-		List<TimeSeries> timeSeriesList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = null;
-		try {
-			jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl.toString(), arrayName);
-		}
-		catch ( Exception e ) {
-			Message.printWarning(3,routine,"Error reading time series catalog (" + e + ").");
-			Message.printWarning(3,routine,e);
-		}
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-			for ( int i = 0; i < jsonNode.size(); i++ ) {
-				timeSeriesList.add((TimeSeries)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), TimeSeries.class));
+
+		// Use the shared client so that the connection is reused and failed requests are retried:
+		// - a gzip or deflate compressed response is requested, which is much smaller for the full catalog,
+		//   and is decoded as it is streamed into the catalog objects
+		// - strings are shared between the catalog objects to reduce memory use
+		// - an error is thrown rather than returning an empty catalog,
+		//   so that a web service failure is not treated as a catalog without time series
+		long startTime = System.currentTimeMillis();
+		List<TimeSeriesCatalog> tscatalogList = this.httpClient.get ( requestUrl.toString(), response -> {
+			if ( response.getStatusCode() != 200 ) {
+				throw new IOException("HTTP error " + response.getStatusCode() + " reading time series list from: " + requestUrl);
 			}
+			TimeSeriesCatalogParser parser = new TimeSeriesCatalogParser();
+			List<TimeSeriesCatalog> list = parser.parse(response.getInputStream(), dictionary);
+			if ( parser.getBadNumberCount() > 0 ) {
+				Message.printWarning(3, routine, "  " + parser.getBadNumberCount() + " numeric values could not be parsed and were set to null.");
+			}
+			String contentEncoding = response.getContentEncoding();
+			Message.printStatus(2, routine, "  Read " + list.size() + " items in " + (System.currentTimeMillis() - startTime) + " ms"
+				+ (contentEncoding.isEmpty() ? "" : " (" + contentEncoding + " encoded)") + ".");
+			return list;
+		});
+
+		// Filter on the data interval, which is not a web service parameter.
+		if ( (dataIntervalReq != null) && !dataIntervalReq.isEmpty() && !dataIntervalReq.equals("*") ) {
+			tscatalogList.removeIf(tscatalog -> !dataIntervalReq.equals(tscatalog.getDataInterval()));
 		}
-		else {
-			Message.printStatus(2, routine, "  Read 0 items.");
+
+		if ( spatialTsIdSet != null ) {
+			// Only include time series that match the spatial filters.
+			final Set<Integer> tsIdSet = spatialTsIdSet;
+			tscatalogList.removeIf(tscatalog -> !tsIdSet.contains(tscatalog.getTsId()));
 		}
-		*/
 		
-		// Convert the KiWIS TimeSeries objects to TimeSeriesCatalog:
-		// - also filter on the data interval, which is not a web service parameter
-		boolean doCheckInterval = false;
-		if ( (dataIntervalReq != null) && !dataIntervalReq.isEmpty() && !dataIntervalReq.equals("*") ) {
-			doCheckInterval = true;
-		}
-		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
-		String stationParameterNo;
-		String tsShortName;
-		String dataInterval;
-		/*
-		for ( TimeSeries timeSeries : timeSeriesList ) {
-			dataInterval = convertSpacingToInterval(timeSeries.getTsSpacing());
-			if ( doCheckInterval ) {
-				if ( !dataIntervalReq.equals(dataInterval) ) {
-					continue;
-				}
-			}
+		return tscatalogList;
+	}
 
-			// Matched the filters so continue adding.
-			
-			TimeSeriesCatalog tscatalog = new TimeSeriesCatalog();
-
-			// Standard properties expected by TSTool:
-			// - match the KiWIS 'ts_path' as much as possible since it is unique for retrieving time series values
-			stationParameterNo = timeSeries.getStationParameterNo();
-			tsShortName = timeSeries.getTsShortName();
-			if ( (stationParameterNo.indexOf("-") >= 0) || (stationParameterNo.indexOf(".") >= 0) ) {
-				stationParameterNo = "'" + stationParameterNo + "'";
-			}
-			if ( (tsShortName.indexOf("-") >= 0) || (tsShortName.indexOf(".") >= 0) ) {
-				tsShortName = "'" + tsShortName + "'";
-			}
-			tscatalog.setDataType(stationParameterNo + "-" + tsShortName);
-			tscatalog.setDataInterval(dataInterval);
-			tscatalog.setDataUnits(timeSeries.getTsUnitSymbol()); // Symbol = abbreviation?
-
-			// Standard and additional properties returned by the web service (see 'returnFields').
-			tscatalog.setCatchmentId( (timeSeries.getCatchmentId() == null) ? null : new Integer(timeSeries.getCatchmentId()));
-			tscatalog.setCatchmentName(timeSeries.getCatchmentName());
-
-			tscatalog.setStationId( (timeSeries.getStationId() == null) ? null : new Integer(timeSeries.getStationId()));
-			tscatalog.setStationLongName(timeSeries.getStationLongName());
-			tscatalog.setStationLatitude(timeSeries.getStationLatitude());
-			tscatalog.setStationLongitude(timeSeries.getStationLongitude());
-			tscatalog.setStationName(timeSeries.getStationName());
-			tscatalog.setStationNo(timeSeries.getStationNo());
-
-			tscatalog.setStationParameterLongName(timeSeries.getStationParameterLongName());
-			tscatalog.setStationParameterName(timeSeries.getStationParameterName());
-			tscatalog.setStationParameterNo(timeSeries.getStationParameterNo());
-
-			tscatalog.setSiteId( (timeSeries.getSiteId() == null) ? null : new Integer(timeSeries.getSiteId()));
-			tscatalog.setSiteName(timeSeries.getSiteName());
-			tscatalog.setSiteNo(timeSeries.getSiteNo());
-			
-			tscatalog.setParameterTypeId( (timeSeries.getParameterTypeId() == null) ? null : new Integer(timeSeries.getParameterTypeId()));
-			tscatalog.setParameterTypeName(timeSeries.getParameterTypeName());
-
-			tscatalog.setTsId( (timeSeries.getTsId() == null) ? null : new Integer(timeSeries.getTsId()));
-			tscatalog.setTsName(timeSeries.getTsName());
-			tscatalog.setTsPath(timeSeries.getTsPath());
-			tscatalog.setTsShortName(timeSeries.getTsShortName());
-			tscatalog.setTsSpacing(timeSeries.getTsSpacing());
-			tscatalog.setTsTypeId( (timeSeries.getTsTypeId() == null) ? null : new Integer(timeSeries.getTsTypeId()));
-			tscatalog.setTsTypeName(timeSeries.getTsTypeName());
-			tscatalog.setTsUnitName(timeSeries.getTsUnitName());
-			tscatalog.setTsUnitNameAbs(timeSeries.getTsUnitNameAbs());
-			tscatalog.setTsUnitSymbol(timeSeries.getTsUnitSymbol());
-			tscatalog.setTsUnitSymbolAbs(timeSeries.getTsUnitSymbolAbs());
-			
-			// Save the catalog in the list.
-			tscatalogList.add(tscatalog);
+	/**
+	 * Read the list of TimeSeriesCatalog using the cached catalog, without web service requests.
+	 * @param dataTypeReq Requested data type (stationparameter_no) or "*" to read all data types,
+	 *        or null to use default of "*".
+	 * @param dataIntervalReq Requested data interval (e.g., "IrregSecond") or "*" to read all intervals,
+	 *        or null to use default of "*".
+	 * @param ifp input filter panel with "where" conditions
+	 * @param kiwisTsid the KiWIS 'ts_id' to match, or null to ignore
+	 * @param kiwisTsPath the KiWIS 'ts_path' to match, or null to ignore, can have * for any part
+	 * @return the matching time series catalog,
+	 * or null if the query cannot be evaluated using the cached catalog (e.g., an unsupported filter operator)
+	 */
+	private List<TimeSeriesCatalog> readTimeSeriesCatalogFromCache ( String dataTypeReq, String dataIntervalReq, InputFilter_JPanel ifp,
+		Integer kiwisTsid, String kiwisTsPath ) {
+		String routine = getClass().getSimpleName() + ".readTimeSeriesCatalogFromCache";
+		long startTime = System.currentTimeMillis();
+		TimeSeriesCatalogIndex index = this.tscatalogIndex;
+		TimeSeriesCatalogFilter filter = new TimeSeriesCatalogFilter(index);
+		filter.addDataType(dataTypeReq);
+		filter.addDataInterval(dataIntervalReq);
+		filter.addTsId(kiwisTsid);
+		filter.addTsPath(kiwisTsPath);
+		if ( ifp != null ) {
+	        int nfg = ifp.getNumFilterGroups ();
+	        for ( int ifg = 0; ifg < nfg; ifg++ ) {
+	        	InputFilter inputFilter = ifp.getInputFilter(ifg);
+	        	if ( !filter.addInputFilter(inputFilter, ifp.getOperator(ifg)) ) {
+	        		Message.printStatus(2, routine, "Input filter \"" + inputFilter.getWhereLabel() + "\" operator \""
+	        			+ ifp.getOperator(ifg) + "\" cannot be evaluated using the cached catalog.");
+	        		return null;
+	        	}
+	        }
 		}
-		*/
-		
+		List<TimeSeriesCatalog> tscatalogList = filter.filter();
+		Message.printStatus(2, routine, "Matched " + tscatalogList.size() + " of " + index.size()
+			+ " cached time series in " + (System.currentTimeMillis() - startTime) + " ms.");
 		return tscatalogList;
 	}
 
     /**
-     * Read time series values.
+     * Read a list of time series given their time series identifiers.
+     * The time series are read in parallel, limited by the 'ReadConcurrency' configuration property,
+     * so that the web service latency for each time series overlaps.
+     * When data are read, the values for multiple time series are requested with one web service request,
+     * limited by the 'ReadBatchSize' and 'MaxUrlLength' configuration properties,
+     * and the response is split into the individual time series as it is streamed.
+     * Each time series is otherwise read the same as readTimeSeries(), and an error reading one time series
+     * does not prevent reading the other time series.
+     * @param tsidList requested time series identifiers
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readData whether to read data values
+     * @param readProperties additional properties to control the query, see readTimeSeries()
+     * @return the results for each requested time series, in the order of the requested identifiers
+     */
+    public List<TimeSeriesReadResult> readTimeSeriesList ( List<String> tsidList, DateTime readStart, DateTime readEnd,
+    	boolean readData, HashMap<String,Object> readProperties ) {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesList";
+    	List<TimeSeriesReadResult> results = new ArrayList<>(tsidList.size());
+    	if ( tsidList.isEmpty() ) {
+    		return results;
+    	}
+
+    	// Wait for the catalog once so that the reads resolve identifiers from the cached catalog
+    	// rather than each waiting.
+    	waitForGlobalData();
+
+    	long startTime = System.currentTimeMillis();
+    	TimeSeriesReadResult [] resultArray = new TimeSeriesReadResult[tsidList.size()];
+    	List<FutureTask<Void>> tasks = new ArrayList<>();
+    	// Positions of time series that are read individually rather than in batches.
+    	List<Integer> individualPositions = new ArrayList<>();
+    	if ( readData && (this.readBatchSize > 1) && (this.valueCache == null) ) {
+    		// Find the catalog for each time series, which provides the ts_id,
+    		// and plan the batches of ts_id to request.
+    		TimeSeriesCatalog [] tscatalogArray = new TimeSeriesCatalog[tsidList.size()];
+    		Map<Integer,List<Integer>> tsIdPositionMap = new HashMap<>();
+    		int maxTsIdListLength;
+    		try {
+    			maxTsIdListLength = this.maxUrlLength - getTimeSeriesValuesUrl("", readStart, readEnd).length();
+    		}
+    		catch ( UnsupportedEncodingException e ) {
+    			// Should not happen since UTF-8 is always supported.
+    			throw new RuntimeException ( e );
+    		}
+    		TimeSeriesRequestPlanner planner = new TimeSeriesRequestPlanner(this.readBatchSize, maxTsIdListLength);
+    		TimeSeriesPeriodChunker chunker = new TimeSeriesPeriodChunker(this.readChunkMaxValues);
+    		for ( int pos = 0; pos < tsidList.size(); pos++ ) {
+    			String tsid = tsidList.get(pos);
+    			try {
+    				TSIdent tsident = TSIdent.parseIdentifier(tsid);
+    				if ( chunker.getChunks(readStart, readEnd, tsident.getInterval()).size() > 1 ) {
+    					// Period is too long to read in a batch so read individually in chunks.
+    					individualPositions.add(pos);
+    					continue;
+    				}
+    				tscatalogArray[pos] = findTimeSeriesCatalog(tsident);
+    				Integer tsId = tscatalogArray[pos].getTsId();
+    				if ( tsId == null ) {
+    					// Values are requested by ts_id so the time series cannot be included in a batch.
+    					throw new RuntimeException ( "Time series catalog for \"" + tsid
+    						+ "\" does not have a ts_id - cannot read values." );
+    				}
+    				planner.add(tsId, readStart, readEnd);
+    				List<Integer> positions = tsIdPositionMap.get(tsId);
+    				if ( positions == null ) {
+    					positions = new ArrayList<>();
+    					tsIdPositionMap.put(tsId, positions);
+    				}
+    				positions.add(pos);
+    			}
+    			catch ( Throwable e ) {
+    				// Catch a Throwable so that the error is returned for the time series.
+    				Message.printWarning(3, routine, "Error finding time series \"" + tsid + "\" (" + e + ").");
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, null, e, 0);
+    			}
+    		}
+    		for ( TimeSeriesRequestPlanner.Batch batch : planner.getBatches() ) {
+    			tasks.add ( new FutureTask<>( () -> readTimeSeriesBatch ( batch, tsidList, tscatalogArray, tsIdPositionMap,
+    				readStart, readEnd, readProperties, resultArray ), null ) );
+    		}
+    	}
+    	else {
+    		for ( int pos = 0; pos < tsidList.size(); pos++ ) {
+    			individualPositions.add(pos);
+    		}
+    	}
+    	for ( Integer pos : individualPositions ) {
+    		String tsid = tsidList.get(pos);
+    		// Each read gets its own copies because the period and properties may be modified.
+    		DateTime readStart2 = (readStart == null) ? null : new DateTime(readStart);
+    		DateTime readEnd2 = (readEnd == null) ? null : new DateTime(readEnd);
+    		HashMap<String,Object> readProperties2 = (readProperties == null) ? null : new HashMap<>(readProperties);
+    		tasks.add ( new FutureTask<>( () -> {
+    			long tsStartTime = System.currentTimeMillis();
+    			try {
+    				TS ts = readTimeSeries ( tsid, readStart2, readEnd2, readData, readProperties2 );
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, ts, null, System.currentTimeMillis() - tsStartTime);
+    			}
+    			catch ( Throwable e ) {
+    				// Catch a Throwable so that the error is returned for the time series.
+    				Message.printWarning(3, routine, "Error reading time series \"" + tsid + "\" (" + e + ").");
+    				resultArray[pos] = new TimeSeriesReadResult(tsid, null, e, System.currentTimeMillis() - tsStartTime);
+    			}
+    		}, null ) );
+    	}
+
+    	if ( !tasks.isEmpty() ) {
+    		Message.printStatus(2, routine, "Reading " + tsidList.size() + " time series with " + tasks.size()
+    			+ " requests using up to " + Math.min(this.readConcurrency, tasks.size()) + " threads.");
+    		try {
+    			submitReadTasks(tasks);
+    			// Wait for all requests to complete:
+    			// - the tasks handle errors so that results are set for each time series
+    			for ( FutureTask<Void> task : tasks ) {
+    				awaitReadTask(task);
+    			}
+    		}
+    		catch ( InterruptedException e ) {
+    			Thread.currentThread().interrupt();
+    		}
+    		catch ( ExecutionException e ) {
+    			// Should not happen since the tasks catch errors.
+    			Message.printWarning(3, routine, e);
+    		}
+    		finally {
+    			// Stop any reads that have not completed, for example if interrupted.
+    			cancelReadTasks(tasks);
+    		}
+    	}
+
+    	// Collect the results in the requested order.
+    	int errorCount = 0;
+    	for ( int pos = 0; pos < resultArray.length; pos++ ) {
+    		TimeSeriesReadResult result = resultArray[pos];
+    		if ( result == null ) {
+    			// Read was not completed, for example if interrupted.
+    			result = new TimeSeriesReadResult(tsidList.get(pos), null,
+    				new RuntimeException("Read was not completed."), 0);
+    		}
+    		if ( !result.isSuccess() ) {
+    			++errorCount;
+    		}
+    		results.add(result);
+    	}
+    	Message.printStatus(2, routine, "Read " + tsidList.size() + " time series in "
+    		+ (System.currentTimeMillis() - startTime) + " ms, " + errorCount + " with errors.");
+    	return results;
+    }
+
+    /**
+     * Read time series values, streaming the response into a sink.
+     * The response is parsed as it is read so that the full response is not saved in memory.
      * @param kiwisTsid the KiWIS 'ts_id' when the TSID uses location type.
      * @param kiwisTsPath the KiWIS 'ts_path' when the TSID uses parts similar to the 'ts_path'
      * @param readStart start of read, will be set to 'periodStart' service parameter.
@@ -1444,166 +2541,172 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
      * <ul>
      * <li> Not yet implemented.</li>
      * </ul>
+     * @param sink sink to receive the time series values
      * @param url StringBuilder to save the path
-     * @return the list of time series values, may be an empty list
+     * @return the number of time series value rows that were read
      */
-	/*
-    public List<TimeSeriesValue> readTimeSeriesValues ( Integer kiwisTsid, String kiwisTsPath, DateTime readStart, DateTime readEnd,
-    	HashMap<String,Object> readProperties, StringBuilder url ) throws Exception {
-    	//throws IOException {
-    	String routine = getClass().getSimpleName() + ".readTimeSeriesValues";
-    	List<TimeSeriesValue> timeSeriesValues = new ArrayList<>();
-
-		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
-		// not just additional fields above the default.
-
+    public long readTimeSeriesValues ( Integer kiwisTsid, String kiwisTsPath, DateTime readStart, DateTime readEnd,
+    	HashMap<String,Object> readProperties, TimeSeriesValueSink sink, StringBuilder url ) throws IOException {
+    	return readTimeSeriesValues ( Collections.singletonList(kiwisTsid), readStart, readEnd, readProperties, sink, url );
+    }
 
-		//String format="dajson";
-		String format="csv";
+    /**
+     * Read time series values for one or more time series with one request, streaming the response into a sink.
+     * The response is parsed as it is read so that the full response is not saved in memory.
+     * The response contains a "#ts_id" header before the values for each time series,
+     * which can be used to route values to each time series (see TimeSeriesValueRouter).
+     * @param kiwisTsidList the KiWIS 'ts_id' for each time series to read, null values are ignored
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readProperties additional properties to control the query:
+     * <ul>
+     * <li> Not yet implemented.</li>
+     * </ul>
+     * @param sink sink to receive the time series values
+     * @param url StringBuilder to save the path
+     * @return the number of time series value rows that were read
+     */
+    public long readTimeSeriesValues ( List<Integer> kiwisTsidList, DateTime readStart, DateTime readEnd,
+    	HashMap<String,Object> readProperties, TimeSeriesValueSink sink, StringBuilder url ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValues";
 
-		StringBuilder requestUrl = new StringBuilder(
-			getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getTimeseriesValues&format=" + format
-				+ "&ts_id=" + kiwisTsid
-				+ "&returnfields="
-				+ URLEncoder.encode("Timestamp,Value,Quality Code,Interpolation Type",StandardCharsets.UTF_8.toString()));
-		
-		// Add where for period to query using ISO format "YYYY-MM-DD hh:mm:ss":
-		// - no T between date and time?
-		// - must URLencode the string
-		
-		if ( readStart != null ) {
-			//requestUrl.append("&from=" + readStart);
-			requestUrl.append("&from=" + URLEncoder.encode(readStart.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
-		}
-		if ( readEnd != null ) {
-			//requestUrl.append("&to=" + readEnd);
-			requestUrl.append("&to=" + URLEncoder.encode(readEnd.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
+		StringBuilder tsIdList = new StringBuilder();
+		for ( Integer kiwisTsid : kiwisTsidList ) {
+			if ( kiwisTsid == null ) {
+				// Don't request "ts_id=null".
+				continue;
+			}
+			if ( tsIdList.length() > 0 ) {
+				tsIdList.append(',');
+			}
+			tsIdList.append(kiwisTsid);
 		}
-		if ( (readStart == null) && (readEnd == null) ) {
-			// Request all data.
-			requestUrl.append("&period=complete");
+		if ( tsIdList.length() == 0 ) {
+			throw new IOException ( "No ts_id were specified for reading time series values." );
 		}
-		
+		String requestUrl = getTimeSeriesValuesUrl(tsIdList.toString(), readStart, readEnd);
+
 		// Pass back the URL to the calling code so it can be added as a time series property.
 		if ( url != null ) {
-			url.append(requestUrl.toString());
+			url.append(requestUrl);
 		}
 		
 		Message.printStatus(2, routine, "Reading time series values from: " + requestUrl);
 
-		// Request the JSON and parse into objects.
-
-		if ( format.equals("csv") ) {
-			/ * Format is similar to the following:
-			 * - semi-colons are used since not encountered in data?
-			#ts_id;957010
-			#rows;1
-			#Timestamp;Value
-			2022-12-30T18:00:00.000-07:00;84.88
-			* /
-			// Read the URI content into a string:
-			// - break by newlines and then process
-			String outputFile = null;
-			StringBuilder outputString = new StringBuilder();
-			// Set timeout to 5 minutes.
-			int connectTimeout = 300000;
-			int readTimeout = 300000;
-			// URL-encode the URL so that for example space is replaced by %20
-			IOUtil.getUriContent(requestUrl.toString(), outputFile, outputString, connectTimeout, readTimeout);
-			BufferedReader reader = new BufferedReader(new StringReader(outputString.toString()));
-			String line = null;
-			String delim = ";";
-			List<String> tokens = null;
-			TimeSeriesValue timeSeriesValue = null;
-			int valueCount = 0;
-			boolean fieldCountWarned = false;
-			String interpolationType;
-			while ( (line = reader.readLine()) != null ) {
-				if ( line.isEmpty() ) {
-					// Totally empty line.
-					continue;
-				}
-				else if ( line.trim().isEmpty() ) {
-					// Empty after removing whitespace.
-					continue;
-				}
-				else if ( line.charAt(0) == '#' ) {
-					// Comment.
-					continue;
-				}
-
-				// Split the line by semicolons.
-				tokens = StringUtil.breakStringList(line, delim, 0);
-				// Make sure the number of requested fields matches:
-				// - see the request URL for fields that should be included
-				if ( tokens.size() == 4 ) {
-					// Create a new value object.
-					timeSeriesValue = new TimeSeriesValue();
-					// Transfer the values from response to the value object.
-					timeSeriesValue.setTimestamp(tokens.get(0));
-					timeSeriesValue.setValue(tokens.get(1));
-					timeSeriesValue.setQualityCode(tokens.get(2));
-					interpolationType = tokens.get(3).trim();
-					//Message.printStatus(2, routine, "interpolationType=" + interpolationType);
-					//if ( interpolationType.isEmpty() ) {
-					//	timeSeriesValue.setInterpolationType(InterpolationType.MISSING_INTERPOLATION);
-					//}
-					//else
-					if ( StringUtil.isInteger(interpolationType) ) {
-						// If interpolation type is missing, set to missing.
-						timeSeriesValue.setInterpolationType(Integer.parseInt(interpolationType));
-					}
-					else {
-						// Interpolation type will be set to unknown and will cause an error when time series values are processed.
-					}
-					// Add the value object to the list to return.
-					timeSeriesValues.add(timeSeriesValue);
-					++valueCount;
-				}
-				else {
-					if ( !fieldCountWarned ) {
-						// Warn once to help with troubleshooting:
-						// - probably added a field the request but did not change token size check above
-						Message.printWarning(3, routine, "  Time series values list has the wrong number of fields.");
-						fieldCountWarned = true;
-					}
-				}
-			}
-			Message.printStatus(2, routine, "  Read " + valueCount + " time series values.");
-		}
-		else if ( format.equals("dajson") ) {
-			// format=dajson returns the following, which is somewhat difficult to handle so use csv.
-			/ *
-			[ {
-			  	"ts_id" : "957010",
-			  	"rows" : "1",
-			  	"columns" : "Timestamp,Value",
-			  	"data" : [ [ "2022-12-30T17:00:00.000-07:00", 78.31 ] ]
-				} ]
-			* /
-			JsonNode jsonNode = null;
-			String arrayName = null;
-			try {
-				jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl.toString(), arrayName);
-			}
-			catch ( Exception e ) {
-				Message.printWarning(3,routine,"Error reading time series values (" + e + ").");
-				Message.printWarning(3,routine,e);
-			}
-			if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-				Message.printStatus(2, routine, "  Read " + jsonNode.size() + " time series values.");
-				for ( int i = 0; i < jsonNode.size(); i++ ) {
-					timeSeriesValues.add((TimeSeriesValue)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), TimeSeriesValue.class));
-				}
-			}
-			else {
-				Message.printStatus(2, routine, "  Read 0 time series values.");
+		// Use the shared client so that the connection is reused:
+		// - the timeout is 5 minutes by default, for the response headers and each read of the body
+		// - failed requests, including failed reads of the body, are retried
+		//   and requests fail fast if the service is unavailable
+		long startTime = System.currentTimeMillis();
+		return this.httpClient.get ( requestUrl, response -> {
+			if ( response.getStatusCode() != 200 ) {
+				throw new IOException("HTTP error " + response.getStatusCode() + " reading time series values from: " + requestUrl);
 			}
-		}
-    	
-    	return timeSeriesValues;
+			// Discard values from a previous attempt if reading the response failed and the request was retried.
+			sink.reset();
+			long valueCount = new TimeSeriesValueParser().parse(response.getInputStream(), response.getContentLength(), sink);
+			String contentEncoding = response.getContentEncoding();
+			Message.printStatus(2, routine, "  Read " + valueCount + " time series values in "
+				+ (System.currentTimeMillis() - startTime) + " ms" + (contentEncoding.isEmpty() ? "" : " (" + contentEncoding + " encoded)") + ".");
+			return valueCount;
+		});
+    }
+
+    /**
+     * Read time series values for a long period in chunks, which are read concurrently.
+     * The chunks are appended to the buffer in time order as they complete,
+     * with values at the shared chunk boundaries only included once.
+     * Each chunk is a separate request that is retried by the HTTP client,
+     * so that one failure does not require reading the full period again.
+     * The chunks are read using the shared read executor.
+     * @param kiwisTsid the KiWIS 'ts_id' for the time series
+     * @param chunks the start and end for each chunk, in time order
+     * @param readProperties additional properties to control the query, see readTimeSeriesValues()
+     * @param valueBuffer buffer to receive the values for all chunks
+     * @exception IOException if a chunk could not be read
+     */
+    private void readTimeSeriesValuesInChunks ( Integer kiwisTsid, List<DateTime[]> chunks,
+    	HashMap<String,Object> readProperties, TimeSeriesValueBuffer valueBuffer ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValuesInChunks";
+    	long startTime = System.currentTimeMillis();
+    	Message.printStatus(2, routine, "Reading ts_id=" + kiwisTsid + " values in " + chunks.size()
+    		+ " chunks using up to " + Math.min(this.readConcurrency, chunks.size()) + " threads.");
+    	List<FutureTask<TimeSeriesValueBuffer>> tasks = new ArrayList<>(chunks.size());
+    	for ( DateTime [] period : chunks ) {
+    		tasks.add ( new FutureTask<>( () -> readTimeSeriesValuesChunk ( kiwisTsid, period[0], period[1], readProperties ) ) );
+    	}
+    	int duplicateCount = 0;
+    	int chunk = 0;
+    	try {
+    		submitReadTasks(tasks);
+    		// Append the chunks in order so that boundary values can be de-duplicated.
+    		for ( chunk = 0; chunk < tasks.size(); chunk++ ) {
+    			TimeSeriesValueBuffer chunkBuffer = awaitReadTask(tasks.get(chunk));
+    			tasks.set(chunk, null);
+    			try {
+    				duplicateCount += valueBuffer.append(chunkBuffer);
+    			}
+    			finally {
+    				// Release the chunk buffer so that the thread that read it can reuse it.
+    				chunkBuffer.release();
+    			}
+    		}
+    	}
+    	catch ( ExecutionException e ) {
+    		Throwable cause = e.getCause();
+    		if ( cause instanceof IOException ) {
+    			throw (IOException)cause;
+    		}
+    		throw new IOException ( "Error reading chunk " + (chunk + 1) + " for ts_id=" + kiwisTsid + " (" + cause + ").", cause );
+    	}
+    	catch ( InterruptedException e ) {
+    		Thread.currentThread().interrupt();
+    		throw new InterruptedIOException ( "Interrupted reading chunks for ts_id=" + kiwisTsid + "." );
+    	}
+    	finally {
+    		// Stop reading the remaining chunks if there was an error.
+    		cancelReadTasks(tasks);
+    		// Release the buffers for chunks that were read but not appended.
+    		for ( FutureTask<TimeSeriesValueBuffer> task : tasks ) {
+    			if ( (task != null) && task.isDone() && !task.isCancelled() ) {
+    				try {
+    					task.get().release();
+    				}
+    				catch ( ExecutionException | InterruptedException e ) {
+    					// The chunk failed so there is no buffer to release.
+    				}
+    			}
+    		}
+    	}
+    	Message.printStatus(2, routine, "  Read " + valueBuffer.size() + " time series values in " + chunks.size()
+    		+ " chunks in " + (System.currentTimeMillis() - startTime) + " ms, ignored " + duplicateCount
+    		+ " duplicate values at chunk boundaries.");
+    }
+
+    /**
+     * Read time series values for one chunk of a long period.
+     * Failed requests are retried by the HTTP client, so the chunk is not retried here.
+     * @param kiwisTsid the KiWIS 'ts_id' for the time series
+     * @param readStart start of the chunk
+     * @param readEnd end of the chunk
+     * @param readProperties additional properties to control the query, see readTimeSeriesValues()
+     * @return a buffer containing the values for the chunk, from TimeSeriesValueBuffer.acquire(),
+     * which the caller must release when the values have been used
+     * @exception IOException if the chunk could not be read
+     */
+    private TimeSeriesValueBuffer readTimeSeriesValuesChunk ( Integer kiwisTsid, DateTime readStart, DateTime readEnd,
+    	HashMap<String,Object> readProperties ) throws IOException {
+    	TimeSeriesValueBuffer chunkBuffer = TimeSeriesValueBuffer.acquire();
+    	chunkBuffer.setQualityFlagTable(this.qualityFlagTable);
+    	try {
+    		readTimeSeriesValues ( Collections.singletonList(kiwisTsid), readStart, readEnd, readProperties, chunkBuffer, null );
+    	}
+    	catch ( IOException | RuntimeException e ) {
+    		chunkBuffer.release();
+    		throw e;
+    	}
+    	return chunkBuffer;
     }
-		*/
 
     /**
      * Read time series metadata, which results in a query that joins station, station_type, point, point_class, and point_type.
@@ -1623,15 +2726,255 @@ public class MADISDataStore extends AbstractWebServiceDataStore implements DataS
 	   	// - the kiwisTsid and kiwisTsPath are not used here
 	   	Integer kiwisTsid = null;
 	   	String kiwisTsPath = null;
-	    return readTimeSeriesCatalog ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+	   	try {
+	   		return readTimeSeriesCatalog ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+	   	}
+	   	catch ( IOException e ) {
+	   		// Show the error in the UI rather than an empty list.
+	   		throw new RuntimeException ( "Error reading the time series list (" + e + ").", e );
+	   	}
 	}
 
+    /**
+     * Parse the version from a JSON response, which is the first 'version' property (case-independent) at any level.
+     * @param in input stream for the response, which is not closed
+     * @return the version, or an empty string if not found
+     */
+    private String parseVersion ( InputStream in ) throws IOException {
+    	JsonParser parser = new JsonFactory().createParser(in);
+    	parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    	try {
+    		JsonToken token;
+    		while ( (token = parser.nextToken()) != null ) {
+    			if ( (token == JsonToken.FIELD_NAME) && parser.getCurrentName().equalsIgnoreCase("version") ) {
+    				token = parser.nextToken();
+    				if ( token.isScalarValue() && (token != JsonToken.VALUE_NULL) ) {
+    					return parser.getText().trim();
+    				}
+    			}
+    		}
+    	}
+    	finally {
+    		parser.close();
+    	}
+    	return "";
+    }
+
     /**
      * Read the version from the web service, used when processing #@require commands in TSTool.
-     * TODO smalers 2023-01-03 need to figure out if a version is available.
+     * The 'getrequestinfo' response is searched for the first 'version' property (case-independent).
+     * @return the web service version, or an empty string if the version is not available
      */
     private String readVersion () {
-    	return "";
+    	String routine = getClass().getSimpleName() + ".readVersion";
+    	String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getrequestinfo&format=json";
+    	try {
+    		return this.httpClient.get ( requestUrl, response -> {
+    			if ( response.getStatusCode() != 200 ) {
+    				throw new IOException("HTTP error " + response.getStatusCode() + " reading version from: " + requestUrl);
+    			}
+    			return parseVersion(response.getInputStream());
+    		});
+    	}
+    	catch ( IOException e ) {
+    		Message.printWarning(3, routine, "Error reading the web service version (" + e + ").");
+    		return "";
+    	}
+    }
+
+    /**
+     * Wait for global data to be read, up to the 'GlobalDataTimeout' configuration property.
+     * This is used by commands and reads, which need the full catalog.
+     * If global data are not read in time or reading failed, a warning is printed
+     * and the calling code uses whatever global data are available.
+     * @return true if global data are ready, false if reading timed out or failed
+     */
+    public boolean waitForGlobalData () {
+    	return waitForGlobalData(this.globalDataTimeout);
+    }
+
+    /**
+     * Wait for global data to be read, up to the specified timeout.
+     * If global data are not read in time or reading failed, a warning is printed
+     * and the calling code uses whatever global data are available.
+     * @param timeout maximum time to wait in milliseconds
+     * @return true if global data are ready, false if reading timed out or failed
+     */
+    private boolean waitForGlobalData ( long timeout ) {
+    	String routine = getClass().getSimpleName() + ".waitForGlobalData";
+    	if ( this.globalDataStatus == GlobalDataStatus.READY ) {
+    		return true;
+    	}
+    	try {
+    		this.globalDataFuture.get(timeout, TimeUnit.MILLISECONDS);
+    		return true;
+    	}
+    	catch ( TimeoutException e ) {
+    		Message.printWarning(2, routine, "Timeout (" + timeout/1000.0 + " seconds) waiting for global data for datastore \""
+    			+ getName() + "\" - using available data.");
+    	}
+    	catch ( InterruptedException e ) {
+    		Thread.currentThread().interrupt();
+    	}
+    	catch ( ExecutionException e ) {
+    		Message.printWarning(3, routine, "Global data for datastore \"" + getName() + "\" are not available (" + e.getCause() + ").");
+    	}
+    	return false;
+    }
+
+    /**
+     * Submit read tasks to the shared read executor.
+     * Use awaitReadTask() to wait for each task, which runs the task in the calling thread if it has not started.
+     * @param tasks the tasks to submit
+     */
+    private void submitReadTasks ( List<? extends FutureTask<?>> tasks ) {
+    	for ( FutureTask<?> task : tasks ) {
+    		try {
+    			this.readExecutor.execute(task);
+    		}
+    		catch ( RejectedExecutionException e ) {
+    			// The datastore has been closed - the task is run by awaitReadTask() and fails in the web service client.
+    		}
+    	}
+    }
+
+    /**
+     * Start the periodic incremental catalog refresh, using a daemon thread.
+     * The refresh is skipped until global data have been read.
+     * If reading global data failed, the full catalog is read instead so that the datastore can recover.
+     */
+    private void startCatalogRefresh () {
+    	String routine = getClass().getSimpleName() + ".startCatalogRefresh";
+    	this.catalogRefreshExecutor = Executors.newSingleThreadScheduledExecutor ( runnable -> {
+    		Thread thread = new Thread(runnable, "MADISDataStore-" + getName() + "-catalog-partition-refresh");
+    		thread.setDaemon(true);
+    		return thread;
+    	});
+    	this.catalogRefreshExecutor.scheduleWithFixedDelay ( () -> {
+    		try {
+    			if ( this.closed ) {
+    				// The executor is being shut down.
+    				return;
+    			}
+    			if ( this.globalDataStatus == GlobalDataStatus.READY ) {
+    				refreshTimeSeriesCatalogPartitions();
+    			}
+    			else if ( this.globalDataStatus == GlobalDataStatus.FAILED ) {
+    				getTimeSeriesCatalog(true);
+    			}
+    		}
+    		catch ( Exception e ) {
+    			// Catch so that the next refresh is not cancelled.
+    			Message.printWarning(3, routine, "Error refreshing the time series catalog (" + e + ").");
+    			Message.printWarning(3, routine, e);
+    		}
+    	}, this.catalogRefreshInterval, this.catalogRefreshInterval, TimeUnit.MILLISECONDS);
+    	Message.printStatus(2, routine, "Datastore \"" + getName() + "\" will refresh the time series catalog every "
+    		+ (this.catalogRefreshInterval/60000.0) + " minutes.");
+    }
+
+    /**
+     * Write the time series catalog snapshot so that the next session can start without reading the full catalog.
+     * An empty catalog is not written because it is likely due to a web service error.
+     * @param tscatalogList the time series catalog to write
+     */
+    private void writeTimeSeriesCatalogSnapshot ( List<TimeSeriesCatalog> tscatalogList ) {
+    	String routine = getClass().getSimpleName() + ".writeTimeSeriesCatalogSnapshot";
+    	if ( !this.catalogSnapshotEnabled || tscatalogList.isEmpty() ) {
+    		return;
+    	}
+    	try {
+    		new TimeSeriesCatalogSnapshot(this.catalogSnapshotFile).write(tscatalogList);
+    	}
+    	catch ( Exception e ) {
+    		// The catalog in memory has already been set so only the snapshot for the next startup is out of date.
+    		Message.printWarning(2, routine, "Error writing time series catalog snapshot \""
+    			+ this.catalogSnapshotFile + "\" (" + e + ").");
+    		Message.printWarning(3, routine, e);
+    	}
+    }
+
+    /**
+     * Format the approximate heap usage for a time series catalog, used to evaluate memory requirements.
+     * The estimate assumes a 64-bit JVM with compressed object pointers.
+     * The strings are estimated from the distinct string dictionaries used by the catalog objects,
+     * which is normally one dictionary for the catalog version.
+     * @param tscatalogList list of time series catalog to evaluate
+     * @return a string describing the heap usage
+     */
+    private String formatTimeSeriesCatalogHeapUsage ( List<TimeSeriesCatalog> tscatalogList ) {
+    	// Object header and reference fields.
+    	final long recordBytes = 16 + 36*4;
+    	// Boxed Integer and Double objects.
+    	final long boxedIntegerBytes = 16;
+    	final long boxedDoubleBytes = 16;
+    	long bytes = 0;
+    	// Distinct dictionaries, by identity.
+    	Set<StringDictionary> dictionarySet = Collections.newSetFromMap(new IdentityHashMap<>());
+    	int notSharedCount = 0;
+    	for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+    		bytes += recordBytes;
+    		for ( Integer i : new Integer[] { tscatalog.getCatchmentId(), tscatalog.getParameterTypeId(), tscatalog.getSiteId(),
+    			tscatalog.getStationId(), tscatalog.getTsId(), tscatalog.getTsTypeId() } ) {
+    			if ( i != null ) {
+    				bytes += boxedIntegerBytes;
+    			}
+    		}
+    		if ( tscatalog.getStationLatitude() != null ) {
+    			bytes += boxedDoubleBytes;
+    		}
+    		if ( tscatalog.getStationLongitude() != null ) {
+    			bytes += boxedDoubleBytes;
+    		}
+    		StringDictionary dictionary = tscatalog.getStringDictionary();
+    		if ( dictionary == null ) {
+    			++notSharedCount;
+    		}
+    		else {
+    			dictionarySet.add(dictionary);
+    		}
+    	}
+    	StringBuilder b = new StringBuilder();
+    	b.append(tscatalogList.size() + " time series, about " + (bytes/1024) + " KB for objects");
+    	if ( !dictionarySet.isEmpty() ) {
+    		// Strings that are shared are in the dictionaries, including the dictionary maps.
+    		long stringBytes = 0;
+    		for ( StringDictionary dictionary : dictionarySet ) {
+    			stringBytes += dictionary.getHeapBytes();
+    		}
+    		b.append(", " + (stringBytes/1024) + " KB for strings in " + dictionarySet.size() + " dictionar"
+    			+ (dictionarySet.size() == 1 ? "y" : "ies"));
+    		if ( dictionarySet.size() == 1 ) {
+    			b.append(" (" + dictionarySet.iterator().next().formatUsage() + ")");
+    		}
+    	}
+    	if ( notSharedCount > 0 ) {
+    		b.append(", strings are not shared for " + notSharedCount + " time series");
+    	}
+    	return b.toString();
+    }
+
+    /**
+     * Set the cached time series catalog, which creates a new index.
+     * The index is created before it is set so that readers see the previous or new catalog, never a partial catalog.
+     * @param tscatalogList the time series catalog list to cache, which should not be modified after calling
+     * @param dictionary the string dictionary shared by the catalog objects
+     */
+    private void setTimeSeriesCatalog ( List<TimeSeriesCatalog> tscatalogList, StringDictionary dictionary ) {
+    	String routine = getClass().getSimpleName() + ".setTimeSeriesCatalog";
+    	TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(tscatalogList, dictionary);
+    	// Create the spatial index before the catalog is used so that the first spatial query is fast.
+    	index.getSpatialIndex();
+    	this.tscatalogIndex = index;
+    	this.tscatalogHeapUsage = formatTimeSeriesCatalogHeapUsage(tscatalogList);
+    	Message.printStatus(2, routine, "Time series catalog heap usage: " + this.tscatalogHeapUsage);
+    	if ( (this.globalDataStatus == GlobalDataStatus.FAILED) && !tscatalogList.isEmpty() ) {
+    		// Reading global data failed but a later read was successful so the cached catalog can be used.
+    		this.globalDataStatus = GlobalDataStatus.READY;
+    		setStatus(0);
+    		setStatusMessage("");
+    		Message.printStatus(2, routine, "Global data for datastore \"" + getName() + "\" are now ready.");
+    	}
     }
 
     /**
@@ -0,0 +1,336 @@
+// QualityFlagTable - map quality codes to time series data flags
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import RTi.Util.String.StringUtil;
+
+/**
+ * Map quality codes to TSTool data flags using precomputed arrays, so that a flag lookup is an array load.
+ * The following quality code forms are handled:
+ * <ul>
+ * <li> integer quality code (e.g., 200), mapped using a dense array for codes 0 to MAX_DENSE_CODE,
+ *      only if in canonical decimal form without a sign or leading zeros
+ *      (other forms such as "0200" are not changed)</li>
+ * <li> MADIS data descriptor (DD), a single character:
+ *      Z (preliminary, no QC), C (coarse pass), S (screened), V (verified), X (rejected),
+ *      Q (questioned), G (subjective good), B (subjective bad)</li>
+ * <li> MADIS data descriptor followed by the QC applied (QCA) and QC results (QCR) bitmasks,
+ *      separated by slashes (e.g., "Q/127/16").  Checks that were applied and failed are mapped to a flag
+ *      for each check, using a dense array indexed by the failed check bits.</li>
+ * </ul>
+ * By default, the flag is the quality code itself, including the "D/qca/qcr" form, so that flags are the raw quality codes.
+ * The mappings can be configured for each datastore.
+ * If the data descriptor or QC bit mapping is configured, the "D/qca/qcr" form is decoded to the data descriptor flag
+ * followed by the flags for failed QC checks (e.g., "Q/127/16" is "Qt" using the default QC bit flags).
+ * Flags are interned so that one string is used for each distinct flag.
+ */
+public class QualityFlagTable {
+
+	/**
+	 * Largest integer quality code that is mapped using the dense array.
+	 */
+	public static final int MAX_DENSE_CODE = 1023;
+
+	/**
+	 * Number of QC bits that are mapped, which includes the MADIS QCA/QCR bits:
+	 * <ul>
+	 * <li> 0 - master (any check)</li>
+	 * <li> 1 - validity</li>
+	 * <li> 2 - reserved</li>
+	 * <li> 3 - internal consistency</li>
+	 * <li> 4 - temporal consistency</li>
+	 * <li> 5 - statistical spatial consistency</li>
+	 * <li> 6 - spatial consistency</li>
+	 * <li> 7 - forecast model consistency</li>
+	 * <li> 8 - statistical model consistency</li>
+	 * </ul>
+	 */
+	public static final int QC_BIT_COUNT = 9;
+
+	/**
+	 * Default flags for each QC bit, appended when the check was applied and failed,
+	 * if the "D/qca/qcr" form is decoded.
+	 * The master bit is not used because it duplicates the other bits.
+	 */
+	private static final String [] DEFAULT_QC_BIT_FLAGS = { "", "v", "", "i", "t", "s", "b", "f", "m" };
+
+	/**
+	 * Flags for integer quality codes.
+	 */
+	private final String [] codeFlags = new String[MAX_DENSE_CODE + 1];
+
+	/**
+	 * Flags for integer quality codes outside the dense array.
+	 */
+	private final Map<Integer,String> sparseCodeFlags = new HashMap<>();
+
+	/**
+	 * Flags for data descriptors, indexed by character.
+	 */
+	private final String [] descriptorFlags = new String[128];
+
+	/**
+	 * Flags for each QC bit.
+	 */
+	private final String [] qcBitFlags = DEFAULT_QC_BIT_FLAGS.clone();
+
+	/**
+	 * Flags for failed QC checks, indexed by the failed bits.
+	 */
+	private final String [] qcFailedFlags = new String[1 << QC_BIT_COUNT];
+
+	/**
+	 * Whether the "D/qca/qcr" form is decoded, otherwise the quality code is used as the flag.
+	 */
+	private final boolean decodeQc;
+
+	/**
+	 * Interned flags.
+	 */
+	private final Map<String,String> flagMap = new HashMap<>();
+
+	/**
+	 * Create a table with default mappings.
+	 */
+	public QualityFlagTable () {
+		this ( null, null, null );
+	}
+
+	/**
+	 * Create a table with configured mappings.
+	 * Each mapping is a comma-separated list of code:flag pairs, for example "200:,40:E".
+	 * An empty flag results in no flag.
+	 * @param codeFlags mapping for integer quality codes, or null to use the code as the flag
+	 * @param descriptorFlags mapping for data descriptors, or null to use the descriptor as the flag
+	 * @param qcBitFlags mapping for QC bit number (0+) to the flag appended for a failed check, or null for defaults
+	 * (the "D/qca/qcr" form is only decoded if descriptorFlags or qcBitFlags is specified)
+	 * @exception IllegalArgumentException if a mapping is invalid
+	 */
+	public QualityFlagTable ( String codeFlags, String descriptorFlags, String qcBitFlags ) {
+		this.decodeQc = ((descriptorFlags != null) && !descriptorFlags.trim().isEmpty())
+			|| ((qcBitFlags != null) && !qcBitFlags.trim().isEmpty());
+		// Default integer code flags are the code.
+		for ( int code = 0; code <= MAX_DENSE_CODE; code++ ) {
+			this.codeFlags[code] = intern(String.valueOf(code));
+		}
+		// Default data descriptor flags are the descriptor.
+		for ( int c = 0; c < this.descriptorFlags.length; c++ ) {
+			if ( Character.isLetterOrDigit(c) ) {
+				this.descriptorFlags[c] = intern(String.valueOf((char)c));
+			}
+		}
+		for ( String [] pair : parseMapping(codeFlags, "QualityCodeFlags") ) {
+			int code;
+			try {
+				code = Integer.parseInt(pair[0]);
+			}
+			catch ( NumberFormatException e ) {
+				throw new IllegalArgumentException("Invalid quality code \"" + pair[0] + "\" in QualityCodeFlags.");
+			}
+			if ( (code >= 0) && (code <= MAX_DENSE_CODE) ) {
+				this.codeFlags[code] = intern(pair[1]);
+			}
+			else {
+				this.sparseCodeFlags.put(code, intern(pair[1]));
+			}
+		}
+		for ( String [] pair : parseMapping(descriptorFlags, "DataDescriptorFlags") ) {
+			if ( (pair[0].length() != 1) || (pair[0].charAt(0) >= this.descriptorFlags.length) ) {
+				throw new IllegalArgumentException("Invalid data descriptor \"" + pair[0] + "\" in DataDescriptorFlags.");
+			}
+			this.descriptorFlags[pair[0].charAt(0)] = intern(pair[1]);
+		}
+		for ( String [] pair : parseMapping(qcBitFlags, "QcBitFlags") ) {
+			int bit = -1;
+			try {
+				bit = Integer.parseInt(pair[0]);
+			}
+			catch ( NumberFormatException e ) {
+				// Handled below.
+			}
+			if ( (bit < 0) || (bit >= QC_BIT_COUNT) ) {
+				throw new IllegalArgumentException("Invalid QC bit \"" + pair[0] + "\" in QcBitFlags (must be 0-"
+					+ (QC_BIT_COUNT - 1) + ").");
+			}
+			this.qcBitFlags[bit] = pair[1];
+		}
+		// Flags for each combination of failed checks.
+		for ( int failed = 0; failed < this.qcFailedFlags.length; failed++ ) {
+			StringBuilder b = new StringBuilder();
+			for ( int bit = 0; bit < QC_BIT_COUNT; bit++ ) {
+				if ( (failed & (1 << bit)) != 0 ) {
+					b.append(this.qcBitFlags[bit]);
+				}
+			}
+			this.qcFailedFlags[failed] = intern(b.toString());
+		}
+	}
+
+	/**
+	 * Return the flag for an integer quality code.
+	 * @param code integer quality code
+	 * @return the flag for the code
+	 */
+	public String getCodeFlag ( int code ) {
+		if ( (code >= 0) && (code <= MAX_DENSE_CODE) ) {
+			return this.codeFlags[code];
+		}
+		String flag = this.sparseCodeFlags.get(code);
+		if ( flag == null ) {
+			return String.valueOf(code);
+		}
+		return flag;
+	}
+
+	/**
+	 * Return the flag for a data descriptor.
+	 * @param descriptor data descriptor character
+	 * @return the flag for the data descriptor, or null if not a known descriptor
+	 */
+	public String getDescriptorFlag ( char descriptor ) {
+		if ( descriptor < this.descriptorFlags.length ) {
+			return this.descriptorFlags[descriptor];
+		}
+		return null;
+	}
+
+	/**
+	 * Return the flag for QC checks that were applied and failed.
+	 * @param qca QC applied bitmask
+	 * @param qcr QC results bitmask, where a set bit indicates that the check failed
+	 * @return the flag for the failed checks, empty if no checks failed
+	 */
+	public String getQcFlag ( int qca, int qcr ) {
+		return this.qcFailedFlags[qca & qcr & ((1 << QC_BIT_COUNT) - 1)];
+	}
+
+	/**
+	 * Intern a flag so that one string is used for each distinct flag.
+	 * This is synchronized because lookup() can be called by concurrent reads.
+	 */
+	private synchronized String intern ( String flag ) {
+		String interned = this.flagMap.get(flag);
+		if ( interned == null ) {
+			this.flagMap.put(flag, flag);
+			interned = flag;
+		}
+		return interned;
+	}
+
+	/**
+	 * Return whether a string is an integer in canonical decimal form,
+	 * all digits without a sign or leading zeros, so that the integer converted back to a string is the same.
+	 */
+	private static boolean isCanonicalInteger ( String s ) {
+		if ( (s.length() > 1) && (s.charAt(0) == '0') ) {
+			return false;
+		}
+		for ( int i = 0; i < s.length(); i++ ) {
+			char c = s.charAt(i);
+			if ( (c < '0') || (c > '9') ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the flag for a quality code string.
+	 * This is typically called once for each distinct quality code in a response.
+	 * @param qualityCode quality code string
+	 * @return the flag for the quality code, or the quality code if not recognized
+	 */
+	public String lookup ( String qualityCode ) {
+		if ( (qualityCode == null) || qualityCode.isEmpty() ) {
+			return qualityCode;
+		}
+		char c = qualityCode.charAt(0);
+		if ( (c >= '0') && (c <= '9') ) {
+			if ( !isCanonicalInteger(qualityCode) ) {
+				// Integer form would change the quality code, for example "0200" to "200".
+				return qualityCode;
+			}
+			try {
+				return getCodeFlag(Integer.parseInt(qualityCode));
+			}
+			catch ( NumberFormatException e ) {
+				return qualityCode;
+			}
+		}
+		if ( (qualityCode.length() == 1) || (qualityCode.charAt(1) == '/') ) {
+			String flag = getDescriptorFlag(c);
+			if ( flag == null ) {
+				return qualityCode;
+			}
+			if ( qualityCode.length() == 1 ) {
+				return flag;
+			}
+			if ( !this.decodeQc ) {
+				return qualityCode;
+			}
+			// Data descriptor followed by QCA/QCR.
+			int pos = qualityCode.indexOf('/', 2);
+			if ( pos < 0 ) {
+				return qualityCode;
+			}
+			try {
+				int qca = Integer.parseInt(qualityCode.substring(2, pos));
+				int qcr = Integer.parseInt(qualityCode.substring(pos + 1));
+				String qcFlag = getQcFlag(qca, qcr);
+				return qcFlag.isEmpty() ? flag : intern(flag + qcFlag);
+			}
+			catch ( NumberFormatException e ) {
+				return qualityCode;
+			}
+		}
+		return qualityCode;
+	}
+
+	/**
+	 * Parse a mapping string "code:flag,code:flag".
+	 * @param mapping mapping string, can be null or empty
+	 * @param propName property name for error messages
+	 * @return list of code and flag pairs
+	 */
+	private static List<String[]> parseMapping ( String mapping, String propName ) {
+		List<String[]> pairs = new ArrayList<>();
+		if ( (mapping == null) || mapping.trim().isEmpty() ) {
+			return pairs;
+		}
+		List<String> parts = StringUtil.breakStringList(mapping, ",", 0);
+		for ( String part : parts ) {
+			int pos = part.indexOf(':');
+			if ( pos < 0 ) {
+				throw new IllegalArgumentException("Invalid mapping \"" + part + "\" in " + propName
+					+ " (expecting code:flag).");
+			}
+			pairs.add(new String[] { part.substring(0, pos).trim(), part.substring(pos + 1).trim() });
+		}
+		return pairs;
+	}
+}
@@ -0,0 +1,177 @@
+// RegularIntervalValueTransfer - transfer buffered values to a regular interval time series
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import RTi.TS.TS;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+
+/**
+ * Transfer buffered time series values to a regular interval time series.
+ * Interval positions are computed arithmetically from the local time of each value and the time series start,
+ * rather than creating and adjusting a DateTime for each value.
+ * Values are set in the time series in buffer order, which is time order as returned by the web service,
+ * using a single DateTime that is moved by the number of intervals from the previous value,
+ * so that no DateTime or period-length arrays are created.
+ * The timestamp adjustments are done by TimeSeriesValueTimeAdjuster, the same as the time series period,
+ * and the transfer can only be used if TimeSeriesValueTimeAdjuster.isLocalMillisSupported() returns true.
+ */
+public class RegularIntervalValueTransfer {
+
+	/**
+	 * Adjuster for the value timestamps.
+	 */
+	private final TimeSeriesValueTimeAdjuster timeAdjuster;
+
+	/**
+	 * Number of values that were shifted to the end of the interval.
+	 */
+	private int timeAdjustCount = 0;
+
+	/**
+	 * Number of 1Day values with non-zero hour.
+	 */
+	private int dayNonZeroHourCount = 0;
+
+	/**
+	 * Number of values that were not inserted because they are outside the period.
+	 */
+	private int notInsertedCount = 0;
+
+	/**
+	 * Number of errors setting values.
+	 */
+	private int valueErrorCount = 0;
+
+	/**
+	 * Create a transfer.
+	 * @param timeAdjuster adjuster for the value timestamps, which was also used to set the time series period
+	 */
+	public RegularIntervalValueTransfer ( TimeSeriesValueTimeAdjuster timeAdjuster ) {
+		if ( !timeAdjuster.isLocalMillisSupported() ) {
+			throw new IllegalArgumentException ( "Time adjuster does not support local time - cannot transfer values." );
+		}
+		this.timeAdjuster = timeAdjuster;
+	}
+
+	/**
+	 * Return the number of 1Day values with non-zero hour.
+	 * @return the number of 1Day values with non-zero hour
+	 */
+	public int getDayNonZeroHourCount () {
+		return this.dayNonZeroHourCount;
+	}
+
+	/**
+	 * Return the number of values that were not inserted because they are outside the period.
+	 * @return the number of values that were not inserted
+	 */
+	public int getNotInsertedCount () {
+		return this.notInsertedCount;
+	}
+
+	/**
+	 * Return the number of values that were shifted to the end of the interval.
+	 * @return the number of values that were shifted to the end of the interval
+	 */
+	public int getTimeAdjustCount () {
+		return this.timeAdjustCount;
+	}
+
+	/**
+	 * Return the number of errors setting values.
+	 * @return the number of errors setting values
+	 */
+	public int getValueErrorCount () {
+		return this.valueErrorCount;
+	}
+
+	/**
+	 * Transfer values to the time series.
+	 * The time series period must have been set and the data space allocated.
+	 * @param ts time series to receive values, with interval that has fixed length
+	 * @param valueBuffer buffered values
+	 * @param duration duration passed to setDataValue()
+	 */
+	public void transfer ( TS ts, TimeSeriesValueBuffer valueBuffer, int duration ) {
+		String routine = getClass().getSimpleName() + ".transfer";
+		int intervalBaseOut = ts.getDataIntervalBase();
+		int intervalMultOut = ts.getDataIntervalMult();
+		long intervalMillisOut = TimeSeriesValueTimeAdjuster.getIntervalMillis(intervalBaseOut, intervalMultOut);
+		if ( intervalMillisOut <= 0 ) {
+			throw new IllegalArgumentException ( "Time series interval does not have fixed length - cannot transfer values." );
+		}
+		DateTime date1 = ts.getDate1();
+		long startMillis = TimestampDecoder.toLocalMillis(date1);
+		long endMillis = TimestampDecoder.toLocalMillis(ts.getDate2());
+		if ( endMillis < startMillis ) {
+			this.notInsertedCount += valueBuffer.size();
+			return;
+		}
+		long positionCount = (endMillis - startMillis)/intervalMillisOut + 1;
+
+		// Set the values in the time series:
+		// - the date/time is at 'dateTimePosition' intervals after the start
+		// - positions without values (gaps) are not set and remain missing
+		// - if more than one value has the same position, the last value is used because it is set last
+		DateTime dateTime = new DateTime(date1);
+		long dateTimePosition = 0;
+		int valueCount = valueBuffer.size();
+		for ( int i = 0; i < valueCount; i++ ) {
+			long localMillis = TimestampDecoder.toLocalMillis(valueBuffer.getEpochMillis(i), valueBuffer.getOffsetMinutes(i));
+			long adjustedMillis = this.timeAdjuster.adjustForInterpolationType(localMillis, valueBuffer.getInterpolationType(i));
+			if ( adjustedMillis != localMillis ) {
+				++this.timeAdjustCount;
+			}
+			if ( this.timeAdjuster.isDayNonZeroHour(adjustedMillis) ) {
+				++this.dayNonZeroHourCount;
+			}
+			adjustedMillis = this.timeAdjuster.adjustForOutputInterval(adjustedMillis);
+			long position = Math.floorDiv(adjustedMillis - startMillis, intervalMillisOut);
+			if ( (position < 0) || (position >= positionCount) ) {
+				// Outside the period.
+				++this.notInsertedCount;
+				continue;
+			}
+			try {
+				if ( position != dateTimePosition ) {
+					// Usually the next interval, or a later interval if values are missing.
+					dateTime.addInterval(intervalBaseOut, (int)(intervalMultOut*(position - dateTimePosition)));
+					dateTimePosition = position;
+				}
+				if ( ts.setDataValue(dateTime, valueBuffer.getValue(i), valueBuffer.getDataFlag(i), duration) == 0 ) {
+					++this.notInsertedCount;
+				}
+			}
+			catch ( Throwable e ) {
+				// Catch a Throwable:
+				// - if the plugin code and TSTool code are incompatible, may get unexpected errors
+				++this.valueErrorCount;
+				Message.printWarning(3, routine, "  Error processing value (" + e + ")." );
+				if ( this.valueErrorCount <= 50 ) {
+					Message.printWarning(3, routine, e );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,207 @@
+// SingleFlight - share one load between concurrent callers that request the same key
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * De-duplicate concurrent requests for the same data, for example the same catalog or time series,
+ * so that one caller (the leader) loads the data and concurrent callers with the same key wait for and share the result.
+ * Results are not saved after the load completes, so a later request for the same key loads the data again.
+ * If the result can be modified by callers, a copier is used to give each waiting caller its own copy,
+ * which is made by the leader before the leader returns its result, so that the result is not modified while copying.
+ * If the load fails, all callers for the key receive the error.
+ * @param <K> key type, typically a normalized request URL or logical key
+ * @param <V> result type
+ */
+public class SingleFlight<K,V> {
+
+	/**
+	 * Load the data for a key.
+	 * @param <V> result type
+	 * @param <E> exception type thrown by the load
+	 */
+	public interface Loader<V, E extends Exception> {
+		/**
+		 * Load the data.
+		 * @return the result
+		 * @exception E if the load fails
+		 */
+		V load () throws E;
+	}
+
+	/**
+	 * Load that is in progress for a key.
+	 */
+	private static class Call<V> {
+		/**
+		 * Results for the waiting callers, completed by the leader.
+		 */
+		private final CompletableFuture<List<V>> results = new CompletableFuture<>();
+
+		/**
+		 * Number of waiting callers, guarded by the calls map.
+		 */
+		private int waiterCount = 0;
+
+		/**
+		 * Index of the next result to give to a waiting caller.
+		 */
+		private final AtomicInteger resultIndex = new AtomicInteger();
+	}
+
+	/**
+	 * Loads that are in progress, by key.
+	 */
+	private final Map<K,Call<V>> calls = new HashMap<>();
+
+	/**
+	 * Copier for the results given to waiting callers, or null to share the result.
+	 */
+	private final UnaryOperator<V> copier;
+
+	/**
+	 * Number of requests that shared a load rather than loading.
+	 */
+	private final AtomicInteger sharedCount = new AtomicInteger();
+
+	/**
+	 * Create a single flight group.
+	 * @param copier function to copy the result for each waiting caller,
+	 * or null to give all callers the same result (for results that are not modified)
+	 */
+	public SingleFlight ( UnaryOperator<V> copier ) {
+		this.copier = copier;
+	}
+
+	/**
+	 * Return the result for a key, loading the data if a load is not already in progress for the key,
+	 * or waiting for the load in progress.
+	 * @param key key for the request
+	 * @param loader loader for the data, which is only called if a load is not already in progress
+	 * @param <E> exception type thrown by the load
+	 * @return the result
+	 * @exception E if the load fails
+	 */
+	public <E extends Exception> V execute ( K key, Loader<V,E> loader ) throws E {
+		Call<V> call;
+		boolean isLeader = false;
+		synchronized ( this.calls ) {
+			call = this.calls.get(key);
+			if ( call == null ) {
+				call = new Call<>();
+				this.calls.put(key, call);
+				isLeader = true;
+			}
+			else {
+				++call.waiterCount;
+			}
+		}
+		if ( isLeader ) {
+			return load ( key, call, loader );
+		}
+		this.sharedCount.incrementAndGet();
+		return await ( call );
+	}
+
+	/**
+	 * Wait for the result of a load that is in progress.
+	 * @param call load that is in progress
+	 * @return the result for this caller
+	 * @exception E if the load failed
+	 */
+	@SuppressWarnings("unchecked")
+	private <E extends Exception> V await ( Call<V> call ) throws E {
+		List<V> results;
+		try {
+			results = call.results.join();
+		}
+		catch ( CompletionException e ) {
+			Throwable cause = (e.getCause() == null) ? e : e.getCause();
+			if ( cause instanceof RuntimeException ) {
+				throw (RuntimeException)cause;
+			}
+			else if ( cause instanceof Error ) {
+				throw (Error)cause;
+			}
+			// Otherwise the exception was thrown by the loader, which can only throw E.
+			throw (E)cause;
+		}
+		return results.get(call.resultIndex.getAndIncrement());
+	}
+
+	/**
+	 * Return the number of requests that shared a load rather than loading.
+	 * @return the number of requests that shared a load
+	 */
+	public int getSharedCount () {
+		return this.sharedCount.get();
+	}
+
+	/**
+	 * Load the data as the leader for a key and provide the results for waiting callers.
+	 * @param key key for the request
+	 * @param call load that is in progress
+	 * @param loader loader for the data
+	 * @return the result for the leader
+	 * @exception E if the load fails
+	 */
+	private <E extends Exception> V load ( K key, Call<V> call, Loader<V,E> loader ) throws E {
+		V result;
+		try {
+			result = loader.load();
+		}
+		catch ( Throwable t ) {
+			synchronized ( this.calls ) {
+				this.calls.remove(key);
+			}
+			call.results.completeExceptionally(t);
+			throw t;
+		}
+		// Remove the call so that no more callers wait, and make a result for each waiting caller.
+		int waiterCount;
+		synchronized ( this.calls ) {
+			this.calls.remove(key);
+			waiterCount = call.waiterCount;
+		}
+		List<V> results = new ArrayList<>(waiterCount);
+		try {
+			for ( int i = 0; i < waiterCount; i++ ) {
+				results.add((this.copier == null) ? result : this.copier.apply(result));
+			}
+		}
+		catch ( RuntimeException | Error e ) {
+			call.results.completeExceptionally(e);
+			throw e;
+		}
+		call.results.complete(results);
+		return result;
+	}
+}
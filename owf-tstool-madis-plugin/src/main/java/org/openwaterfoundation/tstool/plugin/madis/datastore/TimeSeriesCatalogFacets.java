@@ -0,0 +1,395 @@
+// TimeSeriesCatalogFacets - distinct values from the time series catalog, used for UI choices
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import RTi.Util.Time.TimeInterval;
+
+/**
+ * Distinct values (facets) from the time series catalog, used for input filter choices.
+ * The facets are determined in one pass over the catalog using hash sets and are then sorted.
+ * An instance is created once for each catalog version (see TimeSeriesCatalogIndex.getFacets())
+ * so that opening or refreshing the input filter panel does not reprocess the catalog.
+ * The facets also include cross-facet choices used by the TSTool data type, interval, and statistic choices
+ * (data type is stationparameter_no and statistic is ts_shortname), so that the choices are looked up
+ * rather than determined from the catalog each time a choice is changed.
+ * Data interval choices are sorted by interval duration and other choices are sorted alphabetically.
+ * The lists cannot be modified.
+ */
+public class TimeSeriesCatalogFacets {
+
+	/**
+	 * Wildcard (all values) in the choices.
+	 */
+	private static final String WILDCARD = "*";
+
+	/**
+	 * Key used for all values in the cross-facet maps,
+	 * which contains a NUL character so that it cannot be the same as a catalog value.
+	 */
+	private static final String ALL_KEY = "\0*";
+
+	/**
+	 * Separator for the parts of a statistic choices key, which cannot be in a catalog value.
+	 */
+	private static final char KEY_SEPARATOR = '\0';
+
+	/**
+	 * Order for data intervals:  regular intervals by increasing duration (e.g., 15Minute, 1Hour, 6Hour, 1Day),
+	 * then irregular intervals, then intervals that cannot be parsed (e.g., "Unknown"), using alphabetical order for ties.
+	 */
+	private static final Comparator<String> DATA_INTERVAL_ORDER =
+		Comparator.comparingLong(TimeSeriesCatalogFacets::getDataIntervalOrder).thenComparing(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * Data interval choices for each data type, including the wildcard.
+	 */
+	private final Map<String,Choices> dataTypeIntervalChoices;
+
+	/**
+	 * Data type choices for each data interval, including the wildcard.
+	 */
+	private final Map<String,Choices> intervalDataTypeChoices;
+
+	/**
+	 * Statistic choices for each data type and data interval (see createStatisticKey()), including wildcards.
+	 */
+	private final Map<String,Choices> statisticChoices;
+
+	/**
+	 * Distinct station_id values.
+	 */
+	private final List<String> stationIdChoices;
+
+	/**
+	 * Distinct station_name values.
+	 */
+	private final List<String> stationNameChoices;
+
+	/**
+	 * Distinct station_no values.
+	 */
+	private final List<String> stationNoChoices;
+
+	/**
+	 * Distinct stationparameter_name values.
+	 */
+	private final List<String> stationParameterNameChoices;
+
+	/**
+	 * Distinct ts_id values.
+	 */
+	private final List<String> tsIdChoices;
+
+	/**
+	 * Distinct ts_name values.
+	 */
+	private final List<String> tsNameChoices;
+
+	/**
+	 * Distinct ts_path values.
+	 */
+	private final List<String> tsPathChoices;
+
+	/**
+	 * Distinct ts_shortname values.
+	 */
+	private final List<String> tsShortNameChoices;
+
+	/**
+	 * Create the facets from a list of time series catalog.
+	 * @param tscatalogList list of time series catalog to process
+	 */
+	public TimeSeriesCatalogFacets ( List<TimeSeriesCatalog> tscatalogList ) {
+		Set<String> stationIdSet = new HashSet<>();
+		Set<String> stationNameSet = new HashSet<>();
+		Set<String> stationNoSet = new HashSet<>();
+		Set<String> stationParameterNameSet = new HashSet<>();
+		Set<String> tsIdSet = new HashSet<>();
+		Set<String> tsNameSet = new HashSet<>();
+		Set<String> tsPathSet = new HashSet<>();
+		Set<String> tsShortNameSet = new HashSet<>();
+		Map<String,Set<String>> dataTypeIntervalSets = new HashMap<>();
+		Map<String,Set<String>> intervalDataTypeSets = new HashMap<>();
+		Map<String,Set<String>> statisticSets = new HashMap<>();
+		// Always include the keys for all values so that lookups for all values work with an empty catalog.
+		dataTypeIntervalSets.put(ALL_KEY, new HashSet<>());
+		intervalDataTypeSets.put(ALL_KEY, new HashSet<>());
+		statisticSets.put(createStatisticKey(ALL_KEY, ALL_KEY), new HashSet<>());
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			if ( tscatalog.getStationId() != null ) {
+				stationIdSet.add("" + tscatalog.getStationId());
+			}
+			addIfNotNull(stationNameSet, tscatalog.getStationName());
+			addIfNotNull(stationNoSet, tscatalog.getStationNo());
+			addIfNotNull(stationParameterNameSet, tscatalog.getStationParameterName());
+			if ( tscatalog.getTsId() != null ) {
+				tsIdSet.add("" + tscatalog.getTsId());
+			}
+			addIfNotNull(tsNameSet, tscatalog.getTsName());
+			addIfNotNull(tsPathSet, tscatalog.getTsPath());
+			addIfNotNull(tsShortNameSet, tscatalog.getTsShortName());
+
+			// Cross-facet values, added for the specific value and for all values.
+			String dataType = tscatalog.getStationParameterNo();
+			String dataInterval = tscatalog.getDataInterval();
+			String statistic = tscatalog.getTsShortName();
+			if ( (dataType != null) && (dataInterval != null) ) {
+				for ( String dataTypeKey : new String[] { dataType, ALL_KEY } ) {
+					dataTypeIntervalSets.computeIfAbsent(dataTypeKey, k -> new HashSet<>()).add(dataInterval);
+				}
+				for ( String intervalKey : new String[] { dataInterval, ALL_KEY } ) {
+					intervalDataTypeSets.computeIfAbsent(intervalKey, k -> new HashSet<>()).add(dataType);
+				}
+				if ( statistic != null ) {
+					for ( String dataTypeKey : new String[] { dataType, ALL_KEY } ) {
+						for ( String intervalKey : new String[] { dataInterval, ALL_KEY } ) {
+							statisticSets.computeIfAbsent(createStatisticKey(dataTypeKey, intervalKey), k -> new HashSet<>()).add(statistic);
+						}
+					}
+				}
+			}
+		}
+		this.stationIdChoices = toSortedList(stationIdSet);
+		this.stationNameChoices = toSortedList(stationNameSet);
+		this.stationNoChoices = toSortedList(stationNoSet);
+		this.stationParameterNameChoices = toSortedList(stationParameterNameSet);
+		this.tsIdChoices = toSortedList(tsIdSet);
+		this.tsNameChoices = toSortedList(tsNameSet);
+		this.tsPathChoices = toSortedList(tsPathSet);
+		this.tsShortNameChoices = toSortedList(tsShortNameSet);
+		this.dataTypeIntervalChoices = toChoicesMap(dataTypeIntervalSets, DATA_INTERVAL_ORDER);
+		this.intervalDataTypeChoices = toChoicesMap(intervalDataTypeSets, String.CASE_INSENSITIVE_ORDER);
+		this.statisticChoices = toChoicesMap(statisticSets, String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Empty choices, used when there are no matches.
+	 */
+	private static final Choices NO_CHOICES = new Choices(Collections.emptyList(), String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * Sorted choices, with and without wildcards.
+	 */
+	private static class Choices {
+		/**
+		 * Sorted choices.
+		 */
+		final List<String> choices;
+
+		/**
+		 * Sorted choices with "*" at the end, and also at the front if there are other choices.
+		 */
+		final List<String> choicesWithWildcards;
+
+		Choices ( Collection<String> values, Comparator<String> order ) {
+			this.choices = toSortedList(values, order);
+			List<String> list = new ArrayList<>(this.choices.size() + 2);
+			if ( !this.choices.isEmpty() ) {
+				list.add(WILDCARD);
+			}
+			list.addAll(this.choices);
+			list.add(WILDCARD);
+			this.choicesWithWildcards = Collections.unmodifiableList(list);
+		}
+
+		List<String> get ( boolean includeWildcards ) {
+			return includeWildcards ? this.choicesWithWildcards : this.choices;
+		}
+	}
+
+	/**
+	 * Add a value to a set if not null.
+	 */
+	private static void addIfNotNull ( Set<String> set, String value ) {
+		if ( value != null ) {
+			set.add(value);
+		}
+	}
+
+	/**
+	 * Create the key for the statistic choices map.
+	 */
+	private static String createStatisticKey ( String dataType, String dataInterval ) {
+		return dataType + KEY_SEPARATOR + dataInterval;
+	}
+
+	/**
+	 * Return the data interval choices for a data type.
+	 * @param dataType data type (stationparameter_no), or null, empty, or "*" for all data types
+	 * @param includeWildcards whether to include "*" at the end of the list, and also at the front if not empty
+	 * @return the data interval choices sorted by interval duration, which cannot be modified
+	 */
+	public List<String> getDataIntervalChoices ( String dataType, boolean includeWildcards ) {
+		return lookup(this.dataTypeIntervalChoices, toKey(dataType), includeWildcards);
+	}
+
+	/**
+	 * Return the sort order for a data interval (see DATA_INTERVAL_ORDER).
+	 */
+	private static long getDataIntervalOrder ( String dataInterval ) {
+		TimeInterval interval;
+		try {
+			interval = TimeInterval.parseInterval(dataInterval);
+		}
+		catch ( Exception e ) {
+			// Sort after all intervals that can be parsed.
+			return Long.MAX_VALUE;
+		}
+		if ( !TimeInterval.isRegularInterval(interval.getBase()) ) {
+			return Long.MAX_VALUE - 1;
+		}
+		// Compare the approximate duration so that 15Minute is before 1Hour,
+		// and intervals with the same duration, such as 1Day and 24Hour, are sorted alphabetically.
+		return getIntervalSeconds(interval.getBase())*Math.max(interval.getMultiplier(), 1);
+	}
+
+	/**
+	 * Return the data type choices for a data interval.
+	 * @param dataInterval data interval, or null, empty, or "*" for all data intervals
+	 * @param includeWildcards whether to include "*" at the end of the list, and also at the front if not empty
+	 * @return the sorted data type (stationparameter_no) choices, which cannot be modified
+	 */
+	public List<String> getDataTypeChoices ( String dataInterval, boolean includeWildcards ) {
+		return lookup(this.intervalDataTypeChoices, toKey(dataInterval), includeWildcards);
+	}
+
+	/**
+	 * Return the approximate number of seconds in an interval base, used to sort intervals.
+	 */
+	private static long getIntervalSeconds ( int intervalBase ) {
+		switch ( intervalBase ) {
+			case TimeInterval.SECOND: return 1;
+			case TimeInterval.MINUTE: return 60;
+			case TimeInterval.HOUR: return 3600;
+			case TimeInterval.DAY: return 86400;
+			case TimeInterval.WEEK: return 7*86400;
+			case TimeInterval.MONTH: return 31*86400;
+			case TimeInterval.YEAR: return 366*86400;
+			default: return Long.MAX_VALUE/1000;
+		}
+	}
+
+	/**
+	 * Return the statistic choices for a data type and data interval.
+	 * @param dataType data type (stationparameter_no), or null, empty, or "*" for all data types
+	 * @param dataInterval data interval, or null, empty, or "*" for all data intervals
+	 * @param includeWildcards whether to include "*" at the end of the list, and also at the front if not empty
+	 * @return the sorted statistic (ts_shortname) choices, which cannot be modified
+	 */
+	public List<String> getStatisticChoices ( String dataType, String dataInterval, boolean includeWildcards ) {
+		return lookup(this.statisticChoices, createStatisticKey(toKey(dataType), toKey(dataInterval)), includeWildcards);
+	}
+
+	public List<String> getStationIdChoices () {
+		return this.stationIdChoices;
+	}
+
+	public List<String> getStationNameChoices () {
+		return this.stationNameChoices;
+	}
+
+	public List<String> getStationNoChoices () {
+		return this.stationNoChoices;
+	}
+
+	public List<String> getStationParameterNameChoices () {
+		return this.stationParameterNameChoices;
+	}
+
+	public List<String> getTsIdChoices () {
+		return this.tsIdChoices;
+	}
+
+	public List<String> getTsNameChoices () {
+		return this.tsNameChoices;
+	}
+
+	public List<String> getTsPathChoices () {
+		return this.tsPathChoices;
+	}
+
+	public List<String> getTsShortNameChoices () {
+		return this.tsShortNameChoices;
+	}
+
+	/**
+	 * Look up choices in a cross-facet map.
+	 */
+	private static List<String> lookup ( Map<String,Choices> map, String key, boolean includeWildcards ) {
+		Choices choices = map.get(key);
+		if ( choices == null ) {
+			// No matches so use the empty choices.
+			choices = NO_CHOICES;
+		}
+		return choices.get(includeWildcards);
+	}
+
+	/**
+	 * Convert sets of values to sorted choices.
+	 */
+	private static Map<String,Choices> toChoicesMap ( Map<String,Set<String>> setMap, Comparator<String> order ) {
+		Map<String,Choices> choicesMap = new HashMap<>(setMap.size()*4/3 + 2);
+		for ( Map.Entry<String,Set<String>> entry : setMap.entrySet() ) {
+			choicesMap.put(entry.getKey(), new Choices(entry.getValue(), order));
+		}
+		return choicesMap;
+	}
+
+	/**
+	 * Convert a requested value to a map key, using the key for all values for null, empty, and wildcard values.
+	 */
+	private static String toKey ( String value ) {
+		if ( (value == null) || value.isEmpty() || value.equals(WILDCARD) ) {
+			return ALL_KEY;
+		}
+		return value;
+	}
+
+	/**
+	 * Convert a collection of distinct values to a sorted list that cannot be modified.
+	 */
+	private static List<String> toSortedList ( Collection<String> values ) {
+		return toSortedList(values, String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Convert a collection of distinct values to a list sorted in the specified order that cannot be modified.
+	 */
+	private static List<String> toSortedList ( Collection<String> values, Comparator<String> order ) {
+		List<String> list = new ArrayList<>(values);
+		Collections.sort(list, order);
+		return Collections.unmodifiableList(list);
+	}
+}
@@ -0,0 +1,407 @@
+// TimeSeriesCatalogFilter - evaluate time series catalog queries using the cached catalog
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import RTi.Util.GUI.InputFilter;
+import RTi.Util.Message.Message;
+
+/**
+ * Filter for the cached time series catalog, used to evaluate time series list queries without web service requests.
+ * Query conditions (data type, interval, ts_id, ts_path, and input filter where clauses) are compiled into predicates
+ * once and are then evaluated for each time series in the catalog index.
+ * String comparisons ignore case, consistent with TSTool database input filters,
+ * and 'matches' and ts_path values can use * wildcards.
+ * If a condition cannot be evaluated locally, the add methods return false and the web service should be used.
+ */
+public class TimeSeriesCatalogFilter {
+
+	/**
+	 * Catalog index to filter.
+	 */
+	private final TimeSeriesCatalogIndex index;
+
+	/**
+	 * Predicates that must all be true for a time series to match.
+	 */
+	private final List<Predicate<TimeSeriesCatalog>> predicates = new ArrayList<>();
+
+	/**
+	 * If not null, the time series looked up with the index for a ts_id, ts_path, or station_no condition,
+	 * which are the only time series that need to be checked rather than all time series.
+	 */
+	private List<TimeSeriesCatalog> candidates = null;
+
+	/**
+	 * Create a filter for a catalog index.
+	 * @param index the catalog index to filter
+	 */
+	public TimeSeriesCatalogFilter ( TimeSeriesCatalogIndex index ) {
+		this.index = index;
+	}
+
+	/**
+	 * Set the candidate time series looked up with the index, if fewer than the current candidates.
+	 * The condition's predicate must also be added because the other candidates may not match all conditions.
+	 */
+	private void addCandidates ( List<TimeSeriesCatalog> candidates ) {
+		if ( (this.candidates == null) || (candidates.size() < this.candidates.size()) ) {
+			this.candidates = candidates;
+		}
+	}
+
+	/**
+	 * Add a data interval condition.
+	 * @param dataInterval data interval to match (case-insensitive), ignored if null, empty, or *
+	 */
+	public void addDataInterval ( String dataInterval ) {
+		if ( isWildcard(dataInterval) ) {
+			return;
+		}
+		this.predicates.add(tscatalog -> dataInterval.equalsIgnoreCase(tscatalog.getDataInterval()));
+	}
+
+	/**
+	 * Add a data type condition, which matches stationparameter_no, consistent with the web service query.
+	 * @param dataType data type to match (case-insensitive), ignored if null, empty, or *
+	 */
+	public void addDataType ( String dataType ) {
+		if ( isWildcard(dataType) ) {
+			return;
+		}
+		this.predicates.add(tscatalog -> dataType.equalsIgnoreCase(tscatalog.getStationParameterNo()));
+	}
+
+	/**
+	 * Add an input filter condition.
+	 * @param filter the input filter
+	 * @param operator the input filter operator, such as InputFilter.INPUT_MATCHES
+	 * @return true if the condition was added or does not need to be evaluated (no where or input),
+	 * false if the condition cannot be evaluated locally
+	 */
+	public boolean addInputFilter ( InputFilter filter, String operator ) {
+		String whereInternal = filter.getWhereInternal();
+		if ( (whereInternal == null) || whereInternal.isEmpty() ) {
+			// Blank filter.
+			return true;
+		}
+		String input = filter.getInput(false);
+		if ( input != null ) {
+			input = input.trim();
+		}
+		if ( (input == null) || input.isEmpty() ) {
+			if ( InputFilter.INPUT_IS_EMPTY.equals(operator) ) {
+				// Handled below.
+			}
+			else {
+				// No input so the filter is not used.
+				return true;
+			}
+		}
+		switch ( whereInternal ) {
+			case "station_id": return addIntegerCondition(TimeSeriesCatalog::getStationId, operator, input);
+			case "station_name": return addStringCondition(TimeSeriesCatalog::getStationName, operator, input);
+			case "station_no":
+				if ( isExactMatch(operator, input) ) {
+					addCandidates(this.index.findByStationNo(input));
+				}
+				return addStringCondition(TimeSeriesCatalog::getStationNo, operator, input);
+			case "station_within_box":
+			case "station_within_radius":
+				if ( (input == null) || input.isEmpty() ) {
+					// Operator does not apply.
+					return true;
+				}
+				return addSpatialCondition(whereInternal, input);
+			case "stationparameter_name": return addStringCondition(TimeSeriesCatalog::getStationParameterName, operator, input);
+			case "ts_id": return addIntegerCondition(TimeSeriesCatalog::getTsId, operator, input);
+			case "ts_name": return addStringCondition(TimeSeriesCatalog::getTsName, operator, input);
+			case "ts_path": return addStringCondition(TimeSeriesCatalog::getTsPath, operator, input);
+			case "ts_shortname": return addStringCondition(TimeSeriesCatalog::getTsShortName, operator, input);
+			default: return false;
+		}
+	}
+
+	/**
+	 * Add a condition for an integer value.
+	 */
+	private boolean addIntegerCondition ( Function<TimeSeriesCatalog,Integer> getter, String operator, String input ) {
+		if ( InputFilter.INPUT_IS_EMPTY.equals(operator) ) {
+			this.predicates.add(tscatalog -> getter.apply(tscatalog) == null);
+			return true;
+		}
+		final int value;
+		try {
+			value = Integer.parseInt(input);
+		}
+		catch ( NumberFormatException e ) {
+			// Let the web service handle the error.
+			return false;
+		}
+		Predicate<Integer> test;
+		if ( InputFilter.INPUT_EQUALS.equals(operator) || InputFilter.INPUT_MATCHES.equals(operator) ) {
+			test = i -> i == value;
+		}
+		else if ( InputFilter.INPUT_NOT_EQUAL.equals(operator) ) {
+			test = i -> i != value;
+		}
+		else if ( InputFilter.INPUT_GREATER_THAN.equals(operator) ) {
+			test = i -> i > value;
+		}
+		else if ( InputFilter.INPUT_GREATER_THAN_OR_EQUAL_TO.equals(operator) ) {
+			test = i -> i >= value;
+		}
+		else if ( InputFilter.INPUT_LESS_THAN.equals(operator) ) {
+			test = i -> i < value;
+		}
+		else if ( InputFilter.INPUT_LESS_THAN_OR_EQUAL_TO.equals(operator) ) {
+			test = i -> i <= value;
+		}
+		else {
+			return false;
+		}
+		this.predicates.add(tscatalog -> {
+			Integer i = getter.apply(tscatalog);
+			return (i != null) && test.test(i);
+		});
+		return true;
+	}
+
+	/**
+	 * Add a spatial condition, using the spatial index.
+	 * Invalid input is logged as a warning and no time series will match,
+	 * rather than ignoring the condition and matching the full catalog,
+	 * because the web service cannot evaluate spatial conditions.
+	 * @return true, because the condition is always evaluated locally
+	 */
+	private boolean addSpatialCondition ( String whereInternal, String input ) {
+		String routine = getClass().getSimpleName() + ".addSpatialCondition";
+		String [] parts = input.split(",");
+		double [] values = new double[parts.length];
+		for ( int i = 0; i < parts.length; i++ ) {
+			try {
+				values[i] = Double.parseDouble(parts[i].trim());
+			}
+			catch ( NumberFormatException e ) {
+				return rejectSpatialCondition(routine, "Invalid number \"" + parts[i].trim() + "\" in spatial filter input \""
+					+ input + "\"");
+			}
+		}
+		List<TimeSeriesCatalog> matches;
+		if ( whereInternal.equals("station_within_box") ) {
+			if ( values.length != 4 ) {
+				return rejectSpatialCondition(routine, "Station within box filter input \"" + input
+					+ "\" is invalid - must be MinLatitude,MinLongitude,MaxLatitude,MaxLongitude");
+			}
+			try {
+				matches = this.index.getSpatialIndex().findWithinBox(values[0], values[1], values[2], values[3]);
+			}
+			catch ( IllegalArgumentException e ) {
+				return rejectSpatialCondition(routine, "Station within box filter input \"" + input
+					+ "\" is invalid - must be MinLatitude,MinLongitude,MaxLatitude,MaxLongitude (" + e.getMessage() + ")");
+			}
+		}
+		else {
+			if ( values.length != 3 ) {
+				return rejectSpatialCondition(routine, "Station within radius filter input \"" + input
+					+ "\" is invalid - must be Latitude,Longitude,RadiusKm");
+			}
+			try {
+				matches = this.index.getSpatialIndex().findWithinRadius(values[0], values[1], values[2]);
+			}
+			catch ( IllegalArgumentException e ) {
+				return rejectSpatialCondition(routine, "Station within radius filter input \"" + input
+					+ "\" is invalid - must be Latitude,Longitude,RadiusKm (" + e.getMessage() + ")");
+			}
+		}
+		addCandidates(matches);
+		// The matches are objects from the same index so can be checked by identity.
+		Set<TimeSeriesCatalog> matchSet = Collections.newSetFromMap(new IdentityHashMap<>(matches.size()*4/3 + 1));
+		matchSet.addAll(matches);
+		this.predicates.add(matchSet::contains);
+		return true;
+	}
+
+	/**
+	 * Add a condition for a string value.
+	 */
+	private boolean addStringCondition ( Function<TimeSeriesCatalog,String> getter, String operator, String input ) {
+		Predicate<String> test;
+		if ( InputFilter.INPUT_IS_EMPTY.equals(operator) ) {
+			this.predicates.add(tscatalog -> {
+				String s = getter.apply(tscatalog);
+				return (s == null) || s.isEmpty();
+			});
+			return true;
+		}
+		else if ( InputFilter.INPUT_MATCHES.equals(operator) || InputFilter.INPUT_EQUALS.equals(operator) ) {
+			if ( input.indexOf('*') >= 0 ) {
+				Pattern pattern = createWildcardPattern(input);
+				test = s -> pattern.matcher(s).matches();
+			}
+			else {
+				test = s -> s.equalsIgnoreCase(input);
+			}
+		}
+		else if ( InputFilter.INPUT_NOT_EQUAL.equals(operator) ) {
+			test = s -> !s.equalsIgnoreCase(input);
+		}
+		else if ( InputFilter.INPUT_CONTAINS.equals(operator) ) {
+			Pattern pattern = Pattern.compile(Pattern.quote(input), Pattern.CASE_INSENSITIVE);
+			test = s -> pattern.matcher(s).find();
+		}
+		else if ( InputFilter.INPUT_STARTS_WITH.equals(operator) ) {
+			test = s -> s.regionMatches(true, 0, input, 0, input.length());
+		}
+		else if ( InputFilter.INPUT_ENDS_WITH.equals(operator) ) {
+			test = s -> s.regionMatches(true, s.length() - input.length(), input, 0, input.length());
+		}
+		else {
+			return false;
+		}
+		this.predicates.add(tscatalog -> {
+			String s = getter.apply(tscatalog);
+			return (s != null) && test.test(s);
+		});
+		return true;
+	}
+
+	/**
+	 * Add a ts_id condition.
+	 * @param tsId the ts_id to match, ignored if null
+	 */
+	public void addTsId ( Integer tsId ) {
+		if ( tsId != null ) {
+			addCandidates(toList(this.index.findByTsId(tsId)));
+			this.predicates.add(tscatalog -> tsId.equals(tscatalog.getTsId()));
+		}
+	}
+
+	/**
+	 * Add a ts_path condition.
+	 * @param tsPath the ts_path to match (case-insensitive), which can contain * wildcards, ignored if null
+	 */
+	public void addTsPath ( String tsPath ) {
+		if ( tsPath != null ) {
+			if ( isExactMatch(InputFilter.INPUT_MATCHES, tsPath) ) {
+				addCandidates(toList(this.index.findByTsPath(tsPath)));
+			}
+			addStringCondition(TimeSeriesCatalog::getTsPath, InputFilter.INPUT_MATCHES, tsPath);
+		}
+	}
+
+	/**
+	 * Create a case-insensitive regular expression pattern for a string with * wildcards.
+	 */
+	private static Pattern createWildcardPattern ( String s ) {
+		StringBuilder regex = new StringBuilder();
+		int start = 0;
+		for ( int pos = s.indexOf('*'); pos >= 0; pos = s.indexOf('*', start) ) {
+			if ( pos > start ) {
+				regex.append(Pattern.quote(s.substring(start, pos)));
+			}
+			regex.append(".*");
+			start = pos + 1;
+		}
+		if ( start < s.length() ) {
+			regex.append(Pattern.quote(s.substring(start)));
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Return the time series catalog that match all the conditions.
+	 * A new list is always returned so that the calling code can modify the list.
+	 * @return the matching time series catalog, in catalog order
+	 */
+	public List<TimeSeriesCatalog> filter () {
+		if ( this.predicates.isEmpty() ) {
+			// Copy the catalog list, which cannot be modified.
+			return new ArrayList<>(this.index.getTimeSeriesCatalogList());
+		}
+		List<TimeSeriesCatalog> candidates = this.candidates;
+		if ( candidates == null ) {
+			// No indexed condition so check all time series.
+			candidates = this.index.getTimeSeriesCatalogList();
+		}
+		List<TimeSeriesCatalog> matches = new ArrayList<>();
+		for ( TimeSeriesCatalog tscatalog : candidates ) {
+			boolean match = true;
+			for ( Predicate<TimeSeriesCatalog> predicate : this.predicates ) {
+				if ( !predicate.test(tscatalog) ) {
+					match = false;
+					break;
+				}
+			}
+			if ( match ) {
+				matches.add(tscatalog);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Return whether a string condition matches one value exactly (ignoring case), so can be looked up with the index.
+	 */
+	private static boolean isExactMatch ( String operator, String input ) {
+		return (InputFilter.INPUT_MATCHES.equals(operator) || InputFilter.INPUT_EQUALS.equals(operator))
+			&& (input != null) && !input.isEmpty() && (input.indexOf('*') < 0);
+	}
+
+	/**
+	 * Return whether a query value is a wildcard.
+	 */
+	private static boolean isWildcard ( String s ) {
+		return (s == null) || s.isEmpty() || s.equals("*");
+	}
+
+	/**
+	 * Reject a spatial condition that has invalid input, so that no time series match.
+	 * @param routine the routine for the warning message
+	 * @param message the warning message, without the trailing period
+	 * @return true, because the condition has been added
+	 */
+	private boolean rejectSpatialCondition ( String routine, String message ) {
+		Message.printWarning(2, routine, message + " - no time series will match.");
+		addCandidates(Collections.emptyList());
+		this.predicates.add(tscatalog -> false);
+		return true;
+	}
+
+	/**
+	 * Return a list containing a time series catalog, or an empty list if null.
+	 */
+	private static List<TimeSeriesCatalog> toList ( TimeSeriesCatalog tscatalog ) {
+		return (tscatalog == null) ? Collections.emptyList() : Collections.singletonList(tscatalog);
+	}
+}
@@ -0,0 +1,254 @@
+// TimeSeriesCatalogIndex - immutable index of the cached time series catalog
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Immutable index of the time series catalog, used to resolve time series identifiers without a web service request.
+ * The index is keyed by:
+ * <ul>
+ * <li> ts_id</li>
+ * <li> ts_path</li>
+ * <li> station_no</li>
+ * <li> station_no, stationparameter_no, ts_shortname, and data interval (the parts of a TSTool TSID)</li>
+ * </ul>
+ * A new index is created each time the cached catalog is replaced,
+ * so the index and its list can be shared between threads without locking.
+ */
+public class TimeSeriesCatalogIndex {
+
+	/**
+	 * Empty list returned when there are no matches.
+	 */
+	private static final List<TimeSeriesCatalog> EMPTY_LIST = Collections.emptyList();
+
+	/**
+	 * The time series catalog list that is indexed.
+	 */
+	private final List<TimeSeriesCatalog> tscatalogList;
+
+	/**
+	 * String dictionary shared by the catalog objects in this catalog version, or null if strings are not shared.
+	 */
+	private final StringDictionary dictionary;
+
+	/**
+	 * Map of ts_id to catalog.
+	 */
+	private final Map<Integer,TimeSeriesCatalog> tsIdMap;
+
+	/**
+	 * Map of upper case ts_path to catalog.
+	 */
+	private final Map<String,TimeSeriesCatalog> tsPathMap;
+
+	/**
+	 * Map of upper case station_no to catalog list.
+	 */
+	private final Map<String,List<TimeSeriesCatalog>> stationNoMap;
+
+	/**
+	 * Map of station_no, stationparameter_no, and ts_shortname to catalog list.
+	 * The list is usually one item but may include more if the same parameter is available for multiple intervals.
+	 */
+	private final Map<String,List<TimeSeriesCatalog>> stationParameterMap;
+
+	/**
+	 * Facets (distinct values) for the catalog, created when first requested.
+	 */
+	private TimeSeriesCatalogFacets facets = null;
+
+	/**
+	 * Spatial index of station locations, created when first requested.
+	 */
+	private TimeSeriesCatalogSpatialIndex spatialIndex = null;
+
+	/**
+	 * Create an index for a list of time series catalog that does not use a string dictionary.
+	 * @param tscatalogList list of time series catalog to index, which should not be modified after calling
+	 */
+	public TimeSeriesCatalogIndex ( List<TimeSeriesCatalog> tscatalogList ) {
+		this(tscatalogList, null);
+	}
+
+	/**
+	 * Create an index for a list of time series catalog.
+	 * @param tscatalogList list of time series catalog to index, which should not be modified after calling
+	 * @param dictionary string dictionary shared by the catalog objects, or null if strings are not shared,
+	 * which is used for catalog objects that are merged into the next catalog version
+	 */
+	public TimeSeriesCatalogIndex ( List<TimeSeriesCatalog> tscatalogList, StringDictionary dictionary ) {
+		this.tscatalogList = Collections.unmodifiableList(tscatalogList);
+		this.dictionary = dictionary;
+		int size = tscatalogList.size();
+		Map<Integer,TimeSeriesCatalog> tsIdMap = new HashMap<>(size*4/3 + 1);
+		Map<String,TimeSeriesCatalog> tsPathMap = new HashMap<>(size*4/3 + 1);
+		Map<String,List<TimeSeriesCatalog>> stationNoMap = new HashMap<>();
+		Map<String,List<TimeSeriesCatalog>> stationParameterMap = new HashMap<>(size*4/3 + 1);
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			if ( tscatalog.getTsId() != null ) {
+				tsIdMap.put(tscatalog.getTsId(), tscatalog);
+			}
+			if ( (tscatalog.getTsPath() != null) && !tscatalog.getTsPath().isEmpty() ) {
+				tsPathMap.put(tscatalog.getTsPath().toUpperCase(Locale.ROOT), tscatalog);
+			}
+			if ( tscatalog.getStationNo() != null ) {
+				stationNoMap.computeIfAbsent(tscatalog.getStationNo().toUpperCase(Locale.ROOT), k -> new ArrayList<>(4)).add(tscatalog);
+			}
+			stationParameterMap.computeIfAbsent(
+				createStationParameterKey(tscatalog.getStationNo(), tscatalog.getStationParameterNo(), tscatalog.getTsShortName()),
+				k -> new ArrayList<>(1)).add(tscatalog);
+		}
+		this.tsIdMap = tsIdMap;
+		this.tsPathMap = tsPathMap;
+		this.stationNoMap = stationNoMap;
+		this.stationParameterMap = stationParameterMap;
+	}
+
+	/**
+	 * Create the key for the station parameter map.
+	 */
+	private static String createStationParameterKey ( String stationNo, String stationParameterNo, String tsShortName ) {
+		return stationNo + "/" + stationParameterNo + "/" + tsShortName;
+	}
+
+	/**
+	 * Find the time series catalog matching the parts of a TSTool time series identifier.
+	 * @param stationNo station_no to match
+	 * @param stationParameterNo stationparameter_no to match
+	 * @param tsShortName ts_shortname to match
+	 * @param dataInterval data interval to match (case-insensitive), or null to match any interval
+	 * @return the matching time series catalog, guaranteed to be non-null but may be empty
+	 */
+	public List<TimeSeriesCatalog> find ( String stationNo, String stationParameterNo, String tsShortName, String dataInterval ) {
+		List<TimeSeriesCatalog> matches = this.stationParameterMap.get(createStationParameterKey(stationNo, stationParameterNo, tsShortName));
+		if ( matches == null ) {
+			return EMPTY_LIST;
+		}
+		if ( (dataInterval == null) || dataInterval.isEmpty() ) {
+			return Collections.unmodifiableList(matches);
+		}
+		List<TimeSeriesCatalog> intervalMatches = new ArrayList<>(1);
+		for ( TimeSeriesCatalog tscatalog : matches ) {
+			if ( dataInterval.equalsIgnoreCase(tscatalog.getDataInterval()) ) {
+				intervalMatches.add(tscatalog);
+			}
+		}
+		return intervalMatches;
+	}
+
+	/**
+	 * Find the time series catalog matching a station_no.
+	 * @param stationNo station_no to match (case-insensitive)
+	 * @return the matching time series catalog, guaranteed to be non-null but may be empty
+	 */
+	public List<TimeSeriesCatalog> findByStationNo ( String stationNo ) {
+		if ( stationNo == null ) {
+			return EMPTY_LIST;
+		}
+		List<TimeSeriesCatalog> matches = this.stationNoMap.get(stationNo.toUpperCase(Locale.ROOT));
+		if ( matches == null ) {
+			return EMPTY_LIST;
+		}
+		return Collections.unmodifiableList(matches);
+	}
+
+	/**
+	 * Find the time series catalog matching a ts_id.
+	 * @param tsId ts_id to match
+	 * @return the matching time series catalog, or null if not found
+	 */
+	public TimeSeriesCatalog findByTsId ( Integer tsId ) {
+		if ( tsId == null ) {
+			return null;
+		}
+		return this.tsIdMap.get(tsId);
+	}
+
+	/**
+	 * Find the time series catalog matching a ts_path.
+	 * @param tsPath ts_path to match (case-insensitive)
+	 * @return the matching time series catalog, or null if not found
+	 */
+	public TimeSeriesCatalog findByTsPath ( String tsPath ) {
+		if ( tsPath == null ) {
+			return null;
+		}
+		return this.tsPathMap.get(tsPath.toUpperCase(Locale.ROOT));
+	}
+
+	/**
+	 * Return the facets (distinct values) for the catalog, which are created the first time they are requested.
+	 * @return the facets for the catalog
+	 */
+	public synchronized TimeSeriesCatalogFacets getFacets () {
+		if ( this.facets == null ) {
+			this.facets = new TimeSeriesCatalogFacets(this.tscatalogList);
+		}
+		return this.facets;
+	}
+
+	/**
+	 * Return the spatial index of station locations, which is created the first time it is requested.
+	 * @return the spatial index of station locations
+	 */
+	public synchronized TimeSeriesCatalogSpatialIndex getSpatialIndex () {
+		if ( this.spatialIndex == null ) {
+			this.spatialIndex = new TimeSeriesCatalogSpatialIndex(this.tscatalogList);
+		}
+		return this.spatialIndex;
+	}
+
+	/**
+	 * Return the string dictionary shared by the catalog objects.
+	 * @return the string dictionary shared by the catalog objects, or null if strings are not shared
+	 */
+	public StringDictionary getStringDictionary () {
+		return this.dictionary;
+	}
+
+	/**
+	 * Return the indexed time series catalog list, which cannot be modified.
+	 * @return the indexed time series catalog list
+	 */
+	public List<TimeSeriesCatalog> getTimeSeriesCatalogList () {
+		return this.tscatalogList;
+	}
+
+	/**
+	 * Return the number of time series catalog in the index.
+	 * @return the number of time series catalog in the index
+	 */
+	public int size () {
+		return this.tscatalogList.size();
+	}
+}
@@ -0,0 +1,190 @@
+// TimeSeriesCatalogMerge - merge refreshed time series catalog partitions into a catalog
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Merge refreshed partitions of the time series catalog into an existing catalog.
+ * A partition is all time series for a stationparameter_no, which can be requested from the web service
+ * without reading the full catalog.
+ * Time series are matched using ts_id:
+ * <ul>
+ * <li> unchanged time series reuse the existing object so that memory is not reallocated</li>
+ * <li> changed time series are replaced in the same position</li>
+ * <li> added time series are appended</li>
+ * <li> time series in a refreshed partition that are not in the refreshed data are removed</li>
+ * </ul>
+ * Time series in partitions that were not refreshed are kept as is.
+ * The existing catalog is not modified, so the merged list can be swapped in as a new catalog version.
+ * The refreshed partitions should be read using the string dictionary of the existing catalog
+ * so that all objects in the merged catalog share one dictionary.
+ */
+public class TimeSeriesCatalogMerge {
+
+	/**
+	 * Merged catalog list.
+	 */
+	private final List<TimeSeriesCatalog> mergedList;
+
+	/**
+	 * Number of time series added.
+	 */
+	private int addedCount = 0;
+
+	/**
+	 * Number of time series changed.
+	 */
+	private int changedCount = 0;
+
+	/**
+	 * Number of time series removed.
+	 */
+	private int removedCount = 0;
+
+	/**
+	 * Number of time series in refreshed partitions that were unchanged.
+	 */
+	private int unchangedCount = 0;
+
+	/**
+	 * Merge refreshed partitions into a catalog.
+	 * @param tscatalogList the existing catalog, which is not modified
+	 * @param partitions the stationparameter_no partitions that were refreshed
+	 * @param partitionCatalogList the refreshed catalog for the partitions
+	 */
+	public TimeSeriesCatalogMerge ( List<TimeSeriesCatalog> tscatalogList, Collection<String> partitions,
+		List<TimeSeriesCatalog> partitionCatalogList ) {
+		Set<String> partitionSet = new HashSet<>(partitions);
+		// Refreshed catalog by ts_id, in the order read.
+		Map<Integer,TimeSeriesCatalog> refreshedMap = new LinkedHashMap<>(partitionCatalogList.size()*4/3 + 1);
+		List<TimeSeriesCatalog> refreshedNoTsId = new ArrayList<>();
+		for ( TimeSeriesCatalog tscatalog : partitionCatalogList ) {
+			if ( tscatalog.getTsId() == null ) {
+				// Should not happen but can't match so will be added.
+				refreshedNoTsId.add(tscatalog);
+			}
+			else {
+				refreshedMap.put(tscatalog.getTsId(), tscatalog);
+			}
+		}
+
+		this.mergedList = new ArrayList<>(tscatalogList.size() + partitionCatalogList.size()/10 + 1);
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			if ( !partitionSet.contains(tscatalog.getStationParameterNo()) ) {
+				// Partition was not refreshed so keep.
+				this.mergedList.add(tscatalog);
+				continue;
+			}
+			TimeSeriesCatalog refreshed = (tscatalog.getTsId() == null) ? null : refreshedMap.remove(tscatalog.getTsId());
+			if ( refreshed == null ) {
+				// No longer in the partition.
+				++this.removedCount;
+			}
+			else if ( tscatalog.hasSameValues(refreshed) ) {
+				// Reuse the existing object.
+				this.mergedList.add(tscatalog);
+				++this.unchangedCount;
+			}
+			else {
+				this.mergedList.add(refreshed);
+				++this.changedCount;
+			}
+		}
+
+		// Remaining refreshed time series are new.
+		for ( TimeSeriesCatalog tscatalog : refreshedMap.values() ) {
+			this.mergedList.add(tscatalog);
+			++this.addedCount;
+		}
+		for ( TimeSeriesCatalog tscatalog : refreshedNoTsId ) {
+			this.mergedList.add(tscatalog);
+			++this.addedCount;
+		}
+	}
+
+	/**
+	 * Format the merge counts for logging.
+	 * @return a string describing the merge
+	 */
+	public String formatCounts () {
+		return this.addedCount + " added, " + this.changedCount + " changed, " + this.removedCount + " removed, "
+			+ this.unchangedCount + " unchanged";
+	}
+
+	/**
+	 * Return the number of time series added.
+	 * @return the number of time series added
+	 */
+	public int getAddedCount () {
+		return this.addedCount;
+	}
+
+	/**
+	 * Return the number of time series changed.
+	 * @return the number of time series changed
+	 */
+	public int getChangedCount () {
+		return this.changedCount;
+	}
+
+	/**
+	 * Return the merged catalog list.
+	 * @return the merged catalog list
+	 */
+	public List<TimeSeriesCatalog> getMergedList () {
+		return this.mergedList;
+	}
+
+	/**
+	 * Return the number of time series removed.
+	 * @return the number of time series removed
+	 */
+	public int getRemovedCount () {
+		return this.removedCount;
+	}
+
+	/**
+	 * Return the number of time series in refreshed partitions that were unchanged.
+	 * @return the number of time series in refreshed partitions that were unchanged
+	 */
+	public int getUnchangedCount () {
+		return this.unchangedCount;
+	}
+
+	/**
+	 * Return whether the merge changed the catalog.
+	 * @return whether the merge changed the catalog
+	 */
+	public boolean hasChanges () {
+		return (this.addedCount + this.changedCount + this.removedCount) > 0;
+	}
+}
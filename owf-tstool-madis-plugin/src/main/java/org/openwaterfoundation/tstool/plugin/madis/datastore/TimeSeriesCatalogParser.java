@@ -0,0 +1,309 @@
+// TimeSeriesCatalogParser - streaming parser for the time series list web service response
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streaming parser for the 'getTimeseriesList' response with 'format=objson', which is similar to:
+ * <pre>
+ * [
+ *   { "station_no":"1234", "stationparameter_no":"Q", "ts_id":"957010", "ts_shortname":"15.Cmd", "ts_spacing":"PT15M", ... },
+ *   ...
+ * ]
+ * </pre>
+ * Each object is converted to a TimeSeriesCatalog as it is read, so the response is not held in memory as a tree.
+ * Strings are shared between the catalog objects using a StringDictionary.
+ * An error response is an object similar to:
+ * <pre>
+ * { "type":"error", "code":"InvalidParameterValue", "message":"..." }
+ * </pre>
+ */
+public class TimeSeriesCatalogParser {
+
+	/**
+	 * Factory for JSON parsers, which is thread-safe.
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * Number of values that could not be converted to a number and were set to null.
+	 */
+	private int badNumberCount = 0;
+
+	/**
+	 * Create a parser.
+	 */
+	public TimeSeriesCatalogParser () {
+	}
+
+	/**
+	 * Convert a KiWIS 'ts_spacing' ISO 8601 duration (e.g., "PT15M") to a TSTool data interval (e.g., "15Minute").
+	 * An empty or zero duration is used for irregular time series.
+	 * @param tsSpacing the KiWIS 'ts_spacing'
+	 * @return the TSTool data interval, "IrregSecond" for irregular time series,
+	 * or "Unknown" if the spacing cannot be converted
+	 */
+	public static String convertSpacingToInterval ( String tsSpacing ) {
+		if ( (tsSpacing == null) || tsSpacing.isEmpty() ) {
+			return "IrregSecond";
+		}
+		String spacing = tsSpacing.trim().toUpperCase();
+		if ( !spacing.startsWith("P") ) {
+			return "Unknown";
+		}
+		// Only a single part is expected, for example "PT15M", "PT1H", "P1D", "P1M", "P1Y".
+		boolean isTime = false;
+		int pos = 1;
+		if ( spacing.startsWith("PT") ) {
+			isTime = true;
+			pos = 2;
+		}
+		int end = pos;
+		while ( (end < spacing.length()) && Character.isDigit(spacing.charAt(end)) ) {
+			++end;
+		}
+		if ( (end == pos) || (end != (spacing.length() - 1)) ) {
+			return "Unknown";
+		}
+		int mult;
+		try {
+			mult = Integer.parseInt(spacing.substring(pos, end));
+		}
+		catch ( NumberFormatException e ) {
+			return "Unknown";
+		}
+		if ( mult == 0 ) {
+			return "IrregSecond";
+		}
+		char unit = spacing.charAt(end);
+		if ( isTime ) {
+			switch ( unit ) {
+				case 'S': return mult + "Second";
+				case 'M': return mult + "Minute";
+				case 'H': return mult + "Hour";
+				default: return "Unknown";
+			}
+		}
+		else {
+			switch ( unit ) {
+				case 'D': return mult + "Day";
+				case 'W': return (7*mult) + "Day";
+				case 'M': return mult + "Month";
+				case 'Y': return mult + "Year";
+				default: return "Unknown";
+			}
+		}
+	}
+
+	/**
+	 * Return the number of values that could not be converted to a number in the last parse, which are set to null.
+	 * @return the number of values that could not be converted to a number
+	 */
+	public int getBadNumberCount () {
+		return this.badNumberCount;
+	}
+
+	/**
+	 * Parse a response.
+	 * @param in input stream for the response, which is not closed
+	 * @param dictionary dictionary used to share strings between the catalog objects
+	 * @return the time series catalog for the response
+	 * @exception IOException if there is an error reading the input stream,
+	 * the response is not valid JSON, or the response is a web service error
+	 */
+	public List<TimeSeriesCatalog> parse ( InputStream in, StringDictionary dictionary ) throws IOException {
+		this.badNumberCount = 0;
+		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+		// Don't close the stream since the caller owns it.
+		JsonParser parser = JSON_FACTORY.createParser(in);
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		try {
+			JsonToken token = parser.nextToken();
+			if ( token == null ) {
+				throw new IOException("Time series list response is empty.");
+			}
+			else if ( token == JsonToken.START_OBJECT ) {
+				throw new IOException("Time series list response is an error: " + parseError(parser));
+			}
+			else if ( token != JsonToken.START_ARRAY ) {
+				throw new IOException("Time series list response is not a JSON array (" + token + ").");
+			}
+			while ( (token = parser.nextToken()) != JsonToken.END_ARRAY ) {
+				if ( token == null ) {
+					throw new IOException("Time series list response ended before the end of the array.");
+				}
+				else if ( token != JsonToken.START_OBJECT ) {
+					// Not expected but skip.
+					parser.skipChildren();
+					continue;
+				}
+				tscatalogList.add(parseTimeSeries(parser, dictionary));
+			}
+		}
+		finally {
+			parser.close();
+		}
+		return tscatalogList;
+	}
+
+	/**
+	 * Parse an error object.
+	 * @param parser parser positioned at the start of the object
+	 * @return the error code and message
+	 */
+	private String parseError ( JsonParser parser ) throws IOException {
+		String code = null;
+		String message = null;
+		JsonToken token;
+		while ( (token = parser.nextToken()) == JsonToken.FIELD_NAME ) {
+			String name = parser.getCurrentName();
+			token = parser.nextToken();
+			if ( token.isStructStart() ) {
+				parser.skipChildren();
+			}
+			else if ( "code".equals(name) ) {
+				code = parser.getText();
+			}
+			else if ( "message".equals(name) ) {
+				message = parser.getText();
+			}
+		}
+		return ((code == null) ? "" : code + " - ") + ((message == null) ? "no message" : message);
+	}
+
+	/**
+	 * Parse a double value.
+	 * @param value value to parse, can be null or empty
+	 * @return the double value, or null if not a number
+	 */
+	private Double parseDouble ( String value ) {
+		if ( (value == null) || value.isEmpty() ) {
+			return null;
+		}
+		try {
+			return Double.valueOf(value);
+		}
+		catch ( NumberFormatException e ) {
+			++this.badNumberCount;
+			return null;
+		}
+	}
+
+	/**
+	 * Parse an integer value.
+	 * @param value value to parse, can be null or empty
+	 * @return the integer value, or null if not an integer
+	 */
+	private Integer parseInteger ( String value ) {
+		if ( (value == null) || value.isEmpty() ) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(value);
+		}
+		catch ( NumberFormatException e ) {
+			++this.badNumberCount;
+			return null;
+		}
+	}
+
+	/**
+	 * Parse a time series object.
+	 * @param parser parser positioned at the start of the object
+	 * @param dictionary dictionary used to share strings between the catalog objects
+	 * @return the time series catalog for the object
+	 */
+	private TimeSeriesCatalog parseTimeSeries ( JsonParser parser, StringDictionary dictionary ) throws IOException {
+		TimeSeriesCatalog tscatalog = new TimeSeriesCatalog(dictionary);
+		JsonToken token;
+		while ( (token = parser.nextToken()) == JsonToken.FIELD_NAME ) {
+			String name = parser.getCurrentName();
+			token = parser.nextToken();
+			if ( token.isStructStart() ) {
+				// Not expected for the requested fields.
+				parser.skipChildren();
+				continue;
+			}
+			// Values are typically strings but numbers are also handled.
+			String value = (token == JsonToken.VALUE_NULL) ? null : parser.getText();
+			switch ( name ) {
+				case "catchment_id": tscatalog.setCatchmentId(parseInteger(value)); break;
+				case "catchment_name": tscatalog.setCatchmentName(value); break;
+				case "catchment_no": tscatalog.setCatchmentNo(value); break;
+				case "parametertype_id": tscatalog.setParameterTypeId(parseInteger(value)); break;
+				case "parametertype_name": tscatalog.setParameterTypeName(value); break;
+				case "site_id": tscatalog.setSiteId(parseInteger(value)); break;
+				case "site_name": tscatalog.setSiteName(value); break;
+				case "site_no": tscatalog.setSiteNo(value); break;
+				case "station_id": tscatalog.setStationId(parseInteger(value)); break;
+				case "station_latitude": tscatalog.setStationLatitude(parseDouble(value)); break;
+				case "station_longitude": tscatalog.setStationLongitude(parseDouble(value)); break;
+				case "station_longname": tscatalog.setStationLongName(value); break;
+				case "station_name": tscatalog.setStationName(value); break;
+				case "station_no": tscatalog.setStationNo(value); break;
+				case "stationparameter_longname": tscatalog.setStationParameterLongName(value); break;
+				case "stationparameter_name": tscatalog.setStationParameterName(value); break;
+				case "stationparameter_no": tscatalog.setStationParameterNo(value); break;
+				case "ts_id": tscatalog.setTsId(parseInteger(value)); break;
+				case "ts_name": tscatalog.setTsName(value); break;
+				case "ts_path": tscatalog.setTsPath(value); break;
+				case "ts_shortname": tscatalog.setTsShortName(value); break;
+				case "ts_spacing": tscatalog.setTsSpacing(value); break;
+				case "ts_type_id": tscatalog.setTsTypeId(parseInteger(value)); break;
+				case "ts_type_name": tscatalog.setTsTypeName(value); break;
+				case "ts_unitname": tscatalog.setTsUnitName(value); break;
+				case "ts_unitname_abs": tscatalog.setTsUnitNameAbs(value); break;
+				case "ts_unitsymbol": tscatalog.setTsUnitSymbol(value); break;
+				case "ts_unitsymbol_abs": tscatalog.setTsUnitSymbolAbs(value); break;
+				default: break; // Fields that are not used.
+			}
+		}
+
+		// Standard properties expected by TSTool:
+		// - match the KiWIS 'ts_path' as much as possible since it is unique for retrieving time series values
+		// - quote the parts that contain the TSID delimiters
+		String stationParameterNo = tscatalog.getStationParameterNo();
+		String tsShortName = tscatalog.getTsShortName();
+		if ( (stationParameterNo != null) && ((stationParameterNo.indexOf("-") >= 0) || (stationParameterNo.indexOf(".") >= 0)) ) {
+			stationParameterNo = "'" + stationParameterNo + "'";
+		}
+		if ( (tsShortName != null) && ((tsShortName.indexOf("-") >= 0) || (tsShortName.indexOf(".") >= 0)) ) {
+			tsShortName = "'" + tsShortName + "'";
+		}
+		tscatalog.setDataType(stationParameterNo + "-" + tsShortName);
+		tscatalog.setDataInterval(convertSpacingToInterval(tscatalog.getTsSpacing()));
+		tscatalog.setDataUnits(tscatalog.getTsUnitSymbol()); // Symbol = abbreviation?
+		return tscatalog;
+	}
+}
@@ -0,0 +1,475 @@
+// TimeSeriesCatalogSnapshot - binary on-disk snapshot of the time series catalog
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Binary snapshot of the time series catalog, used to start the datastore without downloading the full catalog.
+ * The file layout is:
+ * <pre>
+ * int     magic number ('MCAT')
+ * int     format version
+ * long    creation time, milliseconds since 1970-01-01 UTC
+ * int     number of distinct strings
+ * (int length, byte[] UTF-8)  for each distinct string
+ * int     number of catalog records
+ * (int[STRING_FIELD_COUNT] string index, int[INTEGER_FIELD_COUNT], double[DOUBLE_FIELD_COUNT]) for each record
+ * </pre>
+ * Strings are stored once in a string table and referenced by index, which keeps the file compact
+ * because most catalog strings (units, parameter names, etc.) repeat.
+ * Records are fixed width so the file can be read into one buffer and decoded without intermediate objects.
+ * The file is not memory-mapped because a mapped file cannot be replaced on Windows until the mapping is released,
+ * which would prevent writing a refreshed snapshot.
+ * The file is written to a temporary file and then moved into place so that readers never see a partial file.
+ */
+public class TimeSeriesCatalogSnapshot {
+
+	/**
+	 * Magic number at the start of the file, 'MCAT'.
+	 */
+	private static final int MAGIC = 0x4D434154;
+
+	/**
+	 * Format version, increment when the record layout changes so that old files are ignored.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Number of string fields in each record.
+	 */
+	private static final int STRING_FIELD_COUNT = 24;
+
+	/**
+	 * Number of integer fields in each record.
+	 */
+	private static final int INTEGER_FIELD_COUNT = 6;
+
+	/**
+	 * Number of double fields in each record.
+	 */
+	private static final int DOUBLE_FIELD_COUNT = 2;
+
+	/**
+	 * Value used in the file for a null string.
+	 */
+	private static final int NULL_STRING = -1;
+
+	/**
+	 * Value used in the file for a null integer.
+	 */
+	private static final int NULL_INTEGER = Integer.MIN_VALUE;
+
+	/**
+	 * Snapshot file.
+	 */
+	private final File file;
+
+	/**
+	 * Creation time of the snapshot that was last read, milliseconds since 1970-01-01 UTC, or -1 if not read.
+	 */
+	private long creationTime = -1;
+
+	/**
+	 * Constructor.
+	 * @param file the snapshot file, which does not need to exist
+	 */
+	public TimeSeriesCatalogSnapshot ( File file ) {
+		this.file = file;
+	}
+
+	/**
+	 * Return whether the snapshot file exists.
+	 * @return true if the snapshot file exists
+	 */
+	public boolean exists () {
+		return this.file.exists();
+	}
+
+	/**
+	 * Return the age of the snapshot in milliseconds, using the creation time read from the file.
+	 * @return the age of the snapshot in milliseconds, or Long.MAX_VALUE if the snapshot has not been read
+	 */
+	public long getAge () {
+		if ( this.creationTime < 0 ) {
+			return Long.MAX_VALUE;
+		}
+		return System.currentTimeMillis() - this.creationTime;
+	}
+
+	/**
+	 * Return the snapshot file.
+	 * @return the snapshot file
+	 */
+	public File getFile () {
+		return this.file;
+	}
+
+	/**
+	 * Read the snapshot file into a heap buffer and decode the catalog from the buffer.
+	 * @param dictionary dictionary used to share strings between the catalog objects,
+	 * typically a new dictionary for the catalog version
+	 * @return the list of time series catalog from the snapshot
+	 * @throws IOException if the file cannot be read or is not a compatible snapshot
+	 */
+	public List<TimeSeriesCatalog> read ( StringDictionary dictionary ) throws IOException {
+		String routine = getClass().getSimpleName() + ".read";
+		long start = System.currentTimeMillis();
+		List<TimeSeriesCatalog> tscatalogList = null;
+		try ( FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ) ) {
+			long size = channel.size();
+			if ( size > Integer.MAX_VALUE ) {
+				throw new IOException ( "Time series catalog snapshot is too large (" + size + " bytes): " + this.file );
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while ( buffer.hasRemaining() ) {
+				if ( channel.read(buffer) < 0 ) {
+					throw new IOException ( "Unexpected end of time series catalog snapshot: " + this.file );
+				}
+			}
+			buffer.flip();
+			tscatalogList = read(buffer, dictionary);
+		}
+		Message.printStatus(2, routine, "Read " + tscatalogList.size() + " time series catalog from snapshot \""
+			+ this.file + "\" in " + (System.currentTimeMillis() - start) + " ms.");
+		return tscatalogList;
+	}
+
+	/**
+	 * Decode the catalog from the snapshot file contents.
+	 * @param buffer buffer containing the file contents
+	 * @param dictionary dictionary used to share strings between the catalog objects
+	 * @return the list of time series catalog from the snapshot
+	 * @throws IOException if the contents are not a compatible snapshot or are truncated or corrupt
+	 */
+	private List<TimeSeriesCatalog> read ( ByteBuffer buffer, StringDictionary dictionary ) throws IOException {
+		try {
+			if ( buffer.getInt() != MAGIC ) {
+				throw new IOException ( "File is not a MADIS time series catalog snapshot: " + this.file );
+			}
+			int version = buffer.getInt();
+			if ( version != FORMAT_VERSION ) {
+				throw new IOException ( "Time series catalog snapshot version " + version
+					+ " is not the expected version " + FORMAT_VERSION + ": " + this.file );
+			}
+			long creationTime = buffer.getLong();
+
+			// Read the string table:
+			// - check the counts and lengths before allocating arrays in case the file is corrupt
+			int stringCount = buffer.getInt();
+			if ( (stringCount < 0) || (stringCount > buffer.remaining()/4) ) {
+				throw new IOException ( "Time series catalog snapshot string count " + stringCount
+					+ " does not match the file size: " + this.file );
+			}
+			String [] strings = new String[stringCount];
+			byte [] bytes = new byte[256];
+			for ( int i = 0; i < stringCount; i++ ) {
+				int length = buffer.getInt();
+				if ( (length < 0) || (length > buffer.remaining()) ) {
+					throw new IOException ( "Time series catalog snapshot string length " + length
+						+ " does not match the file size: " + this.file );
+				}
+				if ( length > bytes.length ) {
+					bytes = new byte[length*2];
+				}
+				buffer.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+
+			// Read the records:
+			// - the catalog objects share a string dictionary so that the string table strings are used
+			// - check the record count before allocating the list in case the file is corrupt
+			int recordCount = buffer.getInt();
+			int recordBytes = 4*(STRING_FIELD_COUNT + INTEGER_FIELD_COUNT) + 8*DOUBLE_FIELD_COUNT;
+			if ( (recordCount < 0) || (recordCount > buffer.remaining()/recordBytes) ) {
+				throw new IOException ( "Time series catalog snapshot record count " + recordCount
+					+ " does not match the file size: " + this.file );
+			}
+			List<TimeSeriesCatalog> tscatalogList = new ArrayList<>(recordCount);
+			for ( int i = 0; i < recordCount; i++ ) {
+				tscatalogList.add(readRecord(buffer, strings, dictionary));
+			}
+			this.creationTime = creationTime;
+			return tscatalogList;
+		}
+		catch ( BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e ) {
+			// The file ended early or a length or string index is not valid.
+			throw new IOException ( "Time series catalog snapshot is truncated or corrupt (" + e + "): " + this.file, e );
+		}
+	}
+
+	/**
+	 * Read an integer that may be null.
+	 */
+	private Integer readInteger ( ByteBuffer buffer ) {
+		int i = buffer.getInt();
+		if ( i == NULL_INTEGER ) {
+			return null;
+		}
+		return Integer.valueOf(i);
+	}
+
+	/**
+	 * Read a double that may be null.
+	 */
+	private Double readDouble ( ByteBuffer buffer ) {
+		double d = buffer.getDouble();
+		if ( Double.isNaN(d) ) {
+			return null;
+		}
+		return Double.valueOf(d);
+	}
+
+	/**
+	 * Read a single record, in the same order as written by writeRecord().
+	 */
+	private TimeSeriesCatalog readRecord ( ByteBuffer buffer, String [] strings, StringDictionary dictionary ) {
+		TimeSeriesCatalog tscatalog = new TimeSeriesCatalog(dictionary);
+		// Strings:
+		// - set the station number before the location ID because setting the station number also sets the location ID
+		tscatalog.setStationNo(readString(buffer, strings));
+		tscatalog.setLocId(readString(buffer, strings));
+		tscatalog.setDataInterval(readString(buffer, strings));
+		tscatalog.setDataType(readString(buffer, strings));
+		tscatalog.setDataUnits(readString(buffer, strings));
+		tscatalog.setSiteName(readString(buffer, strings));
+		tscatalog.setSiteNo(readString(buffer, strings));
+		tscatalog.setStationName(readString(buffer, strings));
+		tscatalog.setStationLongName(readString(buffer, strings));
+		tscatalog.setStationParameterName(readString(buffer, strings));
+		tscatalog.setStationParameterLongName(readString(buffer, strings));
+		tscatalog.setStationParameterNo(readString(buffer, strings));
+		tscatalog.setTsName(readString(buffer, strings));
+		tscatalog.setTsPath(readString(buffer, strings));
+		tscatalog.setTsShortName(readString(buffer, strings));
+		tscatalog.setTsSpacing(readString(buffer, strings));
+		tscatalog.setTsTypeName(readString(buffer, strings));
+		tscatalog.setTsUnitName(readString(buffer, strings));
+		tscatalog.setTsUnitNameAbs(readString(buffer, strings));
+		tscatalog.setTsUnitSymbol(readString(buffer, strings));
+		tscatalog.setTsUnitSymbolAbs(readString(buffer, strings));
+		tscatalog.setParameterTypeName(readString(buffer, strings));
+		tscatalog.setCatchmentName(readString(buffer, strings));
+		tscatalog.setCatchmentNo(readString(buffer, strings));
+		// Integers.
+		tscatalog.setSiteId(readInteger(buffer));
+		tscatalog.setStationId(readInteger(buffer));
+		tscatalog.setTsId(readInteger(buffer));
+		tscatalog.setTsTypeId(readInteger(buffer));
+		tscatalog.setParameterTypeId(readInteger(buffer));
+		tscatalog.setCatchmentId(readInteger(buffer));
+		// Doubles.
+		tscatalog.setStationLatitude(readDouble(buffer));
+		tscatalog.setStationLongitude(readDouble(buffer));
+		return tscatalog;
+	}
+
+	/**
+	 * Read a string reference and return the string from the string table.
+	 */
+	private String readString ( ByteBuffer buffer, String [] strings ) {
+		int i = buffer.getInt();
+		if ( i == NULL_STRING ) {
+			return null;
+		}
+		return strings[i];
+	}
+
+	/**
+	 * Return the strings for a record, in the order that they are written.
+	 */
+	private String [] recordStrings ( TimeSeriesCatalog tscatalog ) {
+		return new String [] {
+			tscatalog.getStationNo(),
+			tscatalog.getLocId(),
+			tscatalog.getDataInterval(),
+			tscatalog.getDataType(),
+			tscatalog.getDataUnits(),
+			tscatalog.getSiteName(),
+			tscatalog.getSiteNo(),
+			tscatalog.getStationName(),
+			tscatalog.getStationLongName(),
+			tscatalog.getStationParameterName(),
+			tscatalog.getStationParameterLongName(),
+			tscatalog.getStationParameterNo(),
+			tscatalog.getTsName(),
+			tscatalog.getTsPath(),
+			tscatalog.getTsShortName(),
+			tscatalog.getTsSpacing(),
+			tscatalog.getTsTypeName(),
+			tscatalog.getTsUnitName(),
+			tscatalog.getTsUnitNameAbs(),
+			tscatalog.getTsUnitSymbol(),
+			tscatalog.getTsUnitSymbolAbs(),
+			tscatalog.getParameterTypeName(),
+			tscatalog.getCatchmentName(),
+			tscatalog.getCatchmentNo()
+		};
+	}
+
+	/**
+	 * Write the snapshot file.
+	 * The file is written to a temporary file in the same folder and then moved to replace the snapshot.
+	 * @param tscatalogList list of time series catalog to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write ( List<TimeSeriesCatalog> tscatalogList ) throws IOException {
+		String routine = getClass().getSimpleName() + ".write";
+		long start = System.currentTimeMillis();
+		File folder = this.file.getAbsoluteFile().getParentFile();
+		if ( (folder != null) && !folder.exists() ) {
+			Files.createDirectories(folder.toPath());
+		}
+
+		// Create the string table.
+		Map<String,Integer> stringIndexMap = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			for ( String s : recordStrings(tscatalog) ) {
+				if ( (s != null) && !stringIndexMap.containsKey(s) ) {
+					stringIndexMap.put(s, strings.size());
+					strings.add(s);
+				}
+			}
+		}
+
+		Path tmpPath = Files.createTempFile(folder.toPath(), this.file.getName(), ".tmp");
+		try {
+			try ( OutputStream os = Files.newOutputStream(tmpPath);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 65536)) ) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(System.currentTimeMillis());
+				out.writeInt(strings.size());
+				for ( String s : strings ) {
+					byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+				out.writeInt(tscatalogList.size());
+				for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+					writeRecord(out, tscatalog, stringIndexMap);
+				}
+			}
+			moveIntoPlace(tmpPath, this.file.toPath());
+		}
+		finally {
+			Files.deleteIfExists(tmpPath);
+		}
+		Message.printStatus(2, routine, "Wrote " + tscatalogList.size() + " time series catalog (" + strings.size()
+			+ " distinct strings) to snapshot \"" + this.file + "\" in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+
+	/**
+	 * Move a temporary file to replace a file, such as the snapshot file or a time series value cache file.
+	 * An atomic move is used if supported by the file system.
+	 * On Windows, the move can fail while another process (e.g., another TSTool session) has the file open,
+	 * so the move is retried briefly before failing.
+	 * @param tmpPath temporary file to move
+	 * @param path file to replace
+	 * @throws IOException if the file cannot be moved
+	 */
+	static void moveIntoPlace ( Path tmpPath, Path path ) throws IOException {
+		boolean atomic = true;
+		for ( int attempt = 1; ; attempt++ ) {
+			try {
+				if ( atomic ) {
+					Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				else {
+					Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+				}
+				return;
+			}
+			catch ( AtomicMoveNotSupportedException e ) {
+				// Use a normal move, which does not count as an attempt.
+				atomic = false;
+				--attempt;
+			}
+			catch ( IOException e ) {
+				if ( attempt >= 5 ) {
+					throw e;
+				}
+				try {
+					Thread.sleep(200L*attempt);
+				}
+				catch ( InterruptedException ie ) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write a single record.
+	 */
+	private void writeRecord ( DataOutputStream out, TimeSeriesCatalog tscatalog, Map<String,Integer> stringIndexMap )
+		throws IOException {
+		String [] recordStrings = recordStrings(tscatalog);
+		for ( int i = 0; i < STRING_FIELD_COUNT; i++ ) {
+			String s = recordStrings[i];
+			out.writeInt( (s == null) ? NULL_STRING : stringIndexMap.get(s) );
+		}
+		Integer [] integers = {
+			tscatalog.getSiteId(),
+			tscatalog.getStationId(),
+			tscatalog.getTsId(),
+			tscatalog.getTsTypeId(),
+			tscatalog.getParameterTypeId(),
+			tscatalog.getCatchmentId()
+		};
+		for ( int i = 0; i < INTEGER_FIELD_COUNT; i++ ) {
+			out.writeInt( (integers[i] == null) ? NULL_INTEGER : integers[i].intValue() );
+		}
+		Double [] doubles = {
+			tscatalog.getStationLatitude(),
+			tscatalog.getStationLongitude()
+		};
+		for ( int i = 0; i < DOUBLE_FIELD_COUNT; i++ ) {
+			out.writeDouble( (doubles[i] == null) ? Double.NaN : doubles[i].doubleValue() );
+		}
+	}
+}
@@ -0,0 +1,324 @@
+// TimeSeriesCatalogSpatialIndex - grid index of time series catalog station locations
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Spatial index of time series catalog station locations, used to find time series within a box or radius
+ * without checking every time series.
+ * The index is a fixed grid of latitude/longitude cells.
+ * Each cell references the catalog entries located in the cell, stored in primitive arrays
+ * (a cell start offset array and an entry array) so that the index uses little memory.
+ * A query only checks the entries in the cells that overlap the query area.
+ * Time series without a latitude and longitude are not indexed.
+ * Query coordinates are always given latitude first and are checked for valid ranges,
+ * so that coordinates that are swapped are rejected rather than matching the wrong area.
+ * The index cannot be modified.
+ */
+public class TimeSeriesCatalogSpatialIndex {
+
+	/**
+	 * Default grid cell size, decimal degrees.
+	 */
+	public static final double DEFAULT_CELL_SIZE = 0.5;
+
+	/**
+	 * Mean radius of the earth, km, used for distance calculations.
+	 */
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+
+	/**
+	 * Time series catalog list that is indexed.
+	 */
+	private final List<TimeSeriesCatalog> tscatalogList;
+
+	/**
+	 * Grid cell size, decimal degrees.
+	 */
+	private final double cellSize;
+
+	/**
+	 * Number of grid columns (longitude) and rows (latitude).
+	 */
+	private final int numCols;
+	private final int numRows;
+
+	/**
+	 * Start of each cell's entries in 'entries', indexed by cell (row*numCols + col).
+	 * The last value is the total number of entries so that the end of a cell is the start of the next cell.
+	 */
+	private final int [] cellStart;
+
+	/**
+	 * Catalog list positions, grouped by cell.
+	 */
+	private final int [] entries;
+
+	/**
+	 * Latitude and longitude for each catalog list position, to avoid unboxing during queries.
+	 * NaN indicates that the location is not known.
+	 */
+	private final double [] latitudes;
+	private final double [] longitudes;
+
+	/**
+	 * Create the spatial index using the default cell size.
+	 * @param tscatalogList list of time series catalog to index
+	 */
+	public TimeSeriesCatalogSpatialIndex ( List<TimeSeriesCatalog> tscatalogList ) {
+		this ( tscatalogList, DEFAULT_CELL_SIZE );
+	}
+
+	/**
+	 * Create the spatial index.
+	 * @param tscatalogList list of time series catalog to index
+	 * @param cellSize grid cell size, decimal degrees
+	 */
+	public TimeSeriesCatalogSpatialIndex ( List<TimeSeriesCatalog> tscatalogList, double cellSize ) {
+		this.tscatalogList = tscatalogList;
+		this.cellSize = cellSize;
+		this.numCols = (int)Math.ceil(360.0/cellSize);
+		this.numRows = (int)Math.ceil(180.0/cellSize);
+		int size = tscatalogList.size();
+		this.latitudes = new double[size];
+		this.longitudes = new double[size];
+
+		// First pass:  save the locations and count the entries in each cell.
+		int [] cells = new int[size];
+		int [] cellCount = new int[this.numCols*this.numRows + 1];
+		int i = 0;
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			Double latitude = tscatalog.getStationLatitude();
+			Double longitude = tscatalog.getStationLongitude();
+			if ( (latitude == null) || (longitude == null) || latitude.isNaN() || longitude.isNaN()
+				|| (latitude < -90.0) || (latitude > 90.0) || (longitude < -180.0) || (longitude > 180.0) ) {
+				this.latitudes[i] = Double.NaN;
+				this.longitudes[i] = Double.NaN;
+				cells[i] = -1;
+			}
+			else {
+				this.latitudes[i] = latitude;
+				this.longitudes[i] = longitude;
+				cells[i] = getCell(getRow(latitude), getCol(longitude));
+				++cellCount[cells[i]];
+			}
+			++i;
+		}
+
+		// Convert the counts to start positions.
+		this.cellStart = new int[cellCount.length];
+		int total = 0;
+		for ( int cell = 0; cell < cellCount.length; cell++ ) {
+			this.cellStart[cell] = total;
+			total += cellCount[cell];
+		}
+
+		// Second pass:  fill the entries for each cell.
+		this.entries = new int[total];
+		int [] next = new int[cellCount.length];
+		System.arraycopy(this.cellStart, 0, next, 0, next.length);
+		for ( i = 0; i < size; i++ ) {
+			if ( cells[i] >= 0 ) {
+				this.entries[next[cells[i]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Calculate the great circle distance between two points using the haversine formula.
+	 * @param latitude1 latitude of the first point, decimal degrees
+	 * @param longitude1 longitude of the first point, decimal degrees
+	 * @param latitude2 latitude of the second point, decimal degrees
+	 * @param longitude2 longitude of the second point, decimal degrees
+	 * @return the distance, km
+	 */
+	public static double distanceKm ( double latitude1, double longitude1, double latitude2, double longitude2 ) {
+		double dlat = Math.toRadians(latitude2 - latitude1);
+		double dlon = Math.toRadians(longitude2 - longitude1);
+		double a = Math.sin(dlat/2)*Math.sin(dlat/2)
+			+ Math.cos(Math.toRadians(latitude1))*Math.cos(Math.toRadians(latitude2))*Math.sin(dlon/2)*Math.sin(dlon/2);
+		return 2*EARTH_RADIUS_KM*Math.asin(Math.min(1.0, Math.sqrt(a)));
+	}
+
+	/**
+	 * Check that a latitude and longitude are valid.
+	 * @exception IllegalArgumentException if the latitude is not -90 to 90 or the longitude is not -180 to 180
+	 */
+	private static void checkCoordinates ( double latitude, double longitude ) {
+		if ( !((latitude >= -90.0) && (latitude <= 90.0)) ) {
+			throw new IllegalArgumentException ( "Latitude " + latitude + " is invalid (must be -90 to 90)." );
+		}
+		if ( !((longitude >= -180.0) && (longitude <= 180.0)) ) {
+			throw new IllegalArgumentException ( "Longitude " + longitude + " is invalid (must be -180 to 180)." );
+		}
+	}
+
+	/**
+	 * Find the time series catalog with station located in a box.
+	 * The box cannot cross the antimeridian (minimum longitude must be less than or equal to the maximum longitude).
+	 * @param minLatitude minimum latitude, decimal degrees
+	 * @param minLongitude minimum longitude, decimal degrees
+	 * @param maxLatitude maximum latitude, decimal degrees
+	 * @param maxLongitude maximum longitude, decimal degrees
+	 * @return the matching time series catalog, in catalog order, guaranteed to be non-null but may be empty
+	 * @exception IllegalArgumentException if a latitude or longitude is invalid
+	 */
+	public List<TimeSeriesCatalog> findWithinBox ( double minLatitude, double minLongitude, double maxLatitude, double maxLongitude ) {
+		checkCoordinates(minLatitude, minLongitude);
+		checkCoordinates(maxLatitude, maxLongitude);
+		return findWithinGridBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+	}
+
+	/**
+	 * Find the time series catalog with station located in a box, without checking the coordinates,
+	 * which may be outside the valid range when a radius query box extends past a pole or the antimeridian.
+	 */
+	private List<TimeSeriesCatalog> findWithinGridBox ( double minLatitude, double minLongitude, double maxLatitude, double maxLongitude ) {
+		List<TimeSeriesCatalog> matches = new ArrayList<>();
+		if ( (minLongitude > maxLongitude) || (minLatitude > maxLatitude) ) {
+			return matches;
+		}
+		int row1 = getRow(Math.max(-90.0, minLatitude));
+		int row2 = getRow(Math.min(90.0, maxLatitude));
+		int col1 = getCol(Math.max(-180.0, minLongitude));
+		int col2 = getCol(Math.min(180.0, maxLongitude));
+		int [] positions = new int[16];
+		int count = 0;
+		for ( int row = row1; row <= row2; row++ ) {
+			for ( int col = col1; col <= col2; col++ ) {
+				int cell = getCell(row, col);
+				for ( int ientry = this.cellStart[cell]; ientry < this.cellStart[cell + 1]; ientry++ ) {
+					int i = this.entries[ientry];
+					double latitude = this.latitudes[i];
+					double longitude = this.longitudes[i];
+					if ( (latitude >= minLatitude) && (latitude <= maxLatitude)
+						&& (longitude >= minLongitude) && (longitude <= maxLongitude) ) {
+						if ( count == positions.length ) {
+							positions = Arrays.copyOf(positions, count*2);
+						}
+						positions[count++] = i;
+					}
+				}
+			}
+		}
+		return toList(positions, count);
+	}
+
+	/**
+	 * Find the time series catalog with station located within a distance of a point.
+	 * @param latitude latitude of the point, decimal degrees
+	 * @param longitude longitude of the point, decimal degrees
+	 * @param radiusKm radius, km
+	 * @return the matching time series catalog, guaranteed to be non-null but may be empty
+	 * @exception IllegalArgumentException if the latitude, longitude, or radius is invalid
+	 */
+	public List<TimeSeriesCatalog> findWithinRadius ( double latitude, double longitude, double radiusKm ) {
+		checkCoordinates(latitude, longitude);
+		if ( !(radiusKm >= 0.0) ) {
+			throw new IllegalArgumentException ( "Radius " + radiusKm + " km is invalid (must be 0 or greater)." );
+		}
+		// Determine the latitude and longitude range to check, which is larger than the radius:
+		// - the longitude range increases toward the poles
+		double dlat = Math.toDegrees(radiusKm/EARTH_RADIUS_KM);
+		double minLatitude = latitude - dlat;
+		double maxLatitude = latitude + dlat;
+		double minLongitude = -180.0;
+		double maxLongitude = 180.0;
+		double maxAbsLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+		if ( maxAbsLatitude < 89.0 ) {
+			double dlon = dlat/Math.cos(Math.toRadians(maxAbsLatitude));
+			if ( dlon < 180.0 ) {
+				minLongitude = longitude - dlon;
+				maxLongitude = longitude + dlon;
+			}
+		}
+		List<TimeSeriesCatalog> matches = new ArrayList<>();
+		// Check the box, wrapping around the antimeridian if necessary.
+		findWithinRadius(latitude, longitude, radiusKm, minLatitude, minLongitude, maxLatitude, maxLongitude, matches);
+		if ( minLongitude < -180.0 ) {
+			findWithinRadius(latitude, longitude, radiusKm, minLatitude, minLongitude + 360.0, maxLatitude, 180.0, matches);
+		}
+		if ( maxLongitude > 180.0 ) {
+			findWithinRadius(latitude, longitude, radiusKm, minLatitude, -180.0, maxLatitude, maxLongitude - 360.0, matches);
+		}
+		return matches;
+	}
+
+	/**
+	 * Add the time series catalog in a box that are within a distance of a point.
+	 */
+	private void findWithinRadius ( double latitude, double longitude, double radiusKm,
+		double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, List<TimeSeriesCatalog> matches ) {
+		for ( TimeSeriesCatalog tscatalog : findWithinGridBox(minLatitude, minLongitude, maxLatitude, maxLongitude) ) {
+			if ( distanceKm(latitude, longitude, tscatalog.getStationLatitude(), tscatalog.getStationLongitude()) <= radiusKm ) {
+				matches.add(tscatalog);
+			}
+		}
+	}
+
+	/**
+	 * Return the cell for a row and column.
+	 */
+	private int getCell ( int row, int col ) {
+		return row*this.numCols + col;
+	}
+
+	/**
+	 * Return the grid column for a longitude.
+	 */
+	private int getCol ( double longitude ) {
+		return Math.min(this.numCols - 1, (int)((longitude + 180.0)/this.cellSize));
+	}
+
+	/**
+	 * Return the grid row for a latitude.
+	 */
+	private int getRow ( double latitude ) {
+		return Math.min(this.numRows - 1, (int)((latitude + 90.0)/this.cellSize));
+	}
+
+	/**
+	 * Return the number of time series catalog that are indexed (have a location).
+	 * @return the number of time series catalog that are indexed
+	 */
+	public int size () {
+		return this.entries.length;
+	}
+
+	/**
+	 * Convert matching positions to a list of catalog, in catalog order.
+	 */
+	private List<TimeSeriesCatalog> toList ( int [] positions, int count ) {
+		Arrays.sort(positions, 0, count);
+		List<TimeSeriesCatalog> matches = new ArrayList<>(count);
+		for ( int i = 0; i < count; i++ ) {
+			matches.add(this.tscatalogList.get(positions[i]));
+		}
+		return matches;
+	}
+}
@@ -0,0 +1,157 @@
+// TimeSeriesPeriodChunker - split a long read period into chunks that are read with separate requests
+
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import RTi.Util.Time.DateTime;
+import RTi.Util.Time.TimeInterval;
+
+/**
+ * Split a long read period into chunks, so that each chunk is read with a separate request that completes
+ * within the timeout and can be read concurrently with the other chunks.
+ * The chunk length is determined from the time series interval, which is used as the expected spacing of values,
+ * so that each chunk has at most approximately the maximum number of values:
+ * <ul>
+ * <li> regular interval - the interval length (month and year use the shortest length)</li>
+ * <li> irregular interval - the interval precision (e.g., IrregHour is expected to have hourly values),
+ *      with IrregSecond expected to have values each minute</li>
+ * </ul>
+ * Chunks share the boundary date/time because the read start and end are inclusive,
+ * so values at the boundary must be de-duplicated when the chunks are merged (see TimeSeriesValueBuffer.append()).
+ */
+public class TimeSeriesPeriodChunker {
+
+	/**
+	 * Milliseconds per minute, the smallest chunk length because read periods are specified to the minute.
+	 */
+	private static final long MILLIS_PER_MINUTE = 60000L;
+
+	/**
+	 * Maximum number of values expected in a chunk, or 0 to not split the period.
+	 */
+	private final int maxValuesPerChunk;
+
+	/**
+	 * Create a chunker.
+	 * @param maxValuesPerChunk maximum number of values expected in a chunk, or 0 to not split the period
+	 */
+	public TimeSeriesPeriodChunker ( int maxValuesPerChunk ) {
+		this.maxValuesPerChunk = maxValuesPerChunk;
+	}
+
+	/**
+	 * Return the chunks for a read period.
+	 * @param readStart start of the read period, or null to read all data
+	 * @param readEnd end of the read period, or null to read all data
+	 * @param interval time series interval (e.g., "1Hour" or "IrregHour")
+	 * @return the start and end for each chunk, in time order, with one chunk for the full period
+	 * if the period does not need to be split
+	 */
+	public List<DateTime[]> getChunks ( DateTime readStart, DateTime readEnd, String interval ) {
+		List<DateTime[]> chunks = new ArrayList<>();
+		if ( (this.maxValuesPerChunk <= 0) || (readStart == null) || (readEnd == null) ) {
+			// The full period is needed to determine chunks.
+			chunks.add(new DateTime[] { readStart, readEnd });
+			return chunks;
+		}
+		long spacingMillis = getExpectedValueSpacing(interval);
+		long chunkMinutes = Math.max(1, Math.min(Integer.MAX_VALUE, this.maxValuesPerChunk*spacingMillis/MILLIS_PER_MINUTE));
+		long endMillis = TimestampDecoder.toLocalMillis(readEnd);
+		if ( (endMillis - TimestampDecoder.toLocalMillis(readStart)) <= chunkMinutes*MILLIS_PER_MINUTE ) {
+			chunks.add(new DateTime[] { readStart, readEnd });
+			return chunks;
+		}
+		// Compute the chunk boundaries from the local time:
+		// - boundaries are whole minutes because read periods are specified to the minute
+		long chunkMillis = chunkMinutes*MILLIS_PER_MINUTE;
+		DateTime start = readStart;
+		long startMillis = TimestampDecoder.toLocalMillis(readStart);
+		for ( long boundaryMillis = startMillis - Math.floorMod(startMillis, MILLIS_PER_MINUTE) + chunkMillis;
+			boundaryMillis < endMillis; boundaryMillis += chunkMillis ) {
+			DateTime end = TimestampDecoder.toDateTime(boundaryMillis, TimestampDecoder.NO_OFFSET);
+			end.setPrecision(DateTime.PRECISION_MINUTE);
+			chunks.add(new DateTime[] { start, end });
+			// The next chunk starts at the end of this chunk.
+			start = end;
+		}
+		chunks.add(new DateTime[] { start, readEnd });
+		return chunks;
+	}
+
+	/**
+	 * Return the expected spacing of values for a time series interval.
+	 * @param interval time series interval (e.g., "1Hour" or "IrregHour")
+	 * @return the expected spacing of values, milliseconds
+	 */
+	public static long getExpectedValueSpacing ( String interval ) {
+		TimeInterval timeInterval;
+		try {
+			timeInterval = TimeInterval.parseInterval(interval);
+		}
+		catch ( Exception e ) {
+			// Unknown interval so assume values each minute.
+			return MILLIS_PER_MINUTE;
+		}
+		int base = timeInterval.getBase();
+		int mult = Math.max(1, timeInterval.getMultiplier());
+		if ( !TimeInterval.isRegularInterval(base) ) {
+			// Expect one value per precision unit.
+			base = timeInterval.getIrregularIntervalPrecision();
+			mult = 1;
+			if ( base < TimeInterval.MINUTE ) {
+				// Irregular second values are typically not that dense.
+				base = TimeInterval.MINUTE;
+			}
+		}
+		long baseMillis;
+		if ( base == TimeInterval.SECOND ) {
+			baseMillis = 1000L;
+		}
+		else if ( base == TimeInterval.MINUTE ) {
+			baseMillis = MILLIS_PER_MINUTE;
+		}
+		else if ( base == TimeInterval.HOUR ) {
+			baseMillis = 60*MILLIS_PER_MINUTE;
+		}
+		else if ( base == TimeInterval.DAY ) {
+			baseMillis = 1440*MILLIS_PER_MINUTE;
+		}
+		else if ( base == TimeInterval.WEEK ) {
+			baseMillis = 7*1440*MILLIS_PER_MINUTE;
+		}
+		else if ( base == TimeInterval.MONTH ) {
+			baseMillis = 28*1440*MILLIS_PER_MINUTE;
+		}
+		else if ( base == TimeInterval.YEAR ) {
+			baseMillis = 365*1440*MILLIS_PER_MINUTE;
+		}
+		else {
+			// Unknown so assume values each minute.
+			return MILLIS_PER_MINUTE;
+		}
+		return mult*baseMillis;
+	}
+}
@@ -0,0 +1,106 @@
+// TimeSeriesReadResult - result of reading one time series in a bulk read
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import RTi.TS.TS;
+
+/**
+ * Result of reading one time series with MADISDataStore.readTimeSeriesList().
+ * Either the time series or the error is set, so that one failed read does not fail the other reads.
+ */
+public class TimeSeriesReadResult {
+
+	/**
+	 * Requested time series identifier.
+	 */
+	private final String tsid;
+
+	/**
+	 * Time series that was read, or null if an error occurred.
+	 */
+	private final TS ts;
+
+	/**
+	 * Error that occurred reading the time series, or null if no error.
+	 */
+	private final Throwable error;
+
+	/**
+	 * Time to read the time series, milliseconds.
+	 */
+	private final long elapsedTime;
+
+	/**
+	 * Create a result.
+	 * @param tsid requested time series identifier
+	 * @param ts time series that was read, or null if an error occurred
+	 * @param error error that occurred reading the time series, or null if no error
+	 * @param elapsedTime time to read the time series, milliseconds
+	 */
+	public TimeSeriesReadResult ( String tsid, TS ts, Throwable error, long elapsedTime ) {
+		this.tsid = tsid;
+		this.ts = ts;
+		this.error = error;
+		this.elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * Return the time to read the time series, milliseconds.
+	 * @return the time to read the time series, milliseconds
+	 */
+	public long getElapsedTime () {
+		return this.elapsedTime;
+	}
+
+	/**
+	 * Return the error that occurred reading the time series.
+	 * @return the error that occurred reading the time series, or null if no error
+	 */
+	public Throwable getError () {
+		return this.error;
+	}
+
+	/**
+	 * Return the time series that was read.
+	 * @return the time series that was read, or null if an error occurred
+	 */
+	public TS getTimeSeries () {
+		return this.ts;
+	}
+
+	/**
+	 * Return the requested time series identifier.
+	 * @return the requested time series identifier
+	 */
+	public String getTsid () {
+		return this.tsid;
+	}
+
+	/**
+	 * Return whether the read was successful.
+	 * @return true if the time series was read without error
+	 */
+	public boolean isSuccess () {
+		return this.error == null;
+	}
+}
@@ -0,0 +1,200 @@
+// TimeSeriesRequestPlanner - group time series value reads into batched web service requests
+
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Group time series value reads into batches, where each batch is requested with one web service request
+ * using a comma-separated ts_id list.
+ * Reads are grouped by read period (the time window), because the period applies to all time series in a request.
+ * Each batch is limited by the number of time series and the length of the ts_id list,
+ * so that request URLs are not too long for the web service.
+ * A ts_id that is added more than once for the same period is only requested once.
+ */
+public class TimeSeriesRequestPlanner {
+
+	/**
+	 * A batch of time series that are read with one request.
+	 */
+	public static class Batch {
+
+		/**
+		 * Start of the read period, or null to read all data.
+		 */
+		private final DateTime readStart;
+
+		/**
+		 * End of the read period, or null to read all data.
+		 */
+		private final DateTime readEnd;
+
+		/**
+		 * The ts_id for each time series in the batch.
+		 */
+		private final List<Integer> tsIdList = new ArrayList<>();
+
+		/**
+		 * Length of the comma-separated ts_id list.
+		 */
+		private int tsIdListLength = 0;
+
+		/**
+		 * Create a batch.
+		 * @param readStart start of the read period, or null
+		 * @param readEnd end of the read period, or null
+		 */
+		private Batch ( DateTime readStart, DateTime readEnd ) {
+			this.readStart = readStart;
+			this.readEnd = readEnd;
+		}
+
+		/**
+		 * Return the end of the read period.
+		 * @return the end of the read period, or null to read all data
+		 */
+		public DateTime getReadEnd () {
+			return this.readEnd;
+		}
+
+		/**
+		 * Return the start of the read period.
+		 * @return the start of the read period, or null to read all data
+		 */
+		public DateTime getReadStart () {
+			return this.readStart;
+		}
+
+		/**
+		 * Return the ts_id list for the batch.
+		 * @return the ts_id list for the batch
+		 */
+		public List<Integer> getTsIdList () {
+			return Collections.unmodifiableList(this.tsIdList);
+		}
+
+		/**
+		 * Return the comma-separated ts_id list, as used in the request.
+		 * @return the comma-separated ts_id list
+		 */
+		public String getTsIdListString () {
+			StringBuilder b = new StringBuilder(this.tsIdListLength);
+			for ( Integer tsId : this.tsIdList ) {
+				if ( b.length() > 0 ) {
+					b.append(',');
+				}
+				b.append(tsId);
+			}
+			return b.toString();
+		}
+	}
+
+	/**
+	 * Maximum number of time series in a batch.
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Maximum length of the comma-separated ts_id list in a batch.
+	 */
+	private final int maxTsIdListLength;
+
+	/**
+	 * Batches for each read period, in the order that periods were added.
+	 */
+	private final Map<String,List<Batch>> periodBatchMap = new LinkedHashMap<>();
+
+	/**
+	 * The ts_id that were added for each read period, used to avoid duplicate requests.
+	 */
+	private final Map<String,Set<Integer>> periodTsIdMap = new LinkedHashMap<>();
+
+	/**
+	 * Create a planner.
+	 * @param maxBatchSize maximum number of time series in a batch (1+)
+	 * @param maxTsIdListLength maximum length of the comma-separated ts_id list in a batch,
+	 * typically the maximum URL length minus the length of the URL without the ts_id list
+	 */
+	public TimeSeriesRequestPlanner ( int maxBatchSize, int maxTsIdListLength ) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxTsIdListLength = maxTsIdListLength;
+	}
+
+	/**
+	 * Add a time series to read.
+	 * @param tsId the ts_id for the time series
+	 * @param readStart start of the read period, or null to read all data
+	 * @param readEnd end of the read period, or null to read all data
+	 */
+	public void add ( int tsId, DateTime readStart, DateTime readEnd ) {
+		String periodKey = String.valueOf(readStart) + "/" + String.valueOf(readEnd);
+		Set<Integer> tsIdSet = this.periodTsIdMap.get(periodKey);
+		if ( tsIdSet == null ) {
+			tsIdSet = new HashSet<>();
+			this.periodTsIdMap.put(periodKey, tsIdSet);
+			this.periodBatchMap.put(periodKey, new ArrayList<>());
+		}
+		if ( !tsIdSet.add(tsId) ) {
+			// Already requested for the period.
+			return;
+		}
+		List<Batch> batchList = this.periodBatchMap.get(periodKey);
+		Batch batch = batchList.isEmpty() ? null : batchList.get(batchList.size() - 1);
+		// Length added to the list, including the comma separator.
+		int length = String.valueOf(tsId).length();
+		if ( (batch != null) && !batch.tsIdList.isEmpty() ) {
+			++length;
+		}
+		if ( (batch == null) || (batch.tsIdList.size() >= this.maxBatchSize)
+			|| (!batch.tsIdList.isEmpty() && ((batch.tsIdListLength + length) > this.maxTsIdListLength)) ) {
+			// Start a new batch:
+			// - a single time series is always allowed in a batch, even if the list length is exceeded
+			batch = new Batch(readStart, readEnd);
+			batchList.add(batch);
+			length = String.valueOf(tsId).length();
+		}
+		batch.tsIdList.add(tsId);
+		batch.tsIdListLength += length;
+	}
+
+	/**
+	 * Return the batches for all read periods.
+	 * @return the batches for all read periods
+	 */
+	public List<Batch> getBatches () {
+		List<Batch> batches = new ArrayList<>();
+		for ( List<Batch> batchList : this.periodBatchMap.values() ) {
+			batches.addAll(batchList);
+		}
+		return batches;
+	}
+}
@@ -0,0 +1,671 @@
+// TimeSeriesValueBuffer - compact buffer of time series values received from the streaming parser
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.Arrays;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+
+/**
+ * Buffer of time series values that is filled by TimeSeriesValueParser.
+ * The time series period must be known before values can be set in a regular interval time series,
+ * so values are saved in parallel primitive arrays until the response has been read,
+ * rather than saving the response text and value objects.
+ * Quality codes are saved as indices into a small table of distinct quality codes,
+ * and the data flag for each distinct quality code is looked up once using a QualityFlagTable.
+ * Buffers are pooled per thread using acquire() and release() so that the arrays are reused by later reads.
+ * Rows with errors are counted and are not saved, consistent with how values are transferred to the time series.
+ * The fields are in the order requested with 'returnfields':  Timestamp, Value, Quality Code, Interpolation Type.
+ */
+public class TimeSeriesValueBuffer implements TimeSeriesValueSink {
+
+	/**
+	 * Number of fields expected in each row.
+	 */
+	private static final int FIELD_COUNT = 4;
+
+	/**
+	 * Initial capacity of the arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Maximum capacity of arrays that are kept when a pooled buffer is released,
+	 * so that one very large read does not hold memory for the life of the thread.
+	 * Values use about 21 bytes each, so each thread keeps at most about 1.3 MB,
+	 * which is important because parallel and chunked reads use many threads.
+	 */
+	private static final int MAX_POOLED_CAPACITY = 64*1024;
+
+	/**
+	 * Buffer for each thread, reused by acquire().
+	 */
+	private static final ThreadLocal<TimeSeriesValueBuffer> POOL = new ThreadLocal<>();
+
+	/**
+	 * Interpolation type values, used to look up the interpolation type from the saved ordinal.
+	 */
+	private static final InterpolationType [] INTERPOLATION_TYPES = InterpolationType.values();
+
+	/**
+	 * Timestamps for values, epoch milliseconds (UTC).
+	 */
+	private long [] epochMillis = new long[INITIAL_CAPACITY];
+
+	/**
+	 * Timestamp offsets from UTC for values, minutes, TimestampDecoder.NO_OFFSET if not specified.
+	 */
+	private short [] offsetMinutes = new short[INITIAL_CAPACITY];
+
+	/**
+	 * Data values.
+	 */
+	private double [] values = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Quality codes for values, as indices into qualityCodeTable.
+	 */
+	private char [] qualityCodes = new char[INITIAL_CAPACITY];
+
+	/**
+	 * Distinct quality codes.
+	 */
+	private String [] qualityCodeTable = new String[16];
+
+	/**
+	 * Data flags for the distinct quality codes.
+	 */
+	private String [] dataFlagTable = new String[16];
+
+	/**
+	 * Number of distinct quality codes.
+	 */
+	private int qualityCodeCount = 0;
+
+	/**
+	 * Table used to look up data flags for quality codes, or null to use the quality code as the flag.
+	 */
+	private QualityFlagTable qualityFlagTable = null;
+
+	/**
+	 * Interpolation type ordinals for values.
+	 */
+	private byte [] interpolationTypes = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * Decoder for timestamps.
+	 */
+	private final TimestampDecoder timestampDecoder = new TimestampDecoder();
+
+	/**
+	 * Number of values in the buffer.
+	 */
+	private int size = 0;
+
+	/**
+	 * Index of the value with the earliest timestamp.
+	 */
+	private int minEpochIndex = -1;
+
+	/**
+	 * Index of the value with the latest timestamp.
+	 */
+	private int maxEpochIndex = -1;
+
+	/**
+	 * Number of values with timestamp at the beginning of the interval.
+	 */
+	private int beginningInterpolationCount = 0;
+
+	/**
+	 * Interpolation type of the first value with timestamp at the beginning of the interval, or null if none.
+	 */
+	private InterpolationType beginningInterpolationType = null;
+
+	/**
+	 * Whether the buffer has been acquired and not released.
+	 * This is volatile because a buffer acquired by a read thread may be released by the thread that used the values.
+	 */
+	private volatile boolean inUse = false;
+
+	/**
+	 * Number of rows with timestamps that could not be parsed.
+	 */
+	private int badDateTimeCount = 0;
+
+	/**
+	 * Number of rows with data values that could not be parsed.
+	 */
+	private int badValueCount = 0;
+
+	/**
+	 * Number of rows with unknown interpolation type.
+	 */
+	private int badInterpolationTypeCount = 0;
+
+	/**
+	 * Number of rows that had the wrong number of fields.
+	 */
+	private int fieldCountErrorCount = 0;
+
+	/**
+	 * Number of rows with an empty value, which are not saved.
+	 */
+	private int emptyValueCount = 0;
+
+	/**
+	 * Routine used for logging.
+	 */
+	private final String routine = getClass().getSimpleName() + ".value";
+
+	/**
+	 * Constructor.  Use acquire() to reuse a pooled buffer.
+	 */
+	public TimeSeriesValueBuffer () {
+	}
+
+	/**
+	 * Acquire an empty buffer for the current thread.
+	 * The pooled buffer is returned if it is not in use, otherwise a new buffer is created.
+	 * Call release() when the buffer is no longer needed.
+	 * @return an empty buffer
+	 */
+	public static TimeSeriesValueBuffer acquire () {
+		TimeSeriesValueBuffer buffer = POOL.get();
+		if ( buffer == null ) {
+			buffer = new TimeSeriesValueBuffer();
+			POOL.set(buffer);
+		}
+		else if ( buffer.inUse ) {
+			// Nested read in the same thread so use a buffer that is not pooled.
+			buffer = new TimeSeriesValueBuffer();
+		}
+		else {
+			buffer.clear();
+		}
+		buffer.inUse = true;
+		return buffer;
+	}
+
+	/**
+	 * Add a value to the buffer.
+	 * @param epochMillis timestamp, epoch milliseconds (UTC)
+	 * @param offsetMinutes timestamp offset from UTC, minutes, or TimestampDecoder.NO_OFFSET
+	 * @param value data value
+	 * @param qualityCode quality code index into qualityCodeTable
+	 * @param interpolationType interpolation type
+	 */
+	private void add ( long epochMillis, short offsetMinutes, double value, char qualityCode, InterpolationType interpolationType ) {
+		ensureCapacity();
+		this.epochMillis[this.size] = epochMillis;
+		this.offsetMinutes[this.size] = offsetMinutes;
+		this.values[this.size] = value;
+		this.qualityCodes[this.size] = qualityCode;
+		this.interpolationTypes[this.size] = (byte)interpolationType.ordinal();
+
+		// Track the period and interpolation while buffering so that the values don't need to be scanned again.
+		if ( (this.minEpochIndex < 0) || (epochMillis < this.epochMillis[this.minEpochIndex]) ) {
+			this.minEpochIndex = this.size;
+		}
+		if ( (this.maxEpochIndex < 0) || (epochMillis >= this.epochMillis[this.maxEpochIndex]) ) {
+			this.maxEpochIndex = this.size;
+		}
+		if ( interpolationType.getTimestampPos() == -1 ) {
+			if ( this.beginningInterpolationCount == 0 ) {
+				this.beginningInterpolationType = interpolationType;
+			}
+			++this.beginningInterpolationCount;
+		}
+		++this.size;
+	}
+
+	/**
+	 * Add a distinct quality code to the quality code table.
+	 * @param qualityCode quality code that is not in the table
+	 * @return the index of the quality code in the table
+	 */
+	private char addQualityCode ( String qualityCode ) {
+		if ( this.qualityCodeCount == Character.MAX_VALUE ) {
+			throw new RuntimeException ( "Too many distinct quality codes (" + this.qualityCodeCount + ")." );
+		}
+		if ( this.qualityCodeCount == this.qualityCodeTable.length ) {
+			this.qualityCodeTable = Arrays.copyOf(this.qualityCodeTable, this.qualityCodeTable.length*2);
+			this.dataFlagTable = Arrays.copyOf(this.dataFlagTable, this.dataFlagTable.length*2);
+		}
+		this.qualityCodeTable[this.qualityCodeCount] = qualityCode;
+		// Look up the data flag once for each distinct quality code.
+		if ( this.qualityFlagTable == null ) {
+			this.dataFlagTable[this.qualityCodeCount] = qualityCode;
+		}
+		else {
+			this.dataFlagTable[this.qualityCodeCount] = this.qualityFlagTable.lookup(qualityCode);
+		}
+		return (char)this.qualityCodeCount++;
+	}
+
+	/**
+	 * Add the error counts from another buffer, for example when values from the other buffer are appended in parts.
+	 * @param other buffer with error counts to add, which is not modified
+	 */
+	public void addErrorCounts ( TimeSeriesValueBuffer other ) {
+		this.badDateTimeCount += other.badDateTimeCount;
+		this.badValueCount += other.badValueCount;
+		this.badInterpolationTypeCount += other.badInterpolationTypeCount;
+		this.fieldCountErrorCount += other.fieldCountErrorCount;
+		this.emptyValueCount += other.emptyValueCount;
+	}
+
+	/**
+	 * Add a value to the buffer, for example when read from a cache.
+	 * @param epochMillis timestamp, epoch milliseconds (UTC)
+	 * @param offsetMinutes timestamp offset from UTC, minutes, or TimestampDecoder.NO_OFFSET
+	 * @param value data value
+	 * @param qualityCode quality code
+	 * @param interpolationType interpolation type
+	 */
+	public void addValue ( long epochMillis, int offsetMinutes, double value, String qualityCode, InterpolationType interpolationType ) {
+		add(epochMillis, (short)offsetMinutes, value, findQualityCode(qualityCode), interpolationType);
+	}
+
+	/**
+	 * Append the values from another buffer, for example when a period is read in chunks.
+	 * Only values after the latest timestamp in this buffer are appended,
+	 * so that values at the boundary of overlapping chunks are only included once.
+	 * Buffers must be appended in time order.  Error counts from the other buffer are also added.
+	 * @param other buffer to append, which is not modified
+	 * @return the number of values that were not appended because they duplicate timestamps in this buffer
+	 */
+	public int append ( TimeSeriesValueBuffer other ) {
+		addErrorCounts(other);
+		return append(other, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Append the values from another buffer that are in a period, for example when a period is read from cached blocks.
+	 * Only values after the latest timestamp in this buffer are appended,
+	 * so that values at the boundary of overlapping chunks are only included once.
+	 * Buffers must be appended in time order.  Error counts from the other buffer are not added.
+	 * @param other buffer to append, which is not modified
+	 * @param startLocalMillis start of the period to append, local time milliseconds (see TimestampDecoder.toLocalMillis()), inclusive
+	 * @param endLocalMillis end of the period to append, local time milliseconds, inclusive
+	 * @return the number of values in the period that were not appended because they duplicate timestamps in this buffer
+	 */
+	public int append ( TimeSeriesValueBuffer other, long startLocalMillis, long endLocalMillis ) {
+		boolean checkPeriod = (startLocalMillis != Long.MIN_VALUE) || (endLocalMillis != Long.MAX_VALUE);
+		// Map the other buffer's quality code indices to this buffer's indices.
+		char [] qualityCodeMap = new char[other.qualityCodeCount];
+		for ( int i = 0; i < other.qualityCodeCount; i++ ) {
+			qualityCodeMap[i] = findQualityCode(other.qualityCodeTable[i]);
+		}
+		long maxEpochMillis = (this.maxEpochIndex < 0) ? Long.MIN_VALUE : this.epochMillis[this.maxEpochIndex];
+		int duplicateCount = 0;
+		for ( int i = 0; i < other.size; i++ ) {
+			if ( checkPeriod ) {
+				long localMillis = TimestampDecoder.toLocalMillis(other.epochMillis[i], other.offsetMinutes[i]);
+				if ( (localMillis < startLocalMillis) || (localMillis > endLocalMillis) ) {
+					continue;
+				}
+			}
+			if ( other.epochMillis[i] <= maxEpochMillis ) {
+				++duplicateCount;
+				continue;
+			}
+			add(other.epochMillis[i], other.offsetMinutes[i], other.values[i], qualityCodeMap[other.qualityCodes[i]],
+				INTERPOLATION_TYPES[other.interpolationTypes[i]]);
+		}
+		return duplicateCount;
+	}
+
+	/**
+	 * Clear the buffer so that it can be reused, keeping the arrays.
+	 */
+	public void clear () {
+		this.size = 0;
+		this.qualityCodeCount = 0;
+		this.qualityFlagTable = null;
+		this.minEpochIndex = -1;
+		this.maxEpochIndex = -1;
+		this.beginningInterpolationCount = 0;
+		this.beginningInterpolationType = null;
+		this.badDateTimeCount = 0;
+		this.badValueCount = 0;
+		this.badInterpolationTypeCount = 0;
+		this.fieldCountErrorCount = 0;
+		this.emptyValueCount = 0;
+	}
+
+	/**
+	 * Ensure that the arrays can hold another value.
+	 */
+	private void ensureCapacity () {
+		if ( this.size == this.values.length ) {
+			int capacity = this.values.length*2;
+			this.epochMillis = Arrays.copyOf(this.epochMillis, capacity);
+			this.offsetMinutes = Arrays.copyOf(this.offsetMinutes, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+			this.qualityCodes = Arrays.copyOf(this.qualityCodes, capacity);
+			this.interpolationTypes = Arrays.copyOf(this.interpolationTypes, capacity);
+		}
+	}
+
+	/**
+	 * Find a quality code in the quality code table, adding if not found.
+	 * @param qualityCode quality code
+	 * @return the index of the quality code in the table
+	 */
+	private char findQualityCode ( String qualityCode ) {
+		// Quality codes usually repeat so check the previous value's code first.
+		if ( (this.size > 0) && this.qualityCodeTable[this.qualityCodes[this.size - 1]].equals(qualityCode) ) {
+			return this.qualityCodes[this.size - 1];
+		}
+		for ( int i = 0; i < this.qualityCodeCount; i++ ) {
+			if ( this.qualityCodeTable[i].equals(qualityCode) ) {
+				return (char)i;
+			}
+		}
+		return addQualityCode(qualityCode);
+	}
+
+	/**
+	 * Return the number of rows with timestamps that could not be parsed.
+	 * @return the number of rows with timestamps that could not be parsed
+	 */
+	public int getBadDateTimeCount () {
+		return this.badDateTimeCount;
+	}
+
+	/**
+	 * Return the number of rows with unknown interpolation type.
+	 * @return the number of rows with unknown interpolation type
+	 */
+	public int getBadInterpolationTypeCount () {
+		return this.badInterpolationTypeCount;
+	}
+
+	/**
+	 * Return the number of rows with data values that could not be parsed.
+	 * @return the number of rows with data values that could not be parsed
+	 */
+	public int getBadValueCount () {
+		return this.badValueCount;
+	}
+
+	/**
+	 * Return the number of values with timestamp at the beginning of the interval,
+	 * which are shifted to the end of the interval for regular interval time series.
+	 * @return the number of values with timestamp at the beginning of the interval
+	 */
+	public int getBeginningInterpolationCount () {
+		return this.beginningInterpolationCount;
+	}
+
+	/**
+	 * Return the interpolation type of the first value with timestamp at the beginning of the interval.
+	 * @return the interpolation type of the first value with timestamp at the beginning of the interval, or null if none
+	 */
+	public InterpolationType getBeginningInterpolationType () {
+		return this.beginningInterpolationType;
+	}
+
+	/**
+	 * Return the number of values that the arrays can hold without growing, used to check pooling.
+	 * @return the capacity of the arrays
+	 */
+	int getCapacity () {
+		return this.values.length;
+	}
+
+	/**
+	 * Return the data flag for a value, from the quality code.
+	 * @param i value index (0+)
+	 * @return the data flag for the value, may be an empty string
+	 */
+	public String getDataFlag ( int i ) {
+		return this.dataFlagTable[this.qualityCodes[i]];
+	}
+
+	/**
+	 * Return the date/time for a value, which is created from the epoch milliseconds and offset.
+	 * @param i value index (0+)
+	 * @return a new date/time for the value, which can be modified by the caller
+	 */
+	public DateTime getDateTime ( int i ) {
+		return TimestampDecoder.toDateTime(this.epochMillis[i], this.offsetMinutes[i]);
+	}
+
+	/**
+	 * Return the number of rows with an empty value.
+	 * @return the number of rows with an empty value
+	 */
+	public int getEmptyValueCount () {
+		return this.emptyValueCount;
+	}
+
+	/**
+	 * Return the timestamp for a value.
+	 * @param i value index (0+)
+	 * @return the timestamp for the value, epoch milliseconds (UTC)
+	 */
+	public long getEpochMillis ( int i ) {
+		return this.epochMillis[i];
+	}
+
+	/**
+	 * Return the number of rows that had the wrong number of fields.
+	 * @return the number of rows that had the wrong number of fields
+	 */
+	public int getFieldCountErrorCount () {
+		return this.fieldCountErrorCount;
+	}
+
+	/**
+	 * Return the interpolation type for a value.
+	 * @param i value index (0+)
+	 * @return the interpolation type for the value
+	 */
+	public InterpolationType getInterpolationType ( int i ) {
+		return INTERPOLATION_TYPES[this.interpolationTypes[i]];
+	}
+
+	/**
+	 * Return the index of the value with the latest timestamp.
+	 * @return the index of the value with the latest timestamp, or -1 if the buffer is empty
+	 */
+	public int getMaxEpochIndex () {
+		return this.maxEpochIndex;
+	}
+
+	/**
+	 * Return the index of the value with the earliest timestamp.
+	 * @return the index of the value with the earliest timestamp, or -1 if the buffer is empty
+	 */
+	public int getMinEpochIndex () {
+		return this.minEpochIndex;
+	}
+
+	/**
+	 * Return the timestamp offset from UTC for a value.
+	 * @param i value index (0+)
+	 * @return the offset in minutes, TimestampDecoder.NO_OFFSET if the timestamp did not include an offset
+	 */
+	public int getOffsetMinutes ( int i ) {
+		return this.offsetMinutes[i];
+	}
+
+	/**
+	 * Return the quality code for a value.
+	 * @param i value index (0+)
+	 * @return the quality code for the value, may be an empty string
+	 */
+	public String getQualityCode ( int i ) {
+		return this.qualityCodeTable[this.qualityCodes[i]];
+	}
+
+	/**
+	 * Return the data value.
+	 * @param i value index (0+)
+	 * @return the data value
+	 */
+	public double getValue ( int i ) {
+		return this.values[i];
+	}
+
+	/**
+	 * Return the index of the quality code in the row, adding to the table if not found.
+	 * @param row value row
+	 * @return the index of the quality code in qualityCodeTable
+	 */
+	private char lookupQualityCode ( TimeSeriesValueRow row ) {
+		// Quality codes usually repeat so check the previous value's code first.
+		if ( this.size > 0 ) {
+			char previous = this.qualityCodes[this.size - 1];
+			if ( row.fieldEquals(2, this.qualityCodeTable[previous]) ) {
+				return previous;
+			}
+		}
+		for ( int i = 0; i < this.qualityCodeCount; i++ ) {
+			if ( row.fieldEquals(2, this.qualityCodeTable[i]) ) {
+				return (char)i;
+			}
+		}
+		return addQualityCode(row.getFieldString(2));
+	}
+
+	/**
+	 * Log progress.
+	 */
+	@Override
+	public void progress ( long byteCount, long contentLength, long valueCount ) {
+		String routine = getClass().getSimpleName() + ".progress";
+		if ( contentLength > 0 ) {
+			Message.printStatus(2, routine, "  Read " + valueCount + " time series values, "
+				+ byteCount + " of " + contentLength + " bytes (" + (100*byteCount/contentLength) + "%).");
+		}
+		else {
+			Message.printStatus(2, routine, "  Read " + valueCount + " time series values, " + byteCount + " bytes.");
+		}
+	}
+
+	/**
+	 * Release a buffer that was returned by acquire() so that it can be reused by the thread.
+	 * Large arrays are not kept, to limit memory retained by the thread.
+	 */
+	public void release () {
+		this.inUse = false;
+		if ( this.values.length > MAX_POOLED_CAPACITY ) {
+			this.epochMillis = new long[INITIAL_CAPACITY];
+			this.offsetMinutes = new short[INITIAL_CAPACITY];
+			this.values = new double[INITIAL_CAPACITY];
+			this.qualityCodes = new char[INITIAL_CAPACITY];
+			this.interpolationTypes = new byte[INITIAL_CAPACITY];
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Discard the values and error counts, for example before a response is read again after a failed read.
+	 * Unlike clear(), the quality flag table is kept.
+	 */
+	@Override
+	public void reset () {
+		QualityFlagTable qualityFlagTable = this.qualityFlagTable;
+		clear();
+		this.qualityFlagTable = qualityFlagTable;
+	}
+
+	/**
+	 * Set the table used to look up data flags for quality codes.
+	 * This should be called before values are added.
+	 * @param qualityFlagTable table used to look up data flags, or null to use the quality code as the flag
+	 */
+	public void setQualityFlagTable ( QualityFlagTable qualityFlagTable ) {
+		this.qualityFlagTable = qualityFlagTable;
+	}
+
+	/**
+	 * Return the number of values in the buffer.
+	 * @return the number of values in the buffer
+	 */
+	public int size () {
+		return this.size;
+	}
+
+	/**
+	 * Save a value row.
+	 */
+	@Override
+	public void value ( TimeSeriesValueRow row ) {
+		if ( row.getFieldCount() != FIELD_COUNT ) {
+			if ( this.fieldCountErrorCount == 0 ) {
+				// Warn once to help with troubleshooting:
+				// - probably added a field to the request but did not change the field count check
+				Message.printWarning(3, this.routine, "  Time series values list has the wrong number of fields.");
+			}
+			++this.fieldCountErrorCount;
+			return;
+		}
+		long epochMillis;
+		try {
+			// Decode directly from the parser buffer so that a string and DateTime are not created for each value.
+			epochMillis = this.timestampDecoder.decode(row.getBuffer(), row.getFieldStart(0), row.getFieldEnd(0));
+		}
+		catch ( IllegalArgumentException e ) {
+			Message.printWarning(3, this.routine, "  Error parsing date/time: " + row.getFieldString(0));
+			++this.badDateTimeCount;
+			return;
+		}
+		if ( row.isFieldEmpty(1) ) {
+			// Missing value so don't set in the time series.
+			++this.emptyValueCount;
+			return;
+		}
+		double value;
+		try {
+			value = row.parseDouble(1);
+		}
+		catch ( NumberFormatException e ) {
+			Message.printWarning(3, this.routine, "  Error parsing " + row.getFieldString(0)
+				+ " data value: " + row.getFieldString(1));
+			++this.badValueCount;
+			return;
+		}
+		InterpolationType interpolationType = InterpolationType.UNKNOWN;
+		try {
+			interpolationType = InterpolationType.valueOfNumber(row.parseInt(3));
+		}
+		catch ( NumberFormatException e ) {
+			// Interpolation type is not an integer so will be unknown.
+		}
+		if ( interpolationType == InterpolationType.UNKNOWN ) {
+			Message.printWarning(3, this.routine, "  Unknown interpolation type " + row.getFieldString(3)
+				+ " at " + row.getFieldString(0) + " - skipping value." );
+			++this.badInterpolationTypeCount;
+			return;
+		}
+
+		add(epochMillis, (short)this.timestampDecoder.getOffsetMinutes(), value, lookupQualityCode(row), interpolationType);
+	}
+}
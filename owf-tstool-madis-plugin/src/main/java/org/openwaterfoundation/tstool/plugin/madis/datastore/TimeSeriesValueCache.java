@@ -0,0 +1,491 @@
+// TimeSeriesValueCache - on-disk cache of time series values in time blocks
+
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+
+/**
+ * On-disk cache of time series values, partitioned for each ts_id into fixed-length time blocks,
+ * so that repeated reads of overlapping periods only request blocks that are not cached.
+ * Blocks are aligned to local time (the time of the timestamps, ignoring the offset from UTC),
+ * consistent with the read period that is passed to the web service.
+ * Only blocks that ended at least the minimum age ago are cached, because recent values may still be revised,
+ * so the most recent blocks are always requested from the web service.
+ * The block end is converted to UTC using the offset of the values, independent of the computer's time zone.
+ * Consecutive missing blocks are requested with one read.
+ * <p>
+ * Each block is saved in a file 'ts_id/block.bin' in the cache folder, with layout:
+ * <pre>
+ * int     magic number ('MVAL')
+ * int     format version
+ * long    block length, milliseconds
+ * long    creation time, milliseconds since 1970-01-01 UTC
+ * int     number of distinct quality codes
+ * (int length, byte[] UTF-8)  for each distinct quality code
+ * int     number of values
+ * (long epoch milliseconds, short offset minutes, double value, short quality code index, byte interpolation type)
+ *         for each value
+ * </pre>
+ * Files are written to a temporary file and then moved into place so that concurrent readers never see a partial file.
+ * Files are deleted when they have not been used for the retention period,
+ * and the least recently used files are deleted if the cache is larger than the maximum size.
+ */
+public class TimeSeriesValueCache {
+
+	/**
+	 * Reads values for a period from the web service, used to read blocks that are not cached.
+	 */
+	public interface ValueReader {
+
+		/**
+		 * Read values for a period.
+		 * @param readStart start of the period to read
+		 * @param readEnd end of the period to read
+		 * @param valueBuffer buffer to receive the values
+		 * @exception IOException if the values cannot be read
+		 */
+		void read ( DateTime readStart, DateTime readEnd, TimeSeriesValueBuffer valueBuffer ) throws IOException;
+	}
+
+	/**
+	 * Magic number at the start of a block file, 'MVAL'.
+	 */
+	private static final int MAGIC = 0x4D56414C;
+
+	/**
+	 * Format version, increment when the layout changes so that old files are ignored.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Minimum time between cache cleanups, milliseconds.
+	 */
+	private static final long CLEANUP_INTERVAL = 10*60*1000L;
+
+	/**
+	 * Earliest offset from UTC (UTC-12), milliseconds, used when the data do not indicate the offset,
+	 * so that a block is only cached if it ended at least the minimum age ago in any time zone.
+	 */
+	private static final long MIN_UTC_OFFSET = -12*3600*1000L;
+
+	/**
+	 * Latest offset from UTC (UTC+14), milliseconds, used before the data are read
+	 * to determine the blocks that may be cacheable.
+	 */
+	private static final long MAX_UTC_OFFSET = 14*3600*1000L;
+
+	/**
+	 * Interpolation type values, used to look up the interpolation type from the saved ordinal.
+	 */
+	private static final InterpolationType [] INTERPOLATION_TYPES = InterpolationType.values();
+
+	/**
+	 * Cache folder.
+	 */
+	private final File folder;
+
+	/**
+	 * Block length, milliseconds.
+	 */
+	private final long blockLength;
+
+	/**
+	 * Minimum age of the end of a block for the block to be cached, milliseconds.
+	 */
+	private final long minAge;
+
+	/**
+	 * Time after which files that have not been used are deleted, milliseconds.
+	 */
+	private final long retention;
+
+	/**
+	 * Maximum size of the cache, bytes.
+	 */
+	private final long maxSize;
+
+	/**
+	 * Time of the last cleanup, milliseconds since 1970-01-01 UTC.
+	 */
+	private final AtomicLong lastCleanupTime = new AtomicLong(0);
+
+	/**
+	 * Create a cache.
+	 * @param folder cache folder, which is created if it does not exist
+	 * @param blockLength block length, milliseconds
+	 * @param minAge minimum age of the end of a block for the block to be cached, milliseconds
+	 * @param retention time after which files that have not been used are deleted, milliseconds
+	 * @param maxSize maximum size of the cache, bytes
+	 */
+	public TimeSeriesValueCache ( File folder, long blockLength, long minAge, long retention, long maxSize ) {
+		this.folder = folder;
+		this.blockLength = blockLength;
+		this.minAge = minAge;
+		this.retention = retention;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Delete files that have not been used for the retention period,
+	 * and then the least recently used files if the cache is larger than the maximum size.
+	 * This is called from cleanupInBackground() so that reads do not wait for the cache folders to be listed.
+	 */
+	private void cleanup () {
+		String routine = getClass().getSimpleName() + ".cleanup";
+		long now = System.currentTimeMillis();
+		File [] tsIdFolders = this.folder.listFiles(File::isDirectory);
+		if ( tsIdFolders == null ) {
+			return;
+		}
+		List<File> files = new ArrayList<>();
+		Map<File,Long> lastModifiedMap = new HashMap<>();
+		long size = 0;
+		int deleteCount = 0;
+		for ( File tsIdFolder : tsIdFolders ) {
+			File [] blockFiles = tsIdFolder.listFiles((dir, name) -> name.endsWith(".bin"));
+			if ( blockFiles == null ) {
+				continue;
+			}
+			for ( File file : blockFiles ) {
+				long lastModified = file.lastModified();
+				if ( (now - lastModified) > this.retention ) {
+					if ( file.delete() ) {
+						++deleteCount;
+					}
+					continue;
+				}
+				files.add(file);
+				lastModifiedMap.put(file, lastModified);
+				size += file.length();
+			}
+		}
+		if ( size > this.maxSize ) {
+			// Delete the least recently used files until the cache is smaller than the maximum size.
+			files.sort(Comparator.comparingLong(lastModifiedMap::get));
+			for ( File file : files ) {
+				if ( size <= this.maxSize ) {
+					break;
+				}
+				long length = file.length();
+				if ( file.delete() ) {
+					size -= length;
+					++deleteCount;
+				}
+			}
+		}
+		if ( deleteCount > 0 ) {
+			Message.printStatus(2, routine, "Deleted " + deleteCount + " time series value cache files from \""
+				+ this.folder + "\", cache size is " + (size/1024) + " KB.");
+		}
+	}
+
+	/**
+	 * Clean up the cache in a background thread, if the cache was not cleaned up recently.
+	 * Only one thread claims each cleanup interval so cleanups never overlap.
+	 */
+	private void cleanupInBackground () {
+		String routine = getClass().getSimpleName() + ".cleanupInBackground";
+		long now = System.currentTimeMillis();
+		long lastCleanupTime = this.lastCleanupTime.get();
+		if ( ((now - lastCleanupTime) < CLEANUP_INTERVAL) || !this.lastCleanupTime.compareAndSet(lastCleanupTime, now) ) {
+			return;
+		}
+		Thread thread = new Thread ( () -> {
+			try {
+				cleanup();
+			}
+			catch ( Exception e ) {
+				// Cleanup is tried again after the next interval.
+				Message.printWarning(3, routine, "Error cleaning up time series value cache \"" + this.folder + "\" (" + e + ").");
+			}
+		}, "TimeSeriesValueCache-cleanup" );
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Return the file for a block.
+	 */
+	private File getBlockFile ( int tsId, long block ) {
+		return new File(new File(this.folder, String.valueOf(tsId)), block + ".bin");
+	}
+
+	/**
+	 * Return the offset from UTC for values, using the earliest offset so that the latest UTC time is used for comparisons.
+	 * @param valueBuffer the values
+	 * @return the offset from UTC in milliseconds, MIN_UTC_OFFSET if no values have an offset
+	 */
+	private long getUtcOffset ( TimeSeriesValueBuffer valueBuffer ) {
+		int offsetMinutes = Integer.MAX_VALUE;
+		int valueCount = valueBuffer.size();
+		for ( int i = 0; i < valueCount; i++ ) {
+			int valueOffsetMinutes = valueBuffer.getOffsetMinutes(i);
+			if ( valueOffsetMinutes != TimestampDecoder.NO_OFFSET ) {
+				offsetMinutes = Math.min(offsetMinutes, valueOffsetMinutes);
+			}
+		}
+		if ( offsetMinutes == Integer.MAX_VALUE ) {
+			return MIN_UTC_OFFSET;
+		}
+		return offsetMinutes*60000L;
+	}
+
+	/**
+	 * Read values for a period, using cached blocks where available and reading the other blocks.
+	 * @param tsId the ts_id for the time series
+	 * @param readStart start of the period to read
+	 * @param readEnd end of the period to read
+	 * @param valueBuffer buffer to receive the values in the period
+	 * @param reader reader used to read blocks that are not cached
+	 * @return the number of blocks that were read using the reader, 0 if all blocks were cached
+	 * @exception IOException if values cannot be read
+	 */
+	public int read ( int tsId, DateTime readStart, DateTime readEnd, TimeSeriesValueBuffer valueBuffer, ValueReader reader )
+		throws IOException {
+		String routine = getClass().getSimpleName() + ".read";
+		long startLocalMillis = TimestampDecoder.toLocalMillis(readStart);
+		long endLocalMillis = TimestampDecoder.toLocalMillis(readEnd);
+		long firstBlock = Math.floorDiv(startLocalMillis, this.blockLength);
+		long lastBlock = Math.floorDiv(endLocalMillis, this.blockLength);
+		int blockCount = (int)(lastBlock - firstBlock + 1);
+		// Blocks that end before this time (UTC) can be cached:
+		// - blocks are aligned to local time so the offset from UTC is needed to compare
+		// - the offset is not known until the values are read so use the latest offset to find blocks that may be cached
+		long cacheableEndEpochMillis = System.currentTimeMillis() - this.minAge;
+
+		// Read the cached blocks.
+		TimeSeriesValueBuffer [] blockBuffers = new TimeSeriesValueBuffer[blockCount];
+		int cachedBlockCount = 0;
+		for ( int i = 0; i < blockCount; i++ ) {
+			long block = firstBlock + i;
+			if ( isCacheable(block, cacheableEndEpochMillis, MAX_UTC_OFFSET) ) {
+				blockBuffers[i] = readBlock(getBlockFile(tsId, block));
+				if ( blockBuffers[i] != null ) {
+					++cachedBlockCount;
+				}
+			}
+		}
+
+		// Read each run of missing blocks with one read:
+		// - cacheable blocks are read in full so that they can be saved
+		// - blocks that can't be cached are only read for the requested period
+		int readBlockCount = 0;
+		for ( int i = 0; i < blockCount; ) {
+			if ( blockBuffers[i] != null ) {
+				++i;
+				continue;
+			}
+			int j = i;
+			while ( (j < blockCount) && (blockBuffers[j] == null) ) {
+				++j;
+			}
+			long runStartLocalMillis = (firstBlock + i)*this.blockLength;
+			if ( !isCacheable(firstBlock + i, cacheableEndEpochMillis, MAX_UTC_OFFSET) ) {
+				runStartLocalMillis = Math.max(runStartLocalMillis, startLocalMillis);
+			}
+			long runEndLocalMillis = (firstBlock + j)*this.blockLength;
+			if ( !isCacheable(firstBlock + j - 1, cacheableEndEpochMillis, MAX_UTC_OFFSET) ) {
+				runEndLocalMillis = Math.min(runEndLocalMillis, endLocalMillis);
+			}
+			// The run buffer is only needed until the values are split into blocks.
+			TimeSeriesValueBuffer runBuffer = TimeSeriesValueBuffer.acquire();
+			try {
+				reader.read(toDateTime(runStartLocalMillis), toDateTime(runEndLocalMillis), runBuffer);
+				valueBuffer.addErrorCounts(runBuffer);
+				// Only cache blocks if the values were read without errors.
+				boolean hasErrors = (runBuffer.getBadDateTimeCount() > 0) || (runBuffer.getBadValueCount() > 0)
+					|| (runBuffer.getBadInterpolationTypeCount() > 0) || (runBuffer.getFieldCountErrorCount() > 0);
+				// Use the offset from the data to determine whether the blocks ended the minimum age ago.
+				long utcOffset = getUtcOffset(runBuffer);
+				for ( int k = i; k < j; k++ ) {
+					long block = firstBlock + k;
+					blockBuffers[k] = new TimeSeriesValueBuffer();
+					// The block end is the start of the next block, which is not included.
+					blockBuffers[k].append(runBuffer, block*this.blockLength, (block + 1)*this.blockLength - 1);
+					if ( !hasErrors && isCacheable(block, cacheableEndEpochMillis, utcOffset) ) {
+						try {
+							writeBlock(getBlockFile(tsId, block), blockBuffers[k]);
+						}
+						catch ( IOException e ) {
+							// The values are still used so only warn.
+							Message.printWarning(3, routine, "Error writing time series value cache block for ts_id="
+								+ tsId + " (" + e + ").");
+						}
+					}
+				}
+			}
+			finally {
+				runBuffer.release();
+			}
+			readBlockCount += j - i;
+			i = j;
+		}
+
+		// Append the blocks in order, only including values in the requested period.
+		for ( TimeSeriesValueBuffer blockBuffer : blockBuffers ) {
+			valueBuffer.append(blockBuffer, startLocalMillis, endLocalMillis);
+		}
+		Message.printStatus(2, routine, "Used " + cachedBlockCount + " cached and " + readBlockCount
+			+ " read time series value blocks for ts_id=" + tsId + ".");
+		if ( readBlockCount > 0 ) {
+			cleanupInBackground();
+		}
+		return readBlockCount;
+	}
+
+	/**
+	 * Return whether a block can be cached because it ended at least the minimum age ago.
+	 * @param block the block number
+	 * @param cacheableEndEpochMillis blocks that end at or before this time can be cached, epoch milliseconds (UTC)
+	 * @param utcOffset offset of the block local time from UTC, milliseconds
+	 */
+	private boolean isCacheable ( long block, long cacheableEndEpochMillis, long utcOffset ) {
+		return ((block + 1)*this.blockLength - utcOffset) <= cacheableEndEpochMillis;
+	}
+
+	/**
+	 * Read a block file.
+	 * @param file block file
+	 * @return the block values, or null if the file does not exist or is not a compatible block file
+	 */
+	private TimeSeriesValueBuffer readBlock ( File file ) {
+		String routine = getClass().getSimpleName() + ".readBlock";
+		if ( !file.exists() ) {
+			return null;
+		}
+		try ( InputStream is = Files.newInputStream(file.toPath());
+			DataInputStream in = new DataInputStream(new BufferedInputStream(is, 65536)) ) {
+			if ( (in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION) || (in.readLong() != this.blockLength) ) {
+				// Old format or different block length so read again.
+				return null;
+			}
+			in.readLong(); // Creation time.
+			String [] qualityCodes = new String[in.readInt()];
+			for ( int i = 0; i < qualityCodes.length; i++ ) {
+				byte [] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				qualityCodes[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			int valueCount = in.readInt();
+			TimeSeriesValueBuffer blockBuffer = new TimeSeriesValueBuffer();
+			for ( int i = 0; i < valueCount; i++ ) {
+				long epochMillis = in.readLong();
+				short offsetMinutes = in.readShort();
+				double value = in.readDouble();
+				String qualityCode = qualityCodes[in.readShort() & 0xffff];
+				InterpolationType interpolationType = INTERPOLATION_TYPES[in.readByte()];
+				blockBuffer.addValue(epochMillis, offsetMinutes, value, qualityCode, interpolationType);
+			}
+			// Update the modification time so that the least recently used files are deleted first.
+			file.setLastModified(System.currentTimeMillis());
+			return blockBuffer;
+		}
+		catch ( IOException | RuntimeException e ) {
+			Message.printWarning(3, routine, "Error reading time series value cache block \"" + file + "\" (" + e
+				+ ") - will read again.");
+			return null;
+		}
+	}
+
+	/**
+	 * Return a DateTime for local time milliseconds, with minute precision as used for the read period.
+	 */
+	private DateTime toDateTime ( long localMillis ) {
+		DateTime dateTime = TimestampDecoder.toDateTime(localMillis, TimestampDecoder.NO_OFFSET);
+		dateTime.setPrecision(DateTime.PRECISION_MINUTE);
+		return dateTime;
+	}
+
+	/**
+	 * Write a block file.
+	 * @param file block file
+	 * @param blockBuffer the block values
+	 */
+	private void writeBlock ( File file, TimeSeriesValueBuffer blockBuffer ) throws IOException {
+		File tsIdFolder = file.getParentFile();
+		if ( !tsIdFolder.exists() ) {
+			Files.createDirectories(tsIdFolder.toPath());
+		}
+		// Create the quality code table.
+		Map<String,Integer> qualityCodeIndexMap = new HashMap<>();
+		List<String> qualityCodes = new ArrayList<>();
+		int valueCount = blockBuffer.size();
+		for ( int i = 0; i < valueCount; i++ ) {
+			String qualityCode = blockBuffer.getQualityCode(i);
+			if ( !qualityCodeIndexMap.containsKey(qualityCode) ) {
+				qualityCodeIndexMap.put(qualityCode, qualityCodes.size());
+				qualityCodes.add(qualityCode);
+			}
+		}
+		Path tmpPath = Files.createTempFile(tsIdFolder.toPath(), file.getName(), ".tmp");
+		try {
+			try ( OutputStream os = Files.newOutputStream(tmpPath);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 65536)) ) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(this.blockLength);
+				out.writeLong(System.currentTimeMillis());
+				out.writeInt(qualityCodes.size());
+				for ( String qualityCode : qualityCodes ) {
+					byte [] bytes = qualityCode.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+				out.writeInt(valueCount);
+				for ( int i = 0; i < valueCount; i++ ) {
+					out.writeLong(blockBuffer.getEpochMillis(i));
+					out.writeShort(blockBuffer.getOffsetMinutes(i));
+					out.writeDouble(blockBuffer.getValue(i));
+					out.writeShort(qualityCodeIndexMap.get(blockBuffer.getQualityCode(i)));
+					out.writeByte(blockBuffer.getInterpolationType(i).ordinal());
+				}
+			}
+			TimeSeriesCatalogSnapshot.moveIntoPlace(tmpPath, file.toPath());
+		}
+		finally {
+			Files.deleteIfExists(tmpPath);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+// TimeSeriesValueParser - streaming parser for time series values web service responses
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for the 'csv' time series values response, which is similar to:
+ * <pre>
+ * #ts_id;957010
+ * #rows;1
+ * #Timestamp;Value;Quality Code;Interpolation Type
+ * 2022-12-30T18:00:00.000-07:00;84.88;200;102
+ * </pre>
+ * The response is read into a fixed-size byte buffer and split into lines and semicolon-separated fields
+ * without creating strings for the values.
+ * Each value row is passed to a TimeSeriesValueSink, so memory use does not depend on the size of the response.
+ * Header lines (starting with #) are passed to the sink as name and value strings.
+ */
+public class TimeSeriesValueParser {
+
+	/**
+	 * Default buffer size, bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+
+	/**
+	 * Default number of values between progress calls.
+	 */
+	public static final int DEFAULT_PROGRESS_INTERVAL = 100000;
+
+	/**
+	 * Initial buffer size, bytes, which is increased if a line is longer than the buffer.
+	 */
+	private final int bufferSize;
+
+	/**
+	 * Number of values between progress calls.
+	 */
+	private final int progressInterval;
+
+	/**
+	 * Create a parser with default buffer size and progress interval.
+	 */
+	public TimeSeriesValueParser () {
+		this ( DEFAULT_BUFFER_SIZE, DEFAULT_PROGRESS_INTERVAL );
+	}
+
+	/**
+	 * Create a parser.
+	 * @param bufferSize initial buffer size, bytes
+	 * @param progressInterval number of values between progress calls
+	 */
+	public TimeSeriesValueParser ( int bufferSize, int progressInterval ) {
+		this.bufferSize = bufferSize;
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Parse a response.
+	 * @param in input stream for the response, which is not closed
+	 * @param contentLength the response content length, or -1 if not known, used for progress
+	 * @param sink the sink to receive headers, values, and progress
+	 * @return the number of value rows that were parsed
+	 * @exception IOException if there is an error reading the input stream
+	 */
+	public long parse ( InputStream in, long contentLength, TimeSeriesValueSink sink ) throws IOException {
+		byte [] buffer = new byte[this.bufferSize];
+		TimeSeriesValueRow row = new TimeSeriesValueRow();
+		// Number of bytes in the buffer.
+		int length = 0;
+		// Number of bytes at the front of the buffer that have been checked for a newline.
+		int scanLength = 0;
+		long byteCount = 0;
+		long valueCount = 0;
+		long nextProgress = this.progressInterval;
+		boolean eof = false;
+		while ( !eof ) {
+			// Fill the buffer after any partial line that was moved to the front.
+			if ( length == buffer.length ) {
+				// Line is longer than the buffer so increase the buffer size.
+				buffer = Arrays.copyOf(buffer, buffer.length*2);
+			}
+			int n = in.read(buffer, length, buffer.length - length);
+			if ( n < 0 ) {
+				eof = true;
+				if ( length == 0 ) {
+					break;
+				}
+			}
+			else {
+				length += n;
+				byteCount += n;
+			}
+
+			// Process complete lines, and the last line at the end of the input.
+			// The search for a newline resumes after the partial line that was already checked,
+			// so that a line that spans many reads is only scanned once.
+			int lineStart = 0;
+			for ( int pos = scanLength; pos < length; pos++ ) {
+				if ( buffer[pos] == '\n' ) {
+					if ( parseLine(buffer, lineStart, pos, row, sink) ) {
+						++valueCount;
+						if ( valueCount == nextProgress ) {
+							sink.progress(byteCount, contentLength, valueCount);
+							nextProgress += this.progressInterval;
+						}
+					}
+					lineStart = pos + 1;
+				}
+			}
+			if ( eof ) {
+				if ( lineStart < length ) {
+					// Last line does not end with a newline.
+					if ( parseLine(buffer, lineStart, length, row, sink) ) {
+						++valueCount;
+					}
+				}
+				length = 0;
+			}
+			else if ( lineStart > 0 ) {
+				// Move the partial line to the front of the buffer.
+				System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+				length -= lineStart;
+			}
+			// The partial line in the buffer does not contain a newline.
+			scanLength = length;
+		}
+		sink.progress(byteCount, contentLength, valueCount);
+		return valueCount;
+	}
+
+	/**
+	 * Parse a line.
+	 * @param buffer buffer containing the line
+	 * @param start start position of the line
+	 * @param end end position of the line (exclusive), not including the newline
+	 * @param row row to reuse for value rows
+	 * @param sink sink to receive the line
+	 * @return true if the line was a value row, false if a header or blank line
+	 */
+	private boolean parseLine ( byte [] buffer, int start, int end, TimeSeriesValueRow row, TimeSeriesValueSink sink ) {
+		// Trim whitespace, including the carriage return for Windows line endings.
+		while ( (start < end) && (buffer[start] <= ' ') ) {
+			++start;
+		}
+		while ( (end > start) && (buffer[end - 1] <= ' ') ) {
+			--end;
+		}
+		if ( start == end ) {
+			// Blank line.
+			return false;
+		}
+		if ( buffer[start] == '#' ) {
+			// Header line:  #name;value
+			String line = new String(buffer, start + 1, end - start - 1, StandardCharsets.UTF_8);
+			int pos = line.indexOf(';');
+			if ( pos < 0 ) {
+				sink.header(line.trim(), "");
+			}
+			else {
+				sink.header(line.substring(0, pos).trim(), line.substring(pos + 1).trim());
+			}
+			return false;
+		}
+
+		// Value line:  split into fields, trimming spaces from each field.
+		row.buffer = buffer;
+		int fieldCount = 0;
+		int fieldStart = start;
+		for ( int pos = start; pos <= end; pos++ ) {
+			if ( (pos == end) || (buffer[pos] == ';') ) {
+				if ( fieldCount < TimeSeriesValueRow.MAX_FIELDS ) {
+					int s = fieldStart;
+					int e = pos;
+					while ( (s < e) && (buffer[s] == ' ') ) {
+						++s;
+					}
+					while ( (e > s) && (buffer[e - 1] == ' ') ) {
+						--e;
+					}
+					row.fieldStart[fieldCount] = s;
+					row.fieldEnd[fieldCount] = e;
+				}
+				++fieldCount;
+				fieldStart = pos + 1;
+			}
+		}
+		row.fieldCount = fieldCount;
+		sink.value(row);
+		return true;
+	}
+}
@@ -0,0 +1,149 @@
+// TimeSeriesValueRouter - route values from a multiple time series response to a sink for each time series
+
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Route values from a response that contains multiple time series to a sink for each time series.
+ * The response for multiple ts_id contains a block for each time series, similar to the following,
+ * and values are routed to the sink for the most recent "#ts_id" header as the response is streamed:
+ * <pre>
+ * #ts_id;957010
+ * #rows;1
+ * #Timestamp;Value;Quality Code;Interpolation Type
+ * 2022-12-30T18:00:00.000-07:00;84.88;200;102
+ * #ts_id;957011
+ * ...
+ * </pre>
+ */
+public class TimeSeriesValueRouter implements TimeSeriesValueSink {
+
+	/**
+	 * Sink for each ts_id.
+	 */
+	private final Map<Integer,TimeSeriesValueSink> sinkMap = new HashMap<>();
+
+	/**
+	 * Sink for the current time series block, or null if the block is not for a requested time series.
+	 */
+	private TimeSeriesValueSink currentSink = null;
+
+	/**
+	 * Number of value rows that were not routed because the ts_id was not known.
+	 */
+	private long unroutedCount = 0;
+
+	/**
+	 * Create a router.
+	 */
+	public TimeSeriesValueRouter () {
+	}
+
+	/**
+	 * Add the sink for a time series.
+	 * @param tsId the ts_id for the time series
+	 * @param sink the sink to receive the time series values
+	 */
+	public void addSink ( int tsId, TimeSeriesValueSink sink ) {
+		this.sinkMap.put(tsId, sink);
+	}
+
+	/**
+	 * Return the number of value rows that were not routed because the ts_id was not known.
+	 * @return the number of value rows that were not routed
+	 */
+	public long getUnroutedCount () {
+		return this.unroutedCount;
+	}
+
+	/**
+	 * Receive a header line, which starts a new time series block if "ts_id".
+	 * Other headers are passed to the sink for the current block.
+	 */
+	@Override
+	public void header ( String name, String value ) {
+		String routine = getClass().getSimpleName() + ".header";
+		if ( name.equalsIgnoreCase("ts_id") ) {
+			this.currentSink = null;
+			try {
+				this.currentSink = this.sinkMap.get(Integer.valueOf(value));
+			}
+			catch ( NumberFormatException e ) {
+				// Handled below.
+			}
+			if ( this.currentSink == null ) {
+				Message.printWarning(3, routine, "Response contains values for ts_id=" + value
+					+ " that was not requested - ignoring.");
+			}
+		}
+		else if ( this.currentSink != null ) {
+			this.currentSink.header(name, value);
+		}
+	}
+
+	/**
+	 * Log progress for the full response.
+	 */
+	@Override
+	public void progress ( long byteCount, long contentLength, long valueCount ) {
+		String routine = getClass().getSimpleName() + ".progress";
+		if ( contentLength > 0 ) {
+			Message.printStatus(2, routine, "  Read " + valueCount + " values for " + this.sinkMap.size() + " time series, "
+				+ byteCount + " of " + contentLength + " bytes (" + (100*byteCount/contentLength) + "%).");
+		}
+		else {
+			Message.printStatus(2, routine, "  Read " + valueCount + " values for " + this.sinkMap.size() + " time series, "
+				+ byteCount + " bytes.");
+		}
+	}
+
+	/**
+	 * Reset the sink for each time series, for example before a response is read again after a failed read.
+	 */
+	@Override
+	public void reset () {
+		this.currentSink = null;
+		this.unroutedCount = 0;
+		for ( TimeSeriesValueSink sink : this.sinkMap.values() ) {
+			sink.reset();
+		}
+	}
+
+	/**
+	 * Route a value row to the sink for the current time series block.
+	 */
+	@Override
+	public void value ( TimeSeriesValueRow row ) {
+		if ( this.currentSink == null ) {
+			++this.unroutedCount;
+		}
+		else {
+			this.currentSink.value(row);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+// TimeSeriesValueRow - one row of time series values in the parser buffer
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One row of time series values, which references fields in the TimeSeriesValueParser byte buffer.
+ * The row is reused for each line so that parsing does not create objects for each value.
+ * Fields are separated by semicolons, for example:  2022-12-30T18:00:00.000-07:00;84.88;200;102
+ * Field start and end positions exclude leading and trailing spaces.
+ */
+public class TimeSeriesValueRow {
+
+	/**
+	 * Maximum number of fields that are saved, additional fields are counted but ignored.
+	 */
+	static final int MAX_FIELDS = 16;
+
+	/**
+	 * Buffer containing the row.
+	 */
+	byte [] buffer = null;
+
+	/**
+	 * Start position of each field in the buffer.
+	 */
+	final int [] fieldStart = new int[MAX_FIELDS];
+
+	/**
+	 * End position (exclusive) of each field in the buffer.
+	 */
+	final int [] fieldEnd = new int[MAX_FIELDS];
+
+	/**
+	 * Number of fields in the row.
+	 */
+	int fieldCount = 0;
+
+	/**
+	 * Powers of ten that can be represented exactly as a double, used to parse decimal numbers.
+	 */
+	private static final double [] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Constructor, only called by the parser.
+	 */
+	TimeSeriesValueRow () {
+	}
+
+	/**
+	 * Return the buffer containing the row, for decoders that work directly with bytes.
+	 * @return the buffer containing the row
+	 */
+	public byte [] getBuffer () {
+		return this.buffer;
+	}
+
+	/**
+	 * Return the number of fields in the row.
+	 * @return the number of fields in the row
+	 */
+	public int getFieldCount () {
+		return this.fieldCount;
+	}
+
+	/**
+	 * Return the end position (exclusive) of a field in the buffer.
+	 * @param field field index (0+)
+	 * @return the end position of the field
+	 */
+	public int getFieldEnd ( int field ) {
+		return this.fieldEnd[field];
+	}
+
+	/**
+	 * Return the start position of a field in the buffer.
+	 * @param field field index (0+)
+	 * @return the start position of the field
+	 */
+	public int getFieldStart ( int field ) {
+		return this.fieldStart[field];
+	}
+
+	/**
+	 * Return a field as a string.  This creates a string so should only be used when necessary.
+	 * @param field field index (0+)
+	 * @return the field as a string, empty if the field is empty
+	 */
+	public String getFieldString ( int field ) {
+		return new String(this.buffer, this.fieldStart[field], this.fieldEnd[field] - this.fieldStart[field], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return whether a field is empty.
+	 * @param field field index (0+)
+	 * @return whether the field is empty
+	 */
+	public boolean isFieldEmpty ( int field ) {
+		return this.fieldEnd[field] == this.fieldStart[field];
+	}
+
+	/**
+	 * Return whether a field has the same bytes as a string, used to reuse strings for repeated values.
+	 * @param field field index (0+)
+	 * @param s string to compare, which should only contain single-byte characters
+	 * @return whether the field matches the string
+	 */
+	public boolean fieldEquals ( int field, String s ) {
+		int start = this.fieldStart[field];
+		int length = this.fieldEnd[field] - start;
+		if ( (s == null) || (s.length() != length) ) {
+			return false;
+		}
+		for ( int i = 0; i < length; i++ ) {
+			if ( this.buffer[start + i] != s.charAt(i) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a field as a double.
+	 * Simple decimal numbers are parsed directly from the bytes.
+	 * Other numbers (exponents, many digits) are parsed with Double.parseDouble().
+	 * @param field field index (0+)
+	 * @return the parsed number
+	 * @exception NumberFormatException if the field is not a number
+	 */
+	public double parseDouble ( int field ) {
+		int pos = this.fieldStart[field];
+		int end = this.fieldEnd[field];
+		if ( pos == end ) {
+			throw new NumberFormatException("Empty number");
+		}
+		boolean negative = false;
+		if ( (this.buffer[pos] == '-') || (this.buffer[pos] == '+') ) {
+			negative = this.buffer[pos] == '-';
+			++pos;
+		}
+		long mantissa = 0;
+		int digitCount = 0;
+		int fractionDigitCount = 0;
+		boolean haveDecimal = false;
+		for ( ; pos < end; pos++ ) {
+			byte b = this.buffer[pos];
+			if ( (b >= '0') && (b <= '9') ) {
+				mantissa = mantissa*10 + (b - '0');
+				++digitCount;
+				if ( haveDecimal ) {
+					++fractionDigitCount;
+				}
+			}
+			else if ( (b == '.') && !haveDecimal ) {
+				haveDecimal = true;
+			}
+			else {
+				// Exponent or invalid character so use the general parser.
+				return Double.parseDouble(getFieldString(field));
+			}
+		}
+		if ( (digitCount == 0) || (digitCount > 15) || (fractionDigitCount >= POWERS_OF_TEN.length) ) {
+			// No digits (will throw an exception) or too many digits to parse exactly.
+			return Double.parseDouble(getFieldString(field));
+		}
+		// The mantissa and power of ten are exact so one division gives the correctly rounded result.
+		double value = mantissa/POWERS_OF_TEN[fractionDigitCount];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a field as an integer.
+	 * @param field field index (0+)
+	 * @return the parsed integer
+	 * @exception NumberFormatException if the field is not an integer
+	 */
+	public int parseInt ( int field ) {
+		int pos = this.fieldStart[field];
+		int end = this.fieldEnd[field];
+		boolean negative = false;
+		if ( (pos < end) && ((this.buffer[pos] == '-') || (this.buffer[pos] == '+')) ) {
+			negative = this.buffer[pos] == '-';
+			++pos;
+		}
+		if ( (pos == end) || ((end - pos) > 9) ) {
+			// Empty or possibly too large so use the general parser, which will throw an exception if invalid.
+			return Integer.parseInt(getFieldString(field));
+		}
+		int value = 0;
+		for ( ; pos < end; pos++ ) {
+			byte b = this.buffer[pos];
+			if ( (b < '0') || (b > '9') ) {
+				throw new NumberFormatException("Invalid integer \"" + getFieldString(field) + "\"");
+			}
+			value = value*10 + (b - '0');
+		}
+		return negative ? -value : value;
+	}
+}
@@ -0,0 +1,60 @@
+// TimeSeriesValueSink - receives time series values from the streaming values parser
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+/**
+ * Receives time series values from TimeSeriesValueParser as the response is read.
+ * The row passed to value() is reused for the next row, so values must be copied out of the row before returning.
+ */
+public interface TimeSeriesValueSink {
+
+	/**
+	 * Receive a header line, for example "#ts_id;957010".
+	 * @param name header name without the leading #, for example "ts_id"
+	 * @param value header value, or an empty string if no value
+	 */
+	default void header ( String name, String value ) {
+	}
+
+	/**
+	 * Receive progress, called periodically while reading and once at the end.
+	 * @param byteCount number of bytes read
+	 * @param contentLength the response content length, or -1 if not known
+	 * @param valueCount number of value rows read
+	 */
+	default void progress ( long byteCount, long contentLength, long valueCount ) {
+	}
+
+	/**
+	 * Discard the values that have been received, called before a response is read again after a failed read.
+	 * Sinks that save values must override this method so that values are not duplicated.
+	 */
+	default void reset () {
+	}
+
+	/**
+	 * Receive a value row.
+	 * @param row the value row, which is reused after this method returns
+	 */
+	void value ( TimeSeriesValueRow row );
+}
@@ -0,0 +1,336 @@
+// TimeSeriesValueTimeAdjuster - adjust time series value date/times for the output interval
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.TS.TS;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+import RTi.Util.Time.TimeInterval;
+
+/**
+ * Adjust date/times for time series values and the time series period, consistent with the requested
+ * interval and read properties.  The same adjustments are used for the period and for each value
+ * so that values align with the allocated period:
+ * <ul>
+ * <li> for regular interval time series, values with timestamp at the beginning of the interval are shifted
+ *      to the end of the interval because TSTool uses interval-ending values</li>
+ * <li> 1Day values are shifted to the previous day because the timestamp is at midnight (hour zero of the next day),
+ *      unless read as 24Hour</li>
+ * <li> 24Hour values read as 1Day are shifted to the previous day</li>
+ * <li> if IrregularInterval was requested, the precision is set for the irregular interval</li>
+ * </ul>
+ * This class is the only place that the rules are implemented.
+ * The adjustments are available for DateTime and for local time milliseconds
+ * (see TimestampDecoder.toLocalMillis()), which are used by RegularIntervalValueTransfer.
+ */
+public class TimeSeriesValueTimeAdjuster {
+
+	/**
+	 * Milliseconds per day.
+	 */
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	/**
+	 * Requested interval base.
+	 */
+	private final int intervalBaseReq;
+
+	/**
+	 * Requested interval multiplier.
+	 */
+	private final int intervalMultReq;
+
+	/**
+	 * Requested interval length, milliseconds, or -1 if the interval does not have a fixed length.
+	 */
+	private final long intervalMillisReq;
+
+	/**
+	 * Whether the requested interval is regular.
+	 */
+	private final boolean isRegularIntervalReq;
+
+	/**
+	 * Irregular interval for output, or null if the requested interval is used.
+	 */
+	private final TimeInterval irregularInterval;
+
+	/**
+	 * Whether the requested interval is 1Day.
+	 */
+	private final boolean isDayReq;
+
+	/**
+	 * Whether 1Day values are read as 24Hour, which sets the output precision to hour.
+	 */
+	private final boolean isDayReadAs24Hour;
+
+	/**
+	 * Whether values are shifted to the previous day for the output interval,
+	 * which also sets the output precision to day.
+	 */
+	private final boolean shiftToPreviousDay;
+
+	/**
+	 * Precision of adjusted date/times, as a DateTime.PRECISION_* value,
+	 * or -1 if the precision of the timestamp is used.
+	 */
+	private final int outputPrecision;
+
+	/**
+	 * Create an adjuster.
+	 * @param intervalBaseReq requested interval base
+	 * @param intervalMultReq requested interval multiplier
+	 * @param irregularInterval irregular interval for output, or null to use the requested interval
+	 * @param readDayAs24Hour whether 1Day values are read as 24Hour
+	 * @param read24HourAsDay whether 24Hour values are read as 1Day
+	 */
+	public TimeSeriesValueTimeAdjuster ( int intervalBaseReq, int intervalMultReq, TimeInterval irregularInterval,
+		boolean readDayAs24Hour, boolean read24HourAsDay ) {
+		this.intervalBaseReq = intervalBaseReq;
+		this.intervalMultReq = intervalMultReq;
+		this.intervalMillisReq = getIntervalMillis(intervalBaseReq, intervalMultReq);
+		this.isRegularIntervalReq = TimeInterval.isRegularInterval(intervalBaseReq);
+		this.irregularInterval = irregularInterval;
+		this.isDayReq = this.isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1);
+		boolean is24HourReq = this.isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24);
+		this.isDayReadAs24Hour = this.isDayReq && readDayAs24Hour;
+		if ( this.isDayReq && !readDayAs24Hour ) {
+			// By default, 1Day time series are shifted.
+			// - KiWIS timestamp is at midnight (hour zero of next day)
+			// - do not do the adjustment if irregular interval other than if IrregDay is requested
+			// - Month and Year intervals can only be read with IrregularInterval (see readTimeSeries()),
+			//   so their timestamps are not shifted
+			this.shiftToPreviousDay = (irregularInterval == null)
+				|| (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY);
+		}
+		else {
+			// 24Hour in KiWIS but want 1Day output.
+			this.shiftToPreviousDay = is24HourReq && read24HourAsDay;
+		}
+		if ( irregularInterval != null ) {
+			// Irregular interval output was requested:
+			// - set the precision based on what was requested
+			this.outputPrecision = irregularInterval.getIrregularIntervalPrecision();
+		}
+		else if ( this.shiftToPreviousDay ) {
+			this.outputPrecision = DateTime.PRECISION_DAY;
+		}
+		else if ( this.isDayReadAs24Hour ) {
+			this.outputPrecision = DateTime.PRECISION_HOUR;
+		}
+		else {
+			this.outputPrecision = -1;
+		}
+	}
+
+	/**
+	 * Adjust a date/time for the interpolation type so that the timestamp is at the end of the interval.
+	 * Only regular interval time series are adjusted.
+	 * @param dateTime date/time to adjust, which is modified
+	 * @param interpolationType interpolation type for the value
+	 * @return 1 if the date/time was adjusted, 0 if not adjusted
+	 */
+	public int adjustForInterpolationType ( DateTime dateTime, InterpolationType interpolationType ) {
+		if ( isShiftedToIntervalEnd(interpolationType) ) {
+			// Timestamp is at the beginning of the interval so shift to the end.
+			dateTime.addInterval(this.intervalBaseReq, this.intervalMultReq);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Adjust a local time for the interpolation type so that the timestamp is at the end of the interval,
+	 * consistent with adjustForInterpolationType(DateTime,InterpolationType).
+	 * Only use if isLocalMillisSupported() returns true.
+	 * @param localMillis local time milliseconds
+	 * @param interpolationType interpolation type for the value
+	 * @return the adjusted local time milliseconds
+	 */
+	public long adjustForInterpolationType ( long localMillis, InterpolationType interpolationType ) {
+		if ( isShiftedToIntervalEnd(interpolationType) ) {
+			return localMillis + this.intervalMillisReq;
+		}
+		return localMillis;
+	}
+
+	/**
+	 * Adjust a date/time for the output interval, after adjusting for the interpolation type.
+	 * @param dateTime date/time to adjust, which is modified
+	 */
+	public void adjustForOutputInterval ( DateTime dateTime ) {
+		if ( this.shiftToPreviousDay ) {
+			// Adjust the KiWIS timestamp to previous day (time will be discarded).
+			dateTime.addDay(-1);
+			dateTime.setHour(0); // Should not be used.
+			dateTime.setPrecision(DateTime.PRECISION_DAY);
+		}
+		else if ( this.isDayReadAs24Hour ) {
+			// Since KiWIS timestamp already includes hour, don't need to do anything,
+			// other than the output time series needs to have its interval changed.
+			dateTime.setPrecision(DateTime.PRECISION_HOUR);
+		}
+		if ( this.irregularInterval != null ) {
+			dateTime.setPrecision(this.outputPrecision);
+		}
+	}
+
+	/**
+	 * Adjust a local time for the output interval, after adjusting for the interpolation type,
+	 * consistent with adjustForOutputInterval(DateTime).
+	 * Only use if isLocalMillisSupported() returns true.
+	 * @param localMillis local time milliseconds
+	 * @return the adjusted local time milliseconds, truncated to the output precision
+	 */
+	public long adjustForOutputInterval ( long localMillis ) {
+		if ( this.shiftToPreviousDay ) {
+			localMillis -= MILLIS_PER_DAY;
+		}
+		if ( this.outputPrecision >= 0 ) {
+			long precisionMillis = getIntervalMillis(this.outputPrecision, 1);
+			localMillis -= Math.floorMod(localMillis, precisionMillis);
+		}
+		return localMillis;
+	}
+
+	/**
+	 * Adjust a period date/time.
+	 * @param dateTime date/time to adjust, which is modified, can be null
+	 * @param interpolationType interpolation type that shifts values to the end of the interval,
+	 * or null if no values are shifted
+	 */
+	private void adjustPeriodDateTime ( DateTime dateTime, InterpolationType interpolationType ) {
+		if ( dateTime == null ) {
+			return;
+		}
+		if ( interpolationType != null ) {
+			adjustForInterpolationType(dateTime, interpolationType);
+		}
+		adjustForOutputInterval(dateTime);
+	}
+
+	/**
+	 * Return the length of an interval in milliseconds.
+	 * @param intervalBase interval base
+	 * @param intervalMult interval multiplier
+	 * @return the length of the interval in milliseconds, or -1 if the interval does not have a fixed length
+	 */
+	static long getIntervalMillis ( int intervalBase, int intervalMult ) {
+		if ( intervalMult <= 0 ) {
+			return -1;
+		}
+		else if ( intervalBase == TimeInterval.SECOND ) {
+			return intervalMult*1000L;
+		}
+		else if ( intervalBase == TimeInterval.MINUTE ) {
+			return intervalMult*60000L;
+		}
+		else if ( intervalBase == TimeInterval.HOUR ) {
+			return intervalMult*3600000L;
+		}
+		else if ( intervalBase == TimeInterval.DAY ) {
+			return intervalMult*MILLIS_PER_DAY;
+		}
+		return -1;
+	}
+
+	/**
+	 * Return whether a value's date/time is for a 1Day time series and has a non-zero hour,
+	 * which should be checked after adjusting for the interpolation type.
+	 * TSTool does not have a clean way to handle, for example, 7AM to 7AM time series,
+	 * so the count is added as a time series property.
+	 * @param dateTime date/time to check
+	 * @return whether the date/time is for a 1Day time series and has a non-zero hour
+	 */
+	public boolean isDayNonZeroHour ( DateTime dateTime ) {
+		return this.isDayReq && (dateTime.getHour() != 0);
+	}
+
+	/**
+	 * Return whether a value's local time is for a 1Day time series and has a non-zero hour,
+	 * consistent with isDayNonZeroHour(DateTime).
+	 * @param localMillis local time milliseconds, after adjusting for the interpolation type
+	 * @return whether the local time is for a 1Day time series and has a non-zero hour
+	 */
+	public boolean isDayNonZeroHour ( long localMillis ) {
+		return this.isDayReq && (Math.floorMod(localMillis, MILLIS_PER_DAY) >= 3600000L);
+	}
+
+	/**
+	 * Return whether values can be adjusted as local time milliseconds,
+	 * which requires regular interval output and a requested interval with fixed length (second, minute, hour, day).
+	 * @return whether the local time milliseconds methods can be used
+	 */
+	public boolean isLocalMillisSupported () {
+		return this.isRegularIntervalReq && (this.irregularInterval == null) && (this.intervalMillisReq > 0);
+	}
+
+	/**
+	 * Return whether values with the interpolation type are shifted to the end of the interval.
+	 * @param interpolationType interpolation type for the value
+	 * @return whether the timestamp is at the beginning of a regular interval and is shifted to the end
+	 */
+	public boolean isShiftedToIntervalEnd ( InterpolationType interpolationType ) {
+		return this.isRegularIntervalReq && (interpolationType.getTimestampPos() == -1);
+	}
+
+	/**
+	 * Set the time series period from the buffered values, adjusted consistent with the values.
+	 * The minimum and maximum timestamps and whether any values are shifted to the end of the interval
+	 * were determined when the values were buffered, so the values do not need to be scanned again.
+	 * The original period (from the requested read period) is also adjusted, if set.
+	 * @param ts time series to update
+	 * @param valueBuffer buffered values, must not be empty
+	 */
+	public void setPeriod ( TS ts, TimeSeriesValueBuffer valueBuffer ) {
+		String routine = getClass().getSimpleName() + ".setPeriod";
+		// Interpolation type that shifts values, or null if no values are shifted.
+		InterpolationType interpolationType = null;
+		if ( valueBuffer.getBeginningInterpolationCount() > 0 ) {
+			interpolationType = valueBuffer.getBeginningInterpolationType();
+		}
+		// The buffer creates new date/times so they can be modified.
+		DateTime date1 = valueBuffer.getDateTime(valueBuffer.getMinEpochIndex());
+		adjustPeriodDateTime(date1, interpolationType);
+		ts.setDate1(date1);
+		DateTime date2 = valueBuffer.getDateTime(valueBuffer.getMaxEpochIndex());
+		adjustPeriodDateTime(date2, interpolationType);
+		ts.setDate2(date2);
+		// Original period is probably null but try to set.
+		DateTime date1Original = ts.getDate1Original();
+		if ( date1Original != null ) {
+			adjustPeriodDateTime(date1Original, interpolationType);
+			ts.setDate1Original(date1Original);
+		}
+		DateTime date2Original = ts.getDate2Original();
+		if ( date2Original != null ) {
+			adjustPeriodDateTime(date2Original, interpolationType);
+			ts.setDate2Original(date2Original);
+		}
+		Message.printStatus(2, routine, "Period after adjusting for interpolation type and output interval, date1="
+			+ ts.getDate1() + " date2=" + ts.getDate2());
+	}
+}
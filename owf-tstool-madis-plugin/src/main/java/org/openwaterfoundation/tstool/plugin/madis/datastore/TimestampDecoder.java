@@ -0,0 +1,491 @@
+// TimestampDecoder - decode time series value timestamps into epoch milliseconds
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.nio.charset.StandardCharsets;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Decode timestamps from the time series values response directly from the parser byte buffer.
+ * The following forms are recognized:
+ * <ul>
+ * <li> ISO 8601 "yyyy-MM-ddTHH:mm:ss.SSS+hh:mm", with optional seconds and fraction,
+ *      a space instead of T, and offset "Z", "+hh:mm", "+hhmm", "+hh", or no offset</li>
+ * <li> epoch seconds (UTC), optionally with a sign and fraction,
+ *      with 9 to 11 digits before the fraction (1973 to 5138) so that compact dates such as "20221230"
+ *      are not decoded as epoch seconds</li>
+ * </ul>
+ * The timestamp is decoded into epoch milliseconds (UTC) and the offset from UTC in minutes,
+ * which is available from getOffsetMinutes() after decoding.
+ * The last date and offset are cached because consecutive values usually have the same date and offset.
+ * A DateTime is only created when needed, using toDateTime().
+ * A decoder is not thread-safe and should be used for one response at a time.
+ */
+public class TimestampDecoder {
+
+	/**
+	 * Offset value used when the timestamp does not include an offset.
+	 */
+	public static final int NO_OFFSET = Short.MIN_VALUE;
+
+	/**
+	 * Maximum number of digits for epoch seconds.
+	 */
+	private static final int EPOCH_SECONDS_MAX_DIGITS = 11;
+
+	/**
+	 * Minimum number of digits for epoch seconds, more than a compact date "yyyyMMdd".
+	 */
+	private static final int EPOCH_SECONDS_MIN_DIGITS = 9;
+
+	/**
+	 * Milliseconds per day.
+	 */
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	/**
+	 * Cumulative days before each month (index 1-12) for non-leap years.
+	 */
+	private static final int [] DAYS_BEFORE_MONTH = { 0, 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+	/**
+	 * Days in each month (index 1-12) for non-leap years.
+	 */
+	private static final int [] DAYS_IN_MONTH = { 0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	/**
+	 * Bytes for the last decoded date "yyyy-MM-dd".
+	 */
+	private final byte [] lastDate = new byte[10];
+
+	/**
+	 * Epoch day for the last decoded date, or Long.MIN_VALUE if no date has been decoded.
+	 */
+	private long lastEpochDay = Long.MIN_VALUE;
+
+	/**
+	 * Bytes for the last decoded offset, for example "-07:00".
+	 */
+	private final byte [] lastOffset = new byte[6];
+
+	/**
+	 * Length of the last decoded offset, or -1 if no offset has been decoded.
+	 */
+	private int lastOffsetLength = -1;
+
+	/**
+	 * Offset in minutes for the last decoded offset.
+	 */
+	private int lastOffsetMinutes = NO_OFFSET;
+
+	/**
+	 * Offset in minutes for the last decoded timestamp, NO_OFFSET if the timestamp did not have an offset.
+	 */
+	private int offsetMinutes = NO_OFFSET;
+
+	/**
+	 * Time zone strings for offsets, created as needed.
+	 */
+	private static final String [] TIME_ZONES = new String[24*60*2 + 1];
+
+	/**
+	 * Constructor.
+	 */
+	public TimestampDecoder () {
+	}
+
+	/**
+	 * Return the number of days in a month.
+	 */
+	private static int daysInMonth ( int year, int month ) {
+		if ( (month == 2) && isLeapYear(year) ) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month];
+	}
+
+	/**
+	 * Decode a timestamp.
+	 * @param buffer buffer containing the timestamp
+	 * @param start start position of the timestamp
+	 * @param end end position of the timestamp (exclusive)
+	 * @return epoch milliseconds (UTC)
+	 * @exception IllegalArgumentException if the timestamp cannot be decoded
+	 */
+	public long decode ( byte [] buffer, int start, int end ) {
+		int length = end - start;
+		if ( (length >= 5) && (buffer[start + 4] == '-') ) {
+			return decodeIso(buffer, start, end);
+		}
+		else if ( length > 0 ) {
+			return decodeEpochSeconds(buffer, start, end);
+		}
+		throw new IllegalArgumentException("Empty timestamp");
+	}
+
+	/**
+	 * Decode a timestamp string.
+	 * @param timestamp timestamp string
+	 * @return epoch milliseconds (UTC)
+	 * @exception IllegalArgumentException if the timestamp cannot be decoded
+	 */
+	public long decode ( String timestamp ) {
+		byte [] bytes = timestamp.trim().getBytes(StandardCharsets.US_ASCII);
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Decode epoch seconds, with optional sign and fraction.
+	 * All characters other than the sign and decimal point must be digits,
+	 * and the number of digits before the decimal point must be in the range allowed for epoch seconds.
+	 */
+	private long decodeEpochSeconds ( byte [] buffer, int start, int end ) {
+		int pos = start;
+		boolean negative = false;
+		if ( buffer[pos] == '-' ) {
+			negative = true;
+			++pos;
+		}
+		long seconds = 0;
+		int digitCount = 0;
+		for ( ; (pos < end) && (buffer[pos] != '.'); pos++ ) {
+			int digit = buffer[pos] - '0';
+			if ( (digit < 0) || (digit > 9) || (digitCount == EPOCH_SECONDS_MAX_DIGITS) ) {
+				throw newException(buffer, start, end);
+			}
+			seconds = seconds*10 + digit;
+			++digitCount;
+		}
+		if ( digitCount < EPOCH_SECONDS_MIN_DIGITS ) {
+			// Too short for epoch seconds, for example a compact date.
+			throw newException(buffer, start, end);
+		}
+		long millis = 0;
+		if ( pos < end ) {
+			// Fraction after the decimal point, only milliseconds are used.
+			millis = decodeFractionMillis(buffer, pos + 1, end, start, end);
+		}
+		this.offsetMinutes = 0;
+		long epochMillis = seconds*1000 + millis;
+		return negative ? -epochMillis : epochMillis;
+	}
+
+	/**
+	 * Decode the digits of a fraction of a second into milliseconds.
+	 * @param pos position of the first digit after the decimal point
+	 * @param fractionEnd end of the fraction (exclusive)
+	 * @param start start of the timestamp, for error messages
+	 * @param end end of the timestamp, for error messages
+	 */
+	private long decodeFractionMillis ( byte [] buffer, int pos, int fractionEnd, int start, int end ) {
+		if ( pos == fractionEnd ) {
+			throw newException(buffer, start, end);
+		}
+		long millis = 0;
+		int scale = 100;
+		for ( ; pos < fractionEnd; pos++ ) {
+			int digit = buffer[pos] - '0';
+			if ( (digit < 0) || (digit > 9) ) {
+				throw newException(buffer, start, end);
+			}
+			millis += digit*scale;
+			scale /= 10;
+		}
+		return millis;
+	}
+
+	/**
+	 * Decode an ISO 8601 timestamp.
+	 */
+	private long decodeIso ( byte [] buffer, int start, int end ) {
+		if ( (end - start) < 16 ) {
+			// Must have at least yyyy-MM-ddTHH:mm
+			throw newException(buffer, start, end);
+		}
+		// Date, using the cached epoch day if the same as the previous timestamp.
+		long epochDay;
+		if ( (this.lastEpochDay != Long.MIN_VALUE) && sameBytes(buffer, start, this.lastDate, 10) ) {
+			epochDay = this.lastEpochDay;
+		}
+		else {
+			int year = digits(buffer, start, 4, start, end);
+			if ( buffer[start + 7] != '-' ) {
+				throw newException(buffer, start, end);
+			}
+			int month = digits(buffer, start + 5, 2, start, end);
+			int day = digits(buffer, start + 8, 2, start, end);
+			if ( (month < 1) || (month > 12) || (day < 1) || (day > daysInMonth(year, month)) ) {
+				throw newException(buffer, start, end);
+			}
+			epochDay = epochDay(year, month, day);
+			System.arraycopy(buffer, start, this.lastDate, 0, 10);
+			this.lastEpochDay = epochDay;
+		}
+
+		// Time.
+		byte separator = buffer[start + 10];
+		if ( ((separator != 'T') && (separator != ' ')) || (buffer[start + 13] != ':') ) {
+			throw newException(buffer, start, end);
+		}
+		int hour = digits(buffer, start + 11, 2, start, end);
+		int minute = digits(buffer, start + 14, 2, start, end);
+		int second = 0;
+		long millis = 0;
+		int pos = start + 16;
+		if ( (pos < end) && (buffer[pos] == ':') ) {
+			second = digits(buffer, pos + 1, 2, start, end);
+			pos += 3;
+			if ( (pos < end) && (buffer[pos] == '.') ) {
+				int fractionStart = pos + 1;
+				pos = fractionStart;
+				while ( (pos < end) && (buffer[pos] >= '0') && (buffer[pos] <= '9') ) {
+					++pos;
+				}
+				millis = decodeFractionMillis(buffer, fractionStart, pos, start, end);
+			}
+		}
+		if ( (hour > 23) || (minute > 59) || (second > 59) ) {
+			throw newException(buffer, start, end);
+		}
+
+		// Offset, using the cached offset if the same as the previous timestamp.
+		int offsetLength = end - pos;
+		if ( offsetLength == 0 ) {
+			this.offsetMinutes = NO_OFFSET;
+		}
+		else if ( (offsetLength == this.lastOffsetLength) && sameBytes(buffer, pos, this.lastOffset, offsetLength) ) {
+			this.offsetMinutes = this.lastOffsetMinutes;
+		}
+		else {
+			this.offsetMinutes = decodeOffset(buffer, pos, end, start);
+			if ( offsetLength <= this.lastOffset.length ) {
+				System.arraycopy(buffer, pos, this.lastOffset, 0, offsetLength);
+				this.lastOffsetLength = offsetLength;
+				this.lastOffsetMinutes = this.offsetMinutes;
+			}
+		}
+
+		long localMillis = epochDay*MILLIS_PER_DAY + ((hour*60L + minute)*60L + second)*1000L + millis;
+		if ( this.offsetMinutes == NO_OFFSET ) {
+			return localMillis;
+		}
+		return localMillis - this.offsetMinutes*60000L;
+	}
+
+	/**
+	 * Decode an offset:  Z, +hh:mm, +hhmm, or +hh.
+	 */
+	private int decodeOffset ( byte [] buffer, int pos, int end, int start ) {
+		int length = end - pos;
+		if ( (length == 1) && (buffer[pos] == 'Z') ) {
+			return 0;
+		}
+		int sign;
+		if ( buffer[pos] == '+' ) {
+			sign = 1;
+		}
+		else if ( buffer[pos] == '-' ) {
+			sign = -1;
+		}
+		else {
+			throw newException(buffer, start, end);
+		}
+		int hours = digits(buffer, pos + 1, 2, start, end);
+		int minutes = 0;
+		if ( length == 6 ) {
+			if ( buffer[pos + 3] != ':' ) {
+				throw newException(buffer, start, end);
+			}
+			minutes = digits(buffer, pos + 4, 2, start, end);
+		}
+		else if ( length == 5 ) {
+			minutes = digits(buffer, pos + 3, 2, start, end);
+		}
+		else if ( length != 3 ) {
+			throw newException(buffer, start, end);
+		}
+		if ( (hours > 23) || (minutes > 59) ) {
+			throw newException(buffer, start, end);
+		}
+		return sign*(hours*60 + minutes);
+	}
+
+	/**
+	 * Decode a fixed number of digits.
+	 * @param pos position of the first digit
+	 * @param count number of digits
+	 * @param start start of the timestamp, for error messages
+	 * @param end end of the timestamp, for error messages and bounds checks
+	 */
+	private int digits ( byte [] buffer, int pos, int count, int start, int end ) {
+		if ( (pos + count) > end ) {
+			throw newException(buffer, start, end);
+		}
+		int value = 0;
+		for ( int i = 0; i < count; i++ ) {
+			int digit = buffer[pos + i] - '0';
+			if ( (digit < 0) || (digit > 9) ) {
+				throw newException(buffer, start, end);
+			}
+			value = value*10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Return the days since 1970-01-01 for a date.
+	 */
+	private static long epochDay ( int year, int month, int day ) {
+		long y = year - 1;
+		// Days before the year, relative to 0001-01-01, then shifted to 1970-01-01.
+		long days = 365*y + Math.floorDiv(y, 4) - Math.floorDiv(y, 100) + Math.floorDiv(y, 400) - 719162;
+		days += DAYS_BEFORE_MONTH[month] + day - 1;
+		if ( (month > 2) && isLeapYear(year) ) {
+			++days;
+		}
+		return days;
+	}
+
+	/**
+	 * Format a time zone string for an offset, for example "-07:00".
+	 * @param offsetMinutes offset in minutes
+	 * @return the time zone string
+	 */
+	public static String formatTimeZone ( int offsetMinutes ) {
+		int index = offsetMinutes + 24*60;
+		String timeZone = TIME_ZONES[index];
+		if ( timeZone == null ) {
+			int absMinutes = Math.abs(offsetMinutes);
+			timeZone = String.format("%s%02d:%02d", (offsetMinutes < 0 ? "-" : "+"), absMinutes/60, absMinutes%60);
+			TIME_ZONES[index] = timeZone;
+		}
+		return timeZone;
+	}
+
+	/**
+	 * Return the offset in minutes for the last decoded timestamp.
+	 * @return the offset in minutes, NO_OFFSET if the timestamp did not include an offset
+	 */
+	public int getOffsetMinutes () {
+		return this.offsetMinutes;
+	}
+
+	/**
+	 * Return whether a year is a leap year.
+	 */
+	private static boolean isLeapYear ( int year ) {
+		return ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+	}
+
+	/**
+	 * Create an exception for a timestamp that cannot be decoded.
+	 */
+	private IllegalArgumentException newException ( byte [] buffer, int start, int end ) {
+		return new IllegalArgumentException("Invalid timestamp \""
+			+ new String(buffer, start, end - start, StandardCharsets.UTF_8) + "\"");
+	}
+
+	/**
+	 * Return whether bytes in the buffer match cached bytes.
+	 */
+	private static boolean sameBytes ( byte [] buffer, int pos, byte [] cached, int length ) {
+		for ( int i = 0; i < length; i++ ) {
+			if ( buffer[pos + i] != cached[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Create a DateTime for epoch milliseconds, using the local time for the offset.
+	 * @param epochMillis epoch milliseconds (UTC)
+	 * @param offsetMinutes offset in minutes, NO_OFFSET if no offset (epoch milliseconds are local time)
+	 * @return a new DateTime with second precision, and time zone if the offset is known
+	 */
+	public static DateTime toDateTime ( long epochMillis, int offsetMinutes ) {
+		long localMillis = toLocalMillis(epochMillis, offsetMinutes);
+		long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+		int millisOfDay = (int)Math.floorMod(localMillis, MILLIS_PER_DAY);
+
+		// Convert the epoch day to year, month, day (civil from days).
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era*146097;
+		long yoe = (doe - doe/1460 + doe/36524 - doe/146096)/365;
+		long doy = doe - (365*yoe + yoe/4 - yoe/100);
+		long mp = (5*doy + 2)/153;
+		int day = (int)(doy - (153*mp + 2)/5 + 1);
+		int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+		int year = (int)(yoe + era*400 + (month <= 2 ? 1 : 0));
+
+		DateTime dateTime = new DateTime(DateTime.PRECISION_SECOND);
+		dateTime.setYear(year);
+		dateTime.setMonth(month);
+		dateTime.setDay(day);
+		dateTime.setHour(millisOfDay/3600000);
+		dateTime.setMinute((millisOfDay/60000)%60);
+		dateTime.setSecond((millisOfDay/1000)%60);
+		if ( offsetMinutes != NO_OFFSET ) {
+			dateTime.setTimeZone(formatTimeZone(offsetMinutes));
+		}
+		return dateTime;
+	}
+
+	/**
+	 * Return the local time for a DateTime as milliseconds since 1970-01-01 00:00, ignoring the time zone.
+	 * Fields finer than the DateTime precision are ignored.
+	 * @param dateTime date/time to convert
+	 * @return local time milliseconds
+	 */
+	public static long toLocalMillis ( DateTime dateTime ) {
+		int precision = dateTime.getPrecision();
+		long localMillis = epochDay(dateTime.getYear(), dateTime.getMonth(), dateTime.getDay())*MILLIS_PER_DAY;
+		if ( precision == DateTime.PRECISION_DAY ) {
+			return localMillis;
+		}
+		localMillis += dateTime.getHour()*3600000L;
+		if ( precision == DateTime.PRECISION_HOUR ) {
+			return localMillis;
+		}
+		localMillis += dateTime.getMinute()*60000L;
+		if ( precision == DateTime.PRECISION_MINUTE ) {
+			return localMillis;
+		}
+		return localMillis + dateTime.getSecond()*1000L;
+	}
+
+	/**
+	 * Return the local time for epoch milliseconds as milliseconds since 1970-01-01 00:00.
+	 * @param epochMillis epoch milliseconds (UTC)
+	 * @param offsetMinutes offset in minutes, NO_OFFSET if no offset (epoch milliseconds are local time)
+	 * @return local time milliseconds
+	 */
+	public static long toLocalMillis ( long epochMillis, int offsetMinutes ) {
+		if ( offsetMinutes == NO_OFFSET ) {
+			return epochMillis;
+		}
+		return epochMillis + offsetMinutes*60000L;
+	}
+}
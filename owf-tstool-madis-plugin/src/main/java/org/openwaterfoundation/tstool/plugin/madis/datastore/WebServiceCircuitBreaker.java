@@ -0,0 +1,191 @@
+// WebServiceCircuitBreaker - fail fast while a web service is unavailable
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for web service requests, so that requests fail fast while the service is unavailable,
+ * rather than each request waiting for timeouts and retries.
+ * The circuit opens after a number of consecutive failed attempts.
+ * While open, requests are rejected.  After the open time, one trial request is allowed (half-open):
+ * if it succeeds the circuit closes, and if it fails the circuit opens again.
+ */
+public class WebServiceCircuitBreaker {
+
+	/**
+	 * Circuit breaker state.
+	 */
+	public enum State {
+		/**
+		 * Requests are allowed.
+		 */
+		CLOSED,
+		/**
+		 * Requests are rejected.
+		 */
+		OPEN,
+		/**
+		 * One trial request is allowed.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Source of time.
+	 */
+	private final WebServiceTicker ticker;
+
+	/**
+	 * Number of consecutive failed attempts that open the circuit, or 0 to never open.
+	 */
+	private final int failureThreshold;
+
+	/**
+	 * Time that the circuit stays open before allowing a trial request, milliseconds.
+	 */
+	private final long openTime;
+
+	/**
+	 * Current state.
+	 */
+	private State state = State.CLOSED;
+
+	/**
+	 * Number of consecutive failed attempts.
+	 */
+	private int failureCount = 0;
+
+	/**
+	 * Time when the circuit was opened, milliseconds.
+	 */
+	private long openedTime = 0;
+
+	/**
+	 * Whether the trial request is in progress when half-open.
+	 */
+	private boolean trialInProgress = false;
+
+	/**
+	 * Time when the trial request was allowed, milliseconds.
+	 */
+	private long trialTime = 0;
+
+	/**
+	 * Create a circuit breaker.
+	 * @param failureThreshold number of consecutive failed attempts that open the circuit, or 0 to never open
+	 * @param openTime time that the circuit stays open before allowing a trial request, milliseconds
+	 */
+	public WebServiceCircuitBreaker ( int failureThreshold, long openTime ) {
+		this ( failureThreshold, openTime, WebServiceTicker.SYSTEM );
+	}
+
+	/**
+	 * Create a circuit breaker that uses a ticker for time.
+	 * @param failureThreshold number of consecutive failed attempts that open the circuit, or 0 to never open
+	 * @param openTime time that the circuit stays open before allowing a trial request, milliseconds
+	 * @param ticker source of time
+	 */
+	public WebServiceCircuitBreaker ( int failureThreshold, long openTime, WebServiceTicker ticker ) {
+		this.ticker = ticker;
+		this.failureThreshold = Math.max(0, failureThreshold);
+		this.openTime = Math.max(0, openTime);
+	}
+
+	/**
+	 * Check whether an attempt is allowed, which changes the state to half-open if the open time has passed.
+	 * @return true if the attempt is allowed, false if it should be rejected
+	 */
+	public synchronized boolean allowRequest () {
+		if ( this.state == State.OPEN ) {
+			if ( (currentTimeMillis() - this.openedTime) < this.openTime ) {
+				return false;
+			}
+			this.state = State.HALF_OPEN;
+			this.trialInProgress = false;
+		}
+		if ( this.state == State.HALF_OPEN ) {
+			// Allow another trial if the trial did not record a result (e.g., was interrupted).
+			long now = currentTimeMillis();
+			if ( this.trialInProgress && ((now - this.trialTime) < this.openTime) ) {
+				return false;
+			}
+			this.trialInProgress = true;
+			this.trialTime = now;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the current time from the ticker.
+	 * @return the current time, milliseconds
+	 */
+	private long currentTimeMillis () {
+		return TimeUnit.NANOSECONDS.toMillis(this.ticker.nanoTime());
+	}
+
+	/**
+	 * Return the time until the circuit allows a trial request.
+	 * @return the time until a trial request is allowed, milliseconds, or 0 if not open
+	 */
+	public synchronized long getRemainingOpenTime () {
+		if ( this.state != State.OPEN ) {
+			return 0;
+		}
+		return Math.max(0, this.openTime - (currentTimeMillis() - this.openedTime));
+	}
+
+	/**
+	 * Return the current state.
+	 * @return the current state
+	 */
+	public synchronized State getState () {
+		return this.state;
+	}
+
+	/**
+	 * Record a failed attempt, which opens the circuit if the failure threshold is reached
+	 * or the trial request failed.
+	 * @return true if the circuit was opened
+	 */
+	public synchronized boolean recordFailure () {
+		++this.failureCount;
+		if ( (this.state == State.HALF_OPEN)
+			|| ((this.state == State.CLOSED) && (this.failureThreshold > 0) && (this.failureCount >= this.failureThreshold)) ) {
+			this.state = State.OPEN;
+			this.openedTime = currentTimeMillis();
+			this.trialInProgress = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record a successful attempt, which closes the circuit.
+	 */
+	public synchronized void recordSuccess () {
+		this.failureCount = 0;
+		this.state = State.CLOSED;
+		this.trialInProgress = false;
+	}
+}
@@ -0,0 +1,892 @@
+// WebServiceHttpClient - shared HTTP client for datastore web service requests
+
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import RTi.Util.Message.Message;
+
+/**
+ * HTTP client that is shared by all web service requests for a datastore.
+ * The Java HttpClient keeps connections alive and reuses them for later requests to the same host,
+ * which avoids a new connection and TLS handshake for each request, and uses HTTP/2 if supported by the server,
+ * which allows concurrent requests to share one connection.
+ * The number of concurrent requests is limited so that parallel reads do not open too many connections.
+ * If compression is enabled, gzip and deflate encoding are requested and compressed responses are
+ * decompressed as the body is streamed, so the response is never fully inflated in memory.
+ * Failed requests are retried, slow requests can be hedged, and requests fail fast while the service is unavailable,
+ * as configured by the request policy (see WebServiceRequestPolicy).
+ * The request timeout applies to the response headers and also to each read of the response body,
+ * so that a response that stops sending data fails and is retried rather than blocking the read.
+ * Requests are limited to the rate allowed by the service, which is reduced after throttled responses
+ * (see WebServiceRateLimiter).
+ */
+public class WebServiceHttpClient {
+
+	/**
+	 * Response for a request, which must be closed to release the connection for other requests.
+	 */
+	public static class Response implements Closeable {
+
+		/**
+		 * HTTP status code.
+		 */
+		private final int statusCode;
+
+		/**
+		 * Content length from the response header, or -1 if not known or the response is compressed.
+		 */
+		private final long contentLength;
+
+		/**
+		 * Content encoding from the response header, or an empty string if not encoded.
+		 */
+		private final String contentEncoding;
+
+		/**
+		 * Time to wait from the Retry-After header, milliseconds, or -1 if not specified.
+		 */
+		private final long retryAfter;
+
+		/**
+		 * Response body stream.
+		 */
+		private final ResponseInputStream inputStream;
+
+		/**
+		 * Create a response.
+		 */
+		private Response ( int statusCode, long contentLength, String contentEncoding, long retryAfter,
+			ResponseInputStream inputStream ) {
+			this.statusCode = statusCode;
+			this.contentLength = contentLength;
+			this.contentEncoding = contentEncoding;
+			this.retryAfter = retryAfter;
+			this.inputStream = inputStream;
+		}
+
+		/**
+		 * Close the response body and release the request permit.
+		 */
+		@Override
+		public void close () throws IOException {
+			this.inputStream.close();
+		}
+
+		/**
+		 * Return the content encoding from the response header.
+		 * @return the content encoding (e.g., "gzip"), or an empty string if not encoded
+		 */
+		public String getContentEncoding () {
+			return this.contentEncoding;
+		}
+
+		/**
+		 * Return the content length from the response header, which is the length of the decoded body.
+		 * @return the content length, or -1 if not known or the response is compressed
+		 */
+		public long getContentLength () {
+			return this.contentLength;
+		}
+
+		/**
+		 * Return the response body stream, which is decompressed if the response is compressed,
+		 * and is closed when the response is closed.
+		 * @return the response body stream
+		 */
+		public InputStream getInputStream () {
+			return this.inputStream;
+		}
+
+		/**
+		 * Return the time to wait from the Retry-After header.
+		 * @return the time to wait, milliseconds, or -1 if not specified
+		 */
+		public long getRetryAfter () {
+			return this.retryAfter;
+		}
+
+		/**
+		 * Return the HTTP status code.
+		 * @return the HTTP status code
+		 */
+		public int getStatusCode () {
+			return this.statusCode;
+		}
+
+		/**
+		 * Return whether reading the response body failed,
+		 * for example because no data were received within the request timeout.
+		 * @return true if reading the response body failed
+		 */
+		public boolean isReadFailed () {
+			return this.inputStream.readFailed;
+		}
+	}
+
+	/**
+	 * Handler for a response, which reads the response body.
+	 */
+	public interface ResponseHandler<T> {
+
+		/**
+		 * Handle a response.
+		 * @param response the response, which is closed after this method returns
+		 * @return the result
+		 * @exception IOException if the response is an error or the body cannot be read
+		 */
+		T handle ( Response response ) throws IOException;
+	}
+
+	/**
+	 * Stream that fails a read if no data are received within the read timeout.
+	 * A scheduled check closes the body stream if a read has been blocked too long,
+	 * which causes the blocked read to return.
+	 */
+	private static class ReadTimeoutInputStream extends FilterInputStream {
+
+		/**
+		 * Value for 'readStartTime' when a read is not in progress.
+		 */
+		private static final long NOT_READING = Long.MIN_VALUE;
+
+		/**
+		 * Executor for the timeout checks.
+		 */
+		private final ScheduledExecutorService executor;
+
+		/**
+		 * Read timeout, milliseconds.
+		 */
+		private final long readTimeout;
+
+		/**
+		 * Start of the current read from System.nanoTime(), or NOT_READING.
+		 */
+		private volatile long readStartTime = NOT_READING;
+
+		/**
+		 * Whether the read timed out.
+		 */
+		private volatile boolean timedOut = false;
+
+		/**
+		 * Whether the stream has been closed.
+		 */
+		private boolean closed = false;
+
+		/**
+		 * Next timeout check.
+		 */
+		private ScheduledFuture<?> check = null;
+
+		/**
+		 * Create a stream.
+		 * @param in the response body
+		 * @param executor executor for the timeout checks
+		 * @param readTimeout read timeout, milliseconds
+		 */
+		private ReadTimeoutInputStream ( InputStream in, ScheduledExecutorService executor, long readTimeout ) {
+			super(in);
+			this.executor = executor;
+			this.readTimeout = readTimeout;
+			scheduleCheck(TimeUnit.MILLISECONDS.toNanos(readTimeout));
+		}
+
+		/**
+		 * Check whether the current read has timed out, and if so close the body stream,
+		 * otherwise schedule the next check for when the current or next read could time out.
+		 */
+		private void checkTimeout () {
+			long readStart = this.readStartTime;
+			long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(this.readTimeout);
+			long readTime = (readStart == NOT_READING) ? 0 : (System.nanoTime() - readStart);
+			if ( readTime >= timeoutNanos ) {
+				this.timedOut = true;
+				try {
+					this.in.close();
+				}
+				catch ( IOException e ) {
+					// Ignore.
+				}
+			}
+			else {
+				scheduleCheck(timeoutNanos - readTime);
+			}
+		}
+
+		/**
+		 * Close the stream and cancel the timeout check.
+		 */
+		@Override
+		public void close () throws IOException {
+			synchronized ( this ) {
+				this.closed = true;
+				if ( this.check != null ) {
+					this.check.cancel(false);
+				}
+			}
+			super.close();
+		}
+
+		/**
+		 * Read a byte.
+		 */
+		@Override
+		public int read () throws IOException {
+			this.readStartTime = System.nanoTime();
+			try {
+				int b = this.in.read();
+				throwIfTimedOut();
+				return b;
+			}
+			catch ( IOException e ) {
+				throwIfTimedOut();
+				throw e;
+			}
+			finally {
+				this.readStartTime = NOT_READING;
+			}
+		}
+
+		/**
+		 * Read bytes.
+		 */
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			this.readStartTime = System.nanoTime();
+			try {
+				int count = this.in.read(b, off, len);
+				throwIfTimedOut();
+				return count;
+			}
+			catch ( IOException e ) {
+				throwIfTimedOut();
+				throw e;
+			}
+			finally {
+				this.readStartTime = NOT_READING;
+			}
+		}
+
+		/**
+		 * Schedule the next timeout check, if the stream has not been closed.
+		 * @param delay delay until the check, nanoseconds
+		 */
+		private synchronized void scheduleCheck ( long delay ) {
+			if ( !this.closed ) {
+				try {
+					this.check = this.executor.schedule(this::checkTimeout, delay, TimeUnit.NANOSECONDS);
+				}
+				catch ( RejectedExecutionException e ) {
+					// The client has been closed so the remaining reads are not checked.
+				}
+			}
+		}
+
+		/**
+		 * Throw an exception if the read timed out,
+		 * because the closed body stream may indicate the end of the stream rather than an error.
+		 * @exception HttpTimeoutException if the read timed out
+		 */
+		private void throwIfTimedOut () throws HttpTimeoutException {
+			if ( this.timedOut ) {
+				throw new HttpTimeoutException ( "No response data were received within the read timeout ("
+					+ this.readTimeout + " ms)." );
+			}
+		}
+	}
+
+	/**
+	 * Response body stream, which releases the request permit when closed
+	 * and remembers whether a read failed so that the request can be retried.
+	 */
+	private class ResponseInputStream extends FilterInputStream {
+
+		/**
+		 * Whether the stream has been closed.
+		 */
+		private boolean closed = false;
+
+		/**
+		 * Whether a read failed.
+		 */
+		private volatile boolean readFailed = false;
+
+		/**
+		 * Create a stream.
+		 * @param in the response body, decompressed if necessary
+		 */
+		private ResponseInputStream ( InputStream in ) {
+			super(in);
+		}
+
+		/**
+		 * Close the body and release the request permit the first time the stream is closed.
+		 */
+		@Override
+		public void close () throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				if ( !this.closed ) {
+					this.closed = true;
+					WebServiceHttpClient.this.permits.release();
+				}
+			}
+		}
+
+		/**
+		 * Read a byte.
+		 */
+		@Override
+		public int read () throws IOException {
+			try {
+				return this.in.read();
+			}
+			catch ( IOException e ) {
+				this.readFailed = true;
+				throw e;
+			}
+		}
+
+		/**
+		 * Read bytes.
+		 */
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			try {
+				return this.in.read(b, off, len);
+			}
+			catch ( IOException e ) {
+				this.readFailed = true;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Whether the client has been closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * HTTP client, which manages the connection pool.
+	 */
+	private final HttpClient httpClient;
+
+	/**
+	 * Permits for concurrent requests.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Maximum number of concurrent requests.
+	 */
+	private final int maxConnections;
+
+	/**
+	 * Timeout to receive the response headers.
+	 */
+	private final Duration requestTimeout;
+
+	/**
+	 * Executor for response body read timeout checks, shared by all requests, using a daemon thread.
+	 */
+	private final ScheduledThreadPoolExecutor readTimeoutExecutor;
+
+	/**
+	 * Whether to request compressed responses.
+	 */
+	private final boolean useCompression;
+
+	/**
+	 * Retry, hedging, and circuit breaker settings.
+	 */
+	private final WebServiceRequestPolicy policy;
+
+	/**
+	 * Circuit breaker, shared by all requests.
+	 */
+	private final WebServiceCircuitBreaker circuitBreaker;
+
+	/**
+	 * Rate limiter, shared by all requests.
+	 */
+	private final WebServiceRateLimiter rateLimiter;
+
+	/**
+	 * Request statistics.
+	 */
+	private final WebServiceRequestStats stats = new WebServiceRequestStats();
+
+	/**
+	 * Create a client.
+	 * @param maxConnections maximum number of concurrent requests (1+)
+	 * @param connectTimeout connection timeout, milliseconds
+	 * @param requestTimeout timeout to receive the response headers and for each read of the response body, milliseconds
+	 * @param useHttp2 whether to use HTTP/2 if supported by the server, or HTTP/1.1 if false
+	 * @param useCompression whether to request gzip and deflate compressed responses
+	 * @param policy retry, hedging, and circuit breaker settings
+	 * @param rateLimiter rate limiter for requests
+	 */
+	public WebServiceHttpClient ( int maxConnections, int connectTimeout, int requestTimeout, boolean useHttp2,
+		boolean useCompression, WebServiceRequestPolicy policy, WebServiceRateLimiter rateLimiter ) {
+		this.maxConnections = Math.max(1, maxConnections);
+		this.useCompression = useCompression;
+		this.policy = policy;
+		this.rateLimiter = rateLimiter;
+		this.circuitBreaker = policy.createCircuitBreaker();
+		this.permits = new Semaphore(this.maxConnections, true);
+		this.requestTimeout = Duration.ofMillis(requestTimeout);
+		this.readTimeoutExecutor = new ScheduledThreadPoolExecutor ( 1, runnable -> {
+			Thread thread = new Thread(runnable, "WebServiceHttpClient-read-timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Remove checks for streams that are closed, rather than keeping them until the timeout.
+		this.readTimeoutExecutor.setRemoveOnCancelPolicy(true);
+		this.httpClient = HttpClient.newBuilder()
+			.version(useHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofMillis(connectTimeout))
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.build();
+	}
+
+	/**
+	 * Close the client and stop the read timeout thread.
+	 * Requests that are in progress complete, without read timeout checks, and new requests fail.
+	 */
+	public void close () {
+		this.closed = true;
+		this.readTimeoutExecutor.shutdownNow();
+	}
+
+	/**
+	 * Return a stream that decompresses a response body.
+	 * @param body the response body
+	 * @param contentEncoding the content encoding, lowercase
+	 * @return a stream that decompresses the body
+	 * @exception IOException if the encoding is not supported or the body cannot be read
+	 */
+	private InputStream decode ( InputStream body, String contentEncoding ) throws IOException {
+		if ( contentEncoding.equals("gzip") || contentEncoding.equals("x-gzip") ) {
+			return new GZIPInputStream(body, 65536);
+		}
+		else if ( contentEncoding.equals("deflate") ) {
+			// Deflate should have a zlib header but some servers send raw deflate data,
+			// so check the header (compression method 8 and header checksum).
+			PushbackInputStream pushback = new PushbackInputStream(body, 2);
+			byte [] header = new byte[2];
+			int count = pushback.readNBytes(header, 0, 2);
+			pushback.unread(header, 0, count);
+			boolean isZlib = (count == 2) && ((header[0] & 0x0f) == 8) && ((((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0);
+			return new InflaterInputStream(pushback, new Inflater(!isZlib), 65536);
+		}
+		throw new IOException ( "Unsupported response content encoding \"" + contentEncoding + "\"." );
+	}
+
+	/**
+	 * Send a GET request and handle the response, which streams the body.
+	 * Failed attempts are retried and hedged requests are sent according to the request policy,
+	 * and the request is rejected without being sent if the circuit breaker is open.
+	 * A failure reading the response body, such as a read timeout, is also retried,
+	 * in which case the handler is called again and must discard results from the failed read.
+	 * An error thrown by the handler for other reasons, such as an error status, is not retried.
+	 * @param url request URL
+	 * @param handler handler for the response, which may have an error status if retries did not succeed
+	 * @return the result from the handler
+	 * @exception IOException if the request fails after retries, the circuit breaker is open, the handler fails,
+	 * or the client has been closed
+	 */
+	public <T> T get ( String url, ResponseHandler<T> handler ) throws IOException {
+		String routine = getClass().getSimpleName() + ".get";
+		if ( this.closed ) {
+			throw new IOException ( "The web service client has been closed: " + url );
+		}
+		HttpRequest request;
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(this.requestTimeout).GET();
+			if ( this.useCompression ) {
+				builder.header("Accept-Encoding", "gzip, deflate");
+			}
+			request = builder.build();
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new IOException ( "Invalid URL: " + url, e );
+		}
+		this.stats.incrementRequestCount();
+		for ( int attempt = 0; ; attempt++ ) {
+			if ( attempt > 0 ) {
+				this.stats.incrementRetryCount();
+				try {
+					Thread.sleep(this.policy.getRetryDelay(attempt));
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException ( "Interrupted waiting to retry: " + url );
+				}
+			}
+			// Check the circuit breaker first so that rejected requests don't use rate limit tokens.
+			if ( !this.circuitBreaker.allowRequest() ) {
+				this.stats.incrementCircuitOpenCount();
+				this.stats.incrementRequestFailureCount();
+				throw new IOException ( "Web service is unavailable after repeated failures, will try again in "
+					+ (this.circuitBreaker.getRemainingOpenTime()/1000 + 1) + " seconds: " + url );
+			}
+			try {
+				this.stats.addRateLimitWaitTime(this.rateLimiter.acquire());
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException ( "Interrupted waiting for rate limit to request: " + url );
+			}
+			Response response;
+			try {
+				response = send(request, url);
+			}
+			catch ( InterruptedIOException e ) {
+				throw e;
+			}
+			catch ( IOException e ) {
+				if ( !recordAttemptFailure(attempt, url, e) ) {
+					throw e;
+				}
+				continue;
+			}
+			boolean isThrottled = (response.getStatusCode() == 429) || (response.getRetryAfter() >= 0);
+			if ( isThrottled ) {
+				// Pause all requests and reduce the request rate.
+				this.stats.incrementThrottledCount();
+				this.rateLimiter.recordThrottled(response.getRetryAfter());
+			}
+			else {
+				this.rateLimiter.recordSuccess();
+			}
+			boolean isRetryableStatus = this.policy.isRetryableStatus(response.getStatusCode());
+			if ( isRetryableStatus ) {
+				this.stats.incrementAttemptFailureCount();
+				if ( response.getStatusCode() == 429 ) {
+					// The service is available but is limiting requests.
+					this.circuitBreaker.recordSuccess();
+				}
+				else {
+					this.circuitBreaker.recordFailure();
+				}
+				if ( attempt < this.policy.getMaxRetries() ) {
+					response.close();
+					Message.printWarning(3, routine, "HTTP status " + response.getStatusCode() + " requesting: " + url + " - retrying.");
+					continue;
+				}
+				// Let the handler handle the error status.
+				this.stats.incrementRequestFailureCount();
+			}
+			try ( Response handledResponse = response ) {
+				T result = handler.handle(handledResponse);
+				if ( !isRetryableStatus ) {
+					this.circuitBreaker.recordSuccess();
+				}
+				return result;
+			}
+			catch ( IOException e ) {
+				if ( !response.isReadFailed() || (e instanceof InterruptedIOException) ) {
+					// The handler rejected the response, which is not a web service failure.
+					if ( !isRetryableStatus ) {
+						this.circuitBreaker.recordSuccess();
+					}
+					throw e;
+				}
+				// Reading the body failed, for example due to the read timeout.
+				if ( isRetryableStatus || !recordAttemptFailure(attempt, url, e) ) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of request permits that are available, used to check that permits are released.
+	 * @return the number of available permits
+	 */
+	int getAvailablePermits () {
+		return this.permits.availablePermits();
+	}
+
+	/**
+	 * Return the delay after which a hedged request is sent.
+	 * @return the delay in milliseconds, or -1 if hedged requests are not sent
+	 */
+	private long getHedgeDelay () {
+		if ( this.policy.getHedgePercentile() <= 0 ) {
+			return -1;
+		}
+		return this.stats.getLatencyPercentile(this.policy.getHedgePercentile());
+	}
+
+	/**
+	 * Return the maximum number of concurrent requests.
+	 * @return the maximum number of concurrent requests
+	 */
+	public int getMaxConnections () {
+		return this.maxConnections;
+	}
+
+	/**
+	 * Return the current request rate, which is reduced after throttled responses.
+	 * @return the current request rate, requests per second, or 0 if not limited
+	 */
+	public double getRequestRate () {
+		return this.rateLimiter.getRate();
+	}
+
+	/**
+	 * Return the request statistics.
+	 * @return the request statistics
+	 */
+	public WebServiceRequestStats getStats () {
+		return this.stats;
+	}
+
+	/**
+	 * Parse the Retry-After header, which is either a number of seconds or an HTTP date.
+	 * @param retryAfter the header value, or null if not specified
+	 * @return the time to wait, milliseconds, or -1 if not specified or invalid
+	 */
+	private long parseRetryAfter ( String retryAfter ) {
+		if ( (retryAfter == null) || retryAfter.trim().isEmpty() ) {
+			return -1;
+		}
+		retryAfter = retryAfter.trim();
+		try {
+			return Math.max(0, (long)(Double.parseDouble(retryAfter)*1000));
+		}
+		catch ( NumberFormatException e ) {
+			// Try an HTTP date below.
+		}
+		try {
+			long time = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Math.max(0, time - System.currentTimeMillis());
+		}
+		catch ( DateTimeParseException e ) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Record a failed attempt, which counts toward opening the circuit breaker.
+	 * @param attempt the attempt, 0 for the first attempt
+	 * @param url request URL, for messages
+	 * @param e the error for the attempt
+	 * @return true if the request should be retried, false if retries have been used
+	 */
+	private boolean recordAttemptFailure ( int attempt, String url, IOException e ) {
+		String routine = getClass().getSimpleName() + ".recordAttemptFailure";
+		this.stats.incrementAttemptFailureCount();
+		this.circuitBreaker.recordFailure();
+		if ( attempt >= this.policy.getMaxRetries() ) {
+			this.stats.incrementRequestFailureCount();
+			return false;
+		}
+		Message.printWarning(3, routine, "Error requesting: " + url + " (" + e + ") - retrying.");
+		return true;
+	}
+
+	/**
+	 * Send one attempt for a request, which may include a hedged request, and return the first response.
+	 * @param request the request
+	 * @param url request URL, for messages
+	 * @return the response
+	 * @exception IOException if the attempt fails
+	 */
+	private Response send ( HttpRequest request, String url ) throws IOException {
+		try {
+			this.permits.acquire();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException ( "Interrupted waiting to request: " + url );
+		}
+		long startTime = System.currentTimeMillis();
+		// The first response is used, and a later response is closed.
+		CompletableFuture<HttpResponse<InputStream>> firstResponse = new CompletableFuture<>();
+		AtomicInteger pendingCount = new AtomicInteger(1);
+		sendAsync ( request, firstResponse, pendingCount, false );
+		HttpResponse<InputStream> response;
+		try {
+			long hedgeDelay = getHedgeDelay();
+			if ( hedgeDelay < 0 ) {
+				response = firstResponse.get();
+			}
+			else {
+				try {
+					response = firstResponse.get(hedgeDelay, TimeUnit.MILLISECONDS);
+				}
+				catch ( TimeoutException e ) {
+					// Send a hedged request if a permit and the rate limit allow without waiting.
+					if ( !firstResponse.isDone() && this.permits.tryAcquire() ) {
+						if ( !this.rateLimiter.tryAcquire() ) {
+							this.permits.release();
+						}
+						else {
+							pendingCount.incrementAndGet();
+							this.stats.incrementHedgeCount();
+							sendAsync ( request, firstResponse, pendingCount, true );
+						}
+					}
+					response = firstResponse.get();
+				}
+			}
+		}
+		catch ( InterruptedException e ) {
+			// A response that is received later is closed by sendAsync().
+			if ( !firstResponse.cancel(false) && !firstResponse.isCompletedExceptionally() ) {
+				// The first or hedged response was received before the cancel,
+				// so close it and release its permit here because it is not returned.
+				HttpResponse<InputStream> receivedResponse = firstResponse.getNow(null);
+				try {
+					receivedResponse.body().close();
+				}
+				catch ( IOException e2 ) {
+					// Ignore.
+				}
+				this.permits.release();
+			}
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException ( "Interrupted requesting: " + url );
+		}
+		catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			if ( (cause instanceof CompletionException) && (cause.getCause() != null) ) {
+				cause = cause.getCause();
+			}
+			if ( cause instanceof IOException ) {
+				throw (IOException)cause;
+			}
+			throw new IOException ( "Error requesting: " + url + " (" + cause + ").", cause );
+		}
+		this.stats.addLatency(System.currentTimeMillis() - startTime);
+		try {
+			long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+			String contentEncoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
+			InputStream body = response.body();
+			if ( !this.requestTimeout.isZero() && !this.requestTimeout.isNegative() ) {
+				// The request timeout only applies until the headers are received, so also time out reading the body.
+				body = new ReadTimeoutInputStream(body, this.readTimeoutExecutor, this.requestTimeout.toMillis());
+			}
+			if ( !contentEncoding.isEmpty() && !contentEncoding.equals("identity") ) {
+				// The content length is the compressed length, which can't be compared with the decompressed bytes.
+				contentLength = -1;
+				try {
+					body = decode(body, contentEncoding);
+				}
+				catch ( IOException e ) {
+					body.close();
+					throw e;
+				}
+			}
+			// Release the permit when the body is closed.
+			return new Response(response.statusCode(), contentLength, contentEncoding,
+				parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)), new ResponseInputStream(body));
+		}
+		catch ( IOException | RuntimeException e ) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Send a request asynchronously, using a permit that has been acquired.
+	 * If the response is not the first response, it is closed and the permit is released.
+	 * @param request the request
+	 * @param firstResponse future that is completed with the first response,
+	 * or with the error if all requests fail
+	 * @param pendingCount number of requests that have not failed, including this request
+	 * @param isHedge whether the request is a hedged request
+	 */
+	private void sendAsync ( HttpRequest request, CompletableFuture<HttpResponse<InputStream>> firstResponse,
+		AtomicInteger pendingCount, boolean isHedge ) {
+		this.stats.incrementAttemptCount();
+		CompletableFuture<HttpResponse<InputStream>> future;
+		try {
+			future = this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+		}
+		catch ( RuntimeException e ) {
+			future = CompletableFuture.failedFuture(e);
+		}
+		future.whenComplete ( (response, error) -> {
+			if ( error == null ) {
+				if ( firstResponse.complete(response) ) {
+					if ( isHedge ) {
+						this.stats.incrementHedgeWinCount();
+					}
+				}
+				else {
+					// Another response was received first or the request was cancelled.
+					try {
+						response.body().close();
+					}
+					catch ( IOException e ) {
+						// Ignore.
+					}
+					this.permits.release();
+				}
+			}
+			else {
+				this.permits.release();
+				if ( pendingCount.decrementAndGet() == 0 ) {
+					firstResponse.completeExceptionally(error);
+				}
+			}
+		});
+	}
+}
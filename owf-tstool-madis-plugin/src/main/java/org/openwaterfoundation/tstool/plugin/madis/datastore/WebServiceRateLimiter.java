@@ -0,0 +1,210 @@
+// WebServiceRateLimiter - token bucket rate limiter for web service requests
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter for web service requests, shared by all requests for a datastore,
+ * so that bulk and parallel reads run at the highest rate allowed by the service without manual pauses.
+ * Tokens are added at the request rate, up to the burst size, and each request uses one token.
+ * The limiter adapts to throttled responses (HTTP 429, or a Retry-After header):
+ * <ul>
+ * <li> all requests are paused until the Retry-After time, or for one second if not specified</li>
+ * <li> the request rate is halved, and is increased again gradually to the configured rate as requests succeed</li>
+ * </ul>
+ * If the request rate is not limited, only the pause for throttled responses is applied.
+ */
+public class WebServiceRateLimiter {
+
+	/**
+	 * Pause after a throttled response without a Retry-After header, milliseconds.
+	 */
+	private static final long DEFAULT_PAUSE = 1000;
+
+	/**
+	 * Source of time, and used to wait.
+	 */
+	private final WebServiceTicker ticker;
+
+	/**
+	 * Configured request rate, requests per second, or 0 if not limited.
+	 */
+	private final double maxRate;
+
+	/**
+	 * Minimum request rate after throttled responses, requests per second.
+	 */
+	private final double minRate;
+
+	/**
+	 * Maximum number of tokens.
+	 */
+	private final double burst;
+
+	/**
+	 * Current request rate, requests per second, which is reduced after throttled responses.
+	 */
+	private double rate;
+
+	/**
+	 * Available tokens.
+	 */
+	private double tokens;
+
+	/**
+	 * Time when tokens were last added, nanoseconds.
+	 */
+	private long refillTime;
+
+	/**
+	 * Time until which requests are paused, nanoseconds, used if greater than the current time.
+	 */
+	private long pauseEndTime;
+
+	/**
+	 * Create a rate limiter.
+	 * @param maxRate request rate, requests per second, or 0 if not limited
+	 * @param burst maximum number of requests that can be made at once after requests have been idle (1+)
+	 */
+	public WebServiceRateLimiter ( double maxRate, int burst ) {
+		this ( maxRate, burst, WebServiceTicker.SYSTEM );
+	}
+
+	/**
+	 * Create a rate limiter that uses a ticker for time.
+	 * @param maxRate request rate, requests per second, or 0 if not limited
+	 * @param burst maximum number of requests that can be made at once after requests have been idle (1+)
+	 * @param ticker source of time, and used to wait
+	 */
+	public WebServiceRateLimiter ( double maxRate, int burst, WebServiceTicker ticker ) {
+		this.ticker = ticker;
+		this.maxRate = Math.max(0, maxRate);
+		this.minRate = this.maxRate/64;
+		this.burst = Math.max(1, burst);
+		this.rate = this.maxRate;
+		this.tokens = this.burst;
+		this.refillTime = this.ticker.nanoTime();
+		this.pauseEndTime = this.refillTime;
+	}
+
+	/**
+	 * Wait until a request can be made.
+	 * @return the time that was waited, milliseconds
+	 * @exception InterruptedException if interrupted while waiting
+	 */
+	public long acquire () throws InterruptedException {
+		long waitTotal = 0;
+		while ( true ) {
+			long wait;
+			synchronized ( this ) {
+				long now = this.ticker.nanoTime();
+				refill(now);
+				if ( (this.pauseEndTime - now) > 0 ) {
+					wait = this.pauseEndTime - now;
+				}
+				else if ( this.maxRate <= 0 ) {
+					return TimeUnit.NANOSECONDS.toMillis(waitTotal);
+				}
+				else if ( this.tokens >= 1 ) {
+					this.tokens -= 1;
+					return TimeUnit.NANOSECONDS.toMillis(waitTotal);
+				}
+				else {
+					wait = (long)Math.ceil((1 - this.tokens)/this.rate*1.0e9);
+				}
+			}
+			this.ticker.sleep(wait);
+			waitTotal += wait;
+		}
+	}
+
+	/**
+	 * Return the current request rate.
+	 * @return the current request rate, requests per second, or 0 if not limited
+	 */
+	public synchronized double getRate () {
+		return this.rate;
+	}
+
+	/**
+	 * Record a response that was not throttled, which gradually restores the request rate.
+	 */
+	public synchronized void recordSuccess () {
+		if ( this.rate < this.maxRate ) {
+			// Increase additively so that the rate takes about 20 requests to recover from each halving.
+			refill(this.ticker.nanoTime());
+			this.rate = Math.min(this.maxRate, this.rate + this.maxRate/20);
+		}
+	}
+
+	/**
+	 * Record a throttled response, which pauses requests and reduces the request rate.
+	 * @param retryAfter time to wait from the Retry-After header, milliseconds, or -1 if not specified
+	 */
+	public synchronized void recordThrottled ( long retryAfter ) {
+		long now = this.ticker.nanoTime();
+		refill(now);
+		long pauseEnd = now + TimeUnit.MILLISECONDS.toNanos((retryAfter >= 0) ? retryAfter : DEFAULT_PAUSE);
+		if ( (pauseEnd - this.pauseEndTime) > 0 ) {
+			this.pauseEndTime = pauseEnd;
+		}
+		if ( this.maxRate > 0 ) {
+			this.rate = Math.max(this.minRate, this.rate/2);
+			this.tokens = 0;
+		}
+	}
+
+	/**
+	 * Add tokens for the time since tokens were last added.
+	 * @param now current time, nanoseconds
+	 */
+	private void refill ( long now ) {
+		// Tokens are not added while paused, so that requests do not burst at the end of the pause.
+		long start = ((this.pauseEndTime - this.refillTime) > 0) ? this.pauseEndTime : this.refillTime;
+		if ( (this.maxRate > 0) && ((now - start) > 0) ) {
+			this.tokens = Math.min(this.burst, this.tokens + (now - start)/1.0e9*this.rate);
+		}
+		this.refillTime = now;
+	}
+
+	/**
+	 * Use a token if a request can be made without waiting, used for optional requests such as hedged requests.
+	 * @return true if a request can be made, false if the request should not be made
+	 */
+	public synchronized boolean tryAcquire () {
+		long now = this.ticker.nanoTime();
+		refill(now);
+		if ( (this.pauseEndTime - now) > 0 ) {
+			return false;
+		}
+		if ( this.maxRate <= 0 ) {
+			return true;
+		}
+		if ( this.tokens >= 1 ) {
+			this.tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+}
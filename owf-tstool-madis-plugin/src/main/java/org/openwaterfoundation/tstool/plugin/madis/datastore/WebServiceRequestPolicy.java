@@ -0,0 +1,134 @@
+// WebServiceRequestPolicy - retry, hedging, and circuit breaker settings for web service requests
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry, hedging, and circuit breaker settings for web service requests, configured for each datastore.
+ * <ul>
+ * <li> Failed attempts (errors and HTTP 429, 502, 503, and 504 status) are retried up to a maximum number of retries,
+ *      with exponential backoff and full jitter so that concurrent requests do not retry at the same time.</li>
+ * <li> If hedging is enabled, a duplicate request is sent if the response is not received within a percentile
+ *      of recent latencies, and the first response is used.</li>
+ * <li> A circuit breaker opens after a number of consecutive failed attempts so that requests fail fast.</li>
+ * </ul>
+ */
+public class WebServiceRequestPolicy {
+
+	/**
+	 * Maximum number of retries for a request.
+	 */
+	private final int maxRetries;
+
+	/**
+	 * Base delay before the first retry, milliseconds, which doubles for each retry.
+	 */
+	private final long retryDelay;
+
+	/**
+	 * Maximum delay before a retry, milliseconds.
+	 */
+	private final long retryMaxDelay;
+
+	/**
+	 * Latency percentile after which a hedged request is sent, or 0 to not send hedged requests.
+	 */
+	private final double hedgePercentile;
+
+	/**
+	 * Number of consecutive failed attempts that open the circuit breaker, or 0 to never open.
+	 */
+	private final int circuitFailureThreshold;
+
+	/**
+	 * Time that the circuit breaker stays open, milliseconds.
+	 */
+	private final long circuitOpenTime;
+
+	/**
+	 * Create a policy.
+	 * @param maxRetries maximum number of retries for a request (0+)
+	 * @param retryDelay base delay before the first retry, milliseconds
+	 * @param retryMaxDelay maximum delay before a retry, milliseconds
+	 * @param hedgePercentile latency percentile (e.g., 95) after which a hedged request is sent, or 0 to not hedge
+	 * @param circuitFailureThreshold number of consecutive failed attempts that open the circuit breaker, or 0 to never open
+	 * @param circuitOpenTime time that the circuit breaker stays open, milliseconds
+	 */
+	public WebServiceRequestPolicy ( int maxRetries, long retryDelay, long retryMaxDelay, double hedgePercentile,
+		int circuitFailureThreshold, long circuitOpenTime ) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.retryDelay = Math.max(0, retryDelay);
+		this.retryMaxDelay = Math.max(this.retryDelay, retryMaxDelay);
+		this.hedgePercentile = Math.max(0, Math.min(100, hedgePercentile));
+		this.circuitFailureThreshold = Math.max(0, circuitFailureThreshold);
+		this.circuitOpenTime = Math.max(0, circuitOpenTime);
+	}
+
+	/**
+	 * Create a circuit breaker using the policy settings.
+	 * @return a new circuit breaker
+	 */
+	public WebServiceCircuitBreaker createCircuitBreaker () {
+		return new WebServiceCircuitBreaker(this.circuitFailureThreshold, this.circuitOpenTime);
+	}
+
+	/**
+	 * Return the latency percentile after which a hedged request is sent.
+	 * @return the latency percentile, or 0 if hedged requests are not sent
+	 */
+	public double getHedgePercentile () {
+		return this.hedgePercentile;
+	}
+
+	/**
+	 * Return the maximum number of retries for a request.
+	 * @return the maximum number of retries
+	 */
+	public int getMaxRetries () {
+		return this.maxRetries;
+	}
+
+	/**
+	 * Return the delay before a retry, using exponential backoff with full jitter.
+	 * @param retry retry number (1+)
+	 * @return the delay before the retry, milliseconds
+	 */
+	public long getRetryDelay ( int retry ) {
+		// Limit the shift to avoid overflow.
+		long delay = Math.min(this.retryMaxDelay, this.retryDelay << Math.min(30, Math.max(0, retry - 1)));
+		if ( delay <= 0 ) {
+			return 0;
+		}
+		return ThreadLocalRandom.current().nextLong(delay + 1);
+	}
+
+	/**
+	 * Return whether an HTTP status indicates a transient error that can be retried.
+	 * @param statusCode HTTP status code
+	 * @return true if the request can be retried
+	 */
+	public boolean isRetryableStatus ( int statusCode ) {
+		return (statusCode == 429) || (statusCode == 502) || (statusCode == 503) || (statusCode == 504);
+	}
+}
@@ -0,0 +1,231 @@
+// WebServiceRequestStats - statistics for web service requests made by a datastore
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics for web service requests made by a datastore, which are updated concurrently by all requests.
+ * Each attempt is counted, including retries and hedged requests,
+ * so that the behavior of bulk reads when the service is slow or failing can be reviewed.
+ * Recent response latencies are saved to estimate the latency percentile that is used to send hedged requests.
+ */
+public class WebServiceRequestStats {
+
+	/**
+	 * Number of recent latencies that are saved.
+	 */
+	private static final int LATENCY_SAMPLE_SIZE = 256;
+
+	/**
+	 * Minimum number of latencies needed to estimate a percentile.
+	 */
+	private static final int LATENCY_MIN_SAMPLES = 20;
+
+	/**
+	 * Number of requests, each of which may result in more than one attempt.
+	 */
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Number of attempts that were sent, including retries and hedged requests.
+	 */
+	private final AtomicLong attemptCount = new AtomicLong();
+
+	/**
+	 * Number of attempts that failed with an error or a retryable HTTP status.
+	 */
+	private final AtomicLong attemptFailureCount = new AtomicLong();
+
+	/**
+	 * Number of retries.
+	 */
+	private final AtomicLong retryCount = new AtomicLong();
+
+	/**
+	 * Number of hedged requests that were sent.
+	 */
+	private final AtomicLong hedgeCount = new AtomicLong();
+
+	/**
+	 * Number of hedged requests that responded before the original request.
+	 */
+	private final AtomicLong hedgeWinCount = new AtomicLong();
+
+	/**
+	 * Number of requests that were rejected because the circuit breaker was open.
+	 */
+	private final AtomicLong circuitOpenCount = new AtomicLong();
+
+	/**
+	 * Number of requests that failed after all attempts.
+	 */
+	private final AtomicLong requestFailureCount = new AtomicLong();
+
+	/**
+	 * Number of throttled responses (HTTP 429 or Retry-After).
+	 */
+	private final AtomicLong throttledCount = new AtomicLong();
+
+	/**
+	 * Total time that requests waited for the rate limiter, milliseconds.
+	 */
+	private final AtomicLong rateLimitWaitTime = new AtomicLong();
+
+	/**
+	 * Recent latencies to receive the response headers, milliseconds, used as a circular buffer.
+	 */
+	private final long [] latencies = new long[LATENCY_SAMPLE_SIZE];
+
+	/**
+	 * Number of latencies that have been added.
+	 */
+	private long latencyCount = 0;
+
+	/**
+	 * Create statistics with zero counts.
+	 */
+	public WebServiceRequestStats () {
+	}
+
+	/**
+	 * Add the latency for a successful attempt.
+	 * @param latency time to receive the response headers, milliseconds
+	 */
+	public synchronized void addLatency ( long latency ) {
+		this.latencies[(int)(this.latencyCount % LATENCY_SAMPLE_SIZE)] = latency;
+		++this.latencyCount;
+	}
+
+	/**
+	 * Add the time that a request waited for the rate limiter.
+	 * @param waitTime time waited, milliseconds
+	 */
+	public void addRateLimitWaitTime ( long waitTime ) {
+		this.rateLimitWaitTime.addAndGet(waitTime);
+	}
+
+	/**
+	 * Return the latency percentile for recent attempts.
+	 * @param percentile percentile (0 to 100)
+	 * @return the latency percentile in milliseconds, or -1 if not enough attempts have been made
+	 */
+	public long getLatencyPercentile ( double percentile ) {
+		long [] sorted;
+		synchronized ( this ) {
+			if ( this.latencyCount < LATENCY_MIN_SAMPLES ) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(this.latencies, (int)Math.min(this.latencyCount, LATENCY_SAMPLE_SIZE));
+		}
+		Arrays.sort(sorted);
+		int pos = (int)Math.ceil(percentile/100.0*sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, pos))];
+	}
+
+	/**
+	 * Increment the number of attempts.
+	 */
+	public void incrementAttemptCount () {
+		this.attemptCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of failed attempts.
+	 */
+	public void incrementAttemptFailureCount () {
+		this.attemptFailureCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of requests rejected because the circuit breaker was open.
+	 */
+	public void incrementCircuitOpenCount () {
+		this.circuitOpenCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of hedged requests.
+	 */
+	public void incrementHedgeCount () {
+		this.hedgeCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of hedged requests that responded first.
+	 */
+	public void incrementHedgeWinCount () {
+		this.hedgeWinCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of requests.
+	 */
+	public void incrementRequestCount () {
+		this.requestCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of requests that failed after all attempts.
+	 */
+	public void incrementRequestFailureCount () {
+		this.requestFailureCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of retries.
+	 */
+	public void incrementRetryCount () {
+		this.retryCount.incrementAndGet();
+	}
+
+	/**
+	 * Increment the number of throttled responses.
+	 */
+	public void incrementThrottledCount () {
+		this.throttledCount.incrementAndGet();
+	}
+
+	/**
+	 * Return a summary of the statistics, used for datastore properties.
+	 * @return a summary of the statistics
+	 */
+	@Override
+	public String toString () {
+		long p50 = getLatencyPercentile(50);
+		long p95 = getLatencyPercentile(95);
+		return "Requests=" + this.requestCount.get()
+			+ ", Attempts=" + this.attemptCount.get()
+			+ ", FailedAttempts=" + this.attemptFailureCount.get()
+			+ ", Retries=" + this.retryCount.get()
+			+ ", Hedged=" + this.hedgeCount.get()
+			+ ", HedgeWins=" + this.hedgeWinCount.get()
+			+ ", CircuitOpenRejections=" + this.circuitOpenCount.get()
+			+ ", FailedRequests=" + this.requestFailureCount.get()
+			+ ", Throttled=" + this.throttledCount.get()
+			+ ", RateLimitWait=" + this.rateLimitWaitTime.get() + " ms"
+			+ ", LatencyP50=" + ((p50 < 0) ? "" : (p50 + " ms"))
+			+ ", LatencyP95=" + ((p95 < 0) ? "" : (p95 + " ms"));
+	}
+}
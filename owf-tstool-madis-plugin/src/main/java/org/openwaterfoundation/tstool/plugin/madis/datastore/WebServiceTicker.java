@@ -0,0 +1,60 @@
+// WebServiceTicker - source of time for web service request timing
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time for web service request timing, used by the rate limiter and circuit breaker.
+ * The system ticker is used by default, and tests can use a ticker that is advanced manually.
+ */
+public interface WebServiceTicker {
+
+	/**
+	 * Ticker that uses System.nanoTime() and sleeps the current thread.
+	 */
+	WebServiceTicker SYSTEM = new WebServiceTicker () {
+		@Override
+		public long nanoTime () {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep ( long nanos ) throws InterruptedException {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+	};
+
+	/**
+	 * Return the current time, for measuring elapsed time.
+	 * @return the current time, nanoseconds, only meaningful relative to other times from the same ticker
+	 */
+	long nanoTime ();
+
+	/**
+	 * Wait for a time.
+	 * @param nanos time to wait, nanoseconds
+	 * @exception InterruptedException if interrupted while waiting
+	 */
+	void sleep ( long nanos ) throws InterruptedException;
+}
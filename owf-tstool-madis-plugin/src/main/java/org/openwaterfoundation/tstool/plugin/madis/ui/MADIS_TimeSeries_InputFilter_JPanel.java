@@ -23,11 +23,10 @@ NoticeEnd */
 package org.openwaterfoundation.tstool.plugin.madis.ui;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
 import org.openwaterfoundation.tstool.plugin.madis.datastore.MADISDataStore;
+import org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesCatalogFacets;
 
 import RTi.Util.GUI.InputFilter;
 import RTi.Util.GUI.InputFilter_JPanel;
@@ -74,18 +73,18 @@ public class MADIS_TimeSeries_InputFilter_JPanel extends InputFilter_JPanel {
 	public void setFilters ( int numFilterGroups ) {
 		String routine = getClass().getSimpleName() + ".setFilters";
 		
-		// Read the data to populate filter choices.
+		// Get the distinct values to populate filter choices:
+		// - use the facets from the saved global data rather than rereading to improve performance
+		// - the facets are only determined once for the cached time series catalog
 
-		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+		TimeSeriesCatalogFacets facets = null;
 		try {
-			// By default all time series are included in the catalog:
-			// - this allows providing query filters that are found in the time series list
-			// - use the saved global data rather than rereading to improve performance
-			tscatalogList = datastore.getTimeSeriesCatalog (false);
+			facets = datastore.getTimeSeriesCatalogFacets();
 		}
 		catch ( Exception e ) {
 			Message.printWarning(2, routine, "Exception reading the MADIS time series list");
 			Message.printWarning(2, routine, e);
+			facets = new TimeSeriesCatalogFacets(new ArrayList<>());
 		}
 		
 		// The internal names for filters match the /tscatalog web service query parameters.
@@ -96,128 +95,16 @@ public class MADIS_TimeSeries_InputFilter_JPanel extends InputFilter_JPanel {
 	    // Always add blank to top of filter
 	    filters.add(new InputFilter("", "", StringUtil.TYPE_STRING, null, null, false)); // Blank.
 
-	    // Loop through the time series catalog records and extract unique values for filters.
-	    List<String> stationIdChoices = new ArrayList<>();
-	    List<String> stationNameChoices = new ArrayList<>();
-	    List<String> stationNoChoices = new ArrayList<>();
-	    List<String> stationParameterNameChoices = new ArrayList<>();
-	    List<String> tsIdChoices = new ArrayList<>();
-	    List<String> tsNameChoices = new ArrayList<>();
-	    List<String> tsPathChoices = new ArrayList<>();
-	    List<String> tsShortNameChoices = new ArrayList<>();
-	    String stationId = null;
-	    String stationName = null;
-	    String stationNo = null;
-	    String stationParameterName = null;
-	    String tsId = null;
-	    String tsName = null;
-	    String tsShortName = null;
-	    String tsPath = null;
-	    boolean found = false;
-	    for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
-	    	// Get the values for lists.
-	    	stationId = "" + tscatalog.getStationId();
-	    	stationName = tscatalog.getStationName();
-	    	stationNo = tscatalog.getStationNo();
+	    // Copy the choices because the filters may modify the lists.
+	    List<String> stationIdChoices = new ArrayList<>(facets.getStationIdChoices());
+	    List<String> stationNameChoices = new ArrayList<>(facets.getStationNameChoices());
+	    List<String> stationNoChoices = new ArrayList<>(facets.getStationNoChoices());
+	    List<String> stationParameterNameChoices = new ArrayList<>(facets.getStationParameterNameChoices());
+	    List<String> tsIdChoices = new ArrayList<>(facets.getTsIdChoices());
+	    List<String> tsNameChoices = new ArrayList<>(facets.getTsNameChoices());
+	    List<String> tsPathChoices = new ArrayList<>(facets.getTsPathChoices());
+	    List<String> tsShortNameChoices = new ArrayList<>(facets.getTsShortNameChoices());
 
-	    	stationParameterName = tscatalog.getStationParameterName();
-
-	    	tsId = "" + tscatalog.getTsId();
-	    	tsName = tscatalog.getTsName();
-	    	tsPath = tscatalog.getTsPath();
-	    	tsShortName = tscatalog.getTsShortName();
-	    	
-	    	// Only add if not already in the lists.
-	    	found = false;
-	    	for ( String stationId0 : stationIdChoices ) {
-	    		if ( stationId.equals(stationId0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		stationIdChoices.add("" + stationId);
-	    	}
-
-	    	found = false;
-	    	for ( String stationName0 : stationNameChoices ) {
-	    		if ( stationName.equals(stationName0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		stationNameChoices.add(stationName);
-	    	}
-
-	    	found = false;
-	    	for ( String stationNo0 : stationNoChoices ) {
-	    		if ( stationNo.equals(stationNo0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		stationNoChoices.add(stationNo);
-	    	}
-
-	    	found = false;
-	    	for ( String stationParameterName0 : stationParameterNameChoices ) {
-	    		if ( stationParameterName.equals(stationParameterName0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		stationParameterNameChoices.add(stationParameterName);
-	    	}
-
-	    	found = false;
-	    	for ( String tsId0 : tsIdChoices ) {
-	    		if ( tsId.equals(tsId0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		tsIdChoices.add("" + tsId);
-	    	}
-
-	    	found = false;
-	    	for ( String tsName0 : tsNameChoices ) {
-	    		if ( tsName.equals(tsName0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		tsNameChoices.add(tsName);
-	    	}
-
-	    	found = false;
-	    	for ( String tsPath0 : tsPathChoices ) {
-	    		if ( tsPath.equals(tsPath0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		tsPathChoices.add(tsPath);
-	    	}
-
-	    	found = false;
-	    	for ( String tsShortName0 : tsShortNameChoices ) {
-	    		if ( tsShortName.equals(tsShortName0) ) {
-	    			found = true;
-	    			break;
-	    		}
-	    	}
-	    	if ( !found ) {
-	    		tsShortNameChoices.add(tsShortName);
-	    	}
-	    }
-
-	    Collections.sort(stationIdChoices,String.CASE_INSENSITIVE_ORDER);
 	    InputFilter filter = new InputFilter("Station - ID",
 	        "station_id", "stationId", "station_id",
 	        StringUtil.TYPE_INTEGER, stationIdChoices, stationIdChoices, false);
@@ -227,22 +114,36 @@ public class MADIS_TimeSeries_InputFilter_JPanel extends InputFilter_JPanel {
 	    filter.removeConstraint(InputFilter.INPUT_LESS_THAN_OR_EQUAL_TO);
 	    filters.add(filter);
 
-	    Collections.sort(stationNameChoices,String.CASE_INSENSITIVE_ORDER);
 	    filters.add(new InputFilter("Station - Name",
             "station_name", "stationName", "station_name",
             StringUtil.TYPE_STRING, stationNameChoices, stationNameChoices, true));
 
-	    Collections.sort(stationNoChoices,String.CASE_INSENSITIVE_ORDER);
 	    filters.add(new InputFilter("Station - Number",
             "station_no", "stationNo", "station_no",
             StringUtil.TYPE_STRING, stationNoChoices, stationNoChoices, true));
 
-	    Collections.sort(stationParameterNameChoices,String.CASE_INSENSITIVE_ORDER);
+	    // Spatial filters are evaluated using the spatial index for the cached catalog:
+	    // - the input is a list of numbers so only "matches" is used
+	    filter = new InputFilter("Station - Within Box",
+	        "station_within_box", "stationWithinBox", "station_within_box",
+	        StringUtil.TYPE_STRING, null, null, true);
+	    filter.removeConstraint(InputFilter.INPUT_CONTAINS);
+	    filter.removeConstraint(InputFilter.INPUT_ENDS_WITH);
+	    filter.removeConstraint(InputFilter.INPUT_STARTS_WITH);
+	    filters.add(filter);
+
+	    filter = new InputFilter("Station - Within Radius",
+	        "station_within_radius", "stationWithinRadius", "station_within_radius",
+	        StringUtil.TYPE_STRING, null, null, true);
+	    filter.removeConstraint(InputFilter.INPUT_CONTAINS);
+	    filter.removeConstraint(InputFilter.INPUT_ENDS_WITH);
+	    filter.removeConstraint(InputFilter.INPUT_STARTS_WITH);
+	    filters.add(filter);
+
 	    filters.add(new InputFilter("Station Parameter - Name",
             "stationparameter_name", "stationParameterName", "stationparameter_name",
             StringUtil.TYPE_STRING, stationParameterNameChoices, stationParameterNameChoices, true));
 
-	    Collections.sort(tsIdChoices,String.CASE_INSENSITIVE_ORDER);
 	    filter = new InputFilter("Time series - ID",
 	        "ts_id", "tsId", "ts_id",
 	        StringUtil.TYPE_INTEGER, tsIdChoices, tsIdChoices, false);
@@ -252,22 +153,21 @@ public class MADIS_TimeSeries_InputFilter_JPanel extends InputFilter_JPanel {
 	    filter.removeConstraint(InputFilter.INPUT_LESS_THAN_OR_EQUAL_TO);
 	    filters.add(filter);
 
-	    Collections.sort(tsNameChoices,String.CASE_INSENSITIVE_ORDER);
 	    filters.add(new InputFilter("Time series - Name",
             "ts_name", "tsName", "ts_name",
             StringUtil.TYPE_STRING, tsNameChoices, tsNameChoices, true));
 
-	    Collections.sort(tsPathChoices,String.CASE_INSENSITIVE_ORDER);
 	    filters.add(new InputFilter("Time series - Path",
             "ts_path", "tsPath", "ts_path",
             StringUtil.TYPE_STRING, tsPathChoices, tsPathChoices, true));
 
-	    Collections.sort(tsShortNameChoices,String.CASE_INSENSITIVE_ORDER);
 	    filters.add(new InputFilter("Time series - Name (short)",
             "ts_shortname", "tsShortName", "ts_shortname",
             StringUtil.TYPE_STRING, tsShortNameChoices, tsShortNameChoices, true));
 
-	  	setToolTipText("<html>Specify one or more input filters to limit query, will be ANDed.</html>");
+	  	setToolTipText("<html>Specify one or more input filters to limit query, will be ANDed.<br>"
+	  		+ "Station - Within Box:  MinLatitude,MinLongitude,MaxLatitude,MaxLongitude (decimal degrees)<br>"
+	  		+ "Station - Within Radius:  Latitude,Longitude,RadiusKm (decimal degrees, km)</html>");
 	    
 	    int numVisible = 14;
 	    setInputFilters(filters, numFilterGroups, numVisible);
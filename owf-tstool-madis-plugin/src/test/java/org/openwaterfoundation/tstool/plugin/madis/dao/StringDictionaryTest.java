@@ -0,0 +1,91 @@
+// StringDictionaryTest - tests for StringDictionary
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for StringDictionary.
+ */
+public class StringDictionaryTest {
+
+	/**
+	 * Estimate string heap bytes, rounded up to 8-byte alignment.
+	 */
+	@Test
+	public void testEstimateHeapBytes () {
+		assertEquals(40, StringDictionary.estimateHeapBytes(""));
+		assertEquals(48, StringDictionary.estimateHeapBytes("abc"));
+		assertEquals(48, StringDictionary.estimateHeapBytes("abcdefgh"));
+		assertEquals(56, StringDictionary.estimateHeapBytes("abcdefghi"));
+	}
+
+	/**
+	 * The heap bytes include the strings, the map entries, and the map table, which grows as strings are added.
+	 */
+	@Test
+	public void testHeapBytes () {
+		StringDictionary dictionary = new StringDictionary();
+		// Empty map.
+		assertEquals(64, dictionary.getHeapBytes());
+		dictionary.intern("abc");
+		// String (48), entry (32), map (48), and table of 16 (80).
+		assertEquals(48, dictionary.getRetainedBytes());
+		assertEquals(48 + 32 + 48 + 80, dictionary.getHeapBytes());
+		for ( int i = 1; i < 12; i++ ) {
+			dictionary.intern("ab" + (char)('A' + i));
+		}
+		// 12 strings still fit in a table of 16.
+		assertEquals(12, dictionary.size());
+		assertEquals(12*48 + 12*32 + 48 + 80, dictionary.getHeapBytes());
+		dictionary.intern("xyz");
+		// 13 strings need a table of 32.
+		assertEquals(13*48 + 13*32 + 48 + 144, dictionary.getHeapBytes());
+	}
+
+	/**
+	 * Interning returns the first copy of equal strings and counts the lookups and saved bytes.
+	 */
+	@Test
+	public void testIntern () {
+		StringDictionary dictionary = new StringDictionary();
+		String s1 = new String("abc");
+		String s2 = new String("abc");
+		assertNotSame(s1, s2);
+		assertSame(s1, dictionary.intern(s1));
+		assertSame(s1, dictionary.intern(s2));
+		// The same instance is not counted as saved.
+		assertSame(s1, dictionary.intern(s1));
+		assertNull(dictionary.intern(null));
+		assertSame("xyz", dictionary.intern("xyz"));
+		assertEquals(2, dictionary.size());
+		assertEquals(4, dictionary.getLookupCount());
+		assertEquals(96, dictionary.getRetainedBytes());
+		assertEquals(48, dictionary.getSavedBytes());
+	}
+}
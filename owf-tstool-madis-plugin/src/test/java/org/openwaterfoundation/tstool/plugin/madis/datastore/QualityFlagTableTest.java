@@ -0,0 +1,152 @@
+// QualityFlagTableTest - tests for QualityFlagTable
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for QualityFlagTable.
+ */
+public class QualityFlagTableTest {
+
+	/**
+	 * By default, every code in the dense table and codes outside the table are their own flag.
+	 */
+	@Test
+	public void testCodeFlagsDefault () {
+		QualityFlagTable table = new QualityFlagTable();
+		for ( int code = 0; code <= QualityFlagTable.MAX_DENSE_CODE; code++ ) {
+			assertEquals(String.valueOf(code), table.getCodeFlag(code));
+			assertEquals(String.valueOf(code), table.lookup(String.valueOf(code)));
+		}
+		assertEquals("1024", table.getCodeFlag(1024));
+		assertEquals("-1", table.getCodeFlag(-1));
+		// Flags are interned so that a flag is the same string for each lookup.
+		assertSame(table.lookup("200"), table.lookup(new String("200")));
+	}
+
+	/**
+	 * Configured codes are mapped in the dense table and outside it, and other codes are unchanged.
+	 */
+	@Test
+	public void testCodeFlagsMapped () {
+		QualityFlagTable table = new QualityFlagTable("200:, 40:E, 1023:L, 5000:X", null, null);
+		assertEquals("", table.lookup("200"));
+		assertEquals("E", table.lookup("40"));
+		assertEquals("L", table.lookup("1023"));
+		assertEquals("X", table.lookup("5000"));
+		assertEquals("41", table.lookup("41"));
+		assertEquals("5001", table.lookup("5001"));
+		// Not a number so the quality code is used.
+		assertEquals("4x", table.lookup("4x"));
+	}
+
+	/**
+	 * Integer quality codes that are not in canonical decimal form are not changed.
+	 */
+	@Test
+	public void testCodeFlagsNotCanonical () {
+		QualityFlagTable table = new QualityFlagTable("200:G", null, null);
+		assertEquals("0200", table.lookup("0200"));
+		assertEquals("00", table.lookup("00"));
+		assertEquals("+200", table.lookup("+200"));
+		assertEquals("200 ", table.lookup("200 "));
+		assertEquals("G", table.lookup("200"));
+		assertEquals("0", table.lookup("0"));
+		// Too large for an integer so the quality code is used.
+		assertEquals("99999999999", table.lookup("99999999999"));
+	}
+
+	/**
+	 * Data descriptors are their own flag by default and can be mapped.
+	 */
+	@Test
+	public void testDescriptorFlags () {
+		QualityFlagTable table = new QualityFlagTable();
+		assertEquals("Q", table.lookup("Q"));
+		assertEquals("V", table.getDescriptorFlag('V'));
+		// Outside the ASCII descriptor table.
+		assertNull(table.getDescriptorFlag((char)200));
+		table = new QualityFlagTable(null, "Q:?, X:R, V:", null);
+		assertEquals("?", table.lookup("Q"));
+		assertEquals("R", table.lookup("X"));
+		assertEquals("", table.lookup("V"));
+		assertEquals("S", table.lookup("S"));
+		// Not a data descriptor form so the quality code is used.
+		assertEquals("QX", table.lookup("QX"));
+		assertEquals("", table.lookup(""));
+		assertNull(table.lookup(null));
+	}
+
+	/**
+	 * An invalid mapping is rejected.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCodeMapping () {
+		new QualityFlagTable("200", null, null);
+	}
+
+	/**
+	 * A QC bit outside the QCA/QCR bits is rejected.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidQcBit () {
+		new QualityFlagTable(null, null, "9:z");
+	}
+
+	/**
+	 * Flags for failed QC checks are appended to the data descriptor flag when the QC bit flags are configured.
+	 */
+	@Test
+	public void testQcBitFlags () {
+		QualityFlagTable table = new QualityFlagTable(null, null, "4:T, 6:B");
+		// 80 = bits 4 and 6, which were applied and failed.
+		assertEquals("QTB", table.lookup("Q/127/80"));
+		// Only checks that were applied (bit 4) are used.
+		assertEquals("QT", table.lookup("Q/16/80"));
+		// Default flags are used for the other bits, and the master bit (0) has no flag.
+		assertEquals("Xvi", table.lookup("X/11/11"));
+		assertEquals("V", table.lookup("V/127/0"));
+		assertEquals("", table.getQcFlag(0, 511));
+		// Invalid QCA/QCR so the quality code is used.
+		assertEquals("Q/x/16", table.lookup("Q/x/16"));
+		assertEquals("Q/127", table.lookup("Q/127"));
+	}
+
+	/**
+	 * By default the "D/qca/qcr" form is used as is so that flags are the raw quality codes,
+	 * and is decoded if the data descriptor flags are configured.
+	 */
+	@Test
+	public void testQcDefault () {
+		QualityFlagTable table = new QualityFlagTable();
+		assertEquals("Q/127/16", table.lookup("Q/127/16"));
+		assertEquals("t", table.getQcFlag(127, 16));
+		table = new QualityFlagTable(null, "Q:Q", null);
+		assertEquals("Qt", table.lookup("Q/127/16"));
+	}
+}
@@ -0,0 +1,229 @@
+// RegularIntervalValueTransferTest - tests for RegularIntervalValueTransfer
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.day;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.minute;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.TS.DayTS;
+import RTi.TS.HourTS;
+import RTi.TS.TS;
+import RTi.Util.Time.DateTime;
+import RTi.Util.Time.TimeInterval;
+
+/**
+ * Tests for RegularIntervalValueTransfer.
+ */
+public class RegularIntervalValueTransferTest {
+
+	/**
+	 * Add a value to a buffer, with the timestamp in local time.
+	 */
+	private static void addValue ( TimeSeriesValueBuffer valueBuffer, DateTime dateTime, double value,
+		InterpolationType interpolationType ) {
+		valueBuffer.addValue(TimestampDecoder.toLocalMillis(dateTime), TimestampDecoder.NO_OFFSET,
+			value, "", interpolationType);
+	}
+
+	/**
+	 * Add a value to a buffer, with the timestamp in local time for a time zone offset.
+	 */
+	private static void addValue ( TimeSeriesValueBuffer valueBuffer, DateTime dateTime, int offsetMinutes, double value,
+		InterpolationType interpolationType ) {
+		valueBuffer.addValue(TimestampDecoder.toLocalMillis(dateTime) - offsetMinutes*60000L, offsetMinutes,
+			value, "", interpolationType);
+	}
+
+	/**
+	 * Create an hour date/time.
+	 */
+	private static DateTime hour ( int year, int month, int day, int hour ) {
+		DateTime dateTime = new DateTime(DateTime.PRECISION_HOUR);
+		dateTime.setYear(year);
+		dateTime.setMonth(month);
+		dateTime.setDay(day);
+		dateTime.setHour(hour);
+		return dateTime;
+	}
+
+	/**
+	 * Set the period of a time series from the buffer, allocate the data space, and transfer the values,
+	 * the same as MADISDataStore.readTimeSeries().
+	 */
+	private static RegularIntervalValueTransfer transfer ( TS ts, TimeSeriesValueTimeAdjuster timeAdjuster,
+		TimeSeriesValueBuffer valueBuffer ) {
+		timeAdjuster.setPeriod(ts, valueBuffer);
+		ts.allocateDataSpace();
+		RegularIntervalValueTransfer transfer = new RegularIntervalValueTransfer(timeAdjuster);
+		transfer.transfer(ts, valueBuffer, -1);
+		return transfer;
+	}
+
+	/**
+	 * 1Day values at midnight are set on the previous day, values that are not at midnight are counted,
+	 * and days without values are missing.
+	 */
+	@Test
+	public void testDayAlignment () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		addValue(valueBuffer, minute(2023, 1, 2, 0, 0), 1.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 3, 0, 0), 2.0, InterpolationType.INSTANTANEOUS);
+		// Gap on 2023-01-03.
+		addValue(valueBuffer, minute(2023, 1, 5, 7, 0), 4.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 6, 0, 0), 5.0, InterpolationType.INSTANTANEOUS);
+		TS ts = new DayTS();
+		ts.setDataInterval(TimeInterval.DAY, 1);
+		RegularIntervalValueTransfer transfer = transfer(ts,
+			new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false), valueBuffer);
+		assertEquals(TimestampDecoder.toLocalMillis(day(2023, 1, 1)), TimestampDecoder.toLocalMillis(ts.getDate1()));
+		assertEquals(TimestampDecoder.toLocalMillis(day(2023, 1, 5)), TimestampDecoder.toLocalMillis(ts.getDate2()));
+		assertEquals(1.0, ts.getDataValue(day(2023, 1, 1)), 0.0);
+		assertEquals(2.0, ts.getDataValue(day(2023, 1, 2)), 0.0);
+		assertTrue(ts.isDataMissing(ts.getDataValue(day(2023, 1, 3))));
+		assertEquals(4.0, ts.getDataValue(day(2023, 1, 4)), 0.0);
+		assertEquals(5.0, ts.getDataValue(day(2023, 1, 5)), 0.0);
+		assertEquals(0, transfer.getTimeAdjustCount());
+		assertEquals(1, transfer.getDayNonZeroHourCount());
+		assertEquals(0, transfer.getNotInsertedCount());
+		assertEquals(0, transfer.getValueErrorCount());
+	}
+
+	/**
+	 * 1Day MEAN values at the beginning of the day are set on the same day.
+	 */
+	@Test
+	public void testDayMean () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		addValue(valueBuffer, minute(2023, 1, 1, 0, 0), 1.0, InterpolationType.CONSTANT_UNTIL_NEXT);
+		addValue(valueBuffer, minute(2023, 1, 2, 0, 0), 2.0, InterpolationType.CONSTANT_UNTIL_NEXT);
+		TS ts = new DayTS();
+		ts.setDataInterval(TimeInterval.DAY, 1);
+		RegularIntervalValueTransfer transfer = transfer(ts,
+			new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false), valueBuffer);
+		assertEquals(1.0, ts.getDataValue(day(2023, 1, 1)), 0.0);
+		assertEquals(2.0, ts.getDataValue(day(2023, 1, 2)), 0.0);
+		assertEquals(2, transfer.getTimeAdjustCount());
+		assertEquals(0, transfer.getNotInsertedCount());
+	}
+
+	/**
+	 * The last of the values with the same interval is used.
+	 */
+	@Test
+	public void testDuplicateValues () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		addValue(valueBuffer, minute(2023, 1, 2, 5, 0), 1.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 2, 5, 0), 2.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 2, 6, 0), 3.0, InterpolationType.INSTANTANEOUS);
+		TS ts = new HourTS();
+		ts.setDataInterval(TimeInterval.HOUR, 1);
+		RegularIntervalValueTransfer transfer = transfer(ts,
+			new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false), valueBuffer);
+		assertEquals(2.0, ts.getDataValue(hour(2023, 1, 2, 5)), 0.0);
+		assertEquals(3.0, ts.getDataValue(hour(2023, 1, 2, 6)), 0.0);
+		assertEquals(0, transfer.getNotInsertedCount());
+	}
+
+	/**
+	 * 1Hour MEAN values are shifted to the end of the interval, using the time zone offset,
+	 * and hours without values are missing.
+	 */
+	@Test
+	public void testHourAlignment () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		// Offset -0700, so the epoch time is 7 hours later than the local time.
+		int offsetMinutes = -420;
+		addValue(valueBuffer, minute(2023, 1, 2, 0, 0), offsetMinutes, 1.0, InterpolationType.CONSTANT_UNTIL_NEXT);
+		addValue(valueBuffer, minute(2023, 1, 2, 1, 0), offsetMinutes, 2.0, InterpolationType.CONSTANT_UNTIL_NEXT);
+		// Gap at 02:00 and 03:00.
+		addValue(valueBuffer, minute(2023, 1, 2, 4, 0), offsetMinutes, 5.0, InterpolationType.CONSTANT_UNTIL_NEXT);
+		TS ts = new HourTS();
+		ts.setDataInterval(TimeInterval.HOUR, 1);
+		RegularIntervalValueTransfer transfer = transfer(ts,
+			new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false), valueBuffer);
+		assertEquals(TimestampDecoder.toLocalMillis(hour(2023, 1, 2, 1)), TimestampDecoder.toLocalMillis(ts.getDate1()));
+		assertEquals(TimestampDecoder.toLocalMillis(hour(2023, 1, 2, 5)), TimestampDecoder.toLocalMillis(ts.getDate2()));
+		assertEquals(1.0, ts.getDataValue(hour(2023, 1, 2, 1)), 0.0);
+		assertEquals(2.0, ts.getDataValue(hour(2023, 1, 2, 2)), 0.0);
+		assertTrue(ts.isDataMissing(ts.getDataValue(hour(2023, 1, 2, 3))));
+		assertTrue(ts.isDataMissing(ts.getDataValue(hour(2023, 1, 2, 4))));
+		assertEquals(5.0, ts.getDataValue(hour(2023, 1, 2, 5)), 0.0);
+		assertEquals(3, transfer.getTimeAdjustCount());
+		assertEquals(0, transfer.getDayNonZeroHourCount());
+		assertEquals(0, transfer.getNotInsertedCount());
+	}
+
+	/**
+	 * Values outside the time series period are counted and not set.
+	 */
+	@Test
+	public void testOutsidePeriod () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		addValue(valueBuffer, minute(2023, 1, 2, 0, 0), 1.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 2, 1, 0), 2.0, InterpolationType.INSTANTANEOUS);
+		addValue(valueBuffer, minute(2023, 1, 2, 2, 0), 3.0, InterpolationType.INSTANTANEOUS);
+		TS ts = new HourTS();
+		ts.setDataInterval(TimeInterval.HOUR, 1);
+		ts.setDate1(hour(2023, 1, 2, 1));
+		ts.setDate2(hour(2023, 1, 2, 1));
+		ts.allocateDataSpace();
+		RegularIntervalValueTransfer transfer = new RegularIntervalValueTransfer(
+			new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false));
+		transfer.transfer(ts, valueBuffer, -1);
+		assertEquals(2.0, ts.getDataValue(hour(2023, 1, 2, 1)), 0.0);
+		assertEquals(2, transfer.getNotInsertedCount());
+	}
+
+	/**
+	 * The transfer cannot be used with an irregular interval.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsupportedInterval () throws Exception {
+		new RegularIntervalValueTransfer(new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1,
+			TimeInterval.parseInterval("IrregDay"), false, false));
+	}
+
+	/**
+	 * 24Hour values read as 1Day are set on the previous day.
+	 */
+	@Test
+	public void test24HourReadAsDay () {
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		addValue(valueBuffer, minute(2023, 1, 2, 0, 0), 1.0, InterpolationType.TOTAL_SINCE_PREVIOUS);
+		addValue(valueBuffer, minute(2023, 1, 4, 0, 0), 3.0, InterpolationType.TOTAL_SINCE_PREVIOUS);
+		TS ts = new DayTS();
+		ts.setDataInterval(TimeInterval.DAY, 1);
+		RegularIntervalValueTransfer transfer = transfer(ts,
+			new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 24, null, false, true), valueBuffer);
+		assertEquals(1.0, ts.getDataValue(day(2023, 1, 1)), 0.0);
+		assertTrue(ts.isDataMissing(ts.getDataValue(day(2023, 1, 2))));
+		assertEquals(3.0, ts.getDataValue(day(2023, 1, 3)), 0.0);
+		assertEquals(0, transfer.getTimeAdjustCount());
+		assertEquals(0, transfer.getNotInsertedCount());
+	}
+}
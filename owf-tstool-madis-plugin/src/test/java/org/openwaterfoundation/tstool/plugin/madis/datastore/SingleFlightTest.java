@@ -0,0 +1,180 @@
+// SingleFlightTest - tests for SingleFlight
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for SingleFlight.
+ */
+public class SingleFlightTest {
+
+	/**
+	 * Number of callers that wait for the leader's load.
+	 */
+	private static final int WAITER_COUNT = 3;
+
+	/**
+	 * Start a leader and waiting callers for the same key.
+	 * The loader is only allowed to finish after all waiting callers have joined the load.
+	 * @param flight the single flight group
+	 * @param loadCount incremented each time the loader is called
+	 * @param error error thrown by the loader, or null to return a new list
+	 * @param executor executor for the callers
+	 * @return the results for the leader (first) and the waiting callers
+	 */
+	private static List<Future<List<String>>> startCalls ( SingleFlight<String,List<String>> flight,
+		AtomicInteger loadCount, IOException error, ExecutorService executor ) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		SingleFlight.Loader<List<String>,IOException> loader = () -> {
+			loadCount.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			}
+			catch ( InterruptedException e ) {
+				throw new IOException ( e );
+			}
+			if ( error != null ) {
+				throw error;
+			}
+			return new ArrayList<>(Arrays.asList("a", "b"));
+		};
+		List<Future<List<String>>> futures = new ArrayList<>();
+		futures.add(executor.submit(() -> flight.execute("key", loader)));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		for ( int i = 0; i < WAITER_COUNT; i++ ) {
+			futures.add(executor.submit(() -> flight.execute("key", loader)));
+		}
+		// Wait until the callers have joined the load in progress.
+		long timeout = System.currentTimeMillis() + 10000;
+		while ( flight.getSharedCount() < WAITER_COUNT ) {
+			if ( System.currentTimeMillis() > timeout ) {
+				fail("Callers did not join the load.");
+			}
+			Thread.sleep(1);
+		}
+		release.countDown();
+		return futures;
+	}
+
+	/**
+	 * With a copier, each waiting caller gets its own copy of the leader's result.
+	 */
+	@Test
+	public void testCopies () throws Exception {
+		SingleFlight<String,List<String>> flight = new SingleFlight<>(list -> new ArrayList<>(list));
+		AtomicInteger loadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(WAITER_COUNT + 1);
+		try {
+			List<Future<List<String>>> futures = startCalls(flight, loadCount, null, executor);
+			List<List<String>> results = new ArrayList<>();
+			for ( Future<List<String>> future : futures ) {
+				results.add(future.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loadCount.get());
+			for ( int i = 0; i < results.size(); i++ ) {
+				assertEquals(Arrays.asList("a", "b"), results.get(i));
+				for ( int j = i + 1; j < results.size(); j++ ) {
+					assertNotSame(results.get(i), results.get(j));
+				}
+			}
+			// Modifying one copy does not modify the others.
+			results.get(0).add("c");
+			assertEquals(2, results.get(1).size());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * If the leader's load fails, every waiting caller receives the error, and the failure is not remembered.
+	 */
+	@Test
+	public void testLeaderFailure () throws Exception {
+		SingleFlight<String,List<String>> flight = new SingleFlight<>(null);
+		AtomicInteger loadCount = new AtomicInteger();
+		IOException error = new IOException ( "Load failed." );
+		ExecutorService executor = Executors.newFixedThreadPool(WAITER_COUNT + 1);
+		try {
+			List<Future<List<String>>> futures = startCalls(flight, loadCount, error, executor);
+			for ( Future<List<String>> future : futures ) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+					fail("Expected the load error.");
+				}
+				catch ( ExecutionException e ) {
+					assertSame(error, e.getCause());
+				}
+			}
+			assertEquals(1, loadCount.get());
+			// A later request loads again.
+			assertEquals(Arrays.asList("x"), flight.execute("key", () -> Arrays.asList("x")));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Concurrent callers for the same key share one load, and without a copier share the same result.
+	 */
+	@Test
+	public void testSharedLoad () throws Exception {
+		SingleFlight<String,List<String>> flight = new SingleFlight<>(null);
+		AtomicInteger loadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(WAITER_COUNT + 1);
+		try {
+			List<Future<List<String>>> futures = startCalls(flight, loadCount, null, executor);
+			List<String> leaderResult = futures.get(0).get(10, TimeUnit.SECONDS);
+			for ( Future<List<String>> future : futures ) {
+				assertSame(leaderResult, future.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loadCount.get());
+			assertEquals(WAITER_COUNT, flight.getSharedCount());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
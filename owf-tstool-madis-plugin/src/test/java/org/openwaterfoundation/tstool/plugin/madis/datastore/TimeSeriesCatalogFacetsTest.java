@@ -0,0 +1,145 @@
+// TimeSeriesCatalogFacetsTest - tests for TimeSeriesCatalogFacets
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogFacets.
+ */
+public class TimeSeriesCatalogFacetsTest {
+
+	/**
+	 * Create a time series catalog with a data type, interval, and statistic.
+	 */
+	private static TimeSeriesCatalog createCatalog ( int tsId, String dataType, String dataInterval, String statistic ) {
+		TimeSeriesCatalog tscatalog = TimeSeriesTestSupport.createCatalog(tsId, "S" + tsId, dataType, null, null);
+		tscatalog.setDataInterval(dataInterval);
+		tscatalog.setTsShortName(statistic);
+		return tscatalog;
+	}
+
+	/**
+	 * Create the facets for the test catalog:
+	 * <ul>
+	 * <li> Q:  15Minute (15.Cmd), 1Day (Day.Mean, Day.Max), 24Hour (24.Sum)</li>
+	 * <li> H:  15Minute (15.Cmd), 1Hour (1.Mean)</li>
+	 * </ul>
+	 */
+	private static TimeSeriesCatalogFacets createFacets () {
+		return new TimeSeriesCatalogFacets(Arrays.asList(
+			createCatalog(1, "Q", "1Day", "Day.Mean"),
+			createCatalog(2, "Q", "15Minute", "15.Cmd"),
+			createCatalog(3, "Q", "1Day", "Day.Max"),
+			createCatalog(4, "Q", "24Hour", "24.Sum"),
+			createCatalog(5, "H", "1Hour", "1.Mean"),
+			createCatalog(6, "H", "15Minute", "15.Cmd")));
+	}
+
+	/**
+	 * Data interval choices are for the data type, or all data types for "*", blank, or null,
+	 * and are sorted by interval duration.
+	 */
+	@Test
+	public void testDataIntervalChoices () {
+		TimeSeriesCatalogFacets facets = createFacets();
+		List<String> all = Arrays.asList("15Minute", "1Hour", "1Day", "24Hour");
+		assertEquals(all, facets.getDataIntervalChoices("*", false));
+		assertEquals(all, facets.getDataIntervalChoices("", false));
+		assertEquals(all, facets.getDataIntervalChoices(null, false));
+		assertEquals(Arrays.asList("15Minute", "1Day", "24Hour"), facets.getDataIntervalChoices("Q", false));
+		assertEquals(Arrays.asList("15Minute", "1Hour"), facets.getDataIntervalChoices("H", false));
+		assertEquals(Collections.emptyList(), facets.getDataIntervalChoices("X", false));
+	}
+
+	/**
+	 * Data type choices are for the data interval, or all data intervals for "*", blank, or null.
+	 */
+	@Test
+	public void testDataTypeChoices () {
+		TimeSeriesCatalogFacets facets = createFacets();
+		List<String> all = Arrays.asList("H", "Q");
+		assertEquals(all, facets.getDataTypeChoices("*", false));
+		assertEquals(all, facets.getDataTypeChoices("", false));
+		assertEquals(all, facets.getDataTypeChoices(null, false));
+		assertEquals(all, facets.getDataTypeChoices("15Minute", false));
+		assertEquals(Arrays.asList("Q"), facets.getDataTypeChoices("1Day", false));
+		assertEquals(Arrays.asList("H"), facets.getDataTypeChoices("1Hour", false));
+		assertEquals(Collections.emptyList(), facets.getDataTypeChoices("1Month", false));
+	}
+
+	/**
+	 * Distinct values for the input filter choices are sorted and exclude nulls.
+	 */
+	@Test
+	public void testDistinctValues () {
+		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+		tscatalogList.add(createCatalog(20, "Q", "1Day", "Day.Mean"));
+		tscatalogList.add(createCatalog(3, "Q", "1Day", "Day.Mean"));
+		tscatalogList.add(createCatalog(20, "Q", "1Day", "Day.Mean"));
+		tscatalogList.add(TimeSeriesTestSupport.createCatalog(null, null, null, null, null));
+		TimeSeriesCatalogFacets facets = new TimeSeriesCatalogFacets(tscatalogList);
+		assertEquals(Arrays.asList("20", "3"), facets.getTsIdChoices());
+		assertEquals(Arrays.asList("S20", "S3"), facets.getStationNoChoices());
+		assertEquals(Arrays.asList("15.Cmd", "Day.Mean"), facets.getTsShortNameChoices());
+	}
+
+	/**
+	 * With wildcards, "*" is at the front and end of the choices, and only at the end if there are no other choices.
+	 */
+	@Test
+	public void testIncludeWildcards () {
+		TimeSeriesCatalogFacets facets = createFacets();
+		assertEquals(Arrays.asList("*", "15Minute", "1Hour", "*"), facets.getDataIntervalChoices("H", true));
+		assertEquals(Arrays.asList("*", "Q", "*"), facets.getDataTypeChoices("1Day", true));
+		assertEquals(Arrays.asList("*"), facets.getDataTypeChoices("1Month", true));
+		assertEquals(Arrays.asList("*", "Day.Max", "Day.Mean", "*"), facets.getStatisticChoices("Q", "1Day", true));
+		// An empty catalog only has the wildcard.
+		facets = new TimeSeriesCatalogFacets(new ArrayList<>());
+		assertEquals(Arrays.asList("*"), facets.getDataIntervalChoices("*", true));
+		assertEquals(Arrays.asList("*"), facets.getDataTypeChoices(null, true));
+		assertEquals(Arrays.asList("*"), facets.getStatisticChoices(null, null, true));
+		assertEquals(Collections.emptyList(), facets.getDataTypeChoices(null, false));
+	}
+
+	/**
+	 * Statistic choices are for the data type and data interval, either of which can be "*", blank, or null.
+	 */
+	@Test
+	public void testStatisticChoices () {
+		TimeSeriesCatalogFacets facets = createFacets();
+		assertEquals(Arrays.asList("1.Mean", "15.Cmd", "24.Sum", "Day.Max", "Day.Mean"), facets.getStatisticChoices("*", "*", false));
+		assertEquals(Arrays.asList("15.Cmd", "24.Sum", "Day.Max", "Day.Mean"), facets.getStatisticChoices("Q", null, false));
+		assertEquals(Arrays.asList("15.Cmd"), facets.getStatisticChoices("", "15Minute", false));
+		assertEquals(Arrays.asList("Day.Max", "Day.Mean"), facets.getStatisticChoices("Q", "1Day", false));
+		assertEquals(Collections.emptyList(), facets.getStatisticChoices("H", "1Day", false));
+	}
+}
@@ -0,0 +1,163 @@
+// TimeSeriesCatalogFilterTest - tests for TimeSeriesCatalogFilter
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.createCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import RTi.Util.GUI.InputFilter;
+
+/**
+ * Tests for TimeSeriesCatalogFilter.
+ */
+public class TimeSeriesCatalogFilterTest {
+
+	/**
+	 * Create the test catalog list:
+	 * <ul>
+	 * <li> ts_id 1: station A, Q, at 40.0,-105.0</li>
+	 * <li> ts_id 2: station A, H, at 40.0,-105.0</li>
+	 * <li> ts_id 3: station B, Q, at 41.0,-106.0</li>
+	 * <li> ts_id 4: station C, Q, no location</li>
+	 * </ul>
+	 */
+	private static List<TimeSeriesCatalog> createList () {
+		List<TimeSeriesCatalog> list = Arrays.asList(
+			createCatalog(1, "A", "Q", 40.0, -105.0),
+			createCatalog(2, "A", "H", 40.0, -105.0),
+			createCatalog(3, "B", "Q", 41.0, -106.0),
+			createCatalog(4, "C", "Q", null, null));
+		for ( TimeSeriesCatalog tscatalog : list ) {
+			tscatalog.setTsPath("1/" + tscatalog.getStationNo() + "/" + tscatalog.getStationParameterNo() + "/15.Cmd");
+		}
+		return list;
+	}
+
+	/**
+	 * Filter with an input filter and return the ts_id of the matches.
+	 */
+	private static List<Integer> filter ( TimeSeriesCatalogIndex index, String whereInternal, String operator, String input ) {
+		TimeSeriesCatalogFilter filter = new TimeSeriesCatalogFilter(index);
+		assertTrue(filter.addInputFilter(new InputFilter(whereInternal, input), operator));
+		return toTsIds(filter.filter());
+	}
+
+	/**
+	 * Return the ts_id for a list of time series catalog.
+	 */
+	private static List<Integer> toTsIds ( List<TimeSeriesCatalog> tscatalogList ) {
+		Integer [] tsIds = new Integer[tscatalogList.size()];
+		for ( int i = 0; i < tsIds.length; i++ ) {
+			tsIds[i] = tscatalogList.get(i).getTsId();
+		}
+		return Arrays.asList(tsIds);
+	}
+
+	/**
+	 * Data type, interval, ts_id, and ts_path conditions must all match.
+	 */
+	@Test
+	public void testConditions () {
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(createList());
+		TimeSeriesCatalogFilter filter = new TimeSeriesCatalogFilter(index);
+		filter.addDataType("q");
+		filter.addDataInterval("*");
+		assertEquals(Arrays.asList(1, 3, 4), toTsIds(filter.filter()));
+		filter.addTsPath("1/*/Q/15.cmd");
+		assertEquals(Arrays.asList(1, 3, 4), toTsIds(filter.filter()));
+		filter.addTsId(3);
+		assertEquals(Arrays.asList(3), toTsIds(filter.filter()));
+		filter = new TimeSeriesCatalogFilter(index);
+		filter.addTsPath("1/a/h/15.CMD");
+		assertEquals(Arrays.asList(2), toTsIds(filter.filter()));
+		filter.addDataInterval("1Hour");
+		assertTrue(filter.filter().isEmpty());
+	}
+
+	/**
+	 * The returned list is a new list that can be modified, with or without conditions.
+	 */
+	@Test
+	public void testFilterReturnsMutableList () {
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(createList());
+		List<TimeSeriesCatalog> all = new TimeSeriesCatalogFilter(index).filter();
+		assertEquals(4, all.size());
+		all.remove(0);
+		assertEquals(4, index.size());
+		TimeSeriesCatalogFilter filter = new TimeSeriesCatalogFilter(index);
+		filter.addTsId(2);
+		List<TimeSeriesCatalog> matches = filter.filter();
+		matches.add(all.get(0));
+		assertEquals(2, matches.size());
+	}
+
+	/**
+	 * String input filters ignore case, and 'matches' can use * wildcards.
+	 */
+	@Test
+	public void testInputFilterString () {
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(createList());
+		assertEquals(Arrays.asList(1, 2), filter(index, "station_no", InputFilter.INPUT_MATCHES, "a"));
+		assertEquals(Arrays.asList(1, 2, 3, 4), filter(index, "station_no", InputFilter.INPUT_MATCHES, "*"));
+		assertEquals(Arrays.asList(1, 3, 4), filter(index, "ts_path", InputFilter.INPUT_MATCHES, "1/*/q/*"));
+		assertEquals(Arrays.asList(3, 4), filter(index, "station_no", InputFilter.INPUT_NOT_EQUAL, "A"));
+		assertEquals(Arrays.asList(1, 2, 3, 4), filter(index, "ts_path", InputFilter.INPUT_STARTS_WITH, "1/"));
+		assertTrue(filter(index, "station_no", InputFilter.INPUT_EQUALS, "D").isEmpty());
+		// Blank input is not used.
+		assertEquals(Arrays.asList(1, 2, 3, 4), filter(index, "station_no", InputFilter.INPUT_EQUALS, " "));
+		// Unknown filters are not evaluated locally.
+		assertFalse(new TimeSeriesCatalogFilter(index).addInputFilter(new InputFilter("other", "x"), InputFilter.INPUT_EQUALS));
+	}
+
+	/**
+	 * Spatial filters match stations within a box or radius.
+	 */
+	@Test
+	public void testSpatial () {
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(createList());
+		assertEquals(Arrays.asList(1, 2), filter(index, "station_within_box", InputFilter.INPUT_MATCHES, "39.5,-105.5,40.5,-104.5"));
+		assertEquals(Arrays.asList(1, 2, 3), filter(index, "station_within_box", InputFilter.INPUT_MATCHES, " 39, -107, 42, -104 "));
+		assertEquals(Arrays.asList(1, 2), filter(index, "station_within_radius", InputFilter.INPUT_MATCHES, "40.0,-105.0,10"));
+		assertEquals(Arrays.asList(1, 2, 3), filter(index, "station_within_radius", InputFilter.INPUT_MATCHES, "40.0,-105.0,200"));
+	}
+
+	/**
+	 * Spatial filters with invalid input match no time series, rather than the full catalog.
+	 */
+	@Test
+	public void testSpatialInvalidInput () {
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(createList());
+		assertTrue(filter(index, "station_within_box", InputFilter.INPUT_MATCHES, "39.5,-105.5,40.5").isEmpty());
+		assertTrue(filter(index, "station_within_box", InputFilter.INPUT_MATCHES, "39.5,-105.5,4O.5,-104.5").isEmpty());
+		assertTrue(filter(index, "station_within_radius", InputFilter.INPUT_MATCHES, "40.0,-105.0").isEmpty());
+		assertTrue(filter(index, "station_within_radius", InputFilter.INPUT_MATCHES, "95.0,-105.0,10").isEmpty());
+	}
+}
@@ -0,0 +1,126 @@
+// TimeSeriesCatalogIndexTest - tests for TimeSeriesCatalogIndex
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.createCatalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogIndex.
+ */
+public class TimeSeriesCatalogIndexTest {
+
+	/**
+	 * Create a time series catalog with a ts_path made from the station, parameter, and short name.
+	 */
+	private static TimeSeriesCatalog createPathCatalog ( int tsId, String stationNo, String stationParameterNo, String dataInterval ) {
+		TimeSeriesCatalog tscatalog = createCatalog(tsId, stationNo, stationParameterNo, null, null);
+		tscatalog.setDataInterval(dataInterval);
+		tscatalog.setTsPath("1/" + stationNo + "/" + stationParameterNo + "/" + tsId);
+		return tscatalog;
+	}
+
+	/**
+	 * Create the test catalog list, with two intervals for station A parameter Q.
+	 */
+	private static List<TimeSeriesCatalog> createList () {
+		return Arrays.asList(
+			createPathCatalog(1, "A", "Q", "15Minute"),
+			createPathCatalog(2, "A", "Q", "1Hour"),
+			createPathCatalog(3, "A", "H", "15Minute"),
+			createPathCatalog(4, "B", "Q", "15Minute"));
+	}
+
+	/**
+	 * Find the time series catalog by the parts of a TSTool TSID, optionally matching the interval.
+	 */
+	@Test
+	public void testFind () {
+		List<TimeSeriesCatalog> list = createList();
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(list);
+		assertEquals(Arrays.asList(list.get(0), list.get(1)), index.find("A", "Q", "15.Cmd", null));
+		assertEquals(Arrays.asList(list.get(1)), index.find("A", "Q", "15.Cmd", "1hour"));
+		assertTrue(index.find("A", "Q", "15.Cmd", "1Day").isEmpty());
+		assertTrue(index.find("C", "Q", "15.Cmd", null).isEmpty());
+	}
+
+	/**
+	 * Find the time series catalog by station_no, ignoring case.
+	 */
+	@Test
+	public void testFindByStationNo () {
+		List<TimeSeriesCatalog> list = createList();
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(list);
+		assertEquals(list.subList(0, 3), index.findByStationNo("A"));
+		assertEquals(list.subList(0, 3), index.findByStationNo("a"));
+		assertEquals(Arrays.asList(list.get(3)), index.findByStationNo("B"));
+		assertTrue(index.findByStationNo("C").isEmpty());
+		assertTrue(index.findByStationNo(null).isEmpty());
+	}
+
+	/**
+	 * Find the time series catalog by ts_id.
+	 */
+	@Test
+	public void testFindByTsId () {
+		List<TimeSeriesCatalog> list = createList();
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(list);
+		assertSame(list.get(2), index.findByTsId(3));
+		assertNull(index.findByTsId(5));
+		assertNull(index.findByTsId(null));
+	}
+
+	/**
+	 * Find the time series catalog by ts_path, ignoring case.
+	 */
+	@Test
+	public void testFindByTsPath () {
+		List<TimeSeriesCatalog> list = createList();
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(list);
+		assertSame(list.get(1), index.findByTsPath("1/A/Q/2"));
+		assertSame(list.get(1), index.findByTsPath("1/a/q/2"));
+		assertNull(index.findByTsPath("1/A/Q/5"));
+		assertNull(index.findByTsPath(null));
+	}
+
+	/**
+	 * The indexed list is the catalog list and cannot be modified.
+	 */
+	@Test(expected=UnsupportedOperationException.class)
+	public void testListIsUnmodifiable () {
+		List<TimeSeriesCatalog> list = createList();
+		TimeSeriesCatalogIndex index = new TimeSeriesCatalogIndex(list);
+		assertEquals(list, index.getTimeSeriesCatalogList());
+		assertEquals(4, index.size());
+		index.getTimeSeriesCatalogList().remove(0);
+	}
+}
@@ -0,0 +1,119 @@
+// TimeSeriesCatalogMergeTest - tests for TimeSeriesCatalogMerge
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.createCatalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogMerge.
+ */
+public class TimeSeriesCatalogMergeTest {
+
+	/**
+	 * Create a time series catalog with a ts_name, which is compared by the merge.
+	 */
+	private static TimeSeriesCatalog createNamedCatalog ( int tsId, String stationParameterNo, String tsName ) {
+		TimeSeriesCatalog tscatalog = createCatalog(tsId, null, stationParameterNo, null, null);
+		tscatalog.setTsName(tsName);
+		return tscatalog;
+	}
+
+	/**
+	 * Return the ts_id for the catalog list, in order.
+	 */
+	private static List<Integer> getTsIds ( List<TimeSeriesCatalog> tscatalogList ) {
+		List<Integer> tsIds = new ArrayList<>();
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			tsIds.add(tscatalog.getTsId());
+		}
+		return tsIds;
+	}
+
+	/**
+	 * Test that changed, added, and removed time series in a refreshed partition are merged,
+	 * unchanged time series reuse the existing objects, and partitions that were not refreshed are kept.
+	 */
+	@Test
+	public void testMerge () {
+		List<TimeSeriesCatalog> tscatalogList = Arrays.asList(
+			createNamedCatalog(1, "Q", "unchanged"),
+			createNamedCatalog(2, "Q", "before"),
+			createNamedCatalog(3, "Q", "removed"),
+			createNamedCatalog(4, "H", "other partition"));
+		List<TimeSeriesCatalog> partitionCatalogList = Arrays.asList(
+			createNamedCatalog(5, "Q", "added"),
+			createNamedCatalog(2, "Q", "after"),
+			createNamedCatalog(1, "Q", "unchanged"));
+		TimeSeriesCatalogMerge merge = new TimeSeriesCatalogMerge(tscatalogList, Collections.singletonList("Q"), partitionCatalogList);
+
+		assertEquals(1, merge.getAddedCount());
+		assertEquals(1, merge.getChangedCount());
+		assertEquals(1, merge.getRemovedCount());
+		assertEquals(1, merge.getUnchangedCount());
+		assertTrue(merge.hasChanges());
+
+		// Changed time series are in the same position and added time series are at the end.
+		List<TimeSeriesCatalog> mergedList = merge.getMergedList();
+		assertEquals(Arrays.asList(1, 2, 4, 5), getTsIds(mergedList));
+		// Unchanged time series reuse the existing object.
+		assertSame(tscatalogList.get(0), mergedList.get(0));
+		// Changed time series use the refreshed object.
+		assertSame(partitionCatalogList.get(1), mergedList.get(1));
+		assertEquals("after", mergedList.get(1).getTsName());
+		// Time series in partitions that were not refreshed are kept.
+		assertSame(tscatalogList.get(3), mergedList.get(2));
+		assertSame(partitionCatalogList.get(0), mergedList.get(3));
+
+		// The existing catalog is not modified.
+		assertEquals(4, tscatalogList.size());
+		assertEquals("before", tscatalogList.get(1).getTsName());
+	}
+
+	/**
+	 * Test that a refresh without changes reuses all existing objects and reports no changes.
+	 */
+	@Test
+	public void testMergeUnchanged () {
+		List<TimeSeriesCatalog> tscatalogList = Arrays.asList(
+			createNamedCatalog(1, "Q", "a"),
+			createNamedCatalog(2, "H", "b"));
+		TimeSeriesCatalogMerge merge = new TimeSeriesCatalogMerge(tscatalogList, Arrays.asList("Q", "H"),
+			Arrays.asList(createNamedCatalog(2, "H", "b"), createNamedCatalog(1, "Q", "a")));
+		assertFalse(merge.hasChanges());
+		assertEquals(2, merge.getUnchangedCount());
+		assertSame(tscatalogList.get(0), merge.getMergedList().get(0));
+		assertSame(tscatalogList.get(1), merge.getMergedList().get(1));
+	}
+}
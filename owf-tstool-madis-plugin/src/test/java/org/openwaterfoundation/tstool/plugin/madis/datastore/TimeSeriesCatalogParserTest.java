@@ -0,0 +1,132 @@
+// TimeSeriesCatalogParserTest - tests for TimeSeriesCatalogParser
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogParser.
+ */
+public class TimeSeriesCatalogParserTest {
+
+	/**
+	 * Parse a response.
+	 */
+	private List<TimeSeriesCatalog> parse ( String response ) throws IOException {
+		return new TimeSeriesCatalogParser().parse(
+			new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), new StringDictionary());
+	}
+
+	/**
+	 * Test that the spacing is converted to the data interval.
+	 */
+	@Test
+	public void testConvertSpacingToInterval () {
+		assertEquals("15Minute", TimeSeriesCatalogParser.convertSpacingToInterval("PT15M"));
+		assertEquals("1Hour", TimeSeriesCatalogParser.convertSpacingToInterval("PT1H"));
+		assertEquals("24Hour", TimeSeriesCatalogParser.convertSpacingToInterval("PT24H"));
+		assertEquals("1Day", TimeSeriesCatalogParser.convertSpacingToInterval("P1D"));
+		assertEquals("1Month", TimeSeriesCatalogParser.convertSpacingToInterval("P1M"));
+		assertEquals("1Year", TimeSeriesCatalogParser.convertSpacingToInterval("P1Y"));
+		assertEquals("IrregSecond", TimeSeriesCatalogParser.convertSpacingToInterval(""));
+		assertEquals("IrregSecond", TimeSeriesCatalogParser.convertSpacingToInterval(null));
+		assertEquals("IrregSecond", TimeSeriesCatalogParser.convertSpacingToInterval("PT0S"));
+		assertEquals("Unknown", TimeSeriesCatalogParser.convertSpacingToInterval("PT1H30M"));
+	}
+
+	/**
+	 * Test that an error response throws an exception with the message.
+	 */
+	@Test
+	public void testErrorResponse () {
+		try {
+			parse("{\"type\":\"error\",\"code\":\"InvalidParameterValue\",\"message\":\"Bad request\"}");
+			fail("Expected an exception.");
+		}
+		catch ( IOException e ) {
+			assertTrue(e.getMessage().contains("InvalidParameterValue - Bad request"));
+		}
+	}
+
+	/**
+	 * Test parsing time series objects.
+	 */
+	@Test
+	public void testParse () throws IOException {
+		List<TimeSeriesCatalog> tscatalogList = parse(
+			"[\n"
+			+ "{\"station_no\":\"1234\",\"station_latitude\":\"39.5\",\"station_longitude\":\"-105.1\",\"stationparameter_no\":\"Q\","
+			+ "\"ts_id\":\"957010\",\"ts_shortname\":\"15.Cmd\",\"ts_spacing\":\"PT15M\",\"ts_unitsymbol\":\"cfs\",\"site_id\":\"\"},\n"
+			+ "{\"station_no\":\"1235\",\"station_latitude\":null,\"stationparameter_no\":\"Q\","
+			+ "\"ts_id\":957011,\"ts_shortname\":\"Day\",\"ts_spacing\":\"P1D\",\"ts_unitsymbol\":\"cfs\",\"extra\":{\"a\":[1,2]}}\n"
+			+ "]");
+		assertEquals(2, tscatalogList.size());
+
+		TimeSeriesCatalog tscatalog = tscatalogList.get(0);
+		assertEquals("1234", tscatalog.getStationNo());
+		assertEquals("1234", tscatalog.getLocId());
+		assertEquals(39.5, tscatalog.getStationLatitude(), 0.0);
+		assertEquals(-105.1, tscatalog.getStationLongitude(), 0.0);
+		assertEquals(Integer.valueOf(957010), tscatalog.getTsId());
+		assertNull(tscatalog.getSiteId());
+		assertEquals("Q-'15.Cmd'", tscatalog.getDataType());
+		assertEquals("15Minute", tscatalog.getDataInterval());
+		assertEquals("cfs", tscatalog.getDataUnits());
+
+		tscatalog = tscatalogList.get(1);
+		assertNull(tscatalog.getStationLatitude());
+		assertEquals(Integer.valueOf(957011), tscatalog.getTsId());
+		assertEquals("Q-Day", tscatalog.getDataType());
+		assertEquals("1Day", tscatalog.getDataInterval());
+
+		// Strings are shared.
+		assertSame(tscatalogList.get(0).getTsUnitSymbol(), tscatalogList.get(1).getTsUnitSymbol());
+	}
+
+	/**
+	 * Test that a truncated response throws an exception.
+	 */
+	@Test
+	public void testTruncatedResponse () {
+		try {
+			parse("[{\"station_no\":\"1234\"},{\"station_no\":\"12");
+			fail("Expected an exception.");
+		}
+		catch ( IOException e ) {
+			// Expected.
+		}
+	}
+}
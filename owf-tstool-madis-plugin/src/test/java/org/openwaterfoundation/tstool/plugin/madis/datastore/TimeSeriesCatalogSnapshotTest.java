@@ -0,0 +1,173 @@
+// TimeSeriesCatalogSnapshotTest - tests for TimeSeriesCatalogSnapshot
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.createCatalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogSnapshot.
+ */
+public class TimeSeriesCatalogSnapshotTest {
+
+	/**
+	 * Temporary folder for the snapshot files.
+	 */
+	private File folder;
+
+	/**
+	 * Read a snapshot, expecting an error.
+	 */
+	private static void readExpectingError ( File file ) {
+		try {
+			new TimeSeriesCatalogSnapshot(file).read(new StringDictionary());
+			fail("Expected an exception reading \"" + file + "\".");
+		}
+		catch ( IOException e ) {
+			// Expected.
+		}
+	}
+
+	@Before
+	public void setUp () throws IOException {
+		this.folder = Files.createTempDirectory("TimeSeriesCatalogSnapshotTest").toFile();
+	}
+
+	@After
+	public void tearDown () {
+		for ( File file : this.folder.listFiles() ) {
+			file.delete();
+		}
+		this.folder.delete();
+	}
+
+	/**
+	 * Write a snapshot with two records, the second with null fields.
+	 */
+	private File writeSnapshot () throws IOException {
+		StringDictionary dictionary = new StringDictionary();
+		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+		tscatalogList.add(createCatalog(dictionary, 957010, "1234", "Q", 39.5, -105.1));
+		tscatalogList.add(createCatalog(dictionary, null, null, "Q", null, null));
+		File file = new File(this.folder, "catalog.bin");
+		new TimeSeriesCatalogSnapshot(file).write(tscatalogList);
+		return file;
+	}
+
+	/**
+	 * Test that a file with the wrong magic number is not read.
+	 */
+	@Test
+	public void testBadMagicNumber () throws IOException {
+		File file = writeSnapshot();
+		byte [] bytes = Files.readAllBytes(file.toPath());
+		bytes[0] = 'X';
+		Files.write(file.toPath(), bytes);
+		readExpectingError(file);
+	}
+
+	/**
+	 * Test that a file with a different format version is not read.
+	 */
+	@Test
+	public void testBadVersion () throws IOException {
+		File file = writeSnapshot();
+		byte [] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer.wrap(bytes).putInt(4, 999);
+		Files.write(file.toPath(), bytes);
+		readExpectingError(file);
+	}
+
+	/**
+	 * Test that the catalog read from a snapshot matches the catalog that was written,
+	 * including null fields, and that strings are shared between the records using the requested dictionary.
+	 */
+	@Test
+	public void testRoundTrip () throws IOException {
+		File file = writeSnapshot();
+		TimeSeriesCatalogSnapshot snapshot = new TimeSeriesCatalogSnapshot(file);
+		assertTrue(snapshot.exists());
+		assertEquals(Long.MAX_VALUE, snapshot.getAge());
+		StringDictionary dictionary = new StringDictionary();
+		List<TimeSeriesCatalog> tscatalogList = snapshot.read(dictionary);
+		assertTrue(snapshot.getAge() < 60000);
+		assertEquals(2, tscatalogList.size());
+
+		TimeSeriesCatalog tscatalog = tscatalogList.get(0);
+		assertEquals(Integer.valueOf(957010), tscatalog.getTsId());
+		assertEquals("1234", tscatalog.getStationNo());
+		assertEquals("1234", tscatalog.getLocId());
+		assertEquals("Q-'15.Cmd'", tscatalog.getDataType());
+		assertEquals("15Minute", tscatalog.getDataInterval());
+		assertEquals(39.5, tscatalog.getStationLatitude(), 0.0);
+		assertEquals(-105.1, tscatalog.getStationLongitude(), 0.0);
+		assertNull(tscatalog.getSiteId());
+		// Empty strings are not changed to null.
+		assertEquals("", tscatalog.getSiteName());
+
+		tscatalog = tscatalogList.get(1);
+		assertNull(tscatalog.getTsId());
+		assertNull(tscatalog.getStationNo());
+		assertNull(tscatalog.getLocId());
+		assertNull(tscatalog.getStationLatitude());
+		assertNull(tscatalog.getStationLongitude());
+
+		// Strings are shared between records and between fields with the same value.
+		assertSame(tscatalogList.get(0).getDataUnits(), tscatalogList.get(1).getDataUnits());
+		assertSame(tscatalogList.get(0).getDataUnits(), tscatalogList.get(1).getTsUnitSymbol());
+		assertSame(dictionary, tscatalogList.get(0).getStringDictionary());
+		assertSame(dictionary, tscatalogList.get(1).getStringDictionary());
+	}
+
+	/**
+	 * Test that a truncated file is not read, for each truncated length.
+	 */
+	@Test
+	public void testTruncatedFile () throws IOException {
+		File file = writeSnapshot();
+		byte [] bytes = Files.readAllBytes(file.toPath());
+		File truncatedFile = new File(this.folder, "truncated.bin");
+		for ( int length = 0; length < bytes.length; length++ ) {
+			Files.write(truncatedFile.toPath(), Arrays.copyOf(bytes, length));
+			readExpectingError(truncatedFile);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+// TimeSeriesCatalogSpatialIndexTest - tests for TimeSeriesCatalogSpatialIndex
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+/**
+ * Tests for TimeSeriesCatalogSpatialIndex.
+ */
+public class TimeSeriesCatalogSpatialIndexTest {
+
+	/**
+	 * Create a time series catalog with a station location.
+	 */
+	private static TimeSeriesCatalog catalog ( Double latitude, Double longitude ) {
+		TimeSeriesCatalog tscatalog = new TimeSeriesCatalog();
+		tscatalog.setStationLatitude(latitude);
+		tscatalog.setStationLongitude(longitude);
+		return tscatalog;
+	}
+
+	/**
+	 * Calculate distances with the haversine formula.
+	 */
+	@Test
+	public void testDistance () {
+		// One degree of latitude.
+		assertEquals(111.195, TimeSeriesCatalogSpatialIndex.distanceKm(40.0, -105.0, 41.0, -105.0), 0.001);
+		assertEquals(0.0, TimeSeriesCatalogSpatialIndex.distanceKm(40.0, -105.0, 40.0, -105.0), 0.0);
+		// Points on either side of the antimeridian are close.
+		assertEquals(22.239, TimeSeriesCatalogSpatialIndex.distanceKm(0.0, 179.9, 0.0, -179.9), 0.001);
+	}
+
+	/**
+	 * Find the time series catalog in a box, in catalog order, including the box edges.
+	 */
+	@Test
+	public void testFindWithinBox () {
+		List<TimeSeriesCatalog> list = Arrays.asList(
+			catalog(40.5, -105.5),
+			catalog(39.0, -104.0),
+			catalog(40.0, -105.0),
+			catalog(45.0, -105.0),
+			catalog(40.2, -106.1));
+		TimeSeriesCatalogSpatialIndex index = new TimeSeriesCatalogSpatialIndex(list);
+		List<TimeSeriesCatalog> matches = index.findWithinBox(39.0, -106.0, 41.0, -104.0);
+		assertEquals(3, matches.size());
+		assertSame(list.get(0), matches.get(0));
+		assertSame(list.get(1), matches.get(1));
+		assertSame(list.get(2), matches.get(2));
+		// An inverted box has no matches.
+		assertEquals(0, index.findWithinBox(39.0, -104.0, 41.0, -106.0).size());
+	}
+
+	/**
+	 * A box with longitude first is rejected because the longitude is not a valid latitude.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testFindWithinBoxSwapped () {
+		TimeSeriesCatalogSpatialIndex index = new TimeSeriesCatalogSpatialIndex(Arrays.asList(catalog(40.0, -105.0)));
+		index.findWithinBox(-106.0, 39.0, -104.0, 41.0);
+	}
+
+	/**
+	 * The radius query matches checking every time series, including near the antimeridian and poles.
+	 */
+	@Test
+	public void testFindWithinRadius () {
+		Random random = new Random(1);
+		List<TimeSeriesCatalog> list = new ArrayList<>();
+		for ( int i = 0; i < 5000; i++ ) {
+			list.add(catalog(random.nextDouble()*180.0 - 90.0, random.nextDouble()*360.0 - 180.0));
+		}
+		TimeSeriesCatalogSpatialIndex index = new TimeSeriesCatalogSpatialIndex(list);
+		double [][] queries = {
+			{ 40.0, -105.0, 500.0 },
+			{ 10.0, 179.5, 800.0 },
+			{ -20.0, -179.8, 800.0 },
+			{ 88.0, 0.0, 600.0 },
+			{ 0.0, 0.0, 0.0 }
+		};
+		for ( double [] query : queries ) {
+			HashSet<TimeSeriesCatalog> expected = new HashSet<>();
+			for ( TimeSeriesCatalog tscatalog : list ) {
+				if ( TimeSeriesCatalogSpatialIndex.distanceKm(query[0], query[1],
+					tscatalog.getStationLatitude(), tscatalog.getStationLongitude()) <= query[2] ) {
+					expected.add(tscatalog);
+				}
+			}
+			List<TimeSeriesCatalog> matches = index.findWithinRadius(query[0], query[1], query[2]);
+			assertEquals("Matches for " + Arrays.toString(query), expected.size(), matches.size());
+			assertEquals(expected, new HashSet<>(matches));
+			if ( query[2] > 0 ) {
+				assertTrue("No matches for " + Arrays.toString(query), !matches.isEmpty());
+			}
+		}
+	}
+
+	/**
+	 * A radius with longitude first is rejected because the longitude is not a valid latitude.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testFindWithinRadiusSwapped () {
+		TimeSeriesCatalogSpatialIndex index = new TimeSeriesCatalogSpatialIndex(Arrays.asList(catalog(40.0, -105.0)));
+		index.findWithinRadius(-105.0, 40.0, 100.0);
+	}
+
+	/**
+	 * Time series without a valid location are not indexed.
+	 */
+	@Test
+	public void testMissingLocation () {
+		List<TimeSeriesCatalog> list = Arrays.asList(
+			catalog(40.0, -105.0),
+			catalog(null, -105.0),
+			catalog(40.0, null),
+			catalog(Double.NaN, -105.0),
+			catalog(91.0, -105.0),
+			catalog(40.0, 181.0),
+			catalog(90.0, 180.0));
+		TimeSeriesCatalogSpatialIndex index = new TimeSeriesCatalogSpatialIndex(list);
+		assertEquals(2, index.size());
+		assertEquals(1, index.findWithinBox(-90.0, -180.0, 90.0, 0.0).size());
+		assertEquals(1, index.findWithinBox(80.0, 170.0, 90.0, 180.0).size());
+	}
+}
@@ -0,0 +1,119 @@
+// TimeSeriesPeriodChunkerTest - tests for TimeSeriesPeriodChunker
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.minute;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Tests for TimeSeriesPeriodChunker.
+ */
+public class TimeSeriesPeriodChunkerTest {
+
+	/**
+	 * Check that a date/time has the expected parts.
+	 */
+	private static void assertDateTime ( DateTime expected, DateTime actual ) {
+		assertEquals(expected.getYear(), actual.getYear());
+		assertEquals(expected.getMonth(), actual.getMonth());
+		assertEquals(expected.getDay(), actual.getDay());
+		assertEquals(expected.getHour(), actual.getHour());
+		assertEquals(expected.getMinute(), actual.getMinute());
+	}
+
+	/**
+	 * A long period is split into chunks that share boundaries and cover the full period.
+	 */
+	@Test
+	public void testChunks () {
+		DateTime readStart = minute(2023, 1, 1, 0, 0);
+		DateTime readEnd = minute(2023, 1, 4, 12, 0);
+		// 24 hourly values is one day.
+		List<DateTime[]> chunks = new TimeSeriesPeriodChunker(24).getChunks(readStart, readEnd, "1Hour");
+		assertEquals(4, chunks.size());
+		assertSame(readStart, chunks.get(0)[0]);
+		assertDateTime(minute(2023, 1, 2, 0, 0), chunks.get(0)[1]);
+		assertDateTime(minute(2023, 1, 3, 0, 0), chunks.get(1)[1]);
+		assertDateTime(minute(2023, 1, 4, 0, 0), chunks.get(2)[1]);
+		assertSame(readEnd, chunks.get(3)[1]);
+		for ( int i = 1; i < chunks.size(); i++ ) {
+			// Each chunk starts at the end of the previous chunk.
+			assertSame(chunks.get(i - 1)[1], chunks.get(i)[0]);
+		}
+	}
+
+	/**
+	 * Chunk boundaries are whole minutes after the read start.
+	 */
+	@Test
+	public void testChunksFromMinute () {
+		DateTime readStart = minute(2023, 1, 1, 0, 7);
+		DateTime readEnd = minute(2023, 1, 1, 1, 0);
+		List<DateTime[]> chunks = new TimeSeriesPeriodChunker(20).getChunks(readStart, readEnd, "1Minute");
+		assertEquals(3, chunks.size());
+		assertDateTime(minute(2023, 1, 1, 0, 27), chunks.get(0)[1]);
+		assertDateTime(minute(2023, 1, 1, 0, 47), chunks.get(1)[1]);
+		assertSame(readEnd, chunks.get(2)[1]);
+	}
+
+	/**
+	 * Return the expected value spacing for regular and irregular intervals.
+	 */
+	@Test
+	public void testExpectedValueSpacing () {
+		long minute = 60000L;
+		assertEquals(15*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("15Minute"));
+		assertEquals(60*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("1Hour"));
+		assertEquals(6*60*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("6Hour"));
+		assertEquals(1440*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("Day"));
+		assertEquals(28*1440*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("Month"));
+		assertEquals(60*minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("IrregHour"));
+		// Irregular second values are expected each minute.
+		assertEquals(minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("IrregSecond"));
+		assertEquals(minute, TimeSeriesPeriodChunker.getExpectedValueSpacing("NotAnInterval"));
+	}
+
+	/**
+	 * The period is not split if chunking is disabled, the period is open, or the period is short.
+	 */
+	@Test
+	public void testNoChunks () {
+		DateTime readStart = minute(2023, 1, 1, 0, 0);
+		DateTime readEnd = minute(2023, 1, 31, 0, 0);
+		List<DateTime[]> chunks = new TimeSeriesPeriodChunker(0).getChunks(readStart, readEnd, "1Hour");
+		assertEquals(1, chunks.size());
+		assertSame(readStart, chunks.get(0)[0]);
+		assertSame(readEnd, chunks.get(0)[1]);
+		assertEquals(1, new TimeSeriesPeriodChunker(24).getChunks(null, readEnd, "1Hour").size());
+		assertEquals(1, new TimeSeriesPeriodChunker(24).getChunks(readStart, null, "1Hour").size());
+		// 30 days of daily values is less than the maximum.
+		assertEquals(1, new TimeSeriesPeriodChunker(100).getChunks(readStart, readEnd, "Day").size());
+	}
+}
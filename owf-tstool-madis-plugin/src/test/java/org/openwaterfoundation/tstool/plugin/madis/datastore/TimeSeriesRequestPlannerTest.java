@@ -0,0 +1,122 @@
+// TimeSeriesRequestPlannerTest - tests for TimeSeriesRequestPlanner
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.day;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Tests for TimeSeriesRequestPlanner.
+ */
+public class TimeSeriesRequestPlannerTest {
+
+	/**
+	 * Batches are limited by the number of time series.
+	 */
+	@Test
+	public void testBatchSize () {
+		TimeSeriesRequestPlanner planner = new TimeSeriesRequestPlanner(2, 1000);
+		for ( int tsId = 1; tsId <= 5; tsId++ ) {
+			planner.add(tsId, null, null);
+		}
+		List<TimeSeriesRequestPlanner.Batch> batches = planner.getBatches();
+		assertEquals(3, batches.size());
+		assertEquals(Arrays.asList(1, 2), batches.get(0).getTsIdList());
+		assertEquals(Arrays.asList(3, 4), batches.get(1).getTsIdList());
+		assertEquals(Arrays.asList(5), batches.get(2).getTsIdList());
+		assertEquals("1,2", batches.get(0).getTsIdListString());
+		assertNull(batches.get(0).getReadStart());
+		assertNull(batches.get(0).getReadEnd());
+	}
+
+	/**
+	 * A ts_id that is added more than once for a period is only requested once.
+	 */
+	@Test
+	public void testDuplicates () {
+		TimeSeriesRequestPlanner planner = new TimeSeriesRequestPlanner(10, 1000);
+		planner.add(7, null, null);
+		planner.add(8, null, null);
+		planner.add(7, null, null);
+		List<TimeSeriesRequestPlanner.Batch> batches = planner.getBatches();
+		assertEquals(1, batches.size());
+		assertEquals("7,8", batches.get(0).getTsIdListString());
+	}
+
+	/**
+	 * Batches are limited by the length of the ts_id list, including commas,
+	 * but a single ts_id is always allowed.
+	 */
+	@Test
+	public void testListLength () {
+		// "100001,100002" is 13 characters.
+		TimeSeriesRequestPlanner planner = new TimeSeriesRequestPlanner(10, 13);
+		planner.add(100001, null, null);
+		planner.add(100002, null, null);
+		planner.add(100003, null, null);
+		List<TimeSeriesRequestPlanner.Batch> batches = planner.getBatches();
+		assertEquals(2, batches.size());
+		assertEquals("100001,100002", batches.get(0).getTsIdListString());
+		assertEquals("100003", batches.get(1).getTsIdListString());
+
+		planner = new TimeSeriesRequestPlanner(10, 3);
+		planner.add(123456, null, null);
+		planner.add(7, null, null);
+		batches = planner.getBatches();
+		assertEquals(2, batches.size());
+		assertEquals("123456", batches.get(0).getTsIdListString());
+		assertEquals("7", batches.get(1).getTsIdListString());
+	}
+
+	/**
+	 * Time series with different read periods are in different batches, in the order that periods were added.
+	 */
+	@Test
+	public void testPeriods () {
+		DateTime start1 = day(2023, 1, 1);
+		DateTime end1 = day(2023, 1, 31);
+		DateTime start2 = day(2023, 2, 1);
+		DateTime end2 = day(2023, 2, 28);
+		TimeSeriesRequestPlanner planner = new TimeSeriesRequestPlanner(10, 1000);
+		planner.add(1, start1, end1);
+		planner.add(2, start2, end2);
+		planner.add(3, start1, end1);
+		planner.add(1, start2, end2);
+		List<TimeSeriesRequestPlanner.Batch> batches = planner.getBatches();
+		assertEquals(2, batches.size());
+		assertEquals("1,3", batches.get(0).getTsIdListString());
+		assertSame(start1, batches.get(0).getReadStart());
+		assertSame(end1, batches.get(0).getReadEnd());
+		assertEquals("2,1", batches.get(1).getTsIdListString());
+		assertSame(start2, batches.get(1).getReadStart());
+	}
+}
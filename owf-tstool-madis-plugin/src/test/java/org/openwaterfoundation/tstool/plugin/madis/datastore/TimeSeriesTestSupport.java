@@ -0,0 +1,189 @@
+// TimeSeriesTestSupport - shared helpers for the plugin tests
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Helpers shared by the plugin tests, to create test data and record parsed values.
+ */
+public class TimeSeriesTestSupport {
+
+	/**
+	 * Ticker that only advances when advance() or sleep() is called, so that timing tests do not depend on the clock.
+	 */
+	public static class ManualTicker implements WebServiceTicker {
+
+		/**
+		 * Current time, nanoseconds.
+		 */
+		private final AtomicLong nanos = new AtomicLong(1000000000L);
+
+		/**
+		 * Advance the time.
+		 * @param millis time to advance, milliseconds
+		 */
+		public void advance ( long millis ) {
+			this.nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		@Override
+		public long nanoTime () {
+			return this.nanos.get();
+		}
+
+		/**
+		 * Advance the time instead of waiting.
+		 */
+		@Override
+		public void sleep ( long nanos ) {
+			this.nanos.addAndGet(nanos);
+		}
+	}
+
+	/**
+	 * Sink that saves the headers, value rows, and progress as strings.
+	 */
+	public static class RecordingSink implements TimeSeriesValueSink {
+
+		/**
+		 * Headers as "name=value".
+		 */
+		public final List<String> headers = new ArrayList<>();
+
+		/**
+		 * Value rows with fields separated by "|".
+		 */
+		public final List<String> values = new ArrayList<>();
+
+		/**
+		 * Value count for each progress call.
+		 */
+		public final List<Long> progressValueCounts = new ArrayList<>();
+
+		@Override
+		public void header ( String name, String value ) {
+			this.headers.add(name + "=" + value);
+		}
+
+		@Override
+		public void progress ( long byteCount, long contentLength, long valueCount ) {
+			this.progressValueCounts.add(valueCount);
+		}
+
+		@Override
+		public void reset () {
+			this.headers.clear();
+			this.values.clear();
+			this.progressValueCounts.clear();
+		}
+
+		@Override
+		public void value ( TimeSeriesValueRow row ) {
+			StringBuilder b = new StringBuilder();
+			for ( int i = 0; i < row.getFieldCount(); i++ ) {
+				if ( i > 0 ) {
+					b.append('|');
+				}
+				b.append(row.getFieldString(i));
+			}
+			this.values.add(b.toString());
+		}
+	}
+
+	/**
+	 * Constructor, not used because all methods are static.
+	 */
+	private TimeSeriesTestSupport () {
+	}
+
+	/**
+	 * Create a 15-minute time series catalog with the main values set, using a new string dictionary.
+	 * @param tsId ts_id, can be null
+	 * @param stationNo station_no, can be null
+	 * @param stationParameterNo stationparameter_no (data type), can be null
+	 * @param latitude station latitude, can be null
+	 * @param longitude station longitude, can be null
+	 */
+	public static TimeSeriesCatalog createCatalog ( Integer tsId, String stationNo, String stationParameterNo,
+		Double latitude, Double longitude ) {
+		return createCatalog(new StringDictionary(), tsId, stationNo, stationParameterNo, latitude, longitude);
+	}
+
+	/**
+	 * Create a 15-minute time series catalog with the main values set.
+	 * @param dictionary string dictionary for the catalog strings
+	 * @param tsId ts_id, can be null
+	 * @param stationNo station_no, can be null
+	 * @param stationParameterNo stationparameter_no (data type), can be null
+	 * @param latitude station latitude, can be null
+	 * @param longitude station longitude, can be null
+	 */
+	public static TimeSeriesCatalog createCatalog ( StringDictionary dictionary, Integer tsId, String stationNo,
+		String stationParameterNo, Double latitude, Double longitude ) {
+		TimeSeriesCatalog tscatalog = new TimeSeriesCatalog(dictionary);
+		tscatalog.setTsId(tsId);
+		tscatalog.setStationNo(stationNo);
+		tscatalog.setStationParameterNo(stationParameterNo);
+		tscatalog.setTsShortName("15.Cmd");
+		tscatalog.setDataType(stationParameterNo + "-'15.Cmd'");
+		tscatalog.setDataInterval("15Minute");
+		tscatalog.setDataUnits("cfs");
+		tscatalog.setTsUnitSymbol("cfs");
+		tscatalog.setStationLatitude(latitude);
+		tscatalog.setStationLongitude(longitude);
+		return tscatalog;
+	}
+
+	/**
+	 * Create a date/time with day precision.
+	 */
+	public static DateTime day ( int year, int month, int day ) {
+		DateTime dateTime = new DateTime(DateTime.PRECISION_DAY);
+		dateTime.setYear(year);
+		dateTime.setMonth(month);
+		dateTime.setDay(day);
+		return dateTime;
+	}
+
+	/**
+	 * Create a date/time with minute precision.
+	 */
+	public static DateTime minute ( int year, int month, int day, int hour, int minute ) {
+		DateTime dateTime = new DateTime(DateTime.PRECISION_MINUTE);
+		dateTime.setYear(year);
+		dateTime.setMonth(month);
+		dateTime.setDay(day);
+		dateTime.setHour(hour);
+		dateTime.setMinute(minute);
+		return dateTime;
+	}
+}
@@ -0,0 +1,134 @@
+// TimeSeriesValueBufferTest - tests for TimeSeriesValueBuffer
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+/**
+ * Tests for TimeSeriesValueBuffer.
+ */
+public class TimeSeriesValueBufferTest {
+
+	/**
+	 * Add values to a buffer.
+	 */
+	private static void addValues ( TimeSeriesValueBuffer valueBuffer, int count ) {
+		for ( int i = 0; i < count; i++ ) {
+			valueBuffer.addValue(i*60000L, TimestampDecoder.NO_OFFSET, i, "200", InterpolationType.INSTANTANEOUS);
+		}
+	}
+
+	/**
+	 * A buffer that grew larger than the pooled capacity does not keep its large arrays when released.
+	 */
+	@Test
+	public void testAcquireCapacityLimit () {
+		TimeSeriesValueBuffer valueBuffer = TimeSeriesValueBuffer.acquire();
+		addValues(valueBuffer, 64*1024 + 1);
+		assertEquals(128*1024, valueBuffer.getCapacity());
+		valueBuffer.release();
+		TimeSeriesValueBuffer reused = TimeSeriesValueBuffer.acquire();
+		assertSame(valueBuffer, reused);
+		assertEquals(1024, reused.getCapacity());
+		reused.release();
+
+		// A buffer at the pooled capacity keeps its arrays.
+		valueBuffer = TimeSeriesValueBuffer.acquire();
+		addValues(valueBuffer, 64*1024);
+		assertEquals(64*1024, valueBuffer.getCapacity());
+		valueBuffer.release();
+		reused = TimeSeriesValueBuffer.acquire();
+		assertEquals(64*1024, reused.getCapacity());
+		reused.release();
+	}
+
+	/**
+	 * A nested acquire in the same thread, while the pooled buffer is in use, returns a buffer that is not pooled.
+	 */
+	@Test
+	public void testAcquireNested () {
+		TimeSeriesValueBuffer pooled = TimeSeriesValueBuffer.acquire();
+		TimeSeriesValueBuffer nested = TimeSeriesValueBuffer.acquire();
+		assertNotSame(pooled, nested);
+		nested.release();
+		// The pooled buffer is still in use.
+		TimeSeriesValueBuffer nested2 = TimeSeriesValueBuffer.acquire();
+		assertNotSame(pooled, nested2);
+		assertNotSame(nested, nested2);
+		nested2.release();
+		pooled.release();
+		TimeSeriesValueBuffer reused = TimeSeriesValueBuffer.acquire();
+		assertSame(pooled, reused);
+		reused.release();
+	}
+
+	/**
+	 * A buffer acquired in one thread and released in another thread can be reused by the first thread,
+	 * as when chunks are read in executor threads and appended by the reading thread.
+	 */
+	@Test
+	public void testAcquireReleasedByOtherThread () throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TimeSeriesValueBuffer valueBuffer = executor.submit(() -> TimeSeriesValueBuffer.acquire()).get();
+			// Still in use so the thread gets a different buffer.
+			TimeSeriesValueBuffer other = executor.submit(() -> TimeSeriesValueBuffer.acquire()).get();
+			assertNotSame(valueBuffer, other);
+			other.release();
+			valueBuffer.release();
+			assertSame(valueBuffer, executor.submit(() -> TimeSeriesValueBuffer.acquire()).get());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The pooled buffer is reused after it is released and is empty when acquired again.
+	 */
+	@Test
+	public void testAcquireReuse () {
+		TimeSeriesValueBuffer valueBuffer = TimeSeriesValueBuffer.acquire();
+		valueBuffer.setQualityFlagTable(new QualityFlagTable("200:G", null, null));
+		addValues(valueBuffer, 10);
+		assertEquals(10, valueBuffer.size());
+		assertEquals("G", valueBuffer.getDataFlag(0));
+		valueBuffer.release();
+		TimeSeriesValueBuffer reused = TimeSeriesValueBuffer.acquire();
+		assertSame(valueBuffer, reused);
+		assertEquals(0, reused.size());
+		assertEquals(-1, reused.getMinEpochIndex());
+		// Data flags are the quality codes because the quality flag table was cleared.
+		addValues(reused, 1);
+		assertEquals("200", reused.getDataFlag(0));
+		reused.release();
+	}
+}
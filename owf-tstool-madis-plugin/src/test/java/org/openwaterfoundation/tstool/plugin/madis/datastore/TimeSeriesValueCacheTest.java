@@ -0,0 +1,238 @@
+// TimeSeriesValueCacheTest - tests for TimeSeriesValueCache
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.minute;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Tests for TimeSeriesValueCache.
+ */
+public class TimeSeriesValueCacheTest {
+
+	/**
+	 * Block length used by the tests, one day.
+	 */
+	private static final long DAY = 86400000L;
+
+	/**
+	 * Offset of the test values from UTC, minutes (UTC-07:00).
+	 */
+	private static final int OFFSET_MINUTES = -420;
+
+	/**
+	 * ts_id used by the tests.
+	 */
+	private static final int TS_ID = 1234;
+
+	/**
+	 * Cache folder for a test.
+	 */
+	private File folder;
+
+	/**
+	 * Reader that creates hourly values for the requested period and remembers the requested periods,
+	 * as local time milliseconds.
+	 */
+	private static class HourlyReader implements TimeSeriesValueCache.ValueReader {
+
+		/**
+		 * Requested periods, each as {start, end} local time milliseconds.
+		 */
+		private final List<long[]> periods = new ArrayList<>();
+
+		@Override
+		public void read ( DateTime readStart, DateTime readEnd, TimeSeriesValueBuffer valueBuffer ) {
+			long startLocalMillis = TimestampDecoder.toLocalMillis(readStart);
+			long endLocalMillis = TimestampDecoder.toLocalMillis(readEnd);
+			this.periods.add(new long[] { startLocalMillis, endLocalMillis });
+			for ( long localMillis = startLocalMillis; localMillis <= endLocalMillis; localMillis += 3600000L ) {
+				int hour = (int)Math.floorMod(localMillis/3600000L, 24L);
+				valueBuffer.addValue(localMillis - OFFSET_MINUTES*60000L, OFFSET_MINUTES, hour*1.5,
+					((hour % 2) == 0) ? "good" : "suspect", InterpolationType.INSTANTANEOUS);
+			}
+		}
+	}
+
+	/**
+	 * Check that two buffers contain the same values.
+	 */
+	private static void assertValues ( TimeSeriesValueBuffer expected, TimeSeriesValueBuffer actual ) {
+		assertEquals(expected.size(), actual.size());
+		for ( int i = 0; i < expected.size(); i++ ) {
+			assertEquals(expected.getEpochMillis(i), actual.getEpochMillis(i));
+			assertEquals(expected.getOffsetMinutes(i), actual.getOffsetMinutes(i));
+			assertEquals(expected.getValue(i), actual.getValue(i), 0.0);
+			assertEquals(expected.getQualityCode(i), actual.getQualityCode(i));
+			assertEquals(expected.getInterpolationType(i), actual.getInterpolationType(i));
+		}
+	}
+
+	/**
+	 * Create the cache, with blocks that can be cached one hour after they end.
+	 */
+	private TimeSeriesValueCache createCache () {
+		return new TimeSeriesValueCache(this.folder, DAY, 3600000L, 30*DAY, 100*1024*1024L);
+	}
+
+	/**
+	 * Delete the cache folder.
+	 */
+	@After
+	public void deleteFolder () throws IOException {
+		try ( Stream<Path> paths = Files.walk(this.folder.toPath()) ) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Return the block files for the test ts_id.
+	 */
+	private File [] getBlockFiles () {
+		File [] files = new File(this.folder, String.valueOf(TS_ID)).listFiles((dir, name) -> name.endsWith(".bin"));
+		return (files == null) ? new File[0] : files;
+	}
+
+	/**
+	 * Create the cache folder.
+	 */
+	@Before
+	public void setFolder () throws IOException {
+		this.folder = Files.createTempDirectory("TimeSeriesValueCacheTest").toFile();
+	}
+
+	/**
+	 * A missing block is read with one request for only that block and the other blocks are used from the cache.
+	 */
+	@Test
+	public void testMissingBlock () throws IOException {
+		DateTime readStart = minute(2023, 1, 1, 0, 0);
+		DateTime readEnd = minute(2023, 1, 3, 0, 0);
+		TimeSeriesValueBuffer expected = new TimeSeriesValueBuffer();
+		createCache().read(TS_ID, readStart, readEnd, expected, new HourlyReader());
+
+		long jan2 = TimestampDecoder.toLocalMillis(minute(2023, 1, 2, 0, 0));
+		assertTrue(new File(new File(this.folder, String.valueOf(TS_ID)), (jan2/DAY) + ".bin").delete());
+		HourlyReader reader = new HourlyReader();
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		assertEquals(1, createCache().read(TS_ID, readStart, readEnd, valueBuffer, reader));
+		assertEquals(1, reader.periods.size());
+		assertEquals(jan2, reader.periods.get(0)[0]);
+		assertEquals(jan2 + DAY, reader.periods.get(0)[1]);
+		assertValues(expected, valueBuffer);
+		assertEquals(3, getBlockFiles().length);
+	}
+
+	/**
+	 * Consecutive missing blocks are read in full with one request,
+	 * and only the values in the requested period are returned.
+	 */
+	@Test
+	public void testReadFullBlocks () throws IOException {
+		HourlyReader reader = new HourlyReader();
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		assertEquals(2, createCache().read(TS_ID, minute(2023, 1, 1, 6, 0), minute(2023, 1, 2, 18, 0),
+			valueBuffer, reader));
+		assertEquals(1, reader.periods.size());
+		assertEquals(TimestampDecoder.toLocalMillis(minute(2023, 1, 1, 0, 0)), reader.periods.get(0)[0]);
+		assertEquals(TimestampDecoder.toLocalMillis(minute(2023, 1, 3, 0, 0)), reader.periods.get(0)[1]);
+		// 06:00 on the first day through 18:00 on the second day.
+		assertEquals(37, valueBuffer.size());
+		assertEquals(TimestampDecoder.toLocalMillis(minute(2023, 1, 1, 6, 0)),
+			TimestampDecoder.toLocalMillis(valueBuffer.getEpochMillis(0), valueBuffer.getOffsetMinutes(0)));
+		assertEquals(2, getBlockFiles().length);
+	}
+
+	/**
+	 * Blocks that have not ended the minimum age ago are only read for the requested period and are not saved.
+	 */
+	@Test
+	public void testRecentBlocksNotCached () throws IOException {
+		// Minimum age of 100 years so that no blocks can be cached.
+		TimeSeriesValueCache cache = new TimeSeriesValueCache(this.folder, DAY, 36500*DAY, 30*DAY, 100*1024*1024L);
+		DateTime readStart = minute(2023, 1, 1, 6, 0);
+		DateTime readEnd = minute(2023, 1, 2, 18, 0);
+		for ( int i = 0; i < 2; i++ ) {
+			HourlyReader reader = new HourlyReader();
+			TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+			assertEquals(2, cache.read(TS_ID, readStart, readEnd, valueBuffer, reader));
+			assertEquals(1, reader.periods.size());
+			assertEquals(TimestampDecoder.toLocalMillis(readStart), reader.periods.get(0)[0]);
+			assertEquals(TimestampDecoder.toLocalMillis(readEnd), reader.periods.get(0)[1]);
+			assertEquals(37, valueBuffer.size());
+		}
+		assertEquals(0, getBlockFiles().length);
+	}
+
+	/**
+	 * Values written to the block files are read back the same, without using the reader.
+	 */
+	@Test
+	public void testRoundTrip () throws IOException {
+		DateTime readStart = minute(2023, 1, 1, 0, 0);
+		DateTime readEnd = minute(2023, 1, 3, 0, 0);
+		HourlyReader reader = new HourlyReader();
+		TimeSeriesValueBuffer expected = new TimeSeriesValueBuffer();
+		assertEquals(3, createCache().read(TS_ID, readStart, readEnd, expected, reader));
+		// The three missing blocks are read with one request.
+		assertEquals(1, reader.periods.size());
+		// Hourly values from 00:00 on the first day through 00:00 on the third day.
+		assertEquals(49, expected.size());
+
+		File [] blockFiles = getBlockFiles();
+		assertEquals(3, blockFiles.length);
+		for ( File blockFile : blockFiles ) {
+			try ( DataInputStream in = new DataInputStream(Files.newInputStream(blockFile.toPath())) ) {
+				// 'MVAL'
+				assertEquals(0x4D56414C, in.readInt());
+			}
+		}
+
+		// Use a new cache so that nothing is remembered in memory.
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		assertEquals(0, createCache().read(TS_ID, readStart, readEnd, valueBuffer, (start, end, buffer) -> {
+			throw new IOException ( "All blocks should be cached." );
+		}));
+		assertValues(expected, valueBuffer);
+		assertFalse(valueBuffer.getQualityCode(0).equals(valueBuffer.getQualityCode(1)));
+	}
+}
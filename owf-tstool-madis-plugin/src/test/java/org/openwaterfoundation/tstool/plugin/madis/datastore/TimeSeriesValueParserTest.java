@@ -0,0 +1,186 @@
+// TimeSeriesValueParserTest - tests for TimeSeriesValueParser
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.RecordingSink;
+
+/**
+ * Tests for TimeSeriesValueParser.
+ */
+public class TimeSeriesValueParserTest {
+
+	/**
+	 * Stream that returns at most one byte for each read, to test lines that span reads.
+	 */
+	private static class OneByteInputStream extends ByteArrayInputStream {
+
+		private OneByteInputStream ( byte [] bytes ) {
+			super(bytes);
+		}
+
+		@Override
+		public synchronized int read ( byte [] b, int off, int len ) {
+			return super.read(b, off, Math.min(1, len));
+		}
+	}
+
+	/**
+	 * Parse a string with a parser.
+	 */
+	private static RecordingSink parse ( TimeSeriesValueParser parser, InputStream in ) throws IOException {
+		RecordingSink sink = new RecordingSink();
+		long valueCount = parser.parse(in, -1, sink);
+		assertEquals(sink.values.size(), valueCount);
+		return sink;
+	}
+
+	/**
+	 * Return a stream for a string.
+	 */
+	private static InputStream stream ( String s ) {
+		return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Blank lines, Windows line endings, and a last line without a newline are handled.
+	 */
+	@Test
+	public void testLineEndings () throws IOException {
+		RecordingSink sink = parse(new TimeSeriesValueParser(),
+			stream("#ts_id;1\r\n\r\n2023-01-01T00:00:00Z;1.5;200;102\r\n\n2023-01-01T01:00:00Z;2.5;200;102"));
+		assertEquals(1, sink.headers.size());
+		assertEquals(2, sink.values.size());
+		assertEquals("2023-01-01T00:00:00Z|1.5|200|102", sink.values.get(0));
+		assertEquals("2023-01-01T01:00:00Z|2.5|200|102", sink.values.get(1));
+	}
+
+	/**
+	 * Lines longer than the buffer and lines that span reads are parsed.
+	 */
+	@Test
+	public void testLongAndSplitLines () throws IOException {
+		String response = "#ts_id;957010\n2023-01-01T00:00:00.000-07:00;84.88;200;102\n2023-01-01T01:00:00.000-07:00;85.5;200;102\n";
+		List<String> expected = parse(new TimeSeriesValueParser(), stream(response)).values;
+		assertEquals(2, expected.size());
+		// Buffer smaller than a line.
+		assertEquals(expected, parse(new TimeSeriesValueParser(8, 1000), stream(response)).values);
+		// One byte for each read.
+		assertEquals(expected, parse(new TimeSeriesValueParser(16, 1000),
+			new OneByteInputStream(response.getBytes(StandardCharsets.UTF_8))).values);
+	}
+
+	/**
+	 * Headers are split into name and value, and values rows into trimmed fields.
+	 */
+	@Test
+	public void testParse () throws IOException {
+		RecordingSink sink = parse(new TimeSeriesValueParser(), stream(
+			"#ts_id;957010\n#rows;2\n#Timestamp;Value;Quality Code;Interpolation Type\n"
+			+ "2022-12-30T18:00:00.000-07:00;84.88;200;102\n"
+			+ " 2022-12-30T18:15:00.000-07:00 ; ;-1 ; 102 \n"));
+		assertEquals(3, sink.headers.size());
+		assertEquals("ts_id=957010", sink.headers.get(0));
+		assertEquals("rows=2", sink.headers.get(1));
+		assertEquals("Timestamp=Value;Quality Code;Interpolation Type", sink.headers.get(2));
+		assertEquals(2, sink.values.size());
+		assertEquals("2022-12-30T18:00:00.000-07:00|84.88|200|102", sink.values.get(0));
+		assertEquals("2022-12-30T18:15:00.000-07:00||-1|102", sink.values.get(1));
+	}
+
+	/**
+	 * An empty response has no values and one progress call.
+	 */
+	@Test
+	public void testParseEmpty () throws IOException {
+		RecordingSink sink = parse(new TimeSeriesValueParser(), stream(""));
+		assertEquals(0, sink.values.size());
+		assertEquals(1, sink.progressValueCounts.size());
+		assertEquals(Long.valueOf(0), sink.progressValueCounts.get(0));
+	}
+
+	/**
+	 * Numbers are parsed from the row fields.
+	 */
+	@Test
+	public void testParseNumbers () throws IOException {
+		List<Double> doubles = new ArrayList<>();
+		List<Integer> ints = new ArrayList<>();
+		new TimeSeriesValueParser().parse(stream("t;84.88;200\nt;-0.5;-3\nt;1.5E2;+7\nt;0.12345678901234567;0\n"), -1,
+			row -> {
+				doubles.add(row.parseDouble(1));
+				ints.add(row.parseInt(2));
+			});
+		assertEquals(84.88, doubles.get(0), 0);
+		assertEquals(-0.5, doubles.get(1), 0);
+		assertEquals(150.0, doubles.get(2), 0);
+		assertEquals(0.12345678901234567, doubles.get(3), 0);
+		assertEquals(Integer.valueOf(200), ints.get(0));
+		assertEquals(Integer.valueOf(-3), ints.get(1));
+		assertEquals(Integer.valueOf(7), ints.get(2));
+	}
+
+	/**
+	 * Progress is reported at the progress interval and at the end.
+	 */
+	@Test
+	public void testProgress () throws IOException {
+		StringBuilder response = new StringBuilder();
+		for ( int i = 0; i < 5; i++ ) {
+			response.append("t;" + i + "\n");
+		}
+		RecordingSink sink = parse(new TimeSeriesValueParser(1024, 2), stream(response.toString()));
+		assertEquals(5, sink.values.size());
+		assertEquals(3, sink.progressValueCounts.size());
+		assertEquals(Long.valueOf(2), sink.progressValueCounts.get(0));
+		assertEquals(Long.valueOf(4), sink.progressValueCounts.get(1));
+		assertEquals(Long.valueOf(5), sink.progressValueCounts.get(2));
+	}
+
+	/**
+	 * A line that spans many reads and buffer increases is parsed,
+	 * without scanning the line from the start for each read.
+	 */
+	@Test(timeout=10000)
+	public void testVeryLongLine () throws IOException {
+		StringBuilder field = new StringBuilder();
+		for ( int i = 0; i < 200000; i++ ) {
+			field.append((char)('a' + (i % 26)));
+		}
+		String response = "t;" + field + ";200\nt;1.5;200\n";
+		RecordingSink sink = parse(new TimeSeriesValueParser(16, 1000),
+			new OneByteInputStream(response.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(2, sink.values.size());
+		assertEquals("t|" + field + "|200", sink.values.get(0));
+		assertEquals("t|1.5|200", sink.values.get(1));
+	}
+}
@@ -0,0 +1,93 @@
+// TimeSeriesValueRouterTest - tests for TimeSeriesValueRouter
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.RecordingSink;
+
+/**
+ * Tests for TimeSeriesValueRouter.
+ */
+public class TimeSeriesValueRouterTest {
+
+	/**
+	 * Parse a response into the router.
+	 */
+	private static void parse ( String response, TimeSeriesValueRouter router ) throws IOException {
+		new TimeSeriesValueParser().parse(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), -1, router);
+	}
+
+	/**
+	 * Reset discards the values for each time series and the unrouted count.
+	 */
+	@Test
+	public void testReset () throws IOException {
+		TimeSeriesValueRouter router = new TimeSeriesValueRouter();
+		RecordingSink sink = new RecordingSink();
+		router.addSink(1, sink);
+		parse("#ts_id;1\na\n#ts_id;9\nb\n", router);
+		assertEquals(1, sink.values.size());
+		assertEquals(1, router.getUnroutedCount());
+		router.reset();
+		assertEquals(0, sink.values.size());
+		assertEquals(0, router.getUnroutedCount());
+		// Values before a ts_id header are not routed to the time series from before the reset.
+		parse("c\n#ts_id;1\nd\n", router);
+		assertEquals(1, sink.values.size());
+		assertEquals("d", sink.values.get(0));
+		assertEquals(1, router.getUnroutedCount());
+	}
+
+	/**
+	 * Values are routed to the sink for the preceding ts_id header,
+	 * and values for time series that were not requested are counted.
+	 */
+	@Test
+	public void testRoute () throws IOException {
+		TimeSeriesValueRouter router = new TimeSeriesValueRouter();
+		RecordingSink sink1 = new RecordingSink();
+		RecordingSink sink2 = new RecordingSink();
+		router.addSink(957010, sink1);
+		router.addSink(957011, sink2);
+		parse("#ts_id;957010\n#rows;2\na1\na2\n"
+			+ "#ts_id;999\n#rows;1\nx\n"
+			+ "#ts_id;957011\n#rows;1\nb1\n"
+			+ "#ts_id;bad\ny\n", router);
+		assertEquals(2, sink1.values.size());
+		assertEquals("a1", sink1.values.get(0));
+		assertEquals("a2", sink1.values.get(1));
+		assertEquals(1, sink2.values.size());
+		assertEquals("b1", sink2.values.get(0));
+		assertEquals(2, router.getUnroutedCount());
+		// Headers other than ts_id are passed to the sink for the block.
+		assertEquals(1, sink1.headers.size());
+		assertEquals("rows=2", sink1.headers.get(0));
+		assertEquals("rows=1", sink2.headers.get(0));
+	}
+}
@@ -0,0 +1,222 @@
+// TimeSeriesValueTimeAdjusterTest - tests for TimeSeriesValueTimeAdjuster
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.minute;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.InterpolationType;
+
+import RTi.TS.DayTS;
+import RTi.TS.TS;
+import RTi.Util.Time.DateTime;
+import RTi.Util.Time.TimeInterval;
+
+/**
+ * Tests for TimeSeriesValueTimeAdjuster.
+ * The expected date/times are those from the original transfer in MADISDataStore.readTimeSeries().
+ */
+public class TimeSeriesValueTimeAdjusterTest {
+
+	/**
+	 * Adjust a date/time for the interpolation type and output interval.
+	 * Also check that the local time adjustments give the same result, if supported.
+	 * @return the adjusted date/time
+	 */
+	private static DateTime adjust ( TimeSeriesValueTimeAdjuster adjuster, DateTime dateTime, InterpolationType interpolationType ) {
+		long localMillis = TimestampDecoder.toLocalMillis(dateTime);
+		DateTime adjusted = new DateTime(dateTime);
+		adjuster.adjustForInterpolationType(adjusted, interpolationType);
+		adjuster.adjustForOutputInterval(adjusted);
+		if ( adjuster.isLocalMillisSupported() ) {
+			localMillis = adjuster.adjustForInterpolationType(localMillis, interpolationType);
+			assertEquals(TimestampDecoder.toLocalMillis(adjusted), adjuster.adjustForOutputInterval(localMillis));
+		}
+		return adjusted;
+	}
+
+	/**
+	 * Check the fields of a date/time, to its precision.
+	 */
+	private static void assertDateTime ( int precision, int year, int month, int day, int hour, DateTime dateTime ) {
+		assertEquals(precision, dateTime.getPrecision());
+		assertEquals(year, dateTime.getYear());
+		assertEquals(month, dateTime.getMonth());
+		assertEquals(day, dateTime.getDay());
+		if ( precision != DateTime.PRECISION_DAY ) {
+			assertEquals(hour, dateTime.getHour());
+		}
+	}
+
+	/**
+	 * 1Day INST values at midnight are shifted to the previous day.
+	 */
+	@Test
+	public void testDayInstantaneous () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false);
+		DateTime dateTime = minute(2023, 1, 2, 0, 0);
+		assertEquals(0, adjuster.adjustForInterpolationType(new DateTime(dateTime), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, dateTime, InterpolationType.INSTANTANEOUS));
+		// Previous day across the year boundary.
+		assertDateTime(DateTime.PRECISION_DAY, 2022, 12, 31, 0, adjust(adjuster, minute(2023, 1, 1, 0, 0), InterpolationType.INSTANTANEOUS));
+	}
+
+	/**
+	 * 1Day MEAN values at the beginning of the interval are shifted to the end, and then to the previous day,
+	 * so the value is for the same day.
+	 */
+	@Test
+	public void testDayMean () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false);
+		DateTime dateTime = minute(2023, 1, 1, 0, 0);
+		DateTime shifted = new DateTime(dateTime);
+		assertEquals(1, adjuster.adjustForInterpolationType(shifted, InterpolationType.CONSTANT_UNTIL_NEXT));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 0, shifted);
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, dateTime, InterpolationType.CONSTANT_UNTIL_NEXT));
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, dateTime, InterpolationType.TOTAL_UNTIL_NEXT));
+	}
+
+	/**
+	 * 1Day values with non-zero hour are detected.
+	 */
+	@Test
+	public void testDayNonZeroHour () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false);
+		assertFalse(adjuster.isDayNonZeroHour(minute(2023, 1, 2, 0, 0)));
+		assertFalse(adjuster.isDayNonZeroHour(minute(2023, 1, 2, 0, 30)));
+		assertTrue(adjuster.isDayNonZeroHour(minute(2023, 1, 2, 7, 0)));
+		assertFalse(adjuster.isDayNonZeroHour(TimestampDecoder.toLocalMillis(minute(2023, 1, 2, 0, 30))));
+		assertTrue(adjuster.isDayNonZeroHour(TimestampDecoder.toLocalMillis(minute(2023, 1, 2, 7, 0))));
+		// Only checked for 1Day.
+		adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false);
+		assertFalse(adjuster.isDayNonZeroHour(minute(2023, 1, 2, 7, 0)));
+		assertFalse(adjuster.isDayNonZeroHour(TimestampDecoder.toLocalMillis(minute(2023, 1, 2, 7, 0))));
+	}
+
+	/**
+	 * 1Day values read as 24Hour are not shifted to the previous day and have hour precision.
+	 */
+	@Test
+	public void testDayReadAs24Hour () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, true, false);
+		assertDateTime(DateTime.PRECISION_HOUR, 2023, 1, 2, 7, adjust(adjuster, minute(2023, 1, 2, 7, 0), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_HOUR, 2023, 1, 3, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.CONSTANT_UNTIL_NEXT));
+	}
+
+	/**
+	 * 1Hour INST values are not adjusted.
+	 */
+	@Test
+	public void testHourInstantaneous () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false);
+		DateTime dateTime = minute(2023, 1, 2, 5, 0);
+		assertEquals(0, adjuster.adjustForInterpolationType(new DateTime(dateTime), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 5, adjust(adjuster, dateTime, InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 5, adjust(adjuster, dateTime, InterpolationType.CONSTANT_SINCE_PREVIOUS));
+	}
+
+	/**
+	 * 1Hour MEAN values at the beginning of the interval are shifted to the end of the interval.
+	 */
+	@Test
+	public void testHourMean () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 1, null, false, false);
+		DateTime dateTime = minute(2023, 1, 2, 5, 0);
+		assertEquals(1, adjuster.adjustForInterpolationType(new DateTime(dateTime), InterpolationType.CONSTANT_UNTIL_NEXT));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 6, adjust(adjuster, dateTime, InterpolationType.CONSTANT_UNTIL_NEXT));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 3, 0, adjust(adjuster, minute(2023, 1, 2, 23, 0), InterpolationType.TOTAL_UNTIL_NEXT));
+		// 6Hour values are shifted by 6 hours.
+		adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 6, null, false, false);
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 12, adjust(adjuster, minute(2023, 1, 2, 6, 0), InterpolationType.CONSTANT_UNTIL_NEXT));
+	}
+
+	/**
+	 * With IrregularInterval, 1Day values are only shifted to the previous day for IrregDay,
+	 * and the precision is for the irregular interval.
+	 */
+	@Test
+	public void testIrregularInterval () throws Exception {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1,
+			TimeInterval.parseInterval("IrregMinute"), false, false);
+		assertFalse(adjuster.isLocalMillisSupported());
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 3, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.CONSTANT_UNTIL_NEXT));
+		adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, TimeInterval.parseInterval("IrregDay"), false, false);
+		assertFalse(adjuster.isLocalMillisSupported());
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.INSTANTANEOUS));
+		// Month is only read with IrregularInterval and is not shifted to the previous day.
+		adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.MONTH, 1, TimeInterval.parseInterval("IrregMonth"), false, false);
+		assertFalse(adjuster.isLocalMillisSupported());
+		assertDateTime(DateTime.PRECISION_MONTH, 2023, 2, 1, 0, adjust(adjuster, minute(2023, 2, 1, 0, 0), InterpolationType.INSTANTANEOUS));
+	}
+
+	/**
+	 * Local time adjustments are only supported for regular intervals with fixed length.
+	 */
+	@Test
+	public void testLocalMillisSupported () {
+		assertTrue(new TimeSeriesValueTimeAdjuster(TimeInterval.MINUTE, 15, null, false, false).isLocalMillisSupported());
+		assertTrue(new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 24, null, false, true).isLocalMillisSupported());
+		assertTrue(new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, true, false).isLocalMillisSupported());
+		assertFalse(new TimeSeriesValueTimeAdjuster(TimeInterval.MONTH, 1, null, false, false).isLocalMillisSupported());
+		assertFalse(new TimeSeriesValueTimeAdjuster(TimeInterval.IRREGULAR, 0, null, false, false).isLocalMillisSupported());
+	}
+
+	/**
+	 * The period is adjusted the same as the values.
+	 */
+	@Test
+	public void testSetPeriod () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.DAY, 1, null, false, false);
+		TimeSeriesValueBuffer valueBuffer = new TimeSeriesValueBuffer();
+		valueBuffer.addValue(TimestampDecoder.toLocalMillis(minute(2023, 1, 5, 0, 0)), TimestampDecoder.NO_OFFSET,
+			1.0, "", InterpolationType.INSTANTANEOUS);
+		valueBuffer.addValue(TimestampDecoder.toLocalMillis(minute(2023, 1, 2, 0, 0)), TimestampDecoder.NO_OFFSET,
+			2.0, "", InterpolationType.INSTANTANEOUS);
+		TS ts = new DayTS();
+		ts.setDate1Original(minute(2023, 1, 2, 0, 0));
+		adjuster.setPeriod(ts, valueBuffer);
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, ts.getDate1());
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 4, 0, ts.getDate2());
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, ts.getDate1Original());
+		assertEquals(null, ts.getDate2Original());
+	}
+
+	/**
+	 * 24Hour values read as 1Day are shifted to the previous day.
+	 */
+	@Test
+	public void test24HourReadAsDay () {
+		TimeSeriesValueTimeAdjuster adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 24, null, false, true);
+		assertFalse(adjuster.isDayNonZeroHour(minute(2023, 1, 2, 7, 0)));
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 1, 0, adjust(adjuster, minute(2023, 1, 2, 7, 0), InterpolationType.INSTANTANEOUS));
+		assertDateTime(DateTime.PRECISION_DAY, 2023, 1, 2, 0, adjust(adjuster, minute(2023, 1, 2, 0, 0), InterpolationType.TOTAL_UNTIL_NEXT));
+		// Not shifted to the previous day when not read as 1Day.
+		adjuster = new TimeSeriesValueTimeAdjuster(TimeInterval.HOUR, 24, null, false, false);
+		assertDateTime(DateTime.PRECISION_MINUTE, 2023, 1, 2, 7, adjust(adjuster, minute(2023, 1, 2, 7, 0), InterpolationType.INSTANTANEOUS));
+	}
+}
@@ -0,0 +1,216 @@
+// TimestampDecoderTest - tests for TimestampDecoder
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Tests for TimestampDecoder.
+ */
+public class TimestampDecoderTest {
+
+	/**
+	 * Return epoch milliseconds for an ISO 8601 timestamp with offset, using java.time.
+	 */
+	private static long isoMillis ( String timestamp ) {
+		return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * The cached date and offset must not be used for a later timestamp with a different date or offset.
+	 */
+	@Test
+	public void testCachedDateAndOffsetChange () {
+		TimestampDecoder decoder = new TimestampDecoder();
+		assertEquals(isoMillis("2023-12-31T23:00:00-07:00"), decoder.decode("2023-12-31T23:00:00-07:00"));
+		assertEquals(isoMillis("2023-12-31T23:15:00-07:00"), decoder.decode("2023-12-31T23:15:00-07:00"));
+		assertEquals(isoMillis("2024-01-01T00:00:00-06:00"), decoder.decode("2024-01-01T00:00:00-06:00"));
+		assertEquals(-360, decoder.getOffsetMinutes());
+		assertEquals(isoMillis("2024-01-01T00:15:00Z"), decoder.decode("2024-01-01T00:15:00Z"));
+		assertEquals(0, decoder.getOffsetMinutes());
+	}
+
+	/**
+	 * Decode a timestamp from part of a buffer, as done by the parser.
+	 */
+	@Test
+	public void testDecodeBuffer () {
+		byte [] buffer = "x;2023-05-01T12:30:45Z;1.5".getBytes();
+		assertEquals(isoMillis("2023-05-01T12:30:45Z"), new TimestampDecoder().decode(buffer, 2, 22));
+	}
+
+	/**
+	 * Decode epoch seconds, with and without a fraction.
+	 */
+	@Test
+	public void testEpochSeconds () {
+		TimestampDecoder decoder = new TimestampDecoder();
+		assertEquals(1700000000000L, decoder.decode("1700000000"));
+		assertEquals(0, decoder.getOffsetMinutes());
+		assertEquals(1700000000250L, decoder.decode("1700000000.25"));
+		assertEquals(-1000000000500L, decoder.decode("-1000000000.5"));
+	}
+
+	/**
+	 * Reject compact ISO 8601 dates, which must not be decoded as epoch seconds.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCompactDate () {
+		new TimestampDecoder().decode("20221230");
+	}
+
+	/**
+	 * Reject compact ISO 8601 date/times, which must not be decoded as epoch seconds.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCompactDateTime () {
+		new TimestampDecoder().decode("20221230120000");
+	}
+
+	/**
+	 * Reject epoch seconds with characters other than digits.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidEpochSeconds () {
+		new TimestampDecoder().decode("17000000x0");
+	}
+
+	/**
+	 * Format time zones for offsets.
+	 */
+	@Test
+	public void testFormatTimeZone () {
+		assertEquals("-07:00", TimestampDecoder.formatTimeZone(-420));
+		assertEquals("+05:30", TimestampDecoder.formatTimeZone(330));
+		assertEquals("+00:00", TimestampDecoder.formatTimeZone(0));
+	}
+
+	/**
+	 * Reject an empty timestamp.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidEmpty () {
+		new TimestampDecoder().decode("");
+	}
+
+	/**
+	 * Reject an invalid day of the month.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidDay () {
+		new TimestampDecoder().decode("2023-02-29T00:00:00Z");
+	}
+
+	/**
+	 * Reject an invalid hour.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidHour () {
+		new TimestampDecoder().decode("2023-05-01T24:00:00Z");
+	}
+
+	/**
+	 * Reject an invalid offset.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidOffset () {
+		new TimestampDecoder().decode("2023-05-01T12:00:00+7");
+	}
+
+	/**
+	 * Reject a timestamp that is too short.
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidShort () {
+		new TimestampDecoder().decode("2023-05-01");
+	}
+
+	/**
+	 * Decode ISO 8601 timestamps with the supported offset forms.
+	 */
+	@Test
+	public void testIsoOffsets () {
+		TimestampDecoder decoder = new TimestampDecoder();
+		long expected = isoMillis("2023-05-01T12:30:45-07:00");
+		assertEquals(expected, decoder.decode("2023-05-01T12:30:45-07:00"));
+		assertEquals(-420, decoder.getOffsetMinutes());
+		assertEquals(expected, decoder.decode("2023-05-01T12:30:45-0700"));
+		assertEquals(expected, decoder.decode("2023-05-01T12:30:45-07"));
+		assertEquals(isoMillis("2023-05-01T12:30:45+05:30"), decoder.decode("2023-05-01T12:30:45+05:30"));
+		assertEquals(330, decoder.getOffsetMinutes());
+		assertEquals(isoMillis("2023-05-01T12:30:45Z"), decoder.decode("2023-05-01T12:30:45Z"));
+		assertEquals(0, decoder.getOffsetMinutes());
+	}
+
+	/**
+	 * Decode ISO 8601 timestamps with optional seconds, fraction, and space separator.
+	 */
+	@Test
+	public void testIsoParts () {
+		TimestampDecoder decoder = new TimestampDecoder();
+		assertEquals(isoMillis("2023-05-01T12:30:00Z"), decoder.decode("2023-05-01T12:30Z"));
+		assertEquals(isoMillis("2023-05-01T12:30:45.123Z"), decoder.decode("2023-05-01T12:30:45.123Z"));
+		assertEquals(isoMillis("2023-05-01T12:30:45.500Z"), decoder.decode("2023-05-01T12:30:45.5Z"));
+		assertEquals(isoMillis("2023-05-01T12:30:45Z"), decoder.decode("2023-05-01 12:30:45Z"));
+		assertEquals(isoMillis("2024-02-29T00:00:00Z"), decoder.decode("2024-02-29T00:00:00Z"));
+	}
+
+	/**
+	 * Decode an ISO 8601 timestamp without an offset, which is local time.
+	 */
+	@Test
+	public void testIsoWithoutOffset () {
+		TimestampDecoder decoder = new TimestampDecoder();
+		long expected = LocalDateTime.of(2023, 5, 1, 12, 30, 45).toInstant(ZoneOffset.UTC).toEpochMilli();
+		assertEquals(expected, decoder.decode("2023-05-01T12:30:45"));
+		assertEquals(TimestampDecoder.NO_OFFSET, decoder.getOffsetMinutes());
+	}
+
+	/**
+	 * Convert epoch milliseconds to a DateTime in the local time of the offset.
+	 */
+	@Test
+	public void testToDateTime () {
+		DateTime dateTime = TimestampDecoder.toDateTime(isoMillis("2024-02-29T23:45:10-07:00"), -420);
+		assertEquals(2024, dateTime.getYear());
+		assertEquals(2, dateTime.getMonth());
+		assertEquals(29, dateTime.getDay());
+		assertEquals(23, dateTime.getHour());
+		assertEquals(45, dateTime.getMinute());
+		assertEquals(10, dateTime.getSecond());
+		dateTime = TimestampDecoder.toDateTime(-1000L, 0);
+		assertEquals(1969, dateTime.getYear());
+		assertEquals(12, dateTime.getMonth());
+		assertEquals(31, dateTime.getDay());
+		assertEquals(23, dateTime.getHour());
+		assertEquals(59, dateTime.getSecond());
+	}
+}
@@ -0,0 +1,150 @@
+// WebServiceCircuitBreakerTest - tests for WebServiceCircuitBreaker
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.ManualTicker;
+
+/**
+ * Tests for WebServiceCircuitBreaker.
+ * A manual ticker is used so that the open time passes without sleeping.
+ */
+public class WebServiceCircuitBreakerTest {
+
+	/**
+	 * Open a circuit breaker by recording failures up to the threshold.
+	 */
+	private static void open ( WebServiceCircuitBreaker breaker, int failureThreshold ) {
+		for ( int i = 0; i < failureThreshold; i++ ) {
+			assertTrue(breaker.allowRequest());
+			breaker.recordFailure();
+		}
+		assertEquals(WebServiceCircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	/**
+	 * A failed trial request opens the circuit again.
+	 */
+	@Test
+	public void testHalfOpenFailure () {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(2, 50, ticker);
+		open(breaker, 2);
+		ticker.advance(50);
+		assertTrue(breaker.allowRequest());
+		assertEquals(WebServiceCircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.recordFailure());
+		assertEquals(WebServiceCircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	/**
+	 * After the open time, one trial request is allowed and a successful trial closes the circuit.
+	 */
+	@Test
+	public void testHalfOpenSuccess () {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(2, 50, ticker);
+		open(breaker, 2);
+		ticker.advance(49);
+		assertEquals(1, breaker.getRemainingOpenTime());
+		assertFalse(breaker.allowRequest());
+		ticker.advance(1);
+		assertEquals(0, breaker.getRemainingOpenTime());
+		assertTrue(breaker.allowRequest());
+		// Only one trial request is allowed.
+		assertFalse(breaker.allowRequest());
+		breaker.recordSuccess();
+		assertEquals(WebServiceCircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	/**
+	 * Another trial request is allowed if the trial request did not record a result within the open time.
+	 */
+	@Test
+	public void testHalfOpenTrialWithoutResult () {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(1, 50, ticker);
+		open(breaker, 1);
+		ticker.advance(50);
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+		ticker.advance(49);
+		assertFalse(breaker.allowRequest());
+		ticker.advance(1);
+		assertTrue(breaker.allowRequest());
+	}
+
+	/**
+	 * The circuit never opens if the threshold is 0.
+	 */
+	@Test
+	public void testNoThreshold () {
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(0, 60000);
+		for ( int i = 0; i < 100; i++ ) {
+			assertFalse(breaker.recordFailure());
+		}
+		assertEquals(WebServiceCircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	/**
+	 * The circuit opens after consecutive failures and rejects requests while open.
+	 */
+	@Test
+	public void testOpen () {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(3, 60000, ticker);
+		assertFalse(breaker.recordFailure());
+		assertFalse(breaker.recordFailure());
+		assertEquals(WebServiceCircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.recordFailure());
+		assertEquals(WebServiceCircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+		assertEquals(60000, breaker.getRemainingOpenTime());
+		ticker.advance(1000);
+		assertEquals(59000, breaker.getRemainingOpenTime());
+		assertFalse(breaker.allowRequest());
+	}
+
+	/**
+	 * A success resets the consecutive failure count.
+	 */
+	@Test
+	public void testSuccessResetsFailures () {
+		WebServiceCircuitBreaker breaker = new WebServiceCircuitBreaker(3, 60000);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals(WebServiceCircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getRemainingOpenTime());
+		assertTrue(breaker.allowRequest());
+	}
+}
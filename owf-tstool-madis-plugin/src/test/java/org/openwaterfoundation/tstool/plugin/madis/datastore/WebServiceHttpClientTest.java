@@ -0,0 +1,401 @@
+// WebServiceHttpClientTest - tests for WebServiceHttpClient
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.dao.StringDictionary;
+import org.openwaterfoundation.tstool.plugin.madis.dao.TimeSeriesCatalog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for WebServiceHttpClient, using a local HTTP server.
+ * Handlers that must not respond until the test has checked the result wait for latches rather than sleeping,
+ * so that the order of responses does not depend on timing.
+ */
+public class WebServiceHttpClientTest {
+
+	/**
+	 * Response body used by the tests.
+	 */
+	private static final String BODY = "#ts_id;957010\n2022-12-30T18:00:00.000-07:00;84.88;200;102\n";
+
+	/**
+	 * Maximum number of concurrent requests for the client.
+	 */
+	private static final int MAX_CONNECTIONS = 4;
+
+	/**
+	 * Maximum time that a handler waits for a latch, seconds, so that a failed test does not hang.
+	 */
+	private static final long LATCH_TIMEOUT = 30;
+
+	/**
+	 * Local server.
+	 */
+	private HttpServer server;
+
+	/**
+	 * Executor for the server, so that requests are handled concurrently.
+	 */
+	private ExecutorService serverExecutor;
+
+	/**
+	 * Latch that handlers wait for before responding, counted down by the test after checking the result.
+	 */
+	private final CountDownLatch serverRelease = new CountDownLatch(1);
+
+	/**
+	 * Number of requests received for each path.
+	 */
+	private final Map<String,AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+	/**
+	 * Client being tested.
+	 */
+	private WebServiceHttpClient client;
+
+	/**
+	 * Handler for a request, which is given the request number for the path (1+).
+	 */
+	private interface Handler {
+		void handle ( HttpExchange exchange, int requestNumber ) throws Exception;
+	}
+
+	/**
+	 * Add a handler for a path.
+	 */
+	private void addHandler ( String path, Handler handler ) {
+		AtomicInteger requestCount = new AtomicInteger();
+		this.requestCounts.put(path, requestCount);
+		this.server.createContext(path, exchange -> {
+			try {
+				handler.handle(exchange, requestCount.incrementAndGet());
+			}
+			catch ( Exception e ) {
+				// The client may have closed the connection.
+			}
+			finally {
+				exchange.close();
+			}
+		});
+	}
+
+	/**
+	 * Wait for the permits to be released, which may occur after a request returns for a losing hedged request.
+	 */
+	private void assertPermitsReleased () throws InterruptedException {
+		long endTime = System.currentTimeMillis() + 5000;
+		while ( (this.client.getAvailablePermits() < MAX_CONNECTIONS) && (System.currentTimeMillis() < endTime) ) {
+			Thread.sleep(20);
+		}
+		assertEquals(MAX_CONNECTIONS, this.client.getAvailablePermits());
+	}
+
+	/**
+	 * Wait for a latch in a handler.
+	 */
+	private static void await ( CountDownLatch latch ) throws InterruptedException {
+		latch.await(LATCH_TIMEOUT, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Compress the body.
+	 * @param encoding "gzip", "deflate" (zlib), or "raw" (deflate without the zlib header)
+	 */
+	private static byte [] compress ( String body, String encoding ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out;
+		if ( encoding.equals("gzip") ) {
+			out = new GZIPOutputStream(bytes);
+		}
+		else {
+			out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, encoding.equals("raw")));
+		}
+		out.write(body.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Create a client.
+	 * @param requestTimeout request and read timeout, milliseconds
+	 * @param maxRetries maximum number of retries
+	 * @param hedgePercentile latency percentile for hedged requests, or 0 to not hedge
+	 */
+	private WebServiceHttpClient createClient ( int requestTimeout, int maxRetries, double hedgePercentile ) {
+		WebServiceRequestPolicy policy = new WebServiceRequestPolicy(maxRetries, 10, 10, hedgePercentile, 0, 0);
+		return new WebServiceHttpClient(MAX_CONNECTIONS, 5000, requestTimeout, false, true, policy, new WebServiceRateLimiter(0, 1));
+	}
+
+	/**
+	 * Send a GET request and return the status and body as "status:body".
+	 */
+	private String get ( String path ) throws IOException {
+		return this.client.get(getUrl(path), response -> response.getStatusCode() + ":"
+			+ new String(response.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Return the URL for a path.
+	 */
+	private String getUrl ( String path ) {
+		return "http://localhost:" + this.server.getAddress().getPort() + path;
+	}
+
+	/**
+	 * Send a response.
+	 */
+	private static void respond ( HttpExchange exchange, int status, String body ) throws IOException {
+		byte [] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	/**
+	 * Send enough fast requests for the latency percentile, which is needed for hedged requests.
+	 */
+	private void sendLatencySamples () throws IOException {
+		for ( int i = 0; i < 25; i++ ) {
+			assertEquals("200:" + BODY, get("/fast"));
+		}
+	}
+
+	@Before
+	public void setUp () throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.serverExecutor = Executors.newCachedThreadPool();
+		this.server.setExecutor(this.serverExecutor);
+		addHandler("/fast", (exchange, requestNumber) -> respond(exchange, 200, BODY));
+	}
+
+	@After
+	public void tearDown () {
+		this.serverRelease.countDown();
+		if ( this.client != null ) {
+			this.client.close();
+		}
+		this.server.stop(0);
+		this.serverExecutor.shutdownNow();
+	}
+
+	/**
+	 * Test that a compressed time series list response is decoded as it is streamed into the catalog parser.
+	 */
+	@Test
+	public void testCompressedCatalogResponse () throws Exception {
+		String catalog = "[{\"station_no\":\"1234\",\"stationparameter_no\":\"Q\",\"ts_id\":\"957010\","
+			+ "\"ts_shortname\":\"Day\",\"ts_spacing\":\"P1D\"}]";
+		addHandler("/catalog", (exchange, requestNumber) -> {
+			byte [] bytes = compress(catalog, "gzip");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		});
+		this.server.start();
+		this.client = createClient(5000, 0, 0);
+		List<TimeSeriesCatalog> tscatalogList = this.client.get(getUrl("/catalog"),
+			response -> new TimeSeriesCatalogParser().parse(response.getInputStream(), new StringDictionary()));
+		assertEquals(1, tscatalogList.size());
+		assertEquals(Integer.valueOf(957010), tscatalogList.get(0).getTsId());
+		assertEquals("1Day", tscatalogList.get(0).getDataInterval());
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that gzip, zlib deflate, and raw deflate responses are decoded.
+	 */
+	@Test
+	public void testCompressedResponses () throws Exception {
+		for ( String encoding : new String[] { "gzip", "deflate", "raw" } ) {
+			addHandler("/" + encoding, (exchange, requestNumber) -> {
+				assertEquals("gzip, deflate", exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+				byte [] bytes = compress(BODY, encoding);
+				exchange.getResponseHeaders().set("Content-Encoding", encoding.equals("raw") ? "deflate" : encoding);
+				exchange.sendResponseHeaders(200, bytes.length);
+				exchange.getResponseBody().write(bytes);
+			});
+		}
+		this.server.start();
+		this.client = createClient(5000, 0, 0);
+		for ( String encoding : new String[] { "gzip", "deflate", "raw" } ) {
+			String result = this.client.get(getUrl("/" + encoding), response -> {
+				// The content length is the compressed length so is not used.
+				assertEquals(-1, response.getContentLength());
+				return response.getContentEncoding() + ":" + new String(response.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+			});
+			assertEquals((encoding.equals("raw") ? "deflate" : encoding) + ":" + BODY, result);
+		}
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that requests rejected by the open circuit breaker don't use rate limit tokens.
+	 */
+	@Test
+	public void testCircuitOpenDoesNotUseRateLimit () throws Exception {
+		addHandler("/unavailable", (exchange, requestNumber) -> respond(exchange, 503, "unavailable"));
+		this.server.start();
+		// Very slow rate with two tokens, so a request that waits for a token would not complete during the test.
+		WebServiceRateLimiter rateLimiter = new WebServiceRateLimiter(0.001, 2);
+		WebServiceRequestPolicy policy = new WebServiceRequestPolicy(0, 10, 10, 0, 1, 60000);
+		this.client = new WebServiceHttpClient(MAX_CONNECTIONS, 5000, 5000, false, true, policy, rateLimiter);
+		// The first request uses a token and opens the circuit breaker.
+		assertEquals("503:unavailable", get("/unavailable"));
+		for ( int i = 0; i < 3; i++ ) {
+			try {
+				get("/unavailable");
+				fail("Expected the circuit breaker to reject the request.");
+			}
+			catch ( IOException e ) {
+				assertTrue(e.getMessage().contains("unavailable after repeated failures"));
+			}
+		}
+		assertEquals(1, this.requestCounts.get("/unavailable").get());
+		// The second token is still available.
+		assertTrue(rateLimiter.tryAcquire());
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that a hedged request that is slower than the first request is closed and its permit released.
+	 */
+	@Test
+	public void testHedgeLoss () throws Exception {
+		CountDownLatch hedgeReceived = new CountDownLatch(1);
+		addHandler("/slow", (exchange, requestNumber) -> {
+			if ( requestNumber == 1 ) {
+				// The first request responds after the hedged request is received.
+				await(hedgeReceived);
+			}
+			else {
+				// The hedged request does not respond until the first request's response was checked.
+				hedgeReceived.countDown();
+				await(this.serverRelease);
+			}
+			respond(exchange, 200, "request" + requestNumber);
+		});
+		this.server.start();
+		this.client = createClient(5000, 0, 50);
+		sendLatencySamples();
+		assertEquals("200:request1", get("/slow"));
+		assertEquals(2, this.requestCounts.get("/slow").get());
+		this.serverRelease.countDown();
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that a hedged request that is faster than the first request is used
+	 * and the first request is closed and its permit released.
+	 */
+	@Test
+	public void testHedgeWin () throws Exception {
+		addHandler("/slow", (exchange, requestNumber) -> {
+			// The first request is stalled until the hedged request's response was checked.
+			if ( requestNumber == 1 ) {
+				await(this.serverRelease);
+			}
+			respond(exchange, 200, "request" + requestNumber);
+		});
+		this.server.start();
+		this.client = createClient(5000, 0, 50);
+		sendLatencySamples();
+		assertEquals("200:request2", get("/slow"));
+		assertEquals(2, this.requestCounts.get("/slow").get());
+		this.serverRelease.countDown();
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that a response body that stops sending data fails with the read timeout.
+	 */
+	@Test
+	public void testReadTimeout () throws Exception {
+		addHandler("/stalled", (exchange, requestNumber) -> {
+			// Send the headers and part of the body, then stall until the test has checked the result,
+			// so the request can only complete with the read timeout.
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write(BODY.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			await(this.serverRelease);
+			out.write(BODY.substring(10).getBytes(StandardCharsets.UTF_8));
+		});
+		this.server.start();
+		this.client = createClient(300, 0, 0);
+		try {
+			get("/stalled");
+			fail("Expected a read timeout.");
+		}
+		catch ( HttpTimeoutException e ) {
+			// Expected.
+		}
+		this.serverRelease.countDown();
+		assertPermitsReleased();
+	}
+
+	/**
+	 * Test that a 503 response is retried and the retry succeeds.
+	 */
+	@Test
+	public void testRetryAfterServiceUnavailable () throws Exception {
+		addHandler("/unavailable", (exchange, requestNumber) -> {
+			if ( requestNumber == 1 ) {
+				respond(exchange, 503, "unavailable");
+			}
+			else {
+				respond(exchange, 200, BODY);
+			}
+		});
+		this.server.start();
+		this.client = createClient(5000, 2, 0);
+		assertEquals("200:" + BODY, get("/unavailable"));
+		assertEquals(2, this.requestCounts.get("/unavailable").get());
+		assertPermitsReleased();
+	}
+}
@@ -0,0 +1,145 @@
+// WebServiceRateLimiterTest - tests for WebServiceRateLimiter
+
+/* NoticeStart
+
+OWF TSTool MADIS Plugin
+Copyright (C) 2023 Open Water Foundation
+
+OWF TSTool MADIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool MADIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool MADIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.madis.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openwaterfoundation.tstool.plugin.madis.datastore.TimeSeriesTestSupport.ManualTicker;
+
+/**
+ * Tests for WebServiceRateLimiter.
+ * A manual ticker is used so that waits advance the time rather than sleeping.
+ */
+public class WebServiceRateLimiterTest {
+
+	/**
+	 * Return the time since a start time, milliseconds.
+	 */
+	private static long elapsed ( ManualTicker ticker, long startTime ) {
+		return TimeUnit.NANOSECONDS.toMillis(ticker.nanoTime() - startTime);
+	}
+
+	/**
+	 * Requests are limited to the rate after the burst is used.
+	 */
+	@Test
+	public void testAcquireWaits () throws InterruptedException {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceRateLimiter limiter = new WebServiceRateLimiter(20, 1, ticker);
+		long startTime = ticker.nanoTime();
+		// The first request uses the burst token and the other 4 wait 50 ms each.
+		assertEquals(0, limiter.acquire());
+		long waitTotal = 0;
+		for ( int i = 0; i < 4; i++ ) {
+			waitTotal += limiter.acquire();
+		}
+		assertEquals(200, elapsed(ticker, startTime));
+		assertEquals(200, waitTotal);
+	}
+
+	/**
+	 * Requests up to the burst size can be made without waiting, and tokens are added at the rate up to the burst size.
+	 */
+	@Test
+	public void testBurst () {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceRateLimiter limiter = new WebServiceRateLimiter(1, 3, ticker);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		ticker.advance(999);
+		assertFalse(limiter.tryAcquire());
+		ticker.advance(1);
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		// Tokens are not added past the burst size.
+		ticker.advance(60000);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+	}
+
+	/**
+	 * The rate is not reduced below the minimum rate after repeated throttled responses.
+	 */
+	@Test
+	public void testMinimumRate () {
+		WebServiceRateLimiter limiter = new WebServiceRateLimiter(64, 1);
+		for ( int i = 0; i < 20; i++ ) {
+			limiter.recordThrottled(0);
+		}
+		assertEquals(1.0, limiter.getRate(), 1.0e-9);
+	}
+
+	/**
+	 * A throttled response pauses requests and halves the rate, which recovers as requests succeed.
+	 */
+	@Test
+	public void testThrottled () throws InterruptedException {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceRateLimiter limiter = new WebServiceRateLimiter(10, 5, ticker);
+		limiter.recordThrottled(100);
+		assertEquals(5.0, limiter.getRate(), 1.0e-9);
+		// Requests are paused, even though tokens were available.
+		assertFalse(limiter.tryAcquire());
+		ticker.advance(99);
+		assertFalse(limiter.tryAcquire());
+		// Tokens are not added while paused so after the remaining 1 ms pause wait 200 ms for a token at 5/second.
+		long startTime = ticker.nanoTime();
+		assertEquals(201, limiter.acquire());
+		assertEquals(201, elapsed(ticker, startTime));
+		// The rate increases by 1/20 of the configured rate for each success, up to the configured rate.
+		limiter.recordSuccess();
+		assertEquals(5.5, limiter.getRate(), 1.0e-9);
+		for ( int i = 0; i < 20; i++ ) {
+			limiter.recordSuccess();
+		}
+		assertEquals(10.0, limiter.getRate(), 1.0e-9);
+	}
+
+	/**
+	 * Requests are not limited if the rate is 0, but throttled responses still pause requests.
+	 */
+	@Test
+	public void testUnlimited () throws InterruptedException {
+		ManualTicker ticker = new ManualTicker();
+		WebServiceRateLimiter limiter = new WebServiceRateLimiter(0, 1, ticker);
+		for ( int i = 0; i < 1000; i++ ) {
+			assertTrue(limiter.tryAcquire());
+		}
+		assertEquals(0, limiter.acquire());
+		limiter.recordThrottled(-1);
+		assertEquals(0.0, limiter.getRate(), 0.0);
+		assertFalse(limiter.tryAcquire());
+		// The default pause is one second.
+		assertEquals(1000, limiter.acquire());
+		assertTrue(limiter.tryAcquire());
+	}
+}